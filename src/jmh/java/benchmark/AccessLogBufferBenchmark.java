@@ -0,0 +1,54 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import filter.AccessLogBuffer;
+
+/**
+ * AccessLogBuffer 基準測試
+ * 量測 LoggingFilter 在請求執行緒上記錄一筆存取日誌的成本（格式化與輸出在背景執行緒）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessLogBufferBenchmark {
+    
+    private AccessLogBuffer buffer;
+    private long latency;
+    
+    @Setup(Level.Iteration)
+    public void setUp() {
+        buffer = new AccessLogBuffer(8192, line -> Blackhole.consumeCPU(0));
+        buffer.start();
+    }
+    
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        buffer.stop(5000);
+    }
+    
+    @Benchmark
+    public boolean record() {
+        return buffer.record("POST", "/pc-shop-web/register", 200, latency++, 1024);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,234 @@
+package benchmark;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+import filter.TokenAuthFilter;
+import util.AuthTokens;
+import util.AuthTokens.Claims;
+
+/**
+ * 無狀態登入權杖檢查
+ * 以固定的 security.token.secret 與 H2 檔案資料庫驗證 {@link AuthTokens} 與 {@link TokenAuthFilter}，
+ * 任何不符都會丟出 IllegalStateException：
+ * - 簽章：竄改內容、竄改簽章、以其他金鑰簽章或格式錯誤的權杖一律拒絕
+ * - 到期：過期的權杖拒絕；已在驗證快取中的權杖到期後也拒絕
+ * - 憑證戳記：本節點修改密碼後舊權杖立即失效；其他節點修改密碼後，超過 security.token.revalidate.interval 才失效
+ * - 資料庫無法連線：沿用最後一次查到的戳記；從未查詢過的使用者暫時接受簽章有效的權杖
+ * 
+ * 權杖設定在 AuthTokens 載入時讀取，必須在獨立的 JVM 中執行：
+ * mvn -Pbenchmark verify 會在基準測試前執行；也可以單獨執行：java benchmark.AuthTokenCheck
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class AuthTokenCheck {
+    
+    private static final byte[] SECRET = "auth-token-check-secret-0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    
+    public static void main(String[] args) throws Exception {
+        run();
+        System.out.println("無狀態登入權杖檢查通過");
+    }
+    
+    /**
+     * 設定權杖模式與暫存資料庫後依序檢查各情境
+     * @throws Exception 無法建立暫存資料庫
+     */
+    public static void run() throws Exception {
+        Path directory = Files.createTempDirectory("auth-check");
+        String url = "jdbc:h2:" + directory.resolve("users").toAbsolutePath() + ";IFEXISTS=TRUE";
+        try {
+            System.setProperty("security.session.mode", "token");
+            System.setProperty("security.token.secret", Base64.getEncoder().encodeToString(SECRET));
+            System.setProperty("security.session.timeout", "1800");
+            System.setProperty("security.token.revalidate.interval", "3600");
+            System.setProperty("database.driver", "org.h2.Driver");
+            System.setProperty("database.url", url);
+            System.setProperty("database.replica.urls", "");
+            System.setProperty("database.pool.enabled", "false");
+            expect(AuthTokens.isEnabled() && AuthTokens.getConfigError() == null,
+                   "AuthTokens 已以其他設定載入，請在獨立的 JVM 中執行");
+            
+            checkSignature();
+            checkExpiry();
+            
+            // IFEXISTS=TRUE：資料庫只由這裡建立，刪除檔案後連線失敗即模擬資料庫無法連線
+            try (Connection conn = DriverManager.getConnection(url.replace(";IFEXISTS=TRUE", ""))) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("CREATE TABLE users (id VARCHAR(50) PRIMARY KEY, password VARCHAR(255))");
+                }
+                checkStampRevocation(conn);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SHUTDOWN");
+                }
+            }
+            checkDatabaseDown(directory);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+    
+    private static void checkSignature() throws Exception {
+        String token = AuthTokens.issue("alice", Collections.singleton("user"), AuthTokens.credentialStamp("hash-a"));
+        Claims claims = AuthTokens.verify(token);
+        expect(claims != null && "alice".equals(claims.getUserId()) && claims.hasRole("user")
+               && !claims.hasRole("admin") && AuthTokens.credentialStamp("hash-a").equals(claims.getCredentialStamp()),
+               "正常簽發的權杖應通過驗證並保留內容");
+        
+        // 竄改內容（改成 admin 角色）但保留原簽章
+        int dot = token.lastIndexOf('.');
+        String payload = new String(Base64.getUrlDecoder().decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+        String forgedPayload = encode(payload.replace("\nuser\n", "\nuser,admin\n"));
+        expect(AuthTokens.verify(forgedPayload + token.substring(dot)) == null, "竄改內容的權杖應被拒絕");
+        
+        // 竄改簽章
+        char last = token.charAt(token.length() - 1);
+        String badSignature = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+        expect(AuthTokens.verify(badSignature) == null, "竄改簽章的權杖應被拒絕");
+        
+        // 以其他金鑰簽章
+        String otherKey = sign(token.substring(0, dot),
+                               "another-secret-that-is-long-enough!!".getBytes(StandardCharsets.US_ASCII));
+        expect(AuthTokens.verify(otherKey) == null, "以其他金鑰簽章的權杖應被拒絕");
+        
+        for (String malformed : new String[]{"", "no-dot", ".abc", "abc.", "!!!.###", token.substring(0, dot)}) {
+            expect(AuthTokens.verify(malformed) == null, "格式錯誤的權杖應被拒絕: " + malformed);
+        }
+    }
+    
+    private static void checkExpiry() throws Exception {
+        long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        String stamp = AuthTokens.credentialStamp("hash-e");
+        
+        // 以相同金鑰自行簽章，確認格式與 AuthTokens 一致，再以過去的到期時間檢查
+        expect(AuthTokens.verify(forge("erin", "user", nowSeconds + 60, stamp)) != null, "自行簽章的權杖應通過驗證");
+        expect(AuthTokens.verify(forge("erin", "user", nowSeconds - 1, stamp)) == null, "過期的權杖應被拒絕");
+        
+        // 已在驗證快取中的權杖到期後也要拒絕
+        String shortLived = forge("erin", "user", nowSeconds + 2, stamp);
+        expect(AuthTokens.verify(shortLived) != null, "尚未到期的權杖應通過驗證");
+        Thread.sleep(TimeUnit.SECONDS.toMillis(nowSeconds + 2) - System.currentTimeMillis() + 50);
+        expect(AuthTokens.verify(shortLived) == null, "快取中的權杖到期後應被拒絕");
+    }
+    
+    private static void checkStampRevocation(Connection conn) throws Exception {
+        TokenAuthFilter filter = new TokenAuthFilter();
+        filter.init(null);
+        
+        // 1. 本節點修改密碼（UserService.changePassword 的做法）：舊權杖立即失效
+        setPassword(conn, "bob", "hash-1");
+        String first = AuthTokens.issue("bob", Collections.singleton("user"), AuthTokens.credentialStamp("hash-1"));
+        expect(authenticate(filter, first) != null, "密碼未變更時權杖應有效");
+        setPassword(conn, "bob", "hash-2");
+        AuthTokens.recordStamp("bob", AuthTokens.credentialStamp("hash-2"));
+        expect(authenticate(filter, first) == null, "本節點修改密碼後舊權杖應立即失效");
+        String second = AuthTokens.issue("bob", Collections.singleton("user"), AuthTokens.credentialStamp("hash-2"));
+        expect("bob".equals(authenticate(filter, second)), "修改密碼後簽發的權杖應有效");
+        
+        // 2. 其他節點修改密碼：重新查詢前沿用本節點的戳記，超過重新查詢間隔後失效
+        setPassword(conn, "bob", "hash-3");
+        expect(authenticate(filter, second) != null, "重新查詢間隔內應沿用本節點記住的戳記");
+        System.setProperty("security.token.revalidate.interval", "0");
+        expect(authenticate(filter, second) == null, "重新查詢資料庫後，其他節點修改密碼前的權杖應失效");
+        String third = AuthTokens.issue("bob", Collections.singleton("user"), AuthTokens.credentialStamp("hash-3"));
+        expect(authenticate(filter, third) != null, "與資料庫目前密碼相符的權杖應有效");
+        
+        // 3. 使用者已刪除
+        String dave = forge("dave", "user", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 60,
+                            AuthTokens.credentialStamp("hash-d"));
+        expect(authenticate(filter, dave) == null, "資料庫中不存在的使用者的權杖應被拒絕");
+    }
+    
+    private static void checkDatabaseDown(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> path.toFile().delete());
+        }
+        TokenAuthFilter filter = new TokenAuthFilter();
+        filter.init(null);
+        
+        // 重新查詢間隔為 0（每次都查詢），資料庫無法連線時沿用最後一次的結果
+        String third = AuthTokens.issue("bob", Collections.singleton("user"), AuthTokens.credentialStamp("hash-3"));
+        String second = forge("bob", "user", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 60,
+                              AuthTokens.credentialStamp("hash-2"));
+        expect(authenticate(filter, third) != null, "資料庫無法連線時，與最後一次戳記相符的權杖應有效");
+        expect(authenticate(filter, second) == null, "資料庫無法連線時，與最後一次戳記不符的權杖仍應被拒絕");
+        
+        // 從未查詢過的使用者：暫時接受簽章有效的權杖（TokenAuthFilter 記錄的既定行為）
+        String carol = forge("carol", "user", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 60,
+                             AuthTokens.credentialStamp("hash-c"));
+        expect("carol".equals(authenticate(filter, carol)), "資料庫無法連線且從未查詢過時應暫時接受簽章有效的權杖");
+        expect(authenticate(filter, carol.substring(0, carol.length() - 1) + "x") == null,
+               "資料庫無法連線時簽章不符的權杖仍應被拒絕");
+    }
+    
+    /**
+     * 以 Authorization: Bearer 標頭送出請求
+     * @return 過濾器設定的登入使用者；未登入時回傳 null
+     */
+    private static String authenticate(TokenAuthFilter filter, String token) throws Exception {
+        HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+                (proxy, method, args) -> {
+                    if ("getHeader".equals(method.getName()) && "Authorization".equals(args[0])) {
+                        return "Bearer " + token;
+                    }
+                    return null;
+                });
+        ServletRequest[] passed = new ServletRequest[1];
+        filter.doFilter(request, null, (req, res) -> passed[0] = req);
+        expect(passed[0] != null, "過濾器應繼續傳遞請求");
+        return ((HttpServletRequest) passed[0]).getRemoteUser();
+    }
+    
+    private static void setPassword(Connection conn, String userId, String passwordHash) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("MERGE INTO users (id, password) KEY (id) VALUES (?, ?)")) {
+            pstmt.setString(1, userId);
+            pstmt.setString(2, passwordHash);
+            pstmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * 依 AuthTokens 的格式以檢查用的金鑰簽發權杖（不經過 AuthTokens，不會記錄戳記）
+     */
+    private static String forge(String userId, String roles, long expiresAtSeconds, String stamp) throws Exception {
+        return sign(encode(userId + '\n' + roles + '\n' + expiresAtSeconds + '\n' + stamp), SECRET);
+    }
+    
+    private static String sign(String payload, byte[] secret) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+        byte[] signature = mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        return payload + '.' + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+    
+    private static String encode(String payload) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("無狀態登入權杖檢查失敗: " + message);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,200 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * 基準測試執行器
+ * - 執行所有 JMH 基準測試並啟用 GC profiler 取得每次操作的配置量
+ * - 與版本庫中的基準結果比較，退化超過容許範圍時列出退化的項目並以非零狀態碼結束（使建構失敗）
+ * - 基準結果與量測的機器有關：本機 CPU 數量與基準結果的 cpus 不同時略過比較；
+ *   其他不同型的機器可以 -Dbenchmark.enforce=false 只列出退化項目，不使建構失敗
+ * - 以 -Dbenchmark.updateBaseline=true 執行時改為更新基準結果檔（僅更新本次執行的項目）
+ * 
+ * 指標說明：
+ * - thrpt: 吞吐量（ops/單位時間），越高越好
+ * - p50 / p99: SampleTime 模式的延遲百分位數（單位時間/op），越低越好
+ * - alloc: 每次操作配置的位元組數（B/op），越低越好
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class BenchmarkRunner {
+    
+    private static final String DEFAULT_BASELINE = "src/jmh/resources/benchmark-baseline.json";
+    private static final String RESULT_FILE = "target/jmh-result.json";
+    private static final double DEFAULT_TOLERANCE = 0.30;
+    // 配置量很小時容許的絕對誤差（B/op），避免量測雜訊造成誤判
+    private static final double ALLOC_SLACK_BYTES = 64;
+    
+    public static void main(String[] args) throws RunnerException, IOException {
+        String include = System.getProperty("benchmark.include", "benchmark\\..*Benchmark.*");
+        File baselineFile = new File(System.getProperty("benchmark.baseline", DEFAULT_BASELINE));
+        boolean update = Boolean.getBoolean("benchmark.updateBaseline");
+        boolean enforce = Boolean.parseBoolean(System.getProperty("benchmark.enforce", "true"));
+        
+        new File(RESULT_FILE).getParentFile().mkdirs();
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(RESULT_FILE)
+                .build();
+        
+        Collection<RunResult> results = new Runner(options).run();
+        Map<String, Map<String, Double>> measured = collectMetrics(results);
+        
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        
+        if (update || !baselineFile.exists()) {
+            writeBaseline(mapper, baselineFile, measured);
+            System.out.println("已寫入基準結果: " + baselineFile.getPath());
+            return;
+        }
+        
+        JsonNode baseline = mapper.readTree(baselineFile);
+        int cpus = Runtime.getRuntime().availableProcessors();
+        if (baseline.path("cpus").asInt(cpus) != cpus) {
+            System.out.println("基準結果於 " + baseline.path("cpus").asInt() + " 個 CPU 的機器上量測，本機為 " + cpus
+                               + " 個，略過比較（請在本機以 -Dbenchmark.updateBaseline=true 產生基準結果）");
+            return;
+        }
+        double tolerance = Double.parseDouble(System.getProperty("benchmark.tolerance",
+                String.valueOf(baseline.path("tolerance").asDouble(DEFAULT_TOLERANCE))));
+        
+        List<String> regressions = compare(baseline.path("results"), measured, tolerance);
+        if (!regressions.isEmpty()) {
+            System.err.println("偵測到效能退化（容許範圍 " + Math.round(tolerance * 100) + "%）:");
+            for (String regression : regressions) {
+                System.err.println("  " + regression);
+            }
+            if (enforce) {
+                System.exit(1);
+            }
+            System.err.println("已指定 -Dbenchmark.enforce=false，不使建構失敗");
+            return;
+        }
+        System.out.println("所有基準測試皆在基準結果容許範圍內");
+    }
+    
+    /**
+     * 將 JMH 結果整理為 benchmark -> (指標 -> 數值)
+     */
+    private static Map<String, Map<String, Double>> collectMetrics(Collection<RunResult> results) {
+        Map<String, Map<String, Double>> metrics = new TreeMap<>();
+        
+        for (RunResult result : results) {
+            BenchmarkParams params = result.getParams();
+            Map<String, Double> values = metrics.computeIfAbsent(params.getBenchmark(), k -> new TreeMap<>());
+            Result<?> primary = result.getPrimaryResult();
+            
+            switch (params.getMode()) {
+                case Throughput:
+                    values.put("thrpt", primary.getScore());
+                    break;
+                case SampleTime:
+                    values.put("p50", primary.getStatistics().getPercentile(50));
+                    values.put("p99", primary.getStatistics().getPercentile(99));
+                    break;
+                default:
+                    values.put(params.getMode().shortLabel(), primary.getScore());
+                    break;
+            }
+            
+            result.getSecondaryResults().forEach((name, secondary) -> {
+                if (name.endsWith("gc.alloc.rate.norm")) {
+                    // 兩種模式都會量到配置量，取較小者以降低 SampleTime 計時本身的干擾
+                    values.merge("alloc", secondary.getScore(), Math::min);
+                }
+            });
+        }
+        return metrics;
+    }
+    
+    private static List<String> compare(JsonNode baseline, Map<String, Map<String, Double>> measured,
+                                        double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        
+        for (Map.Entry<String, Map<String, Double>> benchmark : measured.entrySet()) {
+            JsonNode expected = baseline.path(benchmark.getKey());
+            if (expected.isMissingNode()) {
+                System.out.println("基準結果中沒有 " + benchmark.getKey() + "，略過比較");
+                continue;
+            }
+            
+            for (Map.Entry<String, Double> metric : benchmark.getValue().entrySet()) {
+                JsonNode reference = expected.path(metric.getKey());
+                if (!reference.isNumber()) {
+                    continue;
+                }
+                double base = reference.asDouble();
+                double actual = metric.getValue();
+                boolean regressed;
+                
+                if ("thrpt".equals(metric.getKey())) {
+                    regressed = actual < base * (1 - tolerance);
+                } else if ("alloc".equals(metric.getKey())) {
+                    regressed = actual > base * (1 + tolerance) + ALLOC_SLACK_BYTES;
+                } else {
+                    regressed = actual > base * (1 + tolerance);
+                }
+                
+                String line = String.format(Locale.ROOT, "%s [%s] 基準 %.3f, 本次 %.3f",
+                        benchmark.getKey(), metric.getKey(), base, actual);
+                System.out.println((regressed ? "退化 " : "通過 ") + line);
+                if (regressed) {
+                    regressions.add(line);
+                }
+            }
+        }
+        return regressions;
+    }
+    
+    private static void writeBaseline(ObjectMapper mapper, File file, Map<String, Map<String, Double>> measured)
+            throws IOException {
+        // 只執行部分基準測試時（-Dbenchmark.include），保留其餘項目的既有基準結果
+        ObjectNode root = file.exists() ? (ObjectNode) mapper.readTree(file) : mapper.createObjectNode();
+        if (!root.has("note")) {
+            root.put("note", "與量測的機器有關（見 jvm、cpus）：CPU 數量不同時不比較，否則退化超過 tolerance 即使建構失敗");
+        }
+        if (!root.has("tolerance")) {
+            root.put("tolerance", DEFAULT_TOLERANCE);
+        }
+        root.put("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        root.put("cpus", Runtime.getRuntime().availableProcessors());
+        
+        ObjectNode results = root.has("results") ? (ObjectNode) root.get("results") : root.putObject("results");
+        for (Map.Entry<String, Map<String, Double>> benchmark : measured.entrySet()) {
+            ObjectNode node = results.putObject(benchmark.getKey());
+            for (Map.Entry<String, Double> metric : benchmark.getValue().entrySet()) {
+                node.put(metric.getKey(), Math.round(metric.getValue() * 1000) / 1000.0);
+            }
+        }
+        
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        mapper.writeValue(file, root);
+    }
+}
\ No newline at end of file
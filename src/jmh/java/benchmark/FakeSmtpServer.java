@@ -0,0 +1,372 @@
+package benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 本機測試用的 SMTP 伺服器（只收信、不轉寄）
+ * 放在 src/jmh（只在 benchmark profile 編譯為測試類別），不會打包進 WAR；{@link MailDispatcherCheck} 以它驗證郵件寄送
+ * 
+ * 用法（先以 mvn -Pbenchmark test-compile 編譯）：
+ *   java -cp "target/test-classes:target/classes" benchmark.FakeSmtpServer [port]
+ * 再以 mail.smtp.host=localhost、mail.smtp.port=2525、mail.smtp.starttls.enable=false 啟動應用程式
+ * 
+ * - 支援 PIPELINING（可關閉）、AUTH PLAIN / LOGIN（接受任何帳號）、RSET、NOOP；不支援 STARTTLS
+ * - 收件者以 reject 開頭時回應 550（永久性錯誤），以 tempfail 開頭時回應 451（暫時性錯誤），
+ *   用來測試放棄與重試
+ * - 收到的郵件保存在記憶體中，可由 {@link #getMessages()} 與 {@link #awaitMessages(int, long)} 取得
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class FakeSmtpServer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(FakeSmtpServer.class.getName());
+    
+    private static final int DEFAULT_PORT = 2525;
+    
+    private final ServerSocket serverSocket;
+    private final List<Received> messages = new ArrayList<>();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private volatile boolean pipelining = true;
+    private volatile boolean running;
+    
+    /**
+     * 建構函式（只接受本機連線）
+     * @param port 連接埠，0 表示由系統指定
+     * @throws IOException 無法開啟連接埠
+     */
+    public FakeSmtpServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        FakeSmtpServer server = new FakeSmtpServer(port);
+        server.start();
+        LOGGER.log(Level.INFO, "測試用 SMTP 伺服器已啟動: localhost:{0}", String.valueOf(server.getPort()));
+        Thread.currentThread().join();
+    }
+    
+    /**
+     * 開始接受連線（背景執行緒，每條連線一個執行緒）
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        
+        Thread acceptor = new Thread(() -> {
+            while (running) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    Thread session = new Thread(() -> serve(socket), "fake-smtp-session");
+                    session.setDaemon(true);
+                    session.start();
+                } catch (IOException e) {
+                    if (running) {
+                        LOGGER.log(Level.WARNING, "接受連線失敗", e);
+                    }
+                }
+            }
+        }, "fake-smtp-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    
+    /**
+     * 停止接受連線
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+    
+    /**
+     * 是否在 EHLO 回應中宣告 PIPELINING
+     * @param pipelining 是否宣告
+     */
+    public void setPipelining(boolean pipelining) {
+        this.pipelining = pipelining;
+    }
+    
+    /**
+     * @return 實際使用的連接埠
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    /**
+     * @return 已建立的 SMTP 連線數
+     */
+    public int getSessionCount() {
+        return sessionCount.get();
+    }
+    
+    /**
+     * @return 目前收到的郵件
+     */
+    public List<Received> getMessages() {
+        synchronized (messages) {
+            return Collections.unmodifiableList(new ArrayList<>(messages));
+        }
+    }
+    
+    /**
+     * 等待收到至少 count 封郵件
+     * @param count 郵件數
+     * @param timeoutMillis 最長等待時間（毫秒）
+     * @return 是否在時間內收到
+     * @throws InterruptedException 等待時被中斷
+     */
+    public boolean awaitMessages(int count, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (messages) {
+            while (messages.size() < count) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                messages.wait(remaining);
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * 處理一條 SMTP 連線
+     */
+    private void serve(Socket socket) {
+        sessionCount.incrementAndGet();
+        try (Socket s = socket;
+             InputStream in = new BufferedInputStream(s.getInputStream());
+             OutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+            
+            Session session = new Session(in, out);
+            session.reply("220 localhost FakeSmtpServer");
+            session.flushIfIdle();
+            
+            String line;
+            while ((line = session.readLine()) != null) {
+                if (!session.handle(line)) {
+                    break;
+                }
+                // 用戶端以 PIPELINING 一次送出多個指令時，讀完再一起回應
+                session.flushIfIdle();
+            }
+            out.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "SMTP 連線中斷: {0}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 一條連線的狀態
+     */
+    private final class Session {
+        private final InputStream in;
+        private final OutputStream out;
+        private String from;
+        private final List<String> recipients = new ArrayList<>();
+        
+        Session(InputStream in, OutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+        
+        /**
+         * 處理一行指令
+         * @return 是否繼續讀取
+         */
+        boolean handle(String line) throws IOException {
+            String upper = line.toUpperCase(Locale.ROOT);
+            
+            if (upper.startsWith("EHLO")) {
+                reset();
+                reply(pipelining
+                      ? "250-localhost\r\n250-PIPELINING\r\n250-AUTH PLAIN LOGIN\r\n250 8BITMIME"
+                      : "250-localhost\r\n250-AUTH PLAIN LOGIN\r\n250 8BITMIME");
+            } else if (upper.startsWith("HELO")) {
+                reset();
+                reply("250 localhost");
+            } else if (upper.startsWith("AUTH PLAIN")) {
+                reply("235 2.7.0 Authentication successful");
+            } else if (upper.startsWith("AUTH LOGIN")) {
+                reply("334 VXNlcm5hbWU6");
+                out.flush();
+                readLine();
+                reply("334 UGFzc3dvcmQ6");
+                out.flush();
+                readLine();
+                reply("235 2.7.0 Authentication successful");
+            } else if (upper.startsWith("MAIL FROM:")) {
+                reset();
+                from = address(line.substring(10));
+                reply("250 2.1.0 OK");
+            } else if (upper.startsWith("RCPT TO:")) {
+                rcpt(address(line.substring(8)));
+            } else if (upper.equals("DATA")) {
+                data();
+            } else if (upper.equals("RSET")) {
+                reset();
+                reply("250 2.0.0 OK");
+            } else if (upper.equals("NOOP")) {
+                reply("250 2.0.0 OK");
+            } else if (upper.equals("QUIT")) {
+                reply("221 2.0.0 Bye");
+                return false;
+            } else {
+                reply("502 5.5.2 Command not recognized");
+            }
+            return true;
+        }
+        
+        private void rcpt(String address) throws IOException {
+            if (from == null) {
+                reply("503 5.5.1 MAIL first");
+            } else if (address.startsWith("reject")) {
+                reply("550 5.1.1 Mailbox unavailable");
+            } else if (address.startsWith("tempfail")) {
+                reply("451 4.3.0 Try again later");
+            } else {
+                recipients.add(address);
+                reply("250 2.1.5 OK");
+            }
+        }
+        
+        private void data() throws IOException {
+            if (recipients.isEmpty()) {
+                reply("554 5.5.1 No valid recipients");
+                return;
+            }
+            reply("354 End data with <CR><LF>.<CR><LF>");
+            out.flush();
+            
+            StringBuilder content = new StringBuilder(1024);
+            String line;
+            while ((line = readLine()) != null && !line.equals(".")) {
+                content.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+            }
+            
+            Received received = new Received(from, new ArrayList<>(recipients), content.toString());
+            synchronized (messages) {
+                messages.add(received);
+                messages.notifyAll();
+            }
+            LOGGER.log(Level.INFO, "收到郵件: {0} -> {1}", new Object[]{from, recipients});
+            reset();
+            reply("250 2.0.0 Queued");
+        }
+        
+        private void reset() {
+            from = null;
+            recipients.clear();
+        }
+        
+        void reply(String text) throws IOException {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+            out.write('\r');
+            out.write('\n');
+        }
+        
+        void flushIfIdle() throws IOException {
+            if (in.available() == 0) {
+                out.flush();
+            }
+        }
+        
+        String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder(80);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    int length = sb.length();
+                    if (length > 0 && sb.charAt(length - 1) == '\r') {
+                        sb.setLength(length - 1);
+                    }
+                    return sb.toString();
+                }
+                sb.append((char) b);
+            }
+            return null;
+        }
+        
+        private String address(String value) {
+            String trimmed = value.trim();
+            int start = trimmed.indexOf('<');
+            int end = trimmed.indexOf('>');
+            return start >= 0 && end > start ? trimmed.substring(start + 1, end) : trimmed;
+        }
+    }
+    
+    /**
+     * 收到的郵件
+     */
+    public static final class Received {
+        private final String from;
+        private final List<String> recipients;
+        private final String content;
+        
+        Received(String from, List<String> recipients, String content) {
+            this.from = from;
+            this.recipients = Collections.unmodifiableList(recipients);
+            this.content = content;
+        }
+        
+        public String getFrom() { return from; }
+        public List<String> getRecipients() { return recipients; }
+        public String getContent() { return content; }
+        
+        /**
+         * 取得指定標頭的值（不解碼）
+         * @param name 標頭名稱
+         * @return 標頭值，沒有時回傳 null
+         */
+        public String getHeader(String name) {
+            String prefix = name.toLowerCase(Locale.ROOT) + ":";
+            for (String line : content.split("\r\n")) {
+                if (line.isEmpty()) {
+                    break;
+                }
+                if (line.toLowerCase(Locale.ROOT).startsWith(prefix)) {
+                    return line.substring(prefix.length()).trim();
+                }
+            }
+            return null;
+        }
+        
+        /**
+         * 取得內容（Content-Transfer-Encoding 為 base64 時解碼為 UTF-8）
+         * @return 內容
+         */
+        public String getBody() {
+            int separator = content.indexOf("\r\n\r\n");
+            String body = separator >= 0 ? content.substring(separator + 4) : "";
+            if ("base64".equalsIgnoreCase(getHeader("Content-Transfer-Encoding"))) {
+                return new String(Base64.getMimeDecoder().decode(body), StandardCharsets.UTF_8);
+            }
+            return body;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+package benchmark;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import bean.User;
+import bean.UserCredentials;
+import bean.UserSummary;
+import dao.UserDAO;
+
+/**
+ * 基準測試用的記憶體版 UserDAO
+ * 以 ConcurrentHashMap 取代 MySQL，讓量測結果只反映業務邏輯本身的成本
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class InMemoryUserDAO extends UserDAO {
+    
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    
+    public InMemoryUserDAO() {
+        super(null);
+    }
+    
+    @Override
+    public InsertResult insert(User user) {
+        if (user == null || user.getId() == null) {
+            return InsertResult.FAILED;
+        }
+        return users.putIfAbsent(user.getId(), user) == null ? InsertResult.INSERTED : InsertResult.DUPLICATE_ID;
+    }
+    
+    @Override
+    public boolean[] insertUsers(List<User> batch, int batchSize) {
+        boolean[] results = new boolean[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            results[i] = insertUser(batch.get(i));
+        }
+        return results;
+    }
+    
+    @Override
+    public Set<String> findExistingUserIds(Collection<String> userIds) {
+        Set<String> existing = new HashSet<>();
+        for (String id : userIds) {
+            if (users.containsKey(id.trim())) {
+                existing.add(id.trim());
+            }
+        }
+        return existing;
+    }
+    
+    @Override
+    public User getUserById(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        return users.get(userId.trim());
+    }
+    
+    @Override
+    public UserSummary findUserSummary(String userId) {
+        return UserSummary.of(getUserById(userId));
+    }
+    
+    @Override
+    public UserCredentials findCredentials(String userId) {
+        return UserCredentials.of(getUserById(userId));
+    }
+    
+    @Override
+    public UserCredentials findLoginCredentials(String userId) {
+        User user = getUserById(userId);
+        return user == null ? null : new UserCredentials(user.getId(), user.getPassword(), UserSummary.of(user));
+    }
+    
+    @Override
+    public boolean userExists(String userId) {
+        return getUserById(userId) != null;
+    }
+    
+    @Override
+    public User authenticateUser(String userId, String password) {
+        User user = getUserById(userId);
+        if (user != null && user.getPassword().equals(password)) {
+            return user;
+        }
+        return null;
+    }
+}
\ No newline at end of file
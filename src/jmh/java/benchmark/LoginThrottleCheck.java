@@ -0,0 +1,177 @@
+package benchmark;
+
+import service.LoginAttemptTracker;
+import util.RateLimiter;
+
+/**
+ * 登入失敗鎖定與限流檢查
+ * 驗證 {@link LoginAttemptTracker} 與 {@link RateLimiter}，任何不符都會丟出 IllegalStateException：
+ * - 鎖定：同一使用者 ID + 來源達到上限即鎖定，其他來源不受影響；鎖定期間結束後解除
+ * - 衰減：上期的失敗次數依比例計入，超過兩個期間後完全歸零；登入成功清除該來源的計數
+ * - 同一來源嘗試大量帳號時鎖定來源；分散來源猜同一帳號時每個新來源只剩一次機會
+ * - 追蹤的鍵數量超過上限時淘汰未鎖定的資料，鎖定中的資料保留
+ * - 權杖桶：用完後回報補足一個權杖的等待時間，依經過時間補充，閒置一個期間後補滿
+ * - 權杖桶數量達到上限時淘汰剩餘權杖最多的鍵，正在被限流的鍵保留限制，新的鍵不被拒絕
+ * 
+ * 以毫秒等級的期間實際等待，約需 3 秒；也可以單獨執行：java benchmark.LoginThrottleCheck
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class LoginThrottleCheck {
+    
+    // 鎖定時間與失敗次數的計算期間（毫秒）
+    private static final long LOCKOUT_MILLIS = 300;
+    
+    public static void main(String[] args) throws InterruptedException {
+        run();
+        System.out.println("登入失敗鎖定與限流檢查通過");
+    }
+    
+    /**
+     * 依序檢查各情境
+     * @throws InterruptedException 等待期間被中斷
+     */
+    public static void run() throws InterruptedException {
+        checkLockout();
+        checkDecay();
+        checkSourceLimits();
+        checkTrackerEviction();
+        checkBucketRefill();
+        checkBucketEviction();
+    }
+    
+    private static void checkLockout() throws InterruptedException {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(3, 100, 100, LOCKOUT_MILLIS, 1000);
+        for (int i = 0; i < 3; i++) {
+            expect(tracker.getRemainingLockMillis("alice", "10.0.0.1") == 0, "未達上限前不應鎖定");
+            tracker.recordFailure("alice", "10.0.0.1");
+        }
+        long remaining = tracker.getRemainingLockMillis("Alice ", "10.0.0.1");
+        expect(remaining > 0 && remaining <= LOCKOUT_MILLIS, "達到上限應鎖定（使用者 ID 不分大小寫）: " + remaining);
+        expect(tracker.getRemainingLockMillis("alice", "10.0.0.2") == 0, "鎖定只針對來源，其他來源仍可登入");
+        
+        Thread.sleep(remaining + 20);
+        expect(tracker.getRemainingLockMillis("alice", "10.0.0.1") == 0, "鎖定期間結束後應解除");
+        tracker.recordFailure("alice", "10.0.0.1");
+        expect(tracker.getRemainingLockMillis("alice", "10.0.0.1") == 0, "鎖定期間的計數應歸零，解除後重新計算");
+        expect(tracker.getLockoutCount() == 1 && tracker.getRejectedCount() == 1, "鎖定與拒絕次數不符: " + tracker);
+    }
+    
+    private static void checkDecay() throws InterruptedException {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(3, 100, 100, LOCKOUT_MILLIS, 1000);
+        
+        // 1. 上期的 2 次依剩餘比例計入：剛進入下一期時，再失敗 2 次即達到 3 次
+        tracker.recordFailure("bob", "10.0.0.1");
+        tracker.recordFailure("bob", "10.0.0.1");
+        Thread.sleep(LOCKOUT_MILLIS + 20);
+        tracker.recordFailure("bob", "10.0.0.1");
+        expect(tracker.getRemainingLockMillis("bob", "10.0.0.1") == 0, "上期的計數只依比例計入");
+        tracker.recordFailure("bob", "10.0.0.1");
+        expect(tracker.getRemainingLockMillis("bob", "10.0.0.1") > 0, "上期的計數應依比例計入，達到上限即鎖定");
+        
+        // 2. 超過兩個期間後完全歸零
+        tracker.recordFailure("carol", "10.0.0.1");
+        tracker.recordFailure("carol", "10.0.0.1");
+        Thread.sleep(2 * LOCKOUT_MILLIS + 20);
+        tracker.recordFailure("carol", "10.0.0.1");
+        tracker.recordFailure("carol", "10.0.0.1");
+        expect(tracker.getRemainingLockMillis("carol", "10.0.0.1") == 0, "超過兩個期間的失敗次數應歸零");
+        
+        // 3. 登入成功清除該來源的計數
+        tracker.recordFailure("dave", "10.0.0.1");
+        tracker.recordFailure("dave", "10.0.0.1");
+        tracker.recordSuccess("dave", "10.0.0.1");
+        tracker.recordFailure("dave", "10.0.0.1");
+        tracker.recordFailure("dave", "10.0.0.1");
+        expect(tracker.getRemainingLockMillis("dave", "10.0.0.1") == 0, "登入成功應清除該來源的失敗次數");
+    }
+    
+    private static void checkSourceLimits() {
+        // 1. 同一來源嘗試大量帳號：來源達到上限後，任何帳號都被拒絕
+        LoginAttemptTracker tracker = new LoginAttemptTracker(3, 100, 10, 60_000, 1000);
+        for (int i = 0; i < 10; i++) {
+            tracker.recordFailure("user" + i, "10.0.0.9");
+        }
+        expect(tracker.getRemainingLockMillis("new-user", "10.0.0.9") > 0, "嘗試大量帳號的來源應被鎖定");
+        expect(tracker.getRemainingLockMillis("new-user", "10.0.0.8") == 0, "其他來源不受影響");
+        
+        // 2. 分散來源猜同一帳號：帳號的失敗次數超過上限後，每個來源只剩一次機會，沒有失敗紀錄的來源仍可登入
+        tracker = new LoginAttemptTracker(3, 5, 100, 60_000, 1000);
+        for (int i = 0; i < 6; i++) {
+            tracker.recordFailure("erin", "10.1.0." + i);
+        }
+        expect(tracker.getRemainingLockMillis("erin", "10.1.1.1") == 0, "帳號本身不應被鎖定");
+        tracker.recordFailure("erin", "10.1.1.1");
+        expect(tracker.getRemainingLockMillis("erin", "10.1.1.1") > 0, "被分散猜測的帳號每個來源只允許一次失敗");
+        expect(tracker.getRemainingLockMillis("frank", "10.1.1.1") == 0, "收緊的上限只適用於被猜測的帳號");
+    }
+    
+    private static void checkTrackerEviction() {
+        int maxEntries = 50;
+        LoginAttemptTracker tracker = new LoginAttemptTracker(3, 1000, 1000, 60_000, maxEntries);
+        for (int i = 0; i < 3; i++) {
+            tracker.recordFailure("locked", null);
+        }
+        expect(tracker.getRemainingLockMillis("locked", null) > 0, "達到上限應鎖定");
+        
+        for (int i = 0; i < 500; i++) {
+            tracker.recordFailure("user" + i, null);
+            expect(tracker.getTrackedKeyCount() <= maxEntries, "追蹤的鍵數量超過上限: " + tracker);
+        }
+        expect(tracker.getEvictionCount() > 0, "超過上限時應淘汰資料");
+        expect(tracker.getRemainingLockMillis("locked", null) > 0, "淘汰時應保留鎖定中的資料");
+    }
+    
+    private static void checkBucketRefill() throws InterruptedException {
+        // 1. 每秒補充 1 個權杖：用完後回報約 1 秒的等待時間，等待後只多出 1 個權杖
+        RateLimiter limiter = new RateLimiter(5, 5000, 100);
+        for (int i = 0; i < 5; i++) {
+            expect(limiter.tryAcquire("client") == 0, "容量內的請求應允許");
+        }
+        long wait = limiter.tryAcquire("client");
+        expect(wait > 900 && wait <= 1000, "權杖用完時應回報補足一個權杖的時間: " + wait);
+        expect(limiter.tryAcquire("other") == 0, "權杖桶以鍵區分");
+        
+        Thread.sleep(wait + 50);
+        expect(limiter.tryAcquire("client") == 0, "等待回報的時間後應補充一個權杖");
+        expect(limiter.tryAcquire("client") > 0, "只應補充經過時間對應的權杖數");
+        
+        // 2. 閒置一個期間後補滿，但不超過容量
+        limiter = new RateLimiter(3, 200, 100);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("client");
+        }
+        Thread.sleep(250);
+        for (int i = 0; i < 3; i++) {
+            expect(limiter.tryAcquire("client") == 0, "閒置一個期間後應補滿");
+        }
+        expect(limiter.tryAcquire("client") > 0, "補滿後不應超過容量");
+        
+        // 3. 閒置的權杖桶與不存在相同，由 evictIdle 移除
+        Thread.sleep(250);
+        expect(limiter.evictIdle() == 1 && limiter.getTrackedKeyCount() == 0, "閒置一個期間的權杖桶應被移除");
+    }
+    
+    private static void checkBucketEviction() {
+        int maxKeys = 100;
+        RateLimiter limiter = new RateLimiter(3, 60_000, maxKeys);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("attacker");
+        }
+        expect(limiter.tryAcquire("attacker") > 0, "用完權杖的鍵應被限流");
+        
+        for (int i = 0; i < 1000; i++) {
+            expect(limiter.tryAcquire("client" + i) == 0, "表格已滿時新的鍵不應被拒絕");
+            expect(limiter.getTrackedKeyCount() <= maxKeys, "權杖桶數量超過上限: " + limiter);
+        }
+        expect(limiter.getEvictionCount() > 0, "達到上限時應淘汰權杖桶");
+        expect(limiter.tryAcquire("attacker") > 0, "淘汰時應保留正在被限流的鍵");
+    }
+    
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("登入失敗鎖定與限流檢查失敗: " + message);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,187 @@
+package benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import dao.MailJournal;
+import service.MailDispatcher;
+
+/**
+ * 郵件寄送檢查
+ * 以 {@link FakeSmtpServer} 驗證 {@link MailDispatcher} 與 {@link MailJournal}，任何不符都會丟出 IllegalStateException：
+ * - 50 封郵件全部寄達，且在少數幾條 SMTP 連線上批次寄送
+ * - 收件者被拒絕（550）時不重試；暫時性錯誤（451）重試到 mail.retry.max.attempts 後放棄，都不留在日誌中
+ * - SMTP 伺服器無法連線時郵件留在日誌中，重新啟動後寄出
+ * - 日誌結尾寫到一半的記錄在開啟時截掉，之前的郵件不受影響
+ * 
+ * mvn -Pbenchmark verify 會在基準測試前執行；也可以單獨執行：java benchmark.MailDispatcherCheck
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class MailDispatcherCheck {
+    
+    private static final int BATCH_MAILS = 50;
+    private static final long WAIT_MILLIS = 15000;
+    
+    public static void main(String[] args) throws Exception {
+        run();
+        System.out.println("郵件寄送檢查通過");
+    }
+    
+    /**
+     * 在暫存目錄中依序檢查各情境
+     * @throws Exception 無法建立暫存檔或啟動測試伺服器
+     */
+    public static void run() throws Exception {
+        Path directory = Files.createTempDirectory("mail-check");
+        Path journalFile = directory.resolve("outbox.journal");
+        try {
+            System.setProperty("mail.journal.file", journalFile.toString());
+            System.setProperty("mail.smtp.host", "localhost");
+            System.setProperty("mail.smtp.auth", "false");
+            System.setProperty("mail.smtp.starttls.enable", "false");
+            System.setProperty("mail.smtp.timeout", "2000");
+            System.setProperty("mail.batch.size", "20");
+            System.setProperty("mail.retry.initial.delay", "50");
+            System.setProperty("mail.retry.max.delay", "100");
+            
+            checkBatchDelivery(journalFile);
+            checkRejectAndRetry(journalFile);
+            checkReplayAfterRestart(journalFile);
+            checkTornTail(directory.resolve("torn.journal"));
+        } finally {
+            MailDispatcher.getInstance().stop();
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+    
+    private static void checkBatchDelivery(Path journalFile) throws Exception {
+        MailDispatcher dispatcher = MailDispatcher.getInstance();
+        try (FakeSmtpServer server = new FakeSmtpServer(0)) {
+            server.start();
+            System.setProperty("mail.smtp.port", String.valueOf(server.getPort()));
+            System.setProperty("mail.retry.max.attempts", "8");
+            
+            dispatcher.start();
+            for (int i = 0; i < BATCH_MAILS; i++) {
+                expect(dispatcher.enqueue("user" + i + "@example.com", "歡迎 " + i, "內容 " + i),
+                       "加入郵件失敗");
+            }
+            expect(server.awaitMessages(BATCH_MAILS, WAIT_MILLIS), "50 封郵件未在時間內寄達");
+            dispatcher.stop();
+            
+            Set<String> recipients = new HashSet<>();
+            for (FakeSmtpServer.Received received : server.getMessages()) {
+                recipients.addAll(received.getRecipients());
+            }
+            expect(recipients.size() == BATCH_MAILS, "收件者數量不符: " + recipients.size());
+            expect(server.getMessages().get(0).getBody().contains("內容"), "郵件內容解碼後不符");
+            expect(server.getSessionCount() <= BATCH_MAILS / 10,
+                   "批次寄送應共用連線，實際連線數: " + server.getSessionCount());
+        }
+        expect(pendingCount(journalFile) == 0, "寄出的郵件不應留在日誌中");
+    }
+    
+    private static void checkRejectAndRetry(Path journalFile) throws Exception {
+        MailDispatcher dispatcher = MailDispatcher.getInstance();
+        try (FakeSmtpServer server = new FakeSmtpServer(0)) {
+            server.start();
+            System.setProperty("mail.smtp.port", String.valueOf(server.getPort()));
+            System.setProperty("mail.retry.max.attempts", "3");
+            
+            long failed = dispatcher.getFailedCount();
+            long retries = dispatcher.getRetryCount();
+            dispatcher.start();
+            dispatcher.enqueue("reject@example.com", "拒收", "內容");
+            dispatcher.enqueue("tempfail@example.com", "暫時失敗", "內容");
+            dispatcher.enqueue("ok@example.com", "正常", "內容");
+            
+            long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+            while (dispatcher.getFailedCount() - failed < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            dispatcher.stop();
+            
+            expect(dispatcher.getFailedCount() - failed == 2, "拒收與重試用盡的郵件應各計一次失敗");
+            expect(dispatcher.getRetryCount() - retries == 2, "暫時性錯誤應重試 2 次（共 3 次嘗試）");
+            expect(server.getMessages().size() == 1
+                   && server.getMessages().get(0).getRecipients().contains("ok@example.com"),
+                   "只有正常的收件者應收到郵件");
+        }
+        expect(pendingCount(journalFile) == 0, "放棄的郵件不應留在日誌中");
+    }
+    
+    private static void checkReplayAfterRestart(Path journalFile) throws Exception {
+        MailDispatcher dispatcher = MailDispatcher.getInstance();
+        
+        // 1. 伺服器無法連線：郵件留在日誌中
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        System.setProperty("mail.smtp.port", String.valueOf(closedPort));
+        System.setProperty("mail.retry.max.attempts", "1000");
+        dispatcher.start();
+        for (int i = 0; i < 5; i++) {
+            dispatcher.enqueue("replay" + i + "@example.com", "續寄 " + i, "內容");
+        }
+        Thread.sleep(300);
+        dispatcher.stop();
+        expect(pendingCount(journalFile) == 5, "無法寄送的郵件應留在日誌中");
+        
+        // 2. 重新啟動後寄出
+        try (FakeSmtpServer server = new FakeSmtpServer(0)) {
+            server.start();
+            System.setProperty("mail.smtp.port", String.valueOf(server.getPort()));
+            dispatcher.start();
+            expect(server.awaitMessages(5, WAIT_MILLIS), "重新啟動後日誌中的郵件未寄出");
+            dispatcher.stop();
+        }
+        expect(pendingCount(journalFile) == 0, "續寄完成的郵件不應留在日誌中");
+    }
+    
+    private static void checkTornTail(Path file) throws IOException {
+        try (MailJournal journal = new MailJournal(file)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append("torn" + i + "@example.com", "主旨", "內容");
+            }
+        }
+        long intactSize = Files.size(file);
+        
+        // 模擬寫到一半當機：標頭宣告 100 bytes，實際只寫入 4 bytes
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+            ByteBuffer torn = ByteBuffer.allocate(12);
+            torn.putInt(100).putInt(0).putInt(0x51515151).flip();
+            channel.write(torn);
+        }
+        
+        try (MailJournal journal = new MailJournal(file)) {
+            expect(journal.getPendingCount() == 3, "結尾損毀前的郵件應保留: " + journal.getPendingCount());
+        }
+        expect(Files.size(file) == intactSize, "結尾不完整的記錄應被截掉");
+    }
+    
+    private static int pendingCount(Path journalFile) throws IOException {
+        try (MailJournal journal = new MailJournal(journalFile)) {
+            return journal.getPendingCount();
+        }
+    }
+    
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("郵件寄送檢查失敗: " + message);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,120 @@
+package benchmark;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.ImageResizer;
+import util.MappedFileCache;
+
+/**
+ * 商品圖片基準測試
+ * - resizeThumbnail: 2400x1600 的 JPEG 產生 200x200 縮圖（背景執行緒池中每張圖的成本，單位為毫秒）
+ * - serveMapped: 從記憶體映射快取寫出縮圖（每個圖片請求的成本）
+ * - serveStream: 對照組，每次開檔以 InputStream 讀出同一張縮圖
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Djava.awt.headless=true"})
+public class ProductImageBenchmark {
+    
+    private Path directory;
+    private Path original;
+    private Path thumbnail;
+    private Path output;
+    private MappedFileCache cache;
+    private WritableByteChannel sink;
+    private byte[] buffer;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("image-benchmark");
+        original = directory.resolve("original.jpg");
+        thumbnail = directory.resolve("thumbnail.jpg");
+        output = directory.resolve("output.jpg");
+        
+        BufferedImage image = new BufferedImage(2400, 1600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.DARK_GRAY, 2400, 1600, Color.ORANGE));
+        graphics.fillRect(0, 0, 2400, 1600);
+        graphics.setColor(Color.WHITE);
+        for (int i = 0; i < 200; i++) {
+            graphics.drawLine(i * 12, 0, 2400 - i * 12, 1600);
+        }
+        graphics.dispose();
+        ImageIO.write(image, "jpeg", original.toFile());
+        ImageResizer.resize(original, thumbnail, "jpeg", 200, 200, 0.85f);
+        
+        cache = new MappedFileCache(64L * 1024 * 1024, 4L * 1024 * 1024);
+        sink = Channels.newChannel(OutputStream.nullOutputStream());
+        buffer = new byte[8192];
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean resizeThumbnail() throws IOException {
+        return ImageResizer.resize(original, output, "jpeg", 200, 200, 0.85f);
+    }
+    
+    @Benchmark
+    public int serveMapped() throws IOException {
+        ByteBuffer content = cache.get(thumbnail).buffer();
+        int written = 0;
+        while (content.hasRemaining()) {
+            written += sink.write(content);
+        }
+        return written;
+    }
+    
+    @Benchmark
+    public int serveStream() throws IOException {
+        int total = 0;
+        try (InputStream in = Files.newInputStream(thumbnail)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
\ No newline at end of file
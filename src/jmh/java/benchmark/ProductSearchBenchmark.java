@@ -0,0 +1,86 @@
+package benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bean.Product;
+import service.ProductSearchIndex;
+
+/**
+ * 商品搜尋基準測試
+ * 以 100,000 項中英混合名稱的商品建立索引，量測每次查詢的耗時（目標：p99 低於 5 毫秒）
+ * - search: 中文、英文與混合查詢輪流執行，取前 20 名
+ * - suggest: 一個字母或一個中文字的前綴（最多候選詞的情況）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class ProductSearchBenchmark {
+    
+    private static final int PRODUCTS = 100_000;
+    
+    private static final String[] CATEGORIES = {"CPU", "顯示卡", "主機板", "記憶體", "固態硬碟", "電源供應器", "機殼", "散熱器"};
+    private static final String[] BRANDS = {"ASUS", "MSI", "Gigabyte", "Intel", "AMD", "華碩", "微星", "技嘉", "Kingston", "Samsung"};
+    private static final String[] FEATURES = {"電競", "超頻", "靜音", "白色", "旗艦", "入門", "水冷", "無線", "高效能", "RGB"};
+    
+    private static final String[] QUERIES = {
+        "華碩 顯示卡", "rtx 4090", "固態硬碟", "靜音 電源", "msi 電競主機板",
+        "水冷散熱器 白色", "kingston 記憶體 ddr5", "a5000ti", "旗艦", "ＡＭＤ ｃｐｕ"
+    };
+    private static final String[] PREFIXES = {"s", "華", "g", "電", "k", "固"};
+    
+    private ProductSearchIndex index;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 1; i <= PRODUCTS; i++) {
+            String category = pick(random, CATEGORIES);
+            String name = pick(random, BRANDS) + " " + pick(random, FEATURES) + category + " "
+                          + (char) ('A' + random.nextInt(26)) + (1000 + random.nextInt(9000))
+                          + (random.nextBoolean() ? "TI" : "");
+            String description = pick(random, FEATURES) + "設計，" + pick(random, FEATURES) + "，支援 "
+                                 + pick(random, BRANDS) + " 平台，保固 " + (1 + random.nextInt(5)) + " 年";
+            products.add(new Product(i, name, category, BigDecimal.valueOf(1000 + random.nextInt(50_000)), 5,
+                                     description, null, true, 0));
+        }
+        index = ProductSearchIndex.of(products);
+    }
+    
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+    
+    @Benchmark
+    public int search() {
+        return index.search(QUERIES[next++ % QUERIES.length], null, 20).getItems().size();
+    }
+    
+    @Benchmark
+    public int suggest() {
+        return index.suggest(PREFIXES[next++ % PREFIXES.length], 10).size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.RateLimiter;
+
+/**
+ * RateLimiter 基準測試
+ * 量測限流過濾器每個請求的額外成本（目標：每次判斷遠低於 1 微秒）
+ * - acquireAllowed: 一般用戶端，權杖充足
+ * - acquireRejected: 已耗盡額度的用戶端，每次都被拒絕
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+    
+    private static final int CLIENTS = 1024;
+    
+    private final String[] clients = new String[CLIENTS];
+    private RateLimiter generousLimiter;
+    private RateLimiter exhaustedLimiter;
+    private int next;
+    
+    @Setup(Level.Iteration)
+    public void setUp() {
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = "10.0." + (i >> 8) + "." + (i & 0xff);
+        }
+        
+        generousLimiter = new RateLimiter(10_000, 1, CLIENTS * 2);
+        exhaustedLimiter = new RateLimiter(1, TimeUnit.HOURS.toMillis(1), CLIENTS * 2);
+        for (String client : clients) {
+            exhaustedLimiter.tryAcquire(client);
+        }
+    }
+    
+    @Benchmark
+    public long acquireAllowed() {
+        return generousLimiter.tryAcquire(clients[next++ & (CLIENTS - 1)]);
+    }
+    
+    @Benchmark
+    public long acquireRejected() {
+        return exhaustedLimiter.tryAcquire(clients[next++ & (CLIENTS - 1)]);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,203 @@
+package benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+
+import bean.User;
+import bean.UserSummary;
+import dao.ConnectionProvider;
+import dao.RoutingConnectionProvider;
+import dao.UserDAO;
+
+/**
+ * 讀寫分離路由檢查
+ * 以兩個 H2 記憶體資料庫分別作為主資料庫與副本（副本不會自動同步，資料不同步即模擬複寫延遲），
+ * 驗證 {@link RoutingConnectionProvider} 與 {@link UserDAO} 的讀取路由，任何不符都會丟出 IllegalStateException：
+ * - 一般查詢讀取副本
+ * - 副本延遲量測為 0 時，副本查不到的資料不再查主資料庫；延遲大於 0 時再查主資料庫
+ * - 本節點剛寫入的 ID 在延遲上限內讀取主資料庫
+ * - 延遲超過上限、延遲查詢失敗或副本無法連線時改讀主資料庫
+ * 
+ * DAO 基準測試開始前會自動執行；也可以單獨執行：java benchmark.ReplicaRoutingCheck
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class ReplicaRoutingCheck {
+    
+    private static final String PRIMARY_URL = "jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1";
+    private static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1";
+    private static final String LAG_QUERY = "SELECT seconds FROM replica_lag";
+    private static final long MAX_LAG_MILLIS = 1000;
+    // 背景檢查間隔：檢查由本程式明確呼叫，背景執行緒只在啟動時執行一次
+    private static final long CHECK_INTERVAL_MILLIS = 3_600_000;
+    
+    public static void main(String[] args) throws SQLException {
+        run();
+        System.out.println("讀寫分離路由檢查通過");
+    }
+    
+    /**
+     * 建立兩個資料庫並依序檢查各情境
+     * @throws SQLException 無法建立測試資料庫
+     */
+    public static void run() throws SQLException {
+        try (Connection primary = DriverManager.getConnection(PRIMARY_URL);
+             Connection replica = DriverManager.getConnection(REPLICA_URL)) {
+            createSchema(primary, false);
+            createSchema(replica, true);
+            
+            // 兩邊都有但內容不同：讀到哪一邊由名稱判斷
+            insert(primary, "shared", "primary");
+            insert(replica, "shared", "replica");
+            // 只在主資料庫：副本尚未同步的資料列
+            insert(primary, "fresh", "primary");
+            
+            checkRouting(replica);
+            checkLagQueryFailure();
+            checkReplicaUnavailable();
+        } finally {
+            dropAll(PRIMARY_URL);
+            dropAll(REPLICA_URL);
+        }
+    }
+    
+    private static void checkRouting(Connection replica) throws SQLException {
+        RoutingConnectionProvider provider = newProvider(() -> DriverManager.getConnection(REPLICA_URL), LAG_QUERY);
+        try {
+            // 1. 一般查詢讀取副本
+            setLag(replica, 0);
+            provider.checkReplicas();
+            expect(provider.getReplicas().get(0).isHealthy(), "延遲為 0 的副本應為健康");
+            expect("replica".equals(name(provider, "shared")), "一般查詢應讀取副本");
+            
+            // 2. 延遲量測為 0：副本查不到就是不存在，不再查主資料庫
+            expect(summary(provider, "fresh") == null, "延遲為 0 時副本查不到的資料不應再查主資料庫");
+            expect(summary(provider, "nobody") == null, "不存在的 ID 應回傳 null");
+            
+            // 3. 延遲大於 0（仍在上限內）：副本查不到時再查主資料庫
+            setLag(replica, 0.5);
+            provider.checkReplicas();
+            expect(provider.getReplicas().get(0).isHealthy(), "延遲在上限內的副本應為健康");
+            expect("primary".equals(name(provider, "fresh")), "副本可能落後時應再查主資料庫");
+            expect("replica".equals(name(provider, "shared")), "副本查得到時不應查主資料庫");
+            
+            // 4. 本節點剛寫入的 ID：延遲上限內讀取主資料庫
+            setLag(replica, 0);
+            provider.checkReplicas();
+            try (Connection conn = provider.getConnection()) {
+                User user = new User();
+                user.setId("written");
+                user.setName("primary");
+                user.setPassword("hash");
+                expect(new UserDAO(conn).insertUser(user), "新增使用者失敗");
+            }
+            expect("primary".equals(name(provider, "written")), "剛寫入的 ID 應讀取主資料庫");
+            
+            // 5. 延遲超過上限：副本移出，全部讀取主資料庫
+            setLag(replica, 5);
+            provider.checkReplicas();
+            expect(!provider.getReplicas().get(0).isHealthy(), "延遲超過上限的副本應移出");
+            expect("primary".equals(name(provider, "shared")), "副本移出後應讀取主資料庫");
+        } finally {
+            provider.shutdown();
+        }
+    }
+    
+    /**
+     * 延遲查詢失敗（例如 SHOW REPLICA STATUS 權限不足）：副本移出、讀取主資料庫
+     */
+    private static void checkLagQueryFailure() throws SQLException {
+        RoutingConnectionProvider provider = newProvider(() -> DriverManager.getConnection(REPLICA_URL),
+                                                         "SELECT seconds FROM missing_lag_table");
+        try {
+            provider.checkReplicas();
+            expect(!provider.getReplicas().get(0).isHealthy(), "延遲查詢失敗的副本應移出");
+            expect("primary".equals(name(provider, "shared")), "延遲查詢失敗時應讀取主資料庫");
+        } finally {
+            provider.shutdown();
+        }
+    }
+    
+    /**
+     * 副本無法連線：副本移出、讀取主資料庫
+     */
+    private static void checkReplicaUnavailable() throws SQLException {
+        RoutingConnectionProvider provider = newProvider(() -> {
+            throw new SQLException("副本無法連線");
+        }, LAG_QUERY);
+        try {
+            provider.checkReplicas();
+            expect(!provider.getReplicas().get(0).isHealthy(), "無法連線的副本應移出");
+            expect("primary".equals(name(provider, "shared")), "副本無法連線時應讀取主資料庫");
+        } finally {
+            provider.shutdown();
+        }
+    }
+    
+    private static RoutingConnectionProvider newProvider(ConnectionProvider replica, String lagQuery) {
+        return new RoutingConnectionProvider(
+            () -> DriverManager.getConnection(PRIMARY_URL),
+            Collections.singletonMap("h2-replica", replica),
+            RoutingConnectionProvider.Selection.ROUND_ROBIN,
+            MAX_LAG_MILLIS, "SELECT 1", lagQuery, CHECK_INTERVAL_MILLIS, 2);
+    }
+    
+    private static String name(ConnectionProvider provider, String userId) throws SQLException {
+        try (Connection conn = provider.getConnection()) {
+            User user = new UserDAO(conn).getUserById(userId);
+            return user == null ? null : user.getName();
+        }
+    }
+    
+    private static UserSummary summary(ConnectionProvider provider, String userId) throws SQLException {
+        try (Connection conn = provider.getConnection()) {
+            return new UserDAO(conn).findUserSummary(userId);
+        }
+    }
+    
+    private static void createSchema(Connection conn, boolean replica) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE users (id VARCHAR(20) PRIMARY KEY, name VARCHAR(50), "
+                         + "password VARCHAR(255), address VARCHAR(200), phone VARCHAR(20), "
+                         + "creditCard VARCHAR(19), email VARCHAR(100))");
+            if (replica) {
+                stmt.execute("CREATE TABLE replica_lag (seconds DOUBLE)");
+                stmt.execute("INSERT INTO replica_lag VALUES (0)");
+            }
+        }
+    }
+    
+    private static void insert(Connection conn, String id, String name) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO users (id, name, password) VALUES (?, ?, 'hash')")) {
+            pstmt.setString(1, id);
+            pstmt.setString(2, name);
+            pstmt.executeUpdate();
+        }
+    }
+    
+    private static void setLag(Connection replica, double seconds) throws SQLException {
+        try (PreparedStatement pstmt = replica.prepareStatement("UPDATE replica_lag SET seconds = ?")) {
+            pstmt.setDouble(1, seconds);
+            pstmt.executeUpdate();
+        }
+    }
+    
+    private static void dropAll(String url) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+    }
+    
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("讀寫分離路由檢查失敗: " + message);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+package benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import service.StaticAssetCache;
+
+/**
+ * 靜態資源基準測試（使用 src/main/webapp/css/style.css）
+ * - servePrecompressed: 從快取寫出預先壓縮的 gzip 版本（每個 CSS 請求的成本）
+ * - compressPerRequest: 對照組，每次請求讀檔並以預設等級壓縮（connector 壓縮的情況，單位為毫秒）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StaticAssetBenchmark {
+    
+    private static final String WEBAPP = "src/main/webapp";
+    private static final String PATH = "/css/style.css";
+    
+    private StaticAssetCache cache;
+    private OutputStream sink;
+    
+    @Setup
+    public void setUp() {
+        ServletContext context = (ServletContext) Proxy.newProxyInstance(
+                ServletContext.class.getClassLoader(), new Class<?>[]{ServletContext.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getResourcePaths":
+                            return "/css/".equals(args[0]) ? Collections.singleton(PATH) : null;
+                        case "getMimeType":
+                            return "text/css";
+                        case "getResourceAsStream":
+                            return new FileInputStream(WEBAPP + args[0]);
+                        default:
+                            return null;
+                    }
+                });
+        cache = StaticAssetCache.getInstance();
+        cache.load(context);
+        sink = OutputStream.nullOutputStream();
+    }
+    
+    @Benchmark
+    public int servePrecompressed() throws IOException {
+        StaticAssetCache.Asset asset = cache.find(PATH);
+        asset.writeTo(sink, true);
+        return asset.length(true);
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int compressPerRequest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(Files.readAllBytes(Paths.get(WEBAPP + PATH)));
+        }
+        return out.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+package benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bean.User;
+import bean.UserCredentials;
+import bean.UserSummary;
+import dao.UserDAO;
+
+/**
+ * UserDAO 投影查詢基準測試
+ * 以 H2 記憶體資料庫執行真實的 JDBC 查詢，比較每次查詢的耗時與配置量：
+ * - getUserById: 原本的 SELECT * 與依欄位名稱讀取，映射為完整的 User
+ * - findUserSummary: 只選取基本資料欄位，依欄位位置讀取
+ * - findCredentials: 只選取 ID 與密碼雜湊（登入驗證）
+ * 
+ * 開始量測前先執行 {@link ReplicaRoutingCheck}，讀寫分離的路由不符預期時基準測試直接失敗
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDAOProjectionBenchmark {
+    
+    private static final int USERS = 1024;
+    
+    private final String[] ids = new String[USERS];
+    private Connection connection;
+    private UserDAO userDAO;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ReplicaRoutingCheck.run();
+        
+        connection = DriverManager.getConnection("jdbc:h2:mem:projection;DB_CLOSE_DELAY=-1");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE users (id VARCHAR(20) PRIMARY KEY, name VARCHAR(50), "
+                         + "password VARCHAR(255), address VARCHAR(200), phone VARCHAR(20), "
+                         + "creditCard VARCHAR(19), email VARCHAR(100))");
+        }
+        
+        // 密碼欄位模擬實際的雜湊字串長度
+        String passwordHash = "SHA-256$310000$" + "A".repeat(44) + "$" + "B".repeat(44);
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "INSERT INTO users (id, name, password, address, phone, creditCard, email) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < USERS; i++) {
+                ids[i] = "user_" + i;
+                pstmt.setString(1, ids[i]);
+                pstmt.setString(2, "王小明 Wang");
+                pstmt.setString(3, passwordHash);
+                pstmt.setString(4, "台北市信義區信義路五段7號");
+                pstmt.setString(5, "0912345678");
+                pstmt.setString(6, "4111111111111111");
+                pstmt.setString(7, "bench.user" + i + "@example.com");
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        
+        userDAO = new UserDAO(connection);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE users");
+        }
+        connection.close();
+    }
+    
+    @Benchmark
+    public User getUserById() {
+        return userDAO.getUserById(ids[next++ & (USERS - 1)]);
+    }
+    
+    @Benchmark
+    public UserSummary findUserSummary() {
+        return userDAO.findUserSummary(ids[next++ & (USERS - 1)]);
+    }
+    
+    @Benchmark
+    public UserCredentials findCredentials() {
+        return userDAO.findCredentials(ids[next++ & (USERS - 1)]);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bean.User;
+import service.UserService;
+import service.UserService.LoginResult;
+import service.UserService.RegistrationResult;
+import util.PasswordUtil;
+
+/**
+ * UserService 基準測試
+ * 使用記憶體版 UserDAO，量測註冊與登入流程本身（驗證、雜湊、清理）的成本
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+    
+    private static final String LOGIN_ID = "login_user01";
+    private static final String PASSWORD = "Passw0rd";
+    
+    private InMemoryUserDAO userDAO;
+    private UserService userService;
+    private long sequence;
+    
+    @Setup(Level.Iteration)
+    public void setUp() {
+        userDAO = new InMemoryUserDAO();
+        userService = new UserService(userDAO);
+        
+        User existing = newUser(LOGIN_ID);
+        existing.setPassword(PasswordUtil.hashPassword(PASSWORD));
+        userDAO.insertUser(existing);
+    }
+    
+    @Benchmark
+    public RegistrationResult registerUser() {
+        return userService.registerUser(newUser("bench_" + (sequence++)));
+    }
+    
+    @Benchmark
+    public LoginResult loginUser() {
+        return userService.loginUser(LOGIN_ID, PASSWORD);
+    }
+    
+    private static User newUser(String id) {
+        User user = new User();
+        user.setId(id);
+        user.setName("王小明 Wang");
+        user.setPassword(PASSWORD);
+        user.setAddress("台北市信義區信義路五段7號");
+        user.setPhone("0912345678");
+        user.setCreditCard("4111111111111111");
+        user.setEmail("bench.user@example.com");
+        return user;
+    }
+}
\ No newline at end of file
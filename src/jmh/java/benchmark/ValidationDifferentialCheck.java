@@ -0,0 +1,140 @@
+package benchmark;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Random;
+
+import util.ValidationUtil;
+
+/**
+ * ValidationUtil 差異比對
+ * 以隨機組合的輸入（SQL/XSS 關鍵字片段、需要跳脫的字元、控制字元、大小寫轉換特殊的 Unicode 字元等）
+ * 比較目前的 ValidationUtil 與 {@link LegacyValidationUtil} 的結果，任何不同都會丟出 IllegalStateException
+ * 
+ * 基準測試開始前會自動執行；也可以單獨執行：java benchmark.ValidationDifferentialCheck [樣本數]
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class ValidationDifferentialCheck {
+    
+    private static final String[] TOKENS = {
+        // 關鍵字與片段
+        "select", "SELECT", "SeLeCt", "sel", "ect", "insert", "update", "delete", "drop", "create", "alter",
+        "exec", "execute", "union", "script", "javascript", "vbscript", "java", "vb",
+        "<script", "</script", "javascript:", "vbscript:", "onclick", "onload", "onerror",
+        "onmouseover", "onfocus", "onblur", "on", "click", "load", ":",
+        // 需要跳脫或移除的字元
+        "-", "--", "---", "/", "*", "/*", "*/", "'", "''", "\"", "&", "&amp;", "<", ">", ";",
+        // 空白與控制字元
+        " ", "  ", "\t", "\n", "\r", "\u000b", "\f", "\u0000", "\u0007", "\u001f", "\u007f", " ",
+        // 一般內容
+        "a", "Z", "_", "0", "7", "42", "user", "Wang", "王小明", "台北市信義區", "@", ".", "example.com", "+886",
+        "(", ")", "4111111111111111", "1234-5678",
+        // 大小寫轉換特殊的字元
+        "ı", "İ", "ſ", "K", "Å", "ß", "ﬅ", "ﬁ", "̀", "é", "Σ", "ς", "😀", "\ud83d"
+    };
+    
+    public static void main(String[] args) {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        run(20250807L, samples);
+        System.out.println("ValidationUtil 差異比對通過: " + samples + " 筆 x " + 3 + " 種語系");
+    }
+    
+    /**
+     * 執行差異比對（依序在預設語系、土耳其語與 ROOT 語系下執行）
+     * @param seed 亂數種子
+     * @param samples 每個語系的樣本數
+     */
+    public static void run(long seed, int samples) {
+        Locale original = Locale.getDefault();
+        try {
+            for (Locale locale : new Locale[]{original, new Locale("tr", "TR"), Locale.ROOT}) {
+                Locale.setDefault(locale);
+                Random random = new Random(seed);
+                for (int i = 0; i < samples; i++) {
+                    compare(randomInput(random), randomInput(random), locale);
+                    compare(randomCreditCard(random), randomEmail(random), locale);
+                }
+            }
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
+    
+    private static void compare(String a, String b, Locale locale) {
+        check("sanitizeInput", a, locale, LegacyValidationUtil.sanitizeInput(a), ValidationUtil.sanitizeInput(a));
+        check("isValidUserId", a, locale, LegacyValidationUtil.isValidUserId(a), ValidationUtil.isValidUserId(a));
+        check("isValidName", a, locale, LegacyValidationUtil.isValidName(a), ValidationUtil.isValidName(a));
+        check("isValidEmail", b, locale, LegacyValidationUtil.isValidEmail(b), ValidationUtil.isValidEmail(b));
+        check("isValidPhone", a, locale, LegacyValidationUtil.isValidPhone(a), ValidationUtil.isValidPhone(a));
+        check("isValidCreditCard", a, locale,
+              LegacyValidationUtil.isValidCreditCard(a), ValidationUtil.isValidCreditCard(a));
+        check("isValidAddress", a, locale, LegacyValidationUtil.isValidAddress(a), ValidationUtil.isValidAddress(a));
+        check("validateUserData", a + " | " + b, locale,
+              LegacyValidationUtil.validateUserData(a, a, b, a, a, a).getErrors(),
+              ValidationUtil.validateUserData(a, a, b, a, a, a).getErrors());
+    }
+    
+    private static void check(String method, String input, Locale locale, Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            throw new IllegalStateException(String.format(
+                "%s 結果不同 (locale=%s): input=%s, 舊版=%s, 新版=%s",
+                method, locale, escape(input), escape(String.valueOf(expected)), escape(String.valueOf(actual))));
+        }
+    }
+    
+    private static String randomInput(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int tokens = random.nextInt(12);
+        for (int i = 0; i < tokens; i++) {
+            String token = TOKENS[random.nextInt(TOKENS.length)];
+            for (int j = 0; j < token.length(); j++) {
+                char c = token.charAt(j);
+                // 隨機改變 ASCII 字母的大小寫
+                if (c < 128 && Character.isLetter(c) && random.nextInt(4) == 0) {
+                    c = Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c);
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+    
+    private static String randomCreditCard(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int digits = 11 + random.nextInt(11);
+        int sum = 0;
+        for (int i = 0; i < digits; i++) {
+            int d = random.nextInt(10);
+            sb.append((char) ('0' + d));
+            if (random.nextInt(5) == 0) {
+                sb.append(" -\t".charAt(random.nextInt(3)));
+            }
+            sum += d;
+        }
+        // 約一半的樣本補上使 Luhn 檢查較可能通過的檢查碼
+        if (random.nextBoolean()) {
+            sb.append((char) ('0' + (10 - sum % 10) % 10));
+        }
+        return random.nextInt(10) == 0 ? randomInput(random) + sb : sb.toString();
+    }
+    
+    private static String randomEmail(Random random) {
+        return randomInput(random) + (random.nextBoolean() ? "@" : "") + randomInput(random)
+            + (random.nextBoolean() ? ".com" : ".Co.TW");
+    }
+    
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c >= 0x7f) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
\ No newline at end of file
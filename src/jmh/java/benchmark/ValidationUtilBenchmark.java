@@ -0,0 +1,70 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.ValidationUtil;
+import util.ValidationUtil.ValidationResult;
+
+/**
+ * ValidationUtil 基準測試
+ * 量測完整使用者資料驗證與輸入清理的成本，並與重構前的 {@link LegacyValidationUtil} 比較
+ * 開始量測前先執行 {@link ValidationDifferentialCheck}，結果與舊版不同時基準測試直接失敗
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationUtilBenchmark {
+    
+    private final String userId = "bench_user01";
+    private final String name = "王小明 Wang";
+    private final String email = "bench.user@example.com";
+    private final String phone = "0912-345-678";
+    private final String address = "台北市信義區信義路五段7號";
+    private final String creditCard = "4111111111111111";
+    
+    // 含有需要跳脫字元的輸入，涵蓋清理流程的所有分支
+    private final String dirtyInput = "  <b>O'Neil</b> -- /* \"quoted\" */ & more\u0007  ";
+    
+    @Setup(Level.Trial)
+    public void verifyAgainstLegacy() {
+        ValidationDifferentialCheck.run(20250807L, 20_000);
+    }
+    
+    @Benchmark
+    public ValidationResult validateUserData() {
+        return ValidationUtil.validateUserData(userId, name, email, phone, address, creditCard);
+    }
+    
+    @Benchmark
+    public String sanitizeInput() {
+        return ValidationUtil.sanitizeInput(dirtyInput);
+    }
+    
+    @Benchmark
+    public ValidationResult validateUserDataLegacy() {
+        return LegacyValidationUtil.validateUserData(userId, name, email, phone, address, creditCard);
+    }
+    
+    @Benchmark
+    public String sanitizeInputLegacy() {
+        return LegacyValidationUtil.sanitizeInput(dirtyInput);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package bean;
+
+/**
+ * 待寄送的郵件（不可變）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public final class MailMessage {
+    private final long id;
+    private final String to;
+    private final String subject;
+    private final String body;
+    private final int attempts;
+    
+    /**
+     * 建構函式
+     * @param id 郵件序號（在郵件日誌中唯一）
+     * @param to 收件者地址
+     * @param subject 主旨
+     * @param body 純文字內容
+     * @param attempts 已嘗試寄送的次數
+     */
+    public MailMessage(long id, String to, String subject, String body, int attempts) {
+        this.id = id;
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+        this.attempts = attempts;
+    }
+    
+    /**
+     * 取得嘗試次數改為 attempts 的副本
+     * @param attempts 已嘗試寄送的次數
+     * @return 郵件
+     */
+    public MailMessage withAttempts(int attempts) {
+        return new MailMessage(id, to, subject, body, attempts);
+    }
+    
+    public long getId() { return id; }
+    public String getTo() { return to; }
+    public String getSubject() { return subject; }
+    public String getBody() { return body; }
+    public int getAttempts() { return attempts; }
+    
+    @Override
+    public String toString() {
+        return "MailMessage[id=" + id + ", to=" + to + ", attempts=" + attempts + "]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+package bean;
+
+import java.math.BigDecimal;
+
+/**
+ * 商品資料（不可變）
+ * 商品目錄的快照直接保存並共用此物件，列表請求不會複製或修改
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public final class Product {
+    private final long id;
+    private final String name;
+    private final String category;
+    private final BigDecimal price;
+    private final int stock;
+    private final String description;
+    private final String imageFile;
+    private final boolean active;
+    private final long updatedAt;
+    
+    /**
+     * 建構函式
+     * @param id 商品 ID
+     * @param name 商品名稱
+     * @param category 分類
+     * @param price 售價
+     * @param stock 庫存數量
+     * @param description 商品說明
+     * @param imageFile 圖片檔名（相對於 product.image.path）
+     * @param active 是否上架
+     * @param updatedAt 最後修改時間（毫秒，資料庫的 updated_at）
+     */
+    public Product(long id, String name, String category, BigDecimal price, int stock,
+                   String description, String imageFile, boolean active, long updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.category = category;
+        this.price = price;
+        this.stock = stock;
+        this.description = description;
+        this.imageFile = imageFile;
+        this.active = active;
+        this.updatedAt = updatedAt;
+    }
+    
+    public long getId() { return id; }
+    public String getName() { return name; }
+    public String getCategory() { return category; }
+    public BigDecimal getPrice() { return price; }
+    public int getStock() { return stock; }
+    public String getDescription() { return description; }
+    public String getImageFile() { return imageFile; }
+    public boolean isActive() { return active; }
+    public long getUpdatedAt() { return updatedAt; }
+    
+    @Override
+    public String toString() {
+        return "Product[id=" + id + ", name=" + name + ", category=" + category + ", price=" + price + "]";
+    }
+}
\ No newline at end of file
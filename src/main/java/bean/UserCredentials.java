@@ -0,0 +1,42 @@
+package bean;
+
+/**
+ * 使用者登入憑證（不可變）
+ * 登入驗證只需要 ID 與密碼雜湊，不必讀取其他欄位；
+ * 登入時由同一次查詢一併帶回基本資料（{@link #getSummary}），驗證成功後不必再查詢一次
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public final class UserCredentials {
+    private final String id;
+    private final String passwordHash;
+    private final UserSummary summary;
+    
+    public UserCredentials(String id, String passwordHash) {
+        this(id, passwordHash, null);
+    }
+    
+    public UserCredentials(String id, String passwordHash, UserSummary summary) {
+        this.id = id;
+        this.passwordHash = passwordHash;
+        this.summary = summary;
+    }
+    
+    /**
+     * 從完整的使用者資料取出登入憑證
+     * @param user 使用者資料
+     * @return 登入憑證，user 為 null 時回傳 null
+     */
+    public static UserCredentials of(User user) {
+        if (user == null) {
+            return null;
+        }
+        return new UserCredentials(user.getId(), user.getPassword());
+    }
+    
+    public String getId() { return id; }
+    public String getPasswordHash() { return passwordHash; }
+    /** 一併查詢的基本資料；只查詢憑證時為 null */
+    public UserSummary getSummary() { return summary; }
+}
\ No newline at end of file
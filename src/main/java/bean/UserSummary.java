@@ -0,0 +1,56 @@
+package bean;
+
+/**
+ * 使用者基本資料（不可變）
+ * 顯示個人資料與登入後保存身分時使用，不含密碼雜湊與信用卡號碼
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public final class UserSummary {
+    private final String id;
+    private final String name;
+    private final String address;
+    private final String phone;
+    private final String email;
+    
+    public UserSummary(String id, String name, String address, String phone, String email) {
+        this.id = id;
+        this.name = name;
+        this.address = address;
+        this.phone = phone;
+        this.email = email;
+    }
+    
+    /**
+     * 從完整的使用者資料取出基本資料
+     * @param user 使用者資料
+     * @return 基本資料，user 為 null 時回傳 null
+     */
+    public static UserSummary of(User user) {
+        if (user == null) {
+            return null;
+        }
+        return new UserSummary(user.getId(), user.getName(), user.getAddress(), user.getPhone(), user.getEmail());
+    }
+    
+    /**
+     * 轉換為 User 物件（密碼與信用卡號碼為 null），供仍使用 User 的頁面與 Session 屬性
+     * @return 使用者物件
+     */
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        user.setAddress(address);
+        user.setPhone(phone);
+        user.setEmail(email);
+        return user;
+    }
+    
+    public String getId() { return id; }
+    public String getName() { return name; }
+    public String getAddress() { return address; }
+    public String getPhone() { return phone; }
+    public String getEmail() { return email; }
+}
\ No newline at end of file
@@ -0,0 +1,168 @@
+package dao;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import bean.User;
+import bean.UserCredentials;
+import bean.UserSummary;
+
+/**
+ * 具快取的使用者資料存取物件
+ * 以裝飾者模式包裝 UserDAO：findUserSummary、userExists 先查 {@link UserCache}，未命中才查詢資料庫；
+ * 新增使用者、更新密碼後使該使用者的快取失效
+ * 
+ * 快取只在本節點有效，其他節點的修改要到存活時間結束才會看到，因此快取中只保存基本資料（{@link UserSummary}，
+ * 不含密碼雜湊與信用卡號碼）：findCredentials、findLoginCredentials、getUserById 與 authenticateUser 一律查詢資料庫，
+ * 其他節點變更密碼後舊密碼立即失效（getUserById 查到的資料仍會取出基本資料放入快取，供之後的個人資料查詢使用）；
+ * findUserSummary 未命中時也只查詢基本資料欄位
+ * 
+ * 快取的鍵與 UserService 相同，去除前後空白並轉為小寫（與 MySQL 預設不分大小寫的主鍵比對一致）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class CachingUserDAO extends UserDAO {
+    
+    private final UserDAO delegate;
+    private final UserCache cache;
+    
+    /**
+     * 建構函式
+     * @param delegate 實際存取資料庫的 UserDAO
+     * @param cache 使用者快取
+     */
+    public CachingUserDAO(UserDAO delegate, UserCache cache) {
+        // 不使用父類別的連線，所有方法都轉交給 delegate
+        super(null);
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+    
+    /**
+     * 依共用快取設定包裝 UserDAO，快取未啟用時直接回傳原物件
+     * @param userDAO 實際存取資料庫的 UserDAO
+     * @return 包裝後的 UserDAO
+     */
+    public static UserDAO wrap(UserDAO userDAO) {
+        UserCache cache = UserCache.getInstance();
+        return cache.isEnabled() ? new CachingUserDAO(userDAO, cache) : userDAO;
+    }
+    
+    /**
+     * 查詢完整的使用者資料（含密碼雜湊，一律查詢資料庫），並將基本資料放入快取
+     */
+    @Override
+    public User getUserById(String userId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return delegate.getUserById(userId);
+        }
+        
+        long generation = cache.currentGeneration();
+        User user = delegate.getUserById(userId);
+        cache.put(userId, UserSummary.of(user), generation);
+        return user;
+    }
+    
+    @Override
+    public UserSummary findUserSummary(String userId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return null;
+        }
+        
+        UserCache.Entry entry = cache.get(userId);
+        if (entry != null) {
+            return entry.summary;
+        }
+        
+        long generation = cache.currentGeneration();
+        UserSummary summary = delegate.findUserSummary(userId);
+        cache.put(userId, summary, generation);
+        return summary;
+    }
+    
+    /**
+     * 登入憑證不經過快取，其他節點變更的密碼立即生效
+     */
+    @Override
+    public UserCredentials findCredentials(String userId) {
+        return delegate.findCredentials(userId);
+    }
+    
+    @Override
+    public UserCredentials findLoginCredentials(String userId) {
+        return delegate.findLoginCredentials(userId);
+    }
+    
+    @Override
+    public boolean userExists(String userId) {
+        if (userId != null && !userId.trim().isEmpty()) {
+            UserCache.Entry entry = cache.get(userId);
+            if (entry != null) {
+                return entry.summary != null;
+            }
+        }
+        return delegate.userExists(userId);
+    }
+    
+    @Override
+    public int forEachUser(String afterId, int limit, int fetchSize, Consumer<User> consumer) throws SQLException {
+        return delegate.forEachUser(afterId, limit, fetchSize, consumer);
+    }
+    
+    @Override
+    public long countUsers() throws SQLException {
+        return delegate.countUsers();
+    }
+    
+    @Override
+    public void forEachUserId(Consumer<String> consumer) throws SQLException {
+        delegate.forEachUserId(consumer);
+    }
+    
+    @Override
+    public InsertResult insert(User user) {
+        try {
+            return delegate.insert(user);
+        } finally {
+            // 不論成功與否都失效，清除可能存在的「查無資料」快取
+            if (user != null) {
+                cache.invalidate(user.getId());
+            }
+        }
+    }
+    
+    @Override
+    public boolean[] insertUsers(List<User> users, int batchSize) throws SQLException {
+        try {
+            return delegate.insertUsers(users, batchSize);
+        } finally {
+            for (User user : users) {
+                if (user != null) {
+                    cache.invalidate(user.getId());
+                }
+            }
+        }
+    }
+    
+    @Override
+    public Set<String> findExistingUserIds(Collection<String> userIds) throws SQLException {
+        return delegate.findExistingUserIds(userIds);
+    }
+    
+    @Override
+    public User authenticateUser(String userId, String password) {
+        return delegate.authenticateUser(userId, password);
+    }
+    
+    @Override
+    public boolean updatePassword(String userId, String hashedPassword) {
+        try {
+            return delegate.updatePassword(userId, hashedPassword);
+        } finally {
+            cache.invalidate(userId);
+        }
+    }}
\ No newline at end of file
@@ -0,0 +1,614 @@
+package dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import util.DaemonThreadFactory;
+
+/**
+ * 內建資料庫連線池
+ * - 包裝一個 DataSource（只查找一次），依 database.pool.* 設定管理實體連線
+ * - 每條實體連線快取 PreparedStatement，UserDAO 固定的 SQL 不必每次重新 prepare
+ * - 統計取得連線的等待時間與 PreparedStatement 快取命中率
+ * 
+ * 呼叫端拿到的是代理連線：close() 會把連線歸還連線池；
+ * 由 prepareStatement(String) 取得的代理 PreparedStatement 在 close() 時只清除參數並留在快取中
+ * 
+ * 連線數上限、閒置數量與逾時設定可由 {@link #resize} 在執行中調整（設定檔重新載入時），不需要重建連線池
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class ConnectionPool implements ConnectionProvider {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+    
+    // 閒置超過此時間的連線在借出前先檢查是否仍有效（毫秒）
+    private static final long VALIDATION_IDLE_MILLIS = 5000;
+    // 連線有效性檢查逾時（秒）
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    // 閒置連線維護週期（毫秒）
+    private static final long MAINTENANCE_INTERVAL_MILLIS = 30000;
+    
+    private final DataSource dataSource;
+    private volatile int maxSize;
+    private volatile int minIdle;
+    private volatile int maxIdle;
+    private volatile long idleTimeoutMillis;
+    private volatile long connectionTimeoutMillis;
+    private final int statementCacheSize;
+    
+    private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<>();
+    private final ResizableSemaphore permits;
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean shutdown;
+    
+    // 統計資料
+    private final AtomicLong physicalCount = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong waitNanosTotal = new AtomicLong();
+    private final AtomicLong waitNanosMax = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    
+    /**
+     * 建構函式
+     * @param dataSource 實體連線來源
+     * @param initialSize 啟動時預先建立的連線數
+     * @param maxSize 最大連線數
+     * @param minIdle 維護時至少保留的閒置連線數
+     * @param maxIdle 最多保留的閒置連線數
+     * @param idleTimeoutMillis 閒置超過此時間且多於 minIdle 的連線會被關閉（毫秒）
+     * @param connectionTimeoutMillis 取得連線的最長等待時間（毫秒）
+     * @param statementCacheSize 每條連線快取的 PreparedStatement 數量，0 表示不快取
+     */
+    public ConnectionPool(DataSource dataSource, int initialSize, int maxSize, int minIdle, int maxIdle,
+                          long idleTimeoutMillis, long connectionTimeoutMillis, int statementCacheSize) {
+        if (dataSource == null || maxSize <= 0) {
+            throw new IllegalArgumentException("連線池參數錯誤");
+        }
+        
+        this.dataSource = dataSource;
+        this.maxSize = maxSize;
+        this.maxIdle = Math.max(1, Math.min(maxIdle, maxSize));
+        this.minIdle = Math.max(0, Math.min(minIdle, this.maxIdle));
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.permits = new ResizableSemaphore(maxSize);
+        
+        // 預先建立初始連線
+        for (int i = 0; i < Math.min(initialSize, this.maxIdle); i++) {
+            try {
+                idle.offer(new PooledConnection(dataSource.getConnection()));
+                physicalCount.incrementAndGet();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "預先建立連線失敗，改為需要時再建立", e);
+                break;
+            }
+        }
+        
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(DaemonThreadFactory.named("connection-pool-maintenance"));
+        maintenance.scheduleWithFixedDelay(this::maintainIdle, MAINTENANCE_INTERVAL_MILLIS,
+                                           MAINTENANCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        
+        LOGGER.log(Level.INFO, "連線池已建立: 初始={0}, 最大={1}, 閒置={2}-{3}, 語句快取={4}",
+                  new Object[]{idle.size(), maxSize, this.minIdle, this.maxIdle, this.statementCacheSize});
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("連線池已關閉");
+        }
+        
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待資料庫連線時被中斷", e);
+        }
+        
+        long waited = System.nanoTime() - start;
+        recordWait(waited);
+        
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            throw new PoolExhaustedException(
+                "等待資料庫連線逾時 (" + connectionTimeoutMillis + " ms)，連線池已滿: " + maxSize);
+        }
+        
+        try {
+            PooledConnection pooled = takeValidIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(dataSource.getConnection());
+                physicalCount.incrementAndGet();
+            }
+            borrowCount.incrementAndGet();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * 取出一條有效的閒置連線
+     * @return 閒置連線，沒有可用的閒置連線時回傳 null
+     */
+    private PooledConnection takeValidIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            if (System.currentTimeMillis() - pooled.lastReturned < VALIDATION_IDLE_MILLIS || pooled.isValid()) {
+                return pooled;
+            }
+            LOGGER.log(Level.INFO, "移除失效的閒置連線");
+            pooled.closePhysical();
+        }
+        return null;
+    }
+    
+    /**
+     * 歸還連線
+     */
+    private void release(PooledConnection pooled) {
+        try {
+            boolean reusable = !shutdown && pooled.reset() && idle.size() < maxIdle;
+            if (!reusable || !idle.offer(pooled)) {
+                pooled.closePhysical();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+    
+    /**
+     * 閒置連線維護：關閉閒置過久的多餘連線，並補足 minIdle
+     */
+    private void maintainIdle() {
+        try {
+            long now = System.currentTimeMillis();
+            int checked = idle.size();
+            for (int i = 0; i < checked && idle.size() > minIdle; i++) {
+                PooledConnection pooled = idle.poll();
+                if (pooled == null) {
+                    break;
+                }
+                if (now - pooled.lastReturned > idleTimeoutMillis || !pooled.isValid()) {
+                    pooled.closePhysical();
+                } else if (!idle.offer(pooled)) {
+                    pooled.closePhysical();
+                }
+            }
+            
+            while (!shutdown && idle.size() < minIdle && physicalCount.get() < maxSize) {
+                PooledConnection pooled = new PooledConnection(dataSource.getConnection());
+                physicalCount.incrementAndGet();
+                if (!idle.offer(pooled)) {
+                    pooled.closePhysical();
+                    break;
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "連線池維護時發生異常", e);
+        }
+    }
+    
+    /**
+     * 調整連線數上限與閒置設定
+     * 縮小上限時不會中斷借出中的連線，歸還後才降到新的上限；多餘的閒置連線立即關閉
+     * @param maxSize 最大連線數
+     * @param minIdle 維護時至少保留的閒置連線數
+     * @param maxIdle 最多保留的閒置連線數
+     * @param idleTimeoutMillis 閒置逾時（毫秒）
+     * @param connectionTimeoutMillis 取得連線的最長等待時間（毫秒）
+     */
+    public synchronized void resize(int maxSize, int minIdle, int maxIdle,
+                                    long idleTimeoutMillis, long connectionTimeoutMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("連線池參數錯誤");
+        }
+        
+        // 1. 調整可借出的數量（可能暫時為負，直到借出的連線歸還）
+        int delta = maxSize - this.maxSize;
+        if (delta > 0) {
+            permits.release(delta);
+        } else if (delta < 0) {
+            permits.reducePermits(-delta);
+        }
+        this.maxSize = maxSize;
+        this.maxIdle = Math.max(1, Math.min(maxIdle, maxSize));
+        this.minIdle = Math.max(0, Math.min(minIdle, this.maxIdle));
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+        
+        // 2. 關閉超過新上限的閒置連線
+        PooledConnection pooled;
+        while (idle.size() > this.maxIdle && (pooled = idle.poll()) != null) {
+            pooled.closePhysical();
+        }
+        
+        LOGGER.log(Level.INFO, "連線池已調整: 最大={0}, 閒置={1}-{2}",
+                  new Object[]{maxSize, this.minIdle, this.maxIdle});
+    }
+    
+    private void recordWait(long nanos) {
+        waitNanosTotal.addAndGet(nanos);
+        long max;
+        while (nanos > (max = waitNanosMax.get())) {
+            if (waitNanosMax.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+    
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        maintenance.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            pooled.closePhysical();
+        }
+        LOGGER.log(Level.INFO, "連線池已關閉: 借出 {0} 次, 平均等待 {1} ms, 語句快取命中率 {2}",
+                  new Object[]{borrowCount.get(), getAverageWaitMillis(), getStatementCacheHitRate()});
+    }
+    
+    /**
+     * @return 最大連線數
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * @return 目前借出中的連線數
+     */
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+    
+    /**
+     * @return 目前閒置的連線數
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+    
+    /**
+     * @return 正在等待連線的執行緒數（估計值）
+     */
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+    
+    /**
+     * @return 累計借出次數
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+    
+    /**
+     * @return 累計等待逾時次數
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+    
+    /**
+     * @return 平均等待連線時間（毫秒）
+     */
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get() + timeoutCount.get();
+        return borrows == 0 ? 0 : waitNanosTotal.get() / 1e6 / borrows;
+    }
+    
+    /**
+     * @return 最長等待連線時間（毫秒）
+     */
+    public double getMaxWaitMillis() {
+        return waitNanosMax.get() / 1e6;
+    }
+    
+    /**
+     * @return PreparedStatement 快取命中次數
+     */
+    public long getStatementCacheHits() {
+        return statementHits.get();
+    }
+    
+    /**
+     * @return PreparedStatement 快取未命中次數
+     */
+    public long getStatementCacheMisses() {
+        return statementMisses.get();
+    }
+    
+    /**
+     * @return PreparedStatement 快取命中率 (0.0 - 1.0)
+     */
+    public double getStatementCacheHitRate() {
+        long hits = statementHits.get();
+        long total = hits + statementMisses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+    
+    /**
+     * 連線池已滿且等待逾時（資料庫本身未必有問題，健康檢查據此區分連線池耗盡與資料庫無法連線）
+     */
+    public static class PoolExhaustedException extends SQLTransientConnectionException {
+        private static final long serialVersionUID = 1L;
+        
+        PoolExhaustedException(String message) {
+            super(message);
+        }
+    }
+    
+    /**
+     * 可減少許可數量的公平號誌（Semaphore.reducePermits 為 protected）
+     */
+    private static final class ResizableSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+        
+        ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+        
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+    
+    /**
+     * 連線池中的一條實體連線，以及它的 PreparedStatement 快取
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private final Map<String, CachedStatement> statements;
+        private volatile long lastReturned = System.currentTimeMillis();
+        
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            // 依存取順序排列的 LinkedHashMap，超過容量時關閉最久未使用的語句
+            this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+                
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() > statementCacheSize) {
+                        eldest.getValue().closePhysical();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+        
+        /**
+         * 借出連線
+         * @return 代理連線
+         */
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(this)
+            );
+        }
+        
+        /**
+         * 取得（或建立並快取）PreparedStatement
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+            if (statementCacheSize == 0) {
+                statementMisses.incrementAndGet();
+                return physical.prepareStatement(sql);
+            }
+            
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && !cached.inUse) {
+                statementHits.incrementAndGet();
+                cached.inUse = true;
+                return cached.proxy;
+            }
+            
+            statementMisses.incrementAndGet();
+            PreparedStatement statement = physical.prepareStatement(sql);
+            
+            // 同一條 SQL 正在使用中（巢狀查詢）時，不覆蓋快取中的語句
+            if (cached != null) {
+                return statement;
+            }
+            
+            cached = new CachedStatement(statement);
+            cached.inUse = true;
+            statements.put(sql, cached);
+            return cached.proxy;
+        }
+        
+        /**
+         * 歸還前重設連線狀態
+         * @return 連線是否可以重複使用
+         */
+        boolean reset() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                // 借用者未關閉的語句：清除參數與未執行的批次，避免留給下一個借用者
+                for (CachedStatement cached : statements.values()) {
+                    if (cached.inUse) {
+                        cached.clear();
+                    }
+                }
+                lastReturned = System.currentTimeMillis();
+                return true;
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "重設連線狀態失敗，關閉連線", e);
+                return false;
+            }
+        }
+        
+        boolean isValid() {
+            try {
+                return physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+        
+        void closePhysical() {
+            Iterator<CachedStatement> iterator = statements.values().iterator();
+            while (iterator.hasNext()) {
+                iterator.next().closePhysical();
+                iterator.remove();
+            }
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "關閉實體連線時發生異常", e);
+            }
+            physicalCount.decrementAndGet();
+        }
+    }
+    
+    /**
+     * 快取中的 PreparedStatement
+     */
+    private static class CachedStatement {
+        private final PreparedStatement physical;
+        private final PreparedStatement proxy;
+        private boolean inUse;
+        
+        CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                this::invoke
+            );
+        }
+        
+        private Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    // 不關閉實體語句，只清除參數與批次並標示為可重用
+                    if (inUse) {
+                        clear();
+                    }
+                    return null;
+                case "isClosed":
+                    return !inUse;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    if (!inUse) {
+                        throw new SQLException("PreparedStatement 已關閉");
+                    }
+                    return invokeTarget(physical, method, args);
+            }
+        }
+        
+        /**
+         * 清除參數與未執行的批次（例外中斷 addBatch 後留下的部分）並標示為可重用
+         */
+        void clear() throws SQLException {
+            physical.clearParameters();
+            physical.clearBatch();
+            // 清除失敗時維持使用中，歸還連線時再試一次，仍失敗則關閉連線
+            inUse = false;
+        }
+        
+        void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "關閉快取語句時發生異常", e);
+            }
+        }
+    }
+    
+    /**
+     * 代理連線的呼叫處理器
+     */
+    private class ConnectionHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean closed;
+        
+        ConnectionHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    break;
+            }
+            
+            if (closed) {
+                throw new SQLException("連線已歸還連線池");
+            }
+            
+            if ("prepareStatement".equals(method.getName()) && args.length == 1) {
+                return pooled.prepare((String) args[0]);
+            }
+            return invokeTarget(pooled.physical, method, args);
+        }
+    }
+    
+    /**
+     * 呼叫實體物件的方法，並還原原始例外
+     */
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 資料庫連線提供者
+ * 將「連線從哪裡來」（容器 JNDI DataSource、內建連線池、讀寫分離路由等）與 DAO 及 Servlet 解耦
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public interface ConnectionProvider {
+    
+    /**
+     * 取得資料庫連線，使用完畢後呼叫端必須關閉（歸還）連線
+     * @return 資料庫連線
+     * @throws SQLException 無法取得連線
+     */
+    Connection getConnection() throws SQLException;
+    
+    /**
+     * 釋放提供者持有的資源
+     */
+    default void shutdown() {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package dao;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+import util.AppConfig;
+
+/**
+ * 連線提供者的建立與共用實例管理
+ * - DataSource 只在第一次使用時查找一次，之後每個請求都重用
+ * - database.pool.enabled=true（預設）時以內建連線池包裝；否則直接使用容器提供的 DataSource
+ * - 找不到 JNDI 資源（database.jndi.name）時，改用 database.url 等設定以 DriverManager 建立連線
+ * - 設定 database.replica.urls 時以 {@link RoutingConnectionProvider} 包裝，查詢可分散到唯讀副本
+ * - 共用的內建連線池（含副本的連線池）在設定檔重新載入時依新的 database.pool.* 調整大小
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class ConnectionProviders {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionProviders.class.getName());
+    
+    // 預設的 JNDI 資源名稱
+    private static final String DEFAULT_DATASOURCE_JNDI = "java:comp/env/jdbc/EmployeeDB";
+    
+    private static final Runnable RESIZE_ON_RELOAD = ConnectionProviders::resizeDefaultPool;
+    
+    private static volatile ConnectionProvider defaultProvider;
+    
+    private ConnectionProviders() {
+    }
+    
+    /**
+     * 取得共用的連線提供者，第一次呼叫時依設定建立
+     * @return 連線提供者
+     * @throws SQLException 無法建立連線來源
+     */
+    public static ConnectionProvider getDefault() throws SQLException {
+        ConnectionProvider provider = defaultProvider;
+        if (provider == null) {
+            synchronized (ConnectionProviders.class) {
+                provider = defaultProvider;
+                if (provider == null) {
+                    provider = createFromConfig();
+                    defaultProvider = provider;
+                    AppConfig.addReloadListener(RESIZE_ON_RELOAD);
+                }
+            }
+        }
+        return provider;
+    }
+    
+    /**
+     * 取得共用的連線提供者，尚未建立時回傳 null（供監控使用，不會觸發建立）
+     * @return 連線提供者或 null
+     */
+    public static ConnectionProvider peekDefault() {
+        return defaultProvider;
+    }
+    
+    /**
+     * 取得共用的主資料庫連線池（讀寫分離時為主資料庫的連線池），
+     * 尚未建立或未使用內建連線池時回傳 null（供監控使用，不會觸發建立）
+     * @return 連線池或 null
+     */
+    public static ConnectionPool peekDefaultPool() {
+        ConnectionProvider provider = defaultProvider;
+        if (provider instanceof RoutingConnectionProvider) {
+            provider = ((RoutingConnectionProvider) provider).getPrimary();
+        }
+        return provider instanceof ConnectionPool ? (ConnectionPool) provider : null;
+    }
+    
+    /**
+     * 關閉共用的連線提供者
+     */
+    public static synchronized void shutdown() {
+        AppConfig.removeReloadListener(RESIZE_ON_RELOAD);
+        if (defaultProvider != null) {
+            defaultProvider.shutdown();
+            defaultProvider = null;
+        }
+    }
+    
+    /**
+     * 依 app.properties 建立連線提供者
+     * @return 連線提供者
+     * @throws SQLException 無法建立連線來源
+     */
+    public static ConnectionProvider createFromConfig() throws SQLException {
+        ConnectionProvider primary = createProvider(lookupDataSource());
+        
+        String replicaUrls = AppConfig.getString("database.replica.urls", "");
+        if (replicaUrls.trim().isEmpty()) {
+            return primary;
+        }
+        
+        // 副本以 DriverManager 連線，帳號密碼未設定時與主資料庫相同
+        Map<String, ConnectionProvider> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                replicas.put(url.trim(), createProvider(new DriverManagerDataSource(
+                    AppConfig.getString("database.driver", null),
+                    url.trim(),
+                    AppConfig.getString("database.replica.username", AppConfig.getString("database.username", null)),
+                    AppConfig.getString("database.replica.password", AppConfig.getString("database.password", null))
+                )));
+            }
+        }
+        
+        return new RoutingConnectionProvider(
+            primary,
+            replicas,
+            RoutingConnectionProvider.Selection.parse(AppConfig.getString("database.replica.selection", "round_robin")),
+            AppConfig.getLong("database.replica.max.lag.millis", 1000),
+            AppConfig.getString("database.validation.query", "SELECT 1"),
+            AppConfig.getString("database.replica.lag.query", ""),
+            AppConfig.getLong("database.replica.check.interval", 5000),
+            AppConfig.getInt("monitoring.health.db.timeout", 5)
+        );
+    }
+    
+    /**
+     * 依 database.pool.enabled 以內建連線池包裝 DataSource，或直接使用 DataSource
+     */
+    private static ConnectionProvider createProvider(DataSource dataSource) {
+        if (!AppConfig.getBoolean("database.pool.enabled", true)) {
+            LOGGER.log(Level.INFO, "未啟用內建連線池，直接使用 DataSource: {0}", dataSource);
+            return dataSource::getConnection;
+        }
+        
+        return new ConnectionPool(
+            dataSource,
+            AppConfig.getInt("database.pool.initial.size", 5),
+            AppConfig.getInt("database.pool.max.size", 20),
+            AppConfig.getInt("database.pool.min.idle", 2),
+            AppConfig.getInt("database.pool.max.idle", 10),
+            AppConfig.getLong("database.pool.idle.timeout", 300000),
+            AppConfig.getLong("database.connection.timeout", 30000),
+            AppConfig.getInt("database.statement.cache.size", 32)
+        );
+    }
+    
+    /**
+     * 依目前設定調整共用連線池的大小（設定檔重新載入時呼叫）
+     */
+    private static void resizeDefaultPool() {
+        ConnectionProvider provider = defaultProvider;
+        if (provider instanceof RoutingConnectionProvider) {
+            RoutingConnectionProvider routing = (RoutingConnectionProvider) provider;
+            resizePool(routing.getPrimary());
+            for (RoutingConnectionProvider.Replica replica : routing.getReplicas()) {
+                resizePool(replica.getProvider());
+            }
+        } else {
+            resizePool(provider);
+        }
+    }
+    
+    private static void resizePool(ConnectionProvider provider) {
+        if (provider instanceof ConnectionPool) {
+            ((ConnectionPool) provider).resize(
+                AppConfig.getInt("database.pool.max.size", 20),
+                AppConfig.getInt("database.pool.min.idle", 2),
+                AppConfig.getInt("database.pool.max.idle", 10),
+                AppConfig.getLong("database.pool.idle.timeout", 300000),
+                AppConfig.getLong("database.connection.timeout", 30000)
+            );
+        }
+    }
+    
+    /**
+     * 查找 DataSource：優先使用容器 JNDI 資源，其次使用 database.url 設定
+     */
+    private static DataSource lookupDataSource() throws SQLException {
+        String jndiName = AppConfig.getString("database.jndi.name", DEFAULT_DATASOURCE_JNDI);
+        try {
+            InitialContext context = new InitialContext();
+            DataSource dataSource = (DataSource) context.lookup(jndiName);
+            LOGGER.log(Level.INFO, "使用 JNDI DataSource: {0}", jndiName);
+            return dataSource;
+        } catch (NamingException e) {
+            String url = AppConfig.getString("database.url", null);
+            if (url == null) {
+                throw new SQLException("找不到 JNDI 資源 " + jndiName + "，且未設定 database.url", e);
+            }
+            LOGGER.log(Level.INFO, "找不到 JNDI 資源，改用 DriverManager: {0}", url);
+            return new DriverManagerDataSource(
+                AppConfig.getString("database.driver", null),
+                url,
+                AppConfig.getString("database.username", null),
+                AppConfig.getString("database.password", null)
+            );
+        }
+    }
+}
\ No newline at end of file
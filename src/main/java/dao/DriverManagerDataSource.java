@@ -0,0 +1,98 @@
+package dao;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * 以 DriverManager 建立實體連線的簡易 DataSource
+ * 在沒有容器 JNDI 資源的環境（本機開發、命令列工具）下作為連線池的連線來源
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class DriverManagerDataSource implements DataSource {
+    
+    private final String url;
+    private final String username;
+    private final String password;
+    private int loginTimeout;
+    
+    /**
+     * 建構函式
+     * @param driverClass JDBC 驅動程式類別名稱，可為 null
+     * @param url JDBC URL
+     * @param username 使用者名稱
+     * @param password 密碼
+     */
+    public DriverManagerDataSource(String driverClass, String url, String username, String password) {
+        if (driverClass != null) {
+            try {
+                Class.forName(driverClass);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("找不到 JDBC 驅動程式: " + driverClass, e);
+            }
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+    
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+    
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+    
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+    
+    @Override
+    public void setLoginTimeout(int seconds) {
+        this.loginTimeout = seconds;
+    }
+    
+    @Override
+    public int getLoginTimeout() {
+        return loginTimeout;
+    }
+    
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+    
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("無法轉換為 " + iface.getName());
+    }
+    
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+    
+    @Override
+    public String toString() {
+        return "DriverManagerDataSource[" + url + "]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,243 @@
+package dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import exception.ImageUploadException;
+
+/**
+ * 商品圖片的檔案儲存（以內容定址）
+ * - 檔名為內容的 SHA-256 加上副檔名（{hash}.jpg），相同內容只存一份，檔案寫入後不再修改；
+ *   因此檔名可直接作為 ETag 與長期快取的依據
+ * - 目錄結構為 {root}/{variant}/{hash 前兩碼}/{檔名}，variant 為 original（原圖）或縮圖尺寸名稱
+ * - 上傳時邊讀邊寫入 upload.temp.directory 的暫存檔並計算雜湊，不在記憶體中保留整個檔案；
+ *   完成後才以原子性的 rename 放到最終位置，讀取端不會看到寫到一半的檔案
+ * - 格式以檔案開頭的 magic bytes 判斷，不信任用戶端提供的檔名或 Content-Type
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class ImageFileStore {
+    
+    /** 原圖的目錄名稱 */
+    public static final String ORIGINAL = "original";
+    
+    private static final Pattern NAME_PATTERN = Pattern.compile("[0-9a-f]{64}\\.(jpg|png|gif)");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    // 判斷格式需要的開頭長度
+    private static final int HEADER_SIZE = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * 支援的圖片格式
+     */
+    public enum Format {
+        JPEG("jpg", "image/jpeg", "jpeg"),
+        PNG("png", "image/png", "png"),
+        GIF("gif", "image/gif", "gif");
+        
+        private final String extension;
+        private final String contentType;
+        private final String imageIoName;
+        
+        Format(String extension, String contentType, String imageIoName) {
+            this.extension = extension;
+            this.contentType = contentType;
+            this.imageIoName = imageIoName;
+        }
+        
+        public String getExtension() { return extension; }
+        public String getContentType() { return contentType; }
+        public String getImageIoName() { return imageIoName; }
+        
+        /**
+         * 依檔案開頭判斷格式
+         * @param header 檔案開頭
+         * @param length 有效長度
+         * @return 格式，無法辨識時回傳 null
+         */
+        static Format detect(byte[] header, int length) {
+            if (length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+                return JPEG;
+            }
+            if (length >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G'
+                    && header[4] == '\r' && header[5] == '\n' && header[6] == 0x1A && header[7] == '\n') {
+                return PNG;
+            }
+            if (length >= 6 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8'
+                    && (header[4] == '7' || header[4] == '9') && header[5] == 'a') {
+                return GIF;
+            }
+            return null;
+        }
+        
+        /**
+         * 依檔名取得格式
+         * @param name 檔名（須為 {@link ImageFileStore#isValidName(String)} 接受的檔名）
+         * @return 格式
+         */
+        public static Format of(String name) {
+            String extension = name.substring(name.lastIndexOf('.') + 1);
+            for (Format format : values()) {
+                if (format.extension.equals(extension)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("不支援的圖片格式: " + name);
+        }
+        
+        /**
+         * 是否在允許的副檔名清單中（jpg 與 jpeg 視為相同）
+         */
+        boolean isAllowed(Set<String> allowedExtensions) {
+            return allowedExtensions.contains(extension) || (this == JPEG && allowedExtensions.contains("jpeg"));
+        }
+    }
+    
+    private final Path root;
+    private final Path tempDirectory;
+    
+    /**
+     * 建構函式
+     * @param root 圖片根目錄
+     * @param tempDirectory 上傳暫存目錄
+     * @throws IOException 無法建立目錄
+     */
+    public ImageFileStore(Path root, Path tempDirectory) throws IOException {
+        this.root = root;
+        this.tempDirectory = tempDirectory;
+        Files.createDirectories(root);
+        Files.createDirectories(tempDirectory);
+    }
+    
+    /**
+     * 檔名是否為本儲存產生的內容定址檔名（同時避免路徑穿越）
+     * @param name 檔名
+     * @return 是否有效
+     */
+    public static boolean isValidName(String name) {
+        return name != null && NAME_PATTERN.matcher(name).matches();
+    }
+    
+    /**
+     * 取得檔案路徑（檔案不一定存在）
+     * @param variant 目錄名稱（{@link #ORIGINAL} 或縮圖尺寸名稱）
+     * @param name 內容定址檔名
+     * @return 路徑
+     */
+    public Path resolve(String variant, String name) {
+        return root.resolve(variant).resolve(name.substring(0, 2)).resolve(name);
+    }
+    
+    /**
+     * 串流儲存上傳的原圖
+     * @param in 上傳內容
+     * @param maxBytes 檔案大小上限
+     * @param allowedExtensions 允許的副檔名（小寫）
+     * @return 內容定址檔名
+     * @throws ImageUploadException 檔案超過上限或不是允許的圖片格式
+     * @throws IOException 讀寫失敗
+     */
+    public String save(InputStream in, long maxBytes, Set<String> allowedExtensions)
+            throws ImageUploadException, IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int headerLength = in.readNBytes(buffer, 0, HEADER_SIZE);
+        Format format = Format.detect(buffer, headerLength);
+        if (format == null || !format.isAllowed(allowedExtensions)) {
+            throw new ImageUploadException(ImageUploadException.UNSUPPORTED_FORMAT,
+                                           "不支援的圖片格式: " + (format != null ? format.getExtension() : "unknown"),
+                                           "只接受 JPEG、PNG 或 GIF 圖片");
+        }
+        
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(tempDirectory, "upload-", ".tmp");
+        try {
+            long total = headerLength;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                digest.update(buffer, 0, headerLength);
+                out.write(buffer, 0, headerLength);
+                
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    total += read;
+                    if (total > maxBytes) {
+                        throw new ImageUploadException(ImageUploadException.FILE_TOO_LARGE,
+                                                       "上傳檔案超過 " + maxBytes + " bytes",
+                                                       "圖片檔案不可超過 " + (maxBytes / (1024 * 1024)) + " MB");
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            
+            String name = toHex(digest.digest()) + "." + format.getExtension();
+            Path target = resolve(ORIGINAL, name);
+            if (Files.exists(target)) {
+                return name;
+            }
+            publish(temp, target);
+            return name;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * 建立與目標檔案位於同一目錄的暫存檔（寫完後以 {@link #publish(Path, Path)} 放到目標位置）
+     * @param target 目標檔案
+     * @return 暫存檔
+     * @throws IOException 無法建立
+     */
+    public Path createTemporary(Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        return Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+    }
+    
+    /**
+     * 以原子性的 rename 將寫好的暫存檔放到目標位置；不同檔案系統時先複製到目標目錄再 rename
+     * 目標已存在時直接取代（內容定址，內容必定相同）
+     * @param temp 暫存檔
+     * @param target 目標檔案
+     * @throws IOException 搬移失敗
+     */
+    public void publish(Path temp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Path local = createTemporary(target);
+            try {
+                Files.copy(temp, local, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(local, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(local);
+            }
+        }
+    }
+    
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM 不支援 SHA-256", e);
+        }
+    }
+    
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,314 @@
+package dao;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import bean.MailMessage;
+
+/**
+ * 待寄郵件的日誌檔（只附加寫入）
+ * - 每筆記錄為 [長度][CRC32][內容]；內容為加入（完整郵件）、重試（嘗試次數）或完成（序號）
+ * - 開啟時依序重播，還原尚未完成的郵件；結尾寫到一半或校驗失敗的記錄視為中斷的寫入並截掉
+ * - append 只寫入作業系統的檔案快取（程序當掉不會遺失），{@link #sync()} 才寫入磁碟；
+ *   寄送執行緒定期呼叫 sync，多筆加入共用一次 fsync，請求執行緒不等待磁碟
+ * - 已完成的記錄累積到一定數量時，{@link #compact()} 只把未完成的郵件寫到新檔再替換
+ * 
+ * sync 與 compact 只能由單一執行緒（寄送執行緒）呼叫；append 等其他方法可由任何執行緒呼叫
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class MailJournal implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(MailJournal.class.getName());
+    
+    private static final byte QUEUED = 'Q';
+    private static final byte RETRY = 'R';
+    private static final byte DONE = 'D';
+    
+    // 記錄標頭：長度 + CRC32
+    private static final int HEADER_SIZE = 8;
+    // 單筆記錄上限，超過時視為檔案損毀
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    // 過時記錄（已完成的郵件與重試、完成記錄）達到此數量時重寫日誌
+    private static final int COMPACT_THRESHOLD = 1000;
+    
+    private final Path file;
+    private final Map<Long, MailMessage> pending = new LinkedHashMap<>();
+    private volatile FileChannel channel;
+    private volatile boolean dirty;
+    private long nextId = 1;
+    private int obsoleteRecords;
+    
+    /**
+     * 開啟（或建立）日誌檔並重播既有記錄
+     * @param file 日誌檔路徑
+     * @throws IOException 無法讀寫日誌檔
+     */
+    public MailJournal(Path file) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        
+        long validLength = Files.exists(file) ? replay() : 0;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > validLength) {
+            LOGGER.log(Level.WARNING, "郵件日誌結尾有不完整的記錄，已截掉 {0} bytes", channel.size() - validLength);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        
+        LOGGER.log(Level.INFO, "郵件日誌已開啟: {0}，待寄 {1} 封", new Object[]{file, pending.size()});
+    }
+    
+    /**
+     * 重播日誌
+     * @return 最後一筆完整記錄結尾的位置
+     */
+    private long replay() throws IOException {
+        long position = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            DataInputStream data = new DataInputStream(in);
+            byte[] payload = new byte[256];
+            CRC32 crc = new CRC32();
+            
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = data.readInt();
+                    checksum = data.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    if (payload.length < length) {
+                        payload = new byte[length];
+                    }
+                    data.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                
+                apply(new DataInputStream(new ByteArrayInputStream(payload, 0, length)));
+                position += HEADER_SIZE + length;
+            }
+        }
+        return position;
+    }
+    
+    private void apply(DataInputStream record) throws IOException {
+        byte type = record.readByte();
+        long id = record.readLong();
+        nextId = Math.max(nextId, id + 1);
+        
+        switch (type) {
+            case QUEUED: {
+                int attempts = record.readInt();
+                String to = record.readUTF();
+                String subject = record.readUTF();
+                byte[] body = new byte[record.readInt()];
+                record.readFully(body);
+                pending.put(id, new MailMessage(id, to, subject, new String(body, StandardCharsets.UTF_8), attempts));
+                break;
+            }
+            case RETRY: {
+                int attempts = record.readInt();
+                pending.computeIfPresent(id, (key, message) -> message.withAttempts(attempts));
+                obsoleteRecords++;
+                break;
+            }
+            case DONE:
+                pending.remove(id);
+                obsoleteRecords += 2;
+                break;
+            default:
+                throw new IOException("郵件日誌記錄類型錯誤: " + type);
+        }
+    }
+    
+    /**
+     * 加入一封郵件
+     * @param to 收件者地址
+     * @param subject 主旨
+     * @param body 純文字內容
+     * @return 已指定序號的郵件
+     * @throws IOException 寫入失敗
+     */
+    public synchronized MailMessage append(String to, String subject, String body) throws IOException {
+        MailMessage message = new MailMessage(nextId++, to, subject, body, 0);
+        write(encodeQueued(message));
+        pending.put(message.getId(), message);
+        return message;
+    }
+    
+    /**
+     * 記錄寄送失敗後的嘗試次數（重新開啟日誌時沿用，避免重試間隔歸零）
+     * @param id 郵件序號
+     * @param attempts 已嘗試寄送的次數
+     * @throws IOException 寫入失敗
+     */
+    public synchronized void markRetry(long id, int attempts) throws IOException {
+        MailMessage message = pending.get(id);
+        if (message == null) {
+            return;
+        }
+        write(encode(RETRY, id, out -> out.writeInt(attempts)));
+        pending.put(id, message.withAttempts(attempts));
+        obsoleteRecords++;
+    }
+    
+    /**
+     * 記錄郵件已完成（寄出或放棄）
+     * @param id 郵件序號
+     * @throws IOException 寫入失敗
+     */
+    public synchronized void markDone(long id) throws IOException {
+        if (pending.remove(id) == null) {
+            return;
+        }
+        write(encode(DONE, id, out -> { }));
+        obsoleteRecords += 2;
+    }
+    
+    /**
+     * 取得尚未完成的郵件（依加入順序）
+     * @return 郵件清單
+     */
+    public synchronized List<MailMessage> getPending() {
+        return new ArrayList<>(pending.values());
+    }
+    
+    /**
+     * @return 尚未完成的郵件數
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+    
+    /**
+     * 把已寫入的記錄同步到磁碟（沒有新記錄時不做事）
+     * @throws IOException 同步失敗
+     */
+    public void sync() throws IOException {
+        if (dirty) {
+            dirty = false;
+            channel.force(false);
+        }
+    }
+    
+    /**
+     * 過時記錄夠多時重寫日誌：沒有待寄郵件時直接清空，否則只保留待寄郵件
+     * @throws IOException 寫入失敗
+     */
+    public synchronized void compact() throws IOException {
+        if (pending.isEmpty() && obsoleteRecords > 0) {
+            channel.truncate(0);
+            channel.force(false);
+            obsoleteRecords = 0;
+            return;
+        }
+        if (obsoleteRecords < COMPACT_THRESHOLD) {
+            return;
+        }
+        
+        // 1. 把待寄郵件寫到暫存檔並同步到磁碟
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (MailMessage message : pending.values()) {
+                ByteBuffer record = encodeQueued(message);
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(true);
+        }
+        
+        // 2. 以原子搬移取代舊檔後改寫新檔
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        LOGGER.log(Level.FINE, "郵件日誌已壓縮: 捨棄 {0} 筆過時記錄", obsoleteRecords);
+        obsoleteRecords = 0;
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        channel.close();
+    }
+    
+    private void write(ByteBuffer record) throws IOException {
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        dirty = true;
+    }
+    
+    private static ByteBuffer encodeQueued(MailMessage message) throws IOException {
+        byte[] body = message.getBody().getBytes(StandardCharsets.UTF_8);
+        return encode(QUEUED, message.getId(), out -> {
+            out.writeInt(message.getAttempts());
+            out.writeUTF(message.getTo());
+            out.writeUTF(message.getSubject());
+            out.writeInt(body.length);
+            out.write(body);
+        });
+    }
+    
+    /**
+     * 組成一筆記錄：[長度][CRC32][類型][序號][內容]
+     */
+    private static ByteBuffer encode(byte type, long id, RecordWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeLong(id);
+        writer.write(out);
+        out.flush();
+        
+        byte[] payload = bytes.toByteArray();
+        if (payload.length > MAX_RECORD_SIZE) {
+            throw new IOException("郵件過大: " + payload.length + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        record.flip();
+        return record;
+    }
+    
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
\ No newline at end of file
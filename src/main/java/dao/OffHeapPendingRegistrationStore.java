@@ -0,0 +1,390 @@
+package dao;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import bean.User;
+import util.AppConfig;
+import util.DaemonThreadFactory;
+
+/**
+ * 堆外的待確認註冊資料暫存區
+ * - 所有資料放在一塊預先配置的 direct ByteBuffer 中，切成固定大小的槽位，不增加堆積與 GC 負擔
+ * - 每筆資料以長度前綴的 UTF-8 欄位緊密編碼，再以 AES-GCM 加密後寫入槽位（金鑰只存在於本行程）；
+ *   代碼作為附加驗證資料，槽位被其他代碼重複使用後也不會被誤讀
+ * - 堆積上只保留代碼到槽位的小型索引；資料超過 registration.pending.ttl 秒即過期，由背景執行緒回收
+ * 
+ * 讀取與移除可能同時發生：槽位被回收並寫入新資料時，讀取端的 GCM 驗證會失敗並視為資料不存在
+ * 
+ * 暫存區只存在於本節點：資料在堆外記憶體、金鑰每次啟動重新產生，
+ * 重新啟動或容錯移轉後所有待確認的註冊都會遺失（容器 Session 複製只複製代碼，不含資料），其他節點也無法讀取。
+ * 確認步驟必須回到同一節點（負載平衡器對 /register 使用黏著 Session），
+ * 代碼以本次啟動的節點代碼開頭，送錯節點時可由 {@link #isLocal} 得知並記錄
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class OffHeapPendingRegistrationStore implements PendingRegistrationStore {
+    private static final Logger LOGGER = Logger.getLogger(OffHeapPendingRegistrationStore.class.getName());
+    
+    private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+    private static final int KEY_BITS = 256;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int TOKEN_BYTES = 16;
+    private static final int NODE_ID_BYTES = 6;
+    
+    // 過期資料回收週期（秒）
+    private static final long SWEEP_INTERVAL_SECONDS = 60;
+    
+    private final ByteBuffer arena;
+    private final int slotSize;
+    private final long ttlMillis;
+    
+    // 可用槽位堆疊（由 this 保護）
+    private final int[] freeSlots;
+    private int freeCount;
+    
+    private final Map<String, Handle> handles = new ConcurrentHashMap<>();
+    private final SecretKey key;
+    private final SecureRandom random = new SecureRandom();
+    // 本次啟動的節點代碼（代碼的前綴）
+    private final String nodePrefix;
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(OffHeapPendingRegistrationStore::newCipher);
+    private final ScheduledExecutorService sweeper;
+    
+    // 統計資料
+    private final AtomicLong storedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong foreignCount = new AtomicLong();
+    
+    /**
+     * 建構函式
+     * @param maxEntries 最多暫存的筆數
+     * @param slotSize 每筆資料的位元組上限（含 IV 與驗證標籤）
+     * @param ttlMillis 資料存活時間（毫秒）
+     */
+    public OffHeapPendingRegistrationStore(int maxEntries, int slotSize, long ttlMillis) {
+        if (maxEntries <= 0 || slotSize <= IV_LENGTH + TAG_BITS / 8 || ttlMillis <= 0
+            || (long) maxEntries * slotSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("暫存區參數錯誤");
+        }
+        
+        this.arena = ByteBuffer.allocateDirect(maxEntries * slotSize);
+        this.slotSize = slotSize;
+        this.ttlMillis = ttlMillis;
+        this.freeSlots = new int[maxEntries];
+        for (int i = 0; i < maxEntries; i++) {
+            freeSlots[i] = maxEntries - 1 - i;
+        }
+        this.freeCount = maxEntries;
+        
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(KEY_BITS, random);
+            this.key = generator.generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("無法建立暫存資料加密金鑰", e);
+        }
+        byte[] nodeId = new byte[NODE_ID_BYTES];
+        random.nextBytes(nodeId);
+        this.nodePrefix = Base64.getUrlEncoder().withoutPadding().encodeToString(nodeId) + '.';
+        
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(DaemonThreadFactory.named("pending-registration-sweeper"));
+        sweeper.scheduleWithFixedDelay(this::sweepExpired, SWEEP_INTERVAL_SECONDS,
+                                       SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        
+        LOGGER.log(Level.INFO, "待確認註冊暫存區已建立: {0} 筆 x {1} bytes (堆外、只存在於本節點), ttl={2}s",
+                  new Object[]{maxEntries, slotSize, TimeUnit.MILLISECONDS.toSeconds(ttlMillis)});
+    }
+    
+    /**
+     * 依 registration.pending.* 設定建立暫存區
+     * @return 暫存區
+     */
+    public static OffHeapPendingRegistrationStore fromConfig() {
+        return new OffHeapPendingRegistrationStore(
+            AppConfig.getInt("registration.pending.max.entries", 10000),
+            AppConfig.getInt("registration.pending.slot.size", 1024),
+            TimeUnit.SECONDS.toMillis(AppConfig.getLong("registration.pending.ttl", 1800))
+        );
+    }
+    
+    @Override
+    public String put(User user) {
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(tokenBytes);
+        random.nextBytes(iv);
+        String token = nodePrefix + Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+        
+        // 1. 編碼並加密（明文用完立即清除）
+        byte[] plain = encode(user);
+        byte[] sealed;
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(token.getBytes(StandardCharsets.US_ASCII));
+            sealed = cipher.doFinal(plain);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("加密暫存資料失敗", e);
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+        
+        int length = IV_LENGTH + sealed.length;
+        if (length > slotSize) {
+            rejectedCount.incrementAndGet();
+            LOGGER.log(Level.WARNING, "註冊資料過長，無法暫存: {0} bytes", length);
+            return null;
+        }
+        
+        // 2. 取得槽位；已滿時先回收過期資料再試一次
+        int slot = allocateSlot();
+        if (slot < 0) {
+            sweepExpired();
+            slot = allocateSlot();
+            if (slot < 0) {
+                rejectedCount.incrementAndGet();
+                LOGGER.log(Level.WARNING, "待確認註冊暫存區已滿");
+                return null;
+            }
+        }
+        
+        // 3. 寫入槽位後才發佈索引，讀取端經由 ConcurrentHashMap 看到完整的資料
+        ByteBuffer view = arena.duplicate();
+        view.position(slot * slotSize);
+        view.put(iv);
+        view.put(sealed);
+        handles.put(token, new Handle(slot, length, System.currentTimeMillis() + ttlMillis));
+        storedCount.incrementAndGet();
+        return token;
+    }
+    
+    @Override
+    public User get(String token) {
+        if (token == null) {
+            return null;
+        }
+        
+        Handle handle = handles.get(token);
+        if (handle == null) {
+            if (!isLocal(token)) {
+                foreignCount.incrementAndGet();
+            }
+            return null;
+        }
+        if (System.currentTimeMillis() >= handle.expiresAt) {
+            if (handles.remove(token, handle)) {
+                freeSlot(handle.slot);
+                expiredCount.incrementAndGet();
+            }
+            return null;
+        }
+        
+        byte[] data = new byte[handle.length];
+        ByteBuffer view = arena.duplicate();
+        view.position(handle.slot * slotSize);
+        view.get(data);
+        
+        byte[] plain = null;
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, data, 0, IV_LENGTH));
+            cipher.updateAAD(token.getBytes(StandardCharsets.US_ASCII));
+            plain = cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH);
+            return decode(plain);
+        } catch (AEADBadTagException e) {
+            // 讀取期間槽位已被移除並重新使用
+            return null;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("解密暫存資料失敗", e);
+        } finally {
+            if (plain != null) {
+                Arrays.fill(plain, (byte) 0);
+            }
+        }
+    }
+    
+    @Override
+    public boolean isLocal(String token) {
+        return token == null || token.startsWith(nodePrefix);
+    }
+    
+    @Override
+    public void remove(String token) {
+        if (token == null) {
+            return;
+        }
+        
+        Handle handle = handles.remove(token);
+        if (handle != null) {
+            freeSlot(handle.slot);
+        }
+    }
+    
+    @Override
+    public void shutdown() {
+        sweeper.shutdownNow();
+        handles.clear();
+        LOGGER.log(Level.INFO, "待確認註冊暫存區統計: {0}", this);
+    }
+    
+    /**
+     * 回收過期的資料
+     */
+    private void sweepExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Handle>> iterator = handles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Handle> entry = iterator.next();
+            Handle handle = entry.getValue();
+            if (now >= handle.expiresAt && handles.remove(entry.getKey(), handle)) {
+                freeSlot(handle.slot);
+                expiredCount.incrementAndGet();
+            }
+        }
+    }
+    
+    private synchronized int allocateSlot() {
+        return freeCount == 0 ? -1 : freeSlots[--freeCount];
+    }
+    
+    private synchronized void freeSlot(int slot) {
+        freeSlots[freeCount++] = slot;
+    }
+    
+    /**
+     * 編碼：依序寫入各欄位，每個欄位為「長度 + 1」的 varint 加上 UTF-8 內容，0 表示 null
+     */
+    private static byte[] encode(User user) {
+        String[] fields = {
+            user.getId(), user.getName(), user.getPassword(), user.getAddress(),
+            user.getPhone(), user.getCreditCard(), user.getEmail()
+        };
+        
+        byte[][] encoded = new byte[fields.length][];
+        int size = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                encoded[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+                size += encoded[i].length;
+            }
+            size += 5;
+        }
+        
+        ByteBuffer out = ByteBuffer.allocate(size);
+        for (byte[] field : encoded) {
+            writeVarint(out, field == null ? 0 : field.length + 1);
+            if (field != null) {
+                out.put(field);
+            }
+        }
+        
+        byte[] result = new byte[out.position()];
+        out.flip();
+        out.get(result);
+        Arrays.fill(out.array(), (byte) 0);
+        return result;
+    }
+    
+    private static User decode(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        User user = new User();
+        user.setId(readField(in));
+        user.setName(readField(in));
+        user.setPassword(readField(in));
+        user.setAddress(readField(in));
+        user.setPhone(readField(in));
+        user.setCreditCard(readField(in));
+        user.setEmail(readField(in));
+        return user;
+    }
+    
+    private static String readField(ByteBuffer in) {
+        int length = readVarint(in);
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length - 1, StandardCharsets.UTF_8);
+        in.position(in.position() + length - 1);
+        return value;
+    }
+    
+    private static void writeVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+    
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+    
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(CIPHER_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("不支援 " + CIPHER_ALGORITHM, e);
+        }
+    }
+    
+    // 統計資料
+    public int getSize() { return handles.size(); }
+    public int getCapacity() { return freeSlots.length; }
+    public long getStoredCount() { return storedCount.get(); }
+    public long getExpiredCount() { return expiredCount.get(); }
+    public long getRejectedCount() { return rejectedCount.get(); }
+    public long getForeignCount() { return foreignCount.get(); }
+    
+    @Override
+    public String toString() {
+        return String.format(
+            "OffHeapPendingRegistrationStore[size=%d/%d, stored=%d, expired=%d, rejected=%d, foreign=%d]",
+            getSize(), getCapacity(), getStoredCount(), getExpiredCount(), getRejectedCount(), getForeignCount());
+    }
+    
+    /**
+     * 代碼對應的槽位、資料長度與到期時間（不可變）
+     */
+    private static final class Handle {
+        final int slot;
+        final int length;
+        final long expiresAt;
+        
+        Handle(int slot, int length, long expiresAt) {
+            this.slot = slot;
+            this.length = length;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
\ No newline at end of file
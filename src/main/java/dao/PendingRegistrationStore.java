@@ -0,0 +1,53 @@
+package dao;
+
+import bean.User;
+
+/**
+ * 待確認註冊資料的暫存區
+ * 註冊表單送出後到使用者按下確認之間的資料存放在這裡，Session 只保存 {@link #put} 回傳的代碼，
+ * 不必把含密碼與信用卡號的 User 物件放進 Session（也不會隨 Session 複製到其他節點）
+ * 
+ * 實作可以只存在於單一節點（例如 {@link OffHeapPendingRegistrationStore}）：
+ * 此時確認步驟必須回到送出表單的節點，負載平衡器須對 /register 使用黏著 Session
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public interface PendingRegistrationStore {
+    
+    /**
+     * 暫存註冊資料
+     * @param user 註冊資料
+     * @return 取回資料用的代碼；暫存區已滿或資料過長時回傳 null
+     */
+    String put(User user);
+    
+    /**
+     * 取得暫存的註冊資料（不移除）
+     * @param token 代碼
+     * @return 註冊資料的副本；代碼不存在或已過期時回傳 null
+     */
+    User get(String token);
+    
+    /**
+     * 代碼是否由本暫存區發出（本節點、本次啟動）
+     * 回傳 false 表示請求被送到其他節點或節點已重新啟動，資料不可能在這裡找到
+     * @param token 代碼
+     * @return 是否為本暫存區的代碼；無法判斷時回傳 true
+     */
+    default boolean isLocal(String token) {
+        return true;
+    }
+    
+    /**
+     * 移除暫存的註冊資料
+     * @param token 代碼
+     */
+    void remove(String token);
+    
+    /**
+     * 釋放暫存區持有的資源
+     */
+    default void shutdown() {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,137 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import bean.Product;
+import util.Metrics;
+
+/**
+ * 商品資料存取物件
+ * - 只提供商品目錄需要的「依修改時間讀取變更」查詢；列表與分類瀏覽由 {@link service.ProductCatalog} 的快照回應
+ * - 以 (updated_at, id) 做鍵集分頁（seek），每頁都從索引上次讀到的位置開始，不使用 OFFSET
+ * - 連線為 {@link RoutingConnection} 時查詢唯讀副本（副本延遲由商品目錄的重疊讀取涵蓋）
+ * 
+ * 需要的資料表（MySQL）：
+ * <pre>
+ * CREATE TABLE products (
+ *     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *     name VARCHAR(200) NOT NULL,
+ *     category VARCHAR(50) NOT NULL,
+ *     price DECIMAL(10, 2) NOT NULL,
+ *     stock INT NOT NULL DEFAULT 0,
+ *     description TEXT,
+ *     image_file VARCHAR(200),
+ *     active BOOLEAN NOT NULL DEFAULT TRUE,
+ *     updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+ *     INDEX idx_products_updated (updated_at, id)
+ * );
+ * </pre>
+ * 下架請將 active 設為 false（會更新 updated_at）；直接刪除的資料列要到下次完整重新載入才會從目錄移除
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class ProductDAO {
+    
+    private final Connection connection;
+    
+    // 第一個條件讓 MySQL 使用 (updated_at, id) 索引的範圍掃描，第二個條件排除上一頁已讀到的資料列
+    private static final String SELECT_CHANGED_SQL =
+        "SELECT id, name, category, price, stock, description, image_file, active, updated_at FROM products " +
+        "WHERE updated_at >= ? AND (updated_at > ? OR id > ?) ORDER BY updated_at, id LIMIT ?";
+    
+    private static final Metrics.Timer FIND_CHANGED_TIMER =
+        Metrics.timer("product_dao_query_seconds", "ProductDAO 查詢耗時", "operation", "find_changed");
+    
+    /**
+     * 建構函式
+     * @param connection 資料庫連線物件
+     */
+    public ProductDAO(Connection connection) {
+        this.connection = connection;
+    }
+    
+    /**
+     * 讀取 (updatedAfter, afterId) 之後修改的商品（含已下架），依 (updated_at, id) 排序
+     * @param updatedAfter 起始修改時間（毫秒，包含）
+     * @param afterId 修改時間等於 updatedAfter 時，只讀取 ID 大於此值的商品
+     * @param limit 最多筆數
+     * @return 商品清單
+     * @throws SQLException SQL 異常
+     */
+    public List<Product> findChangedSince(long updatedAfter, long afterId, int limit) throws SQLException {
+        long start = System.nanoTime();
+        Timestamp since = new Timestamp(updatedAfter);
+        
+        try (PreparedStatement pstmt = readConnection().prepareStatement(SELECT_CHANGED_SQL)) {
+            pstmt.setTimestamp(1, since);
+            pstmt.setTimestamp(2, since);
+            pstmt.setLong(3, afterId);
+            pstmt.setInt(4, limit);
+            
+            List<Product> products = new ArrayList<>(Math.min(limit, 1024));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    products.add(mapResultSetToProduct(rs));
+                }
+            }
+            return products;
+        } finally {
+            FIND_CHANGED_TIMER.stop(start);
+        }
+    }
+    
+    /**
+     * 逐頁讀取 updatedSince 之後修改的全部商品（每頁 batchSize 筆，不會一次載入記憶體）
+     * @param updatedSince 起始修改時間（毫秒，包含），0 表示全部商品
+     * @param batchSize 每頁筆數
+     * @param consumer 處理每筆商品的函式
+     * @return 讀取的筆數
+     * @throws SQLException SQL 異常
+     */
+    public int forEachChangedSince(long updatedSince, int batchSize, Consumer<Product> consumer) throws SQLException {
+        long updatedAfter = updatedSince;
+        long afterId = Long.MIN_VALUE;
+        int total = 0;
+        
+        while (true) {
+            List<Product> page = findChangedSince(updatedAfter, afterId, batchSize);
+            for (Product product : page) {
+                consumer.accept(product);
+            }
+            total += page.size();
+            if (page.size() < batchSize) {
+                return total;
+            }
+            
+            Product last = page.get(page.size() - 1);
+            updatedAfter = last.getUpdatedAt();
+            afterId = last.getId();
+        }
+    }
+    
+    /**
+     * 取得查詢用的連線：讀寫分離時使用副本，否則就是本 DAO 的連線
+     */
+    private Connection readConnection() throws SQLException {
+        if (connection instanceof RoutingConnection) {
+            return ((RoutingConnection) connection).forRead(null);
+        }
+        return connection;
+    }
+    
+    /**
+     * 將 ResultSet 映射到 Product 物件（依 SELECT_CHANGED_SQL 的欄位位置）
+     */
+    private Product mapResultSetToProduct(ResultSet rs) throws SQLException {
+        return new Product(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getBigDecimal(4), rs.getInt(5),
+                           rs.getString(6), rs.getString(7), rs.getBoolean(8), rs.getTimestamp(9).getTime());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 讀寫分離路由連線
+ * 由 {@link RoutingConnectionProvider} 借出；一般的 Connection 方法一律在主資料庫連線上執行，
+ * 只有 DAO 明確透過 {@link #forRead(String)} 取得的連線才可能是唯讀副本
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public interface RoutingConnection extends Connection {
+    
+    /**
+     * 取得執行查詢用的連線
+     * 下列情況回傳主資料庫連線：沒有健康的副本、這條連線已寫入或正在交易中、
+     * key 在副本延遲上限內剛寫入過（讀取自己寫入的資料）
+     * 使用主資料庫時回傳這條路由連線本身；副本連線由這條路由連線管理，呼叫端不可關閉
+     * @param key 查詢的資料鍵（例如使用者 ID），null 表示不需要讀取自己寫入的資料
+     * @return 查詢用的連線
+     * @throws SQLException 連線已關閉
+     */
+    Connection forRead(String key) throws SQLException;
+    
+    /**
+     * 最近一次 {@link #forRead} 回傳的副本是否可能尚未同步
+     * 副本查不到資料時，只有在延遲可能造成這個結果時才需要再查主資料庫
+     * @return 延遲未知（未設定延遲查詢）或最近一次量測的延遲大於 0 時為 true；未使用副本時為 false
+     */
+    boolean replicaMayBeBehind();
+    
+    /**
+     * 記錄 key 已寫入主資料庫，之後在副本延遲上限內讀取 key 都使用主資料庫
+     * @param key 資料鍵（例如使用者 ID）
+     */
+    void recordWrite(String key);
+}
\ No newline at end of file
@@ -0,0 +1,493 @@
+package dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import util.DaemonThreadFactory;
+import util.Metrics;
+
+/**
+ * 讀寫分離的連線提供者
+ * - 借出的 {@link RoutingConnection} 預設在主資料庫上執行；DAO 以 forRead 取得查詢用連線時才會使用唯讀副本
+ * - 副本以輪流（round_robin）或使用中連線最少（least_loaded）的方式選擇
+ * - 背景執行緒定期對每個副本執行檢查查詢與延遲查詢；無法連線、查詢失敗或延遲超過上限的副本
+ *   暫時移出，檢查恢復正常後再加入；沒有健康的副本時全部讀取改用主資料庫
+ * - 讀取自己寫入的資料：路由連線在主資料庫上準備過非 SELECT 語句或開始交易後，同一條連線的查詢都使用主資料庫；
+ *   以 recordWrite 記錄的鍵在延遲上限內也只從主資料庫讀取（只在本節點有效）
+ * - 延遲查詢因權限不足（MySQL 的 SHOW REPLICA STATUS 需要 REPLICATION CLIENT）失敗或沒有結果時，
+ *   副本同樣移出，並以 SEVERE 記錄原因，避免所有副本在沒有明顯警告的情況下停用
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class RoutingConnectionProvider implements ConnectionProvider {
+    private static final Logger LOGGER = Logger.getLogger(RoutingConnectionProvider.class.getName());
+    
+    private static final Metrics.Counter REPLICA_READS = readCounter("replica");
+    private static final Metrics.Counter PRIMARY_READS = readCounter("primary");
+    
+    // 權限不足的錯誤：MySQL 1227（需要 SUPER / REPLICATION CLIENT）、1142（指令權限）與 SQLState 42501
+    private static final int ER_SPECIFIC_ACCESS_DENIED = 1227;
+    private static final int ER_TABLEACCESS_DENIED = 1142;
+    
+    /**
+     * 副本選擇方式
+     */
+    public enum Selection {
+        ROUND_ROBIN, LEAST_LOADED;
+        
+        /**
+         * 解析設定值（不分大小寫），無法辨識時使用 ROUND_ROBIN
+         * @param value 設定值
+         * @return 選擇方式
+         */
+        public static Selection parse(String value) {
+            if (value != null && "least_loaded".equals(value.trim().toLowerCase(Locale.ROOT))) {
+                return LEAST_LOADED;
+            }
+            return ROUND_ROBIN;
+        }
+    }
+    
+    private final ConnectionProvider primary;
+    private final List<Replica> replicas;
+    private final Selection selection;
+    private final long maxLagMillis;
+    private final String validationQuery;
+    private final String lagQuery;
+    private final int checkTimeoutSeconds;
+    
+    // 最近寫入的鍵 → 在此時間（System.nanoTime）之前只從主資料庫讀取
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ScheduledExecutorService healthCheck;
+    
+    /**
+     * 建構函式（立即在背景執行第一次副本檢查，檢查通過前讀取都使用主資料庫）
+     * @param primary 主資料庫連線提供者
+     * @param replicas 副本名稱（記錄用，例如 JDBC URL）與連線提供者
+     * @param selection 副本選擇方式
+     * @param maxLagMillis 允許的副本延遲（毫秒），也是寫入後只讀主資料庫的時間
+     * @param validationQuery 檢查查詢
+     * @param lagQuery 延遲查詢（第一欄為延遲秒數，NULL 表示複寫已停止），null 表示不檢查延遲
+     * @param checkIntervalMillis 檢查間隔（毫秒）
+     * @param checkTimeoutSeconds 檢查查詢逾時（秒）
+     */
+    public RoutingConnectionProvider(ConnectionProvider primary, Map<String, ConnectionProvider> replicas,
+                                     Selection selection, long maxLagMillis, String validationQuery,
+                                     String lagQuery, long checkIntervalMillis, int checkTimeoutSeconds) {
+        if (primary == null || replicas == null || replicas.isEmpty()) {
+            throw new IllegalArgumentException("讀寫分離需要主資料庫與至少一個副本");
+        }
+        
+        this.primary = primary;
+        List<Replica> list = new ArrayList<>();
+        replicas.forEach((name, provider) -> list.add(new Replica(name, provider)));
+        this.replicas = Collections.unmodifiableList(list);
+        this.selection = selection;
+        this.maxLagMillis = maxLagMillis;
+        this.validationQuery = validationQuery;
+        this.lagQuery = lagQuery == null || lagQuery.trim().isEmpty() ? null : lagQuery.trim();
+        this.checkTimeoutSeconds = checkTimeoutSeconds;
+        
+        this.healthCheck = Executors.newSingleThreadScheduledExecutor(DaemonThreadFactory.named("replica-health-check"));
+        healthCheck.scheduleWithFixedDelay(this::checkReplicas, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        
+        LOGGER.log(Level.INFO, "讀寫分離已啟用: 副本 {0} 個, 選擇方式={1}, 延遲上限={2} ms",
+                  new Object[]{list.size(), selection, maxLagMillis});
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        return (Connection) Proxy.newProxyInstance(
+            RoutingConnection.class.getClassLoader(),
+            new Class<?>[]{RoutingConnection.class},
+            new RoutingHandler()
+        );
+    }
+    
+    @Override
+    public void shutdown() {
+        healthCheck.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.provider.shutdown();
+        }
+        primary.shutdown();
+    }
+    
+    /**
+     * 立即檢查全部副本（通常由背景執行緒定期呼叫）
+     */
+    public void checkReplicas() {
+        long now = System.nanoTime();
+        recentWrites.values().removeIf(until -> until - now <= 0);
+        
+        for (Replica replica : replicas) {
+            try {
+                replica.check();
+            } catch (RuntimeException e) {
+                replica.markDown("檢查失敗: " + e);
+            }
+        }
+    }
+    
+    /**
+     * 選擇一個健康的副本
+     * @return 副本，沒有健康的副本時回傳 null
+     */
+    private Replica chooseReplica() {
+        List<Replica> healthy = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy.add(replica);
+            }
+        }
+        if (healthy.isEmpty()) {
+            return null;
+        }
+        
+        if (selection == Selection.LEAST_LOADED) {
+            Replica best = healthy.get(0);
+            for (Replica replica : healthy) {
+                if (replica.active.get() < best.active.get()) {
+                    best = replica;
+                }
+            }
+            return best;
+        }
+        return healthy.get(Math.floorMod(nextReplica.getAndIncrement(), healthy.size()));
+    }
+    
+    private boolean recentlyWritten(String key) {
+        Long until = recentWrites.get(key);
+        return until != null && until - System.nanoTime() > 0;
+    }
+    
+    // 統計資料
+    public ConnectionProvider getPrimary() { return primary; }
+    public List<Replica> getReplicas() { return replicas; }
+    public Selection getSelection() { return selection; }
+    public long getMaxLagMillis() { return maxLagMillis; }
+    public long getReplicaReadCount() { return REPLICA_READS.get(); }
+    public long getPrimaryReadCount() { return PRIMARY_READS.get(); }
+    
+    @Override
+    public String toString() {
+        return String.format("RoutingConnectionProvider[replicas=%s, selection=%s, replicaReads=%d, primaryReads=%d]",
+                             replicas, selection, getReplicaReadCount(), getPrimaryReadCount());
+    }
+    
+    private static Metrics.Counter readCounter(String target) {
+        return Metrics.counter("db_routed_reads_total", "讀寫分離的查詢次數", "target", target);
+    }
+    
+    /**
+     * 一個唯讀副本與它的健康狀態
+     */
+    public final class Replica {
+        private final String name;
+        private final ConnectionProvider provider;
+        private final AtomicInteger active = new AtomicInteger();
+        private volatile boolean healthy;
+        private volatile long lagMillis = -1;
+        private volatile String lastError = "尚未檢查";
+        // 已完成第一次檢查（第一次檢查失敗也要記錄）
+        private volatile boolean checked;
+        // 延遲查詢的問題已以 SEVERE 記錄，恢復前不重複記錄
+        private boolean lagProblemReported;
+        
+        Replica(String name, ConnectionProvider provider) {
+            this.name = name;
+            this.provider = provider;
+        }
+        
+        /**
+         * 執行檢查查詢與延遲查詢，更新健康狀態
+         */
+        void check() {
+            try (Connection conn = provider.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.setQueryTimeout(checkTimeoutSeconds);
+                stmt.execute(validationQuery);
+                
+                if (lagQuery != null) {
+                    long lag;
+                    try {
+                        lag = readLagMillis(stmt);
+                    } catch (SQLException e) {
+                        lagMillis = -1;
+                        reportLagProblem(isAccessDenied(e)
+                            ? "延遲查詢權限不足（" + e.getMessage() + "）：請授予資料庫帳號 REPLICATION CLIENT 權限，"
+                              + "或修改 database.replica.lag.query"
+                            : "延遲查詢失敗（" + e.getMessage() + "）：請檢查 database.replica.lag.query");
+                        markDown("延遲查詢失敗");
+                        return;
+                    }
+                    lagMillis = lag;
+                    if (lag < 0) {
+                        reportLagProblem("延遲查詢沒有結果：資料庫不是副本、複寫已停止，"
+                                         + "或帳號缺少 REPLICATION CLIENT 權限（請檢查 database.replica.lag.query）");
+                        markDown("複寫已停止或無法取得延遲");
+                        return;
+                    }
+                    lagProblemReported = false;
+                    if (lag > maxLagMillis) {
+                        markDown("延遲 " + lag + " ms 超過上限 " + maxLagMillis + " ms");
+                        return;
+                    }
+                }
+                markUp();
+            } catch (SQLException e) {
+                markDown(e.getMessage());
+            }
+        }
+        
+        /**
+         * 讀取延遲（毫秒），無法取得時回傳 -1
+         * 支援第一欄為秒數的查詢，以及 MySQL 的 SHOW REPLICA STATUS / SHOW SLAVE STATUS
+         */
+        private long readLagMillis(Statement stmt) throws SQLException {
+            try (ResultSet rs = stmt.executeQuery(lagQuery)) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                double seconds = rs.getDouble(lagColumn(rs));
+                return rs.wasNull() ? -1 : (long) (seconds * 1000);
+            }
+        }
+        
+        private int lagColumn(ResultSet rs) {
+            for (String label : new String[]{"Seconds_Behind_Source", "Seconds_Behind_Master"}) {
+                try {
+                    return rs.findColumn(label);
+                } catch (SQLException e) {
+                    // 不是 SHOW ... STATUS 的結果
+                }
+            }
+            return 1;
+        }
+        
+        /**
+         * 以 SEVERE 記錄延遲查詢的問題（每次發生只記錄一次，由背景檢查執行緒呼叫）
+         */
+        private void reportLagProblem(String message) {
+            if (!lagProblemReported) {
+                lagProblemReported = true;
+                LOGGER.log(Level.SEVERE, "副本 {0} 無法檢查延遲，已移出讀取路由: {1}", new Object[]{name, message});
+            }
+        }
+        
+        private boolean isAccessDenied(SQLException e) {
+            return e.getErrorCode() == ER_SPECIFIC_ACCESS_DENIED || e.getErrorCode() == ER_TABLEACCESS_DENIED
+                || "42501".equals(e.getSQLState());
+        }
+        
+        /**
+         * 延遲是否可能讓副本查不到主資料庫上已有的資料
+         */
+        boolean mayBeBehind() {
+            return lagQuery == null || lagMillis != 0;
+        }
+        
+        private void markUp() {
+            if (!healthy) {
+                LOGGER.log(Level.INFO, "副本恢復使用: {0}", name);
+            }
+            lastError = null;
+            checked = true;
+            healthy = true;
+        }
+        
+        /**
+         * 暫時移出副本，直到下一次檢查通過
+         * @param reason 原因
+         */
+        void markDown(String reason) {
+            if (healthy || !checked) {
+                LOGGER.log(Level.WARNING, "副本移出讀取路由: {0}（{1}）", new Object[]{name, reason});
+            }
+            lastError = reason;
+            checked = true;
+            healthy = false;
+        }
+        
+        public String getName() { return name; }
+        public ConnectionProvider getProvider() { return provider; }
+        public boolean isHealthy() { return healthy; }
+        public long getLagMillis() { return lagMillis; }
+        public int getActiveCount() { return active.get(); }
+        public String getLastError() { return lastError; }
+        
+        @Override
+        public String toString() {
+            return name + (healthy ? "(up)" : "(down)");
+        }
+    }
+    
+    /**
+     * 路由連線的呼叫處理器
+     * 主資料庫與副本的連線都在第一次需要時才借用，關閉路由連線時一起歸還
+     */
+    private class RoutingHandler implements InvocationHandler {
+        private Connection primaryConnection;
+        private Connection replicaConnection;
+        private Replica replica;
+        // 最近一次 forRead 是否回傳副本
+        private boolean lastReadFromReplica;
+        // 在主資料庫上準備過可能寫入的語句或開始交易
+        private boolean pinned;
+        private boolean closed;
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "forRead":
+                    return forRead((Connection) proxy, (String) args[0]);
+                case "recordWrite":
+                    recordWrite((String) args[0]);
+                    return null;
+                case "replicaMayBeBehind":
+                    return lastReadFromReplica && replica.mayBeBehind();
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "RoutingConnection[primary=" + primaryConnection + ", replica=" + replica + "]";
+                default:
+                    break;
+            }
+            
+            if (closed) {
+                throw new SQLException("連線已關閉");
+            }
+            
+            if (mayWrite(method, args)) {
+                pinned = true;
+            }
+            try {
+                return method.invoke(primary(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+        
+        /**
+         * 呼叫是否可能寫入資料：非 SELECT 的語句、無法得知內容的 Statement 與預存程序、開始交易
+         */
+        private boolean mayWrite(Method method, Object[] args) {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return !isSelect((String) args[0]);
+                case "createStatement":
+                case "prepareCall":
+                    return true;
+                case "setAutoCommit":
+                    return !((Boolean) args[0]);
+                default:
+                    return false;
+            }
+        }
+        
+        private boolean isSelect(String sql) {
+            String trimmed = sql.trim();
+            return trimmed.regionMatches(true, 0, "SELECT", 0, 6)
+                && !trimmed.toUpperCase(Locale.ROOT).contains("FOR UPDATE");
+        }
+        
+        private Connection forRead(Connection self, String key) throws SQLException {
+            if (closed) {
+                throw new SQLException("連線已關閉");
+            }
+            
+            lastReadFromReplica = false;
+            
+            // 1. 讀取自己寫入的資料：這條連線可能已寫入或在交易中，或此鍵剛寫入
+            if (pinned || (key != null && recentlyWritten(key))) {
+                PRIMARY_READS.increment();
+                return self;
+            }
+            
+            // 2. 沿用這條連線已借用的副本
+            if (replicaConnection != null) {
+                REPLICA_READS.increment();
+                lastReadFromReplica = true;
+                return replicaConnection;
+            }
+            
+            // 3. 選擇健康的副本；借用失敗時移出該副本並改用主資料庫
+            Replica chosen = chooseReplica();
+            if (chosen == null) {
+                PRIMARY_READS.increment();
+                return self;
+            }
+            try {
+                replicaConnection = chosen.provider.getConnection();
+            } catch (SQLException e) {
+                chosen.markDown(e.getMessage());
+                PRIMARY_READS.increment();
+                return self;
+            }
+            replica = chosen;
+            chosen.active.incrementAndGet();
+            REPLICA_READS.increment();
+            lastReadFromReplica = true;
+            return replicaConnection;
+        }
+        
+        private void recordWrite(String key) {
+            pinned = true;
+            if (key != null) {
+                recentWrites.put(key, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLagMillis));
+            }
+        }
+        
+        private Connection primary() throws SQLException {
+            if (primaryConnection == null) {
+                primaryConnection = primary.getConnection();
+            }
+            return primaryConnection;
+        }
+        
+        private void close() throws SQLException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            
+            try {
+                if (replicaConnection != null) {
+                    replica.active.decrementAndGet();
+                    replicaConnection.close();
+                }
+            } finally {
+                if (primaryConnection != null) {
+                    primaryConnection.close();
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,306 @@
+package dao;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bean.UserSummary;
+import util.AppConfig;
+import util.BatchEviction;
+
+/**
+ * 使用者資料快取（行程內共用）
+ * - 以 ConcurrentHashMap 保存，讀取不需加鎖
+ * - 每筆資料有存活時間（cache.ttl 秒），查無資料的 ID 也會以較短的時間（cache.negative.ttl 秒）快取
+ * - 超過 cache.max.size 時批次淘汰最久未使用的資料，降到上限的 90%
+ * - 以寫入世代號避免「查詢中發生寫入」時把舊資料放回快取
+ * - 以正規化的使用者 ID（去除前後空白、轉為小寫）為鍵，同一位使用者不會以不同大小寫重複快取
+ * - 只保存不可變的 {@link UserSummary}（不含密碼雜湊與信用卡號碼）：只在本節點有效，其他節點的修改不會使這裡的資料失效
+ * - 共用快取的容量與存活時間在設定檔重新載入時更新（已在快取中的資料維持原本的到期時間）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class UserCache {
+    private static final Logger LOGGER = Logger.getLogger(UserCache.class.getName());
+    
+    private static final UserCache INSTANCE = new UserCache(
+        AppConfig.getBoolean("cache.enabled", true),
+        AppConfig.getInt("cache.max.size", 1000),
+        TimeUnit.SECONDS.toNanos(AppConfig.getLong("cache.ttl", 3600)),
+        TimeUnit.SECONDS.toNanos(AppConfig.getLong("cache.negative.ttl", 60))
+    );
+    
+    static {
+        AppConfig.addReloadListener(() -> INSTANCE.reconfigure(
+            AppConfig.getInt("cache.max.size", 1000),
+            TimeUnit.SECONDS.toNanos(AppConfig.getLong("cache.ttl", 3600)),
+            TimeUnit.SECONDS.toNanos(AppConfig.getLong("cache.negative.ttl", 60))
+        ));
+    }
+    
+    private final boolean enabled;
+    private volatile int maxSize;
+    private volatile long ttlNanos;
+    private volatile long negativeTtlNanos;
+    
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final BatchEviction eviction = new BatchEviction();
+    private final AtomicLong writeGeneration = new AtomicLong();
+    
+    // 統計資料
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong negativeHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong expirationCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+    
+    /**
+     * 建構函式
+     * @param enabled 是否啟用
+     * @param maxSize 最大筆數
+     * @param ttlNanos 資料存活時間（奈秒）
+     * @param negativeTtlNanos 查無資料的存活時間（奈秒），0 表示不快取查無資料
+     */
+    public UserCache(boolean enabled, int maxSize, long ttlNanos, long negativeTtlNanos) {
+        this.enabled = enabled && maxSize > 0 && ttlNanos > 0;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlNanos;
+        this.negativeTtlNanos = negativeTtlNanos;
+        
+        if (this.enabled) {
+            LOGGER.log(Level.INFO, "使用者快取已啟用: maxSize={0}, ttl={1}s, negativeTtl={2}s",
+                      new Object[]{maxSize, TimeUnit.NANOSECONDS.toSeconds(ttlNanos),
+                                   TimeUnit.NANOSECONDS.toSeconds(negativeTtlNanos)});
+        }
+    }
+    
+    /**
+     * 取得依 app.properties 設定的共用快取
+     * @return 使用者快取
+     */
+    public static UserCache getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 是否啟用
+     * @return 是否啟用
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * 查詢快取
+     * @param userId 使用者 ID
+     * @return 快取資料；未命中或已過期時回傳 null
+     */
+    Entry get(String userId) {
+        String key = key(userId);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        
+        long now = System.nanoTime();
+        if (now - entry.expiresAt >= 0) {
+            if (entries.remove(key, entry)) {
+                expirationCount.incrementAndGet();
+            }
+            missCount.incrementAndGet();
+            return null;
+        }
+        
+        entry.lastAccess = now;
+        if (entry.summary == null) {
+            negativeHitCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return entry;
+    }
+    
+    /**
+     * 取得目前的寫入世代號，查詢資料庫前呼叫，查詢完成後交給 {@link #put(String, UserSummary, long)}
+     * @return 寫入世代號
+     */
+    long currentGeneration() {
+        return writeGeneration.get();
+    }
+    
+    /**
+     * 放入快取；若查詢期間發生過寫入則放棄，避免把舊資料放回快取
+     * @param userId 使用者 ID
+     * @param summary 使用者基本資料，null 表示查無資料
+     * @param generation 查詢前取得的寫入世代號
+     */
+    void put(String userId, UserSummary summary, long generation) {
+        if (summary == null && negativeTtlNanos <= 0) {
+            return;
+        }
+        
+        String key = key(userId);
+        long now = System.nanoTime();
+        Entry entry = new Entry(summary, now + (summary != null ? ttlNanos : negativeTtlNanos), now);
+        entries.put(key, entry);
+        
+        if (writeGeneration.get() != generation) {
+            entries.remove(key, entry);
+            return;
+        }
+        
+        if (entries.size() > maxSize) {
+            eviction.run(this::evict);
+        }
+    }
+    
+    /**
+     * 更新容量與存活時間（是否啟用只在建立時決定）
+     * @param maxSize 最大筆數
+     * @param ttlNanos 資料存活時間（奈秒）
+     * @param negativeTtlNanos 查無資料的存活時間（奈秒）
+     */
+    public void reconfigure(int maxSize, long ttlNanos, long negativeTtlNanos) {
+        if (!enabled || maxSize <= 0 || ttlNanos <= 0) {
+            return;
+        }
+        
+        this.ttlNanos = ttlNanos;
+        this.negativeTtlNanos = negativeTtlNanos;
+        this.maxSize = maxSize;
+        if (entries.size() > maxSize) {
+            eviction.run(this::evict);
+        }
+        LOGGER.log(Level.INFO, "使用者快取已調整: maxSize={0}, ttl={1}s, negativeTtl={2}s",
+                  new Object[]{maxSize, TimeUnit.NANOSECONDS.toSeconds(ttlNanos),
+                               TimeUnit.NANOSECONDS.toSeconds(negativeTtlNanos)});
+    }
+    
+    /**
+     * 使指定使用者的快取失效（新增、修改使用者後呼叫）
+     * @param userId 使用者 ID
+     */
+    public void invalidate(String userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        
+        writeGeneration.incrementAndGet();
+        if (entries.remove(key(userId)) != null) {
+            invalidationCount.incrementAndGet();
+        }
+    }
+    
+    /**
+     * 快取的鍵（與 MySQL 預設不分大小寫的主鍵比對一致）
+     */
+    private static String key(String userId) {
+        return userId.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * 清除全部快取
+     */
+    public void clear() {
+        writeGeneration.incrementAndGet();
+        entries.clear();
+    }
+    
+    /**
+     * 批次淘汰：先移除過期資料，仍超過上限時依最後存取時間移除最舊的資料
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        
+        // 1. 移除過期資料
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().expiresAt >= 0) {
+                iterator.remove();
+                expirationCount.incrementAndGet();
+            }
+        }
+        
+        int excess = entries.size() - (int) BatchEviction.target(maxSize);
+        if (excess <= 0) {
+            return;
+        }
+        
+        // 2. 找出最後存取時間的分界點
+        long[] accessTimes = new long[entries.size()];
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (count == accessTimes.length) {
+                break;
+            }
+            accessTimes[count++] = entry.lastAccess - now;
+        }
+        Arrays.sort(accessTimes, 0, count);
+        long cutoff = accessTimes[Math.min(excess, count) - 1];
+        
+        // 3. 移除分界點以前（含）的資料
+        int removed = 0;
+        iterator = entries.values().iterator();
+        while (iterator.hasNext() && removed < excess) {
+            if (iterator.next().lastAccess - now <= cutoff) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        evictionCount.addAndGet(removed);
+    }
+    
+    // 統計資料
+    public int getSize() { return entries.size(); }
+    public int getMaxSize() { return maxSize; }
+    public long getHitCount() { return hitCount.get(); }
+    public long getNegativeHitCount() { return negativeHitCount.get(); }
+    public long getMissCount() { return missCount.get(); }
+    public long getEvictionCount() { return evictionCount.get(); }
+    public long getExpirationCount() { return expirationCount.get(); }
+    public long getInvalidationCount() { return invalidationCount.get(); }
+    
+    /**
+     * 命中率（含查無資料的命中）
+     * @return 0 到 1 之間的命中率，尚未有查詢時回傳 0
+     */
+    public double getHitRate() {
+        long hits = hitCount.get() + negativeHitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("UserCache[size=%d/%d, hits=%d, negativeHits=%d, misses=%d, hitRate=%.2f, "
+                           + "evictions=%d, expirations=%d, invalidations=%d]",
+                             getSize(), maxSize, getHitCount(), getNegativeHitCount(), getMissCount(),
+                             getHitRate(), getEvictionCount(), getExpirationCount(), getInvalidationCount());
+    }
+    
+    /**
+     * 快取資料
+     */
+    static final class Entry {
+        // null 表示資料庫中查無此使用者
+        final UserSummary summary;
+        final long expiresAt;
+        // 近似值即可，不需要 volatile
+        long lastAccess;
+        
+        Entry(UserSummary summary, long expiresAt, long lastAccess) {
+            this.summary = summary;
+            this.expiresAt = expiresAt;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
\ No newline at end of file
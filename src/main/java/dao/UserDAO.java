@@ -1,19 +1,33 @@
 package dao;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import bean.User;
+import bean.UserCredentials;
+import bean.UserSummary;
+import util.Metrics;
 
 /**
  * 使用者資料存取物件 - 改良版本
  * - 使用 PreparedStatement 防止 SQL 注入
  * - 改善異常處理
  * - 加入日誌記錄
+ * - 連線為 {@link RoutingConnection} 時，依主鍵查詢與全表讀取使用唯讀副本，
+ *   副本查不到資料或查詢失敗時再查主資料庫；新增與更新後以 recordWrite 記錄使用者 ID
  * 
  * @author PC商城專案維護小組
  * @version 2.0
@@ -30,9 +44,71 @@ public class UserDAO {
     private static final String SELECT_USER_BY_ID_SQL = 
         "SELECT * FROM users WHERE id = ?";
     
+    // 投影查詢只選取需要的欄位，依欄位位置讀取（順序與 map* 方法一致）
+    private static final String SELECT_USER_SUMMARY_SQL = 
+        "SELECT id, name, address, phone, email FROM users WHERE id = ?";
+    
+    private static final String SELECT_CREDENTIALS_SQL = 
+        "SELECT id, password FROM users WHERE id = ?";
+    
+    private static final String SELECT_LOGIN_SQL = 
+        "SELECT id, password, name, address, phone, email FROM users WHERE id = ?";
+    
     private static final String SELECT_USER_BY_CREDENTIALS_SQL = 
         "SELECT * FROM users WHERE id = ? AND password = ?";
     
+    private static final String UPDATE_PASSWORD_SQL = 
+        "UPDATE users SET password = ? WHERE id = ?";
+    
+    private static final String USER_EXISTS_SQL = 
+        "SELECT 1 FROM users WHERE id = ?";
+    
+    private static final String COUNT_USERS_SQL = 
+        "SELECT COUNT(*) FROM users";
+    
+    private static final String SELECT_ALL_USER_IDS_SQL = 
+        "SELECT id FROM users";
+    
+    // 逐批讀取全部 ID 時每次向資料庫取回的筆數
+    private static final int ID_FETCH_SIZE = 1000;
+    
+    private static final String SELECT_USERS_AFTER_ID_SQL = 
+        "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+    
+    // IN (...) 查詢固定使用的參數個數，不足時以最後一個 ID 補齊，讓每次都是同一條可快取的 SQL
+    private static final int IN_CLAUSE_SIZE = 100;
+    
+    private static final String SELECT_EXISTING_IDS_SQL = 
+        "SELECT id FROM users WHERE id IN (" + 
+        String.join(", ", Collections.nCopies(IN_CLAUSE_SIZE, "?")) + ")";
+    
+    // 主鍵重複：MySQL 的錯誤代碼 1062（SQLState 23000 也用於其他限制），H2 等資料庫的 SQLState 23505
+    private static final int MYSQL_DUPLICATE_KEY = 1062;
+    private static final String SQLSTATE_UNIQUE_VIOLATION = "23505";
+    
+    /**
+     * 新增使用者的結果
+     */
+    public enum InsertResult {
+        /** 已新增 */
+        INSERTED,
+        /** 使用者 ID 已存在（主鍵重複） */
+        DUPLICATE_ID,
+        /** 資料無效或資料庫錯誤 */
+        FAILED
+    }
+    
+    // 各查詢耗時（/metrics）
+    private static final Metrics.Timer INSERT_USER_TIMER = queryTimer("insert_user");
+    private static final Metrics.Timer INSERT_USERS_TIMER = queryTimer("insert_users");
+    private static final Metrics.Timer FIND_EXISTING_IDS_TIMER = queryTimer("find_existing_user_ids");
+    private static final Metrics.Timer GET_USER_BY_ID_TIMER = queryTimer("get_user_by_id");
+    private static final Metrics.Timer FIND_USER_SUMMARY_TIMER = queryTimer("find_user_summary");
+    private static final Metrics.Timer FIND_CREDENTIALS_TIMER = queryTimer("find_credentials");
+    private static final Metrics.Timer FIND_LOGIN_CREDENTIALS_TIMER = queryTimer("find_login_credentials");
+    private static final Metrics.Timer USER_EXISTS_TIMER = queryTimer("user_exists");
+    private static final Metrics.Timer UPDATE_PASSWORD_TIMER = queryTimer("update_password");
+    
     /**
      * 建構函式
      * @param connection 資料庫連線物件
@@ -47,47 +123,196 @@ public class UserDAO {
      * @return 是否新增成功
      */
     public boolean insertUser(User user) {
+        return insert(user) == InsertResult.INSERTED;
+    }
+    
+    /**
+     * 新增使用者到資料庫，並區分主鍵重複與其他失敗
+     * 使用者 ID 是否已存在以主鍵限制為準（其他節點或匯入工具新增的 ID 不一定已反映在本節點的過濾器）
+     * @param user 使用者物件
+     * @return 新增結果
+     */
+    public InsertResult insert(User user) {
         // 輸入驗證
         if (user == null) {
             LOGGER.log(Level.WARNING, "嘗試插入空的使用者物件");
-            return false;
+            return InsertResult.FAILED;
         }
         
         if (!isValidUser(user)) {
             LOGGER.log(Level.WARNING, "使用者資料驗證失敗: {0}", user.getId());
-            return false;
+            return InsertResult.FAILED;
         }
         
         PreparedStatement pstmt = null;
+        long start = System.nanoTime();
         
         try {
             pstmt = connection.prepareStatement(INSERT_USER_SQL);
             
             // 設定參數 - 防止 SQL 注入
-            pstmt.setString(1, user.getId());
-            pstmt.setString(2, user.getName());
-            pstmt.setString(3, user.getPassword()); // 注意：密碼應該已經加密
-            pstmt.setString(4, user.getAddress());
-            pstmt.setString(5, user.getPhone());
-            pstmt.setString(6, user.getCreditCard());
-            pstmt.setString(7, user.getEmail());
+            setInsertParameters(pstmt, user);
             
             int rowsAffected = pstmt.executeUpdate();
             
             if (rowsAffected > 0) {
+                recordWrite(user.getId());
                 LOGGER.log(Level.INFO, "成功新增使用者: {0}", user.getId());
-                return true;
+                return InsertResult.INSERTED;
             } else {
                 LOGGER.log(Level.WARNING, "新增使用者失敗，沒有資料列受影響: {0}", user.getId());
-                return false;
+                return InsertResult.FAILED;
             }
             
         } catch (SQLException e) {
+            if (isDuplicateKey(e)) {
+                LOGGER.log(Level.WARNING, "新增使用者失敗，使用者 ID 已存在: {0}", user.getId());
+                return InsertResult.DUPLICATE_ID;
+            }
             LOGGER.log(Level.SEVERE, "新增使用者時發生 SQL 異常: " + user.getId(), e);
-            return false;
+            return InsertResult.FAILED;
         } finally {
             closeStatement(pstmt);
+            INSERT_USER_TIMER.stop(start);
+        }
+    }
+    
+    /**
+     * 是否為主鍵（唯一鍵）重複
+     */
+    private static boolean isDuplicateKey(SQLException e) {
+        return e.getErrorCode() == MYSQL_DUPLICATE_KEY || SQLSTATE_UNIQUE_VIOLATION.equals(e.getSQLState());
+    }
+    
+    /**
+     * 批次新增使用者
+     * 每 batchSize 筆以 addBatch/executeBatch 送出並在同一個交易中提交；
+     * 某一批失敗時回滾該批，再逐筆新增以取得每一筆的結果
+     * @param users 使用者清單（密碼應該已經加密）
+     * @param batchSize 每批筆數
+     * @return 與 users 順序相同的新增結果
+     * @throws SQLException 無法開始或提交交易
+     */
+    public boolean[] insertUsers(List<User> users, int batchSize) throws SQLException {
+        boolean[] results = new boolean[users.size()];
+        if (users.isEmpty()) {
+            return results;
+        }
+        
+        boolean autoCommit = connection.getAutoCommit();
+        long startTime = System.nanoTime();
+        try {
+            for (int start = 0; start < users.size(); start += batchSize) {
+                int end = Math.min(start + batchSize, users.size());
+                insertChunk(users, start, end, results);
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+            INSERT_USERS_TIMER.stop(startTime);
         }
+        
+        return results;
+    }
+    
+    /**
+     * 以單一交易批次新增 [start, end) 範圍的使用者
+     */
+    private void insertChunk(List<User> users, int start, int end, boolean[] results) throws SQLException {
+        PreparedStatement pstmt = null;
+        int queued = 0;
+        
+        try {
+            connection.setAutoCommit(false);
+            pstmt = connection.prepareStatement(INSERT_USER_SQL);
+            
+            for (int i = start; i < end; i++) {
+                User user = users.get(i);
+                if (user == null || !isValidUser(user)) {
+                    continue;
+                }
+                setInsertParameters(pstmt, user);
+                pstmt.addBatch();
+                queued++;
+            }
+            
+            if (queued == 0) {
+                connection.commit();
+                return;
+            }
+            
+            int[] counts = pstmt.executeBatch();
+            connection.commit();
+            
+            int index = 0;
+            for (int i = start; i < end; i++) {
+                User user = users.get(i);
+                if (user != null && isValidUser(user)) {
+                    int count = counts[index++];
+                    results[i] = count > 0 || count == Statement.SUCCESS_NO_INFO;
+                    if (results[i]) {
+                        recordWrite(user.getId());
+                    }
+                }
+            }
+            LOGGER.log(Level.INFO, "批次新增使用者: {0} 筆", queued);
+            
+        } catch (BatchUpdateException e) {
+            connection.rollback();
+            LOGGER.log(Level.WARNING, "批次新增失敗，改為逐筆新增: " + e.getMessage());
+            closeStatement(pstmt);
+            pstmt = null;
+            
+            // 逐筆新增，讓其餘資料不受少數重複或格式錯誤的資料影響
+            connection.setAutoCommit(true);
+            for (int i = start; i < end; i++) {
+                results[i] = insertUser(users.get(i));
+            }
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            closeStatement(pstmt);
+        }
+    }
+    
+    /**
+     * 查詢已存在的使用者 ID（每 100 個 ID 一次 IN 查詢）
+     * @param userIds 使用者 ID
+     * @return 資料庫中已存在的 ID（資料庫中儲存的值）
+     * @throws SQLException SQL 異常
+     */
+    public Set<String> findExistingUserIds(Collection<String> userIds) throws SQLException {
+        Set<String> existing = new HashSet<>();
+        Iterator<String> iterator = userIds.iterator();
+        
+        PreparedStatement pstmt = null;
+        long start = System.nanoTime();
+        try {
+            while (iterator.hasNext()) {
+                if (pstmt == null) {
+                    pstmt = connection.prepareStatement(SELECT_EXISTING_IDS_SQL);
+                }
+                
+                String last = null;
+                for (int i = 1; i <= IN_CLAUSE_SIZE; i++) {
+                    if (iterator.hasNext()) {
+                        last = iterator.next().trim();
+                    }
+                    pstmt.setString(i, last);
+                }
+                
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        existing.add(rs.getString(1));
+                    }
+                }
+            }
+        } finally {
+            closeStatement(pstmt);
+            FIND_EXISTING_IDS_TIMER.stop(start);
+        }
+        
+        return existing;
     }
     
     /**
@@ -101,27 +326,196 @@ public class UserDAO {
             return null;
         }
         
+        long start = System.nanoTime();
+        
+        try {
+            return queryByKey(SELECT_USER_BY_ID_SQL, this::mapResultSetToUser, userId.trim());
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "查詢使用者時發生 SQL 異常: " + userId, e);
+        } finally {
+            GET_USER_BY_ID_TIMER.stop(start);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * 查詢使用者基本資料（不讀取密碼雜湊與信用卡號碼）
+     * @param userId 使用者 ID
+     * @return 基本資料，如果找不到則回傳 null
+     */
+    public UserSummary findUserSummary(String userId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return null;
+        }
+        
+        long start = System.nanoTime();
+        
+        try {
+            return queryByKey(SELECT_USER_SUMMARY_SQL,
+                              rs -> new UserSummary(rs.getString(1), rs.getString(2), rs.getString(3),
+                                                    rs.getString(4), rs.getString(5)),
+                              userId.trim());
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "查詢使用者基本資料時發生 SQL 異常: " + userId, e);
+        } finally {
+            FIND_USER_SUMMARY_TIMER.stop(start);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * 查詢登入憑證（只讀取 ID 與密碼雜湊）
+     * @param userId 使用者 ID
+     * @return 登入憑證，如果找不到則回傳 null
+     */
+    public UserCredentials findCredentials(String userId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return null;
+        }
+        
+        long start = System.nanoTime();
+        
+        try {
+            return queryByKey(SELECT_CREDENTIALS_SQL,
+                              rs -> new UserCredentials(rs.getString(1), rs.getString(2)),
+                              userId.trim());
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "查詢登入憑證時發生 SQL 異常: " + userId, e);
+        } finally {
+            FIND_CREDENTIALS_TIMER.stop(start);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * 查詢登入憑證與基本資料（同一次查詢，不讀取信用卡號碼）
+     * @param userId 使用者 ID
+     * @return 含基本資料的登入憑證，如果找不到則回傳 null
+     */
+    public UserCredentials findLoginCredentials(String userId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return null;
+        }
+        
+        long start = System.nanoTime();
+        
+        try {
+            return queryByKey(SELECT_LOGIN_SQL,
+                              rs -> new UserCredentials(rs.getString(1), rs.getString(2),
+                                                        new UserSummary(rs.getString(1), rs.getString(3),
+                                                                        rs.getString(4), rs.getString(5),
+                                                                        rs.getString(6))),
+                              userId.trim());
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "查詢登入憑證時發生 SQL 異常: " + userId, e);
+        } finally {
+            FIND_LOGIN_CREDENTIALS_TIMER.stop(start);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * 依 ID 順序逐筆讀取 afterId 之後的使用者（keyset 分頁，供匯出使用）
+     * 使用唯讀、只能往前的 ResultSet，每次向資料庫取回 fetchSize 筆，不會一次載入整頁
+     * @param afterId 從此 ID 之後開始，null 表示從頭開始
+     * @param limit 最多讀取筆數
+     * @param fetchSize 每次向資料庫取回的筆數
+     * @param consumer 處理每位使用者的函式
+     * @return 讀取筆數，小於 limit 表示已讀到最後
+     * @throws SQLException SQL 異常
+     */
+    public int forEachUser(String afterId, int limit, int fetchSize, Consumer<User> consumer) throws SQLException {
         PreparedStatement pstmt = null;
         ResultSet rs = null;
+        int count = 0;
         
         try {
-            pstmt = connection.prepareStatement(SELECT_USER_BY_ID_SQL);
-            pstmt.setString(1, userId.trim());
+            pstmt = readConnection(null).prepareStatement(SELECT_USERS_AFTER_ID_SQL, 
+                                                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize);
+            pstmt.setString(1, afterId != null ? afterId : "");
+            pstmt.setInt(2, limit);
             
             rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return mapResultSetToUser(rs);
+            while (rs.next()) {
+                consumer.accept(mapResultSetToUser(rs));
+                count++;
             }
-            
+        } finally {
+            closeResultSet(rs);
+            closeStatement(pstmt);
+        }
+        
+        return count;
+    }
+    
+    /**
+     * 檢查使用者是否存在（只查主鍵，不讀取欄位資料）
+     * @param userId 使用者 ID
+     * @return 是否存在
+     */
+    public boolean userExists(String userId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return false;
+        }
+        
+        long start = System.nanoTime();
+        
+        try {
+            return queryByKey(USER_EXISTS_SQL, rs -> Boolean.TRUE, userId.trim()) != null;
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "查詢使用者時發生 SQL 異常: " + userId, e);
+            LOGGER.log(Level.SEVERE, "檢查使用者是否存在時發生 SQL 異常: " + userId, e);
+        } finally {
+            USER_EXISTS_TIMER.stop(start);
+        }
+        
+        return false;
+    }
+    
+    /**
+     * 取得使用者總數
+     * @return 使用者總數
+     * @throws SQLException SQL 異常
+     */
+    public long countUsers() throws SQLException {
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        
+        try {
+            pstmt = readConnection(null).prepareStatement(COUNT_USERS_SQL);
+            rs = pstmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
         } finally {
             closeResultSet(rs);
             closeStatement(pstmt);
         }
+    }
+    
+    /**
+     * 逐筆讀取全部使用者 ID（不會一次載入記憶體）
+     * @param consumer 處理每個 ID 的函式
+     * @throws SQLException SQL 異常
+     */
+    public void forEachUserId(Consumer<String> consumer) throws SQLException {
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
         
-        return null;
+        try {
+            pstmt = readConnection(null).prepareStatement(SELECT_ALL_USER_IDS_SQL);
+            pstmt.setFetchSize(ID_FETCH_SIZE);
+            
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                consumer.accept(rs.getString(1));
+            }
+        } finally {
+            closeResultSet(rs);
+            closeStatement(pstmt);
+        }
     }
     
     /**
@@ -137,31 +531,138 @@ public class UserDAO {
             return null;
         }
         
+        try {
+            // 假設密碼已經加密
+            User user = queryByKey(SELECT_USER_BY_CREDENTIALS_SQL, this::mapResultSetToUser, userId.trim(), password);
+            if (user != null) {
+                LOGGER.log(Level.INFO, "使用者登入成功: {0}", userId);
+                return user;
+            }
+            LOGGER.log(Level.WARNING, "使用者登入失敗: {0}", userId);
+            
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "驗證使用者時發生 SQL 異常: " + userId, e);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * 更新使用者密碼
+     * @param userId 使用者 ID
+     * @param hashedPassword 已雜湊的新密碼
+     * @return 是否更新成功
+     */
+    public boolean updatePassword(String userId, String hashedPassword) {
+        if (userId == null || userId.trim().isEmpty() || 
+            hashedPassword == null || hashedPassword.trim().isEmpty()) {
+            LOGGER.log(Level.WARNING, "更新密碼時提供了無效的參數");
+            return false;
+        }
+        
         PreparedStatement pstmt = null;
-        ResultSet rs = null;
+        long start = System.nanoTime();
         
         try {
-            pstmt = connection.prepareStatement(SELECT_USER_BY_CREDENTIALS_SQL);
-            pstmt.setString(1, userId.trim());
-            pstmt.setString(2, password); // 假設密碼已經加密
+            pstmt = connection.prepareStatement(UPDATE_PASSWORD_SQL);
+            pstmt.setString(1, hashedPassword);
+            pstmt.setString(2, userId.trim());
             
-            rs = pstmt.executeQuery();
+            int rowsAffected = pstmt.executeUpdate();
             
-            if (rs.next()) {
-                LOGGER.log(Level.INFO, "使用者登入成功: {0}", userId);
-                return mapResultSetToUser(rs);
+            if (rowsAffected > 0) {
+                recordWrite(userId.trim());
+                LOGGER.log(Level.INFO, "成功更新使用者密碼: {0}", userId);
+                return true;
             } else {
-                LOGGER.log(Level.WARNING, "使用者登入失敗: {0}", userId);
+                LOGGER.log(Level.WARNING, "更新密碼失敗，沒有資料列受影響: {0}", userId);
+                return false;
             }
             
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "驗證使用者時發生 SQL 異常: " + userId, e);
+            LOGGER.log(Level.SEVERE, "更新密碼時發生 SQL 異常: " + userId, e);
+            return false;
         } finally {
-            closeResultSet(rs);
             closeStatement(pstmt);
+            UPDATE_PASSWORD_TIMER.stop(start);
         }
-        
-        return null;
+    }
+    
+    /**
+     * 依主鍵查詢單筆資料
+     * 先在 readConnection(第一個參數) 上查詢；副本查詢失敗時改查主資料庫
+     * 副本查不到資料時，只有在副本可能落後（延遲未知或最近量測的延遲大於 0）時才再查主資料庫，
+     * 不存在的 ID（登入失敗、檢查 ID 是否可用）通常只需要一次查詢；
+     * 其他節點剛新增、延遲量測為 0 的副本尚未看到的資料列可能查不到，延遲不超過副本的複寫延遲
+     * @param sql 查詢語句（參數依序為 params）
+     * @param mapper 將目前資料列轉為結果的函式
+     * @param params 查詢參數，第一個為主鍵
+     * @return 結果，找不到時回傳 null
+     * @throws SQLException SQL 異常
+     */
+    private <T> T queryByKey(String sql, RowMapper<T> mapper, String... params) throws SQLException {
+        Connection target = readConnection(params[0]);
+        if (target != connection) {
+            try {
+                T result = queryOne(target, sql, mapper, params);
+                if (result != null || !((RoutingConnection) connection).replicaMayBeBehind()) {
+                    return result;
+                }
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "副本查詢失敗，改查主資料庫: {0}", e.getMessage());
+            }
+        }
+        return queryOne(connection, sql, mapper, params);
+    }
+    
+    private <T> T queryOne(Connection target, String sql, RowMapper<T> mapper, String... params) throws SQLException {
+        try (PreparedStatement pstmt = target.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setString(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapper.map(rs) : null;
+            }
+        }
+    }
+    
+    /**
+     * 取得查詢用的連線：讀寫分離時由路由連線決定使用副本或主資料庫，否則就是本 DAO 的連線
+     * @param key 查詢的主鍵，null 表示不需要讀取自己寫入的資料
+     * @return 查詢用的連線（不可關閉）
+     * @throws SQLException 連線已關閉
+     */
+    private Connection readConnection(String key) throws SQLException {
+        if (connection instanceof RoutingConnection) {
+            return ((RoutingConnection) connection).forRead(key);
+        }
+        return connection;
+    }
+    
+    /**
+     * 記錄已寫入的使用者 ID，讓之後的查詢在副本同步前讀取主資料庫
+     * @param userId 使用者 ID
+     */
+    private void recordWrite(String userId) {
+        if (connection instanceof RoutingConnection) {
+            ((RoutingConnection) connection).recordWrite(userId);
+        }
+    }
+    
+    /**
+     * 設定新增使用者的 SQL 參數
+     * @param pstmt PreparedStatement
+     * @param user 使用者物件
+     * @throws SQLException SQL 異常
+     */
+    private void setInsertParameters(PreparedStatement pstmt, User user) throws SQLException {
+        pstmt.setString(1, user.getId());
+        pstmt.setString(2, user.getName());
+        pstmt.setString(3, user.getPassword()); // 注意：密碼應該已經加密
+        pstmt.setString(4, user.getAddress());
+        pstmt.setString(5, user.getPhone());
+        pstmt.setString(6, user.getCreditCard());
+        pstmt.setString(7, user.getEmail());
     }
     
     /**
@@ -220,4 +721,16 @@ public class UserDAO {
             }
         }
     }
+    
+    private static Metrics.Timer queryTimer(String operation) {
+        return Metrics.timer("user_dao_query_seconds", "UserDAO 查詢耗時", "operation", operation);
+    }
+    
+    /**
+     * 將目前資料列轉為結果
+     */
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,166 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import util.AppConfig;
+import util.BloomFilter;
+import util.DaemonThreadFactory;
+
+/**
+ * 已存在使用者 ID 的布隆過濾器（行程內共用）
+ * 註冊時先查過濾器：確定不存在就不必查詢資料庫；可能存在才以 SELECT 1 確認
+ * 
+ * - 啟動時由背景執行緒從 users 表載入，載入完成前 isReady() 為 false，呼叫端應直接查詢資料庫
+ * - ID 以去除前後空白並轉小寫後的值存放，與 MySQL 預設不分大小寫的比對一致（只會增加可能存在的判斷）
+ * - 只記錄本行程看得到的新增；多台伺服器時其他節點新增的 ID 仍會由主鍵限制擋下
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class UserIdFilter {
+    private static final Logger LOGGER = Logger.getLogger(UserIdFilter.class.getName());
+    
+    private static final UserIdFilter INSTANCE = new UserIdFilter(
+        AppConfig.getBoolean("user.id.filter.enabled", true),
+        AppConfig.getLong("user.id.filter.expected.insertions", 1000000),
+        AppConfig.getString("user.id.filter.false.positive.rate", "0.01")
+    );
+    
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    
+    private volatile BloomFilter filter;
+    private volatile boolean ready;
+    
+    // 統計資料
+    private final AtomicLong definiteNegativeCount = new AtomicLong();
+    private final AtomicLong probablePositiveCount = new AtomicLong();
+    
+    private UserIdFilter(boolean enabled, long expectedInsertions, String falsePositiveRate) {
+        this.enabled = enabled;
+        this.expectedInsertions = Math.max(1, expectedInsertions);
+        this.falsePositiveRate = parseRate(falsePositiveRate);
+    }
+    
+    /**
+     * 取得共用實例
+     * @return 使用者 ID 過濾器
+     */
+    public static UserIdFilter getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 在背景執行緒從資料庫載入既有的使用者 ID，不阻塞應用程式啟動
+     */
+    public void loadInBackground() {
+        if (!enabled) {
+            LOGGER.log(Level.INFO, "未啟用使用者 ID 過濾器");
+            return;
+        }
+        
+        DaemonThreadFactory.named("user-id-filter-loader").newThread(() -> {
+            try (Connection connection = ConnectionProviders.getDefault().getConnection()) {
+                load(new UserDAO(connection));
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "載入使用者 ID 過濾器失敗，註冊時將直接查詢資料庫", e);
+            }
+        }).start();
+    }
+    
+    /**
+     * 從資料庫載入既有的使用者 ID
+     * 容量取設定值與目前筆數兩倍的較大者，保留成長空間
+     * @param userDAO 使用者資料存取物件
+     * @throws SQLException 查詢失敗
+     */
+    public void load(UserDAO userDAO) throws SQLException {
+        long startTime = System.nanoTime();
+        
+        long existing = userDAO.countUsers();
+        BloomFilter loading = new BloomFilter(Math.max(expectedInsertions, existing * 2), falsePositiveRate);
+        
+        // 先公開新的過濾器，載入期間的新增也會寫入；ready 之前不會被用來判斷不存在
+        ready = false;
+        filter = loading;
+        userDAO.forEachUserId(id -> loading.put(normalize(id)));
+        ready = true;
+        
+        LOGGER.log(Level.INFO, "使用者 ID 過濾器載入完成: {0} 筆, 位元數={1}, 雜湊數={2}, 耗時 {3} ms",
+                  new Object[]{loading.getInsertionCount(), loading.getBitSize(), loading.getHashCount(),
+                               (System.nanoTime() - startTime) / 1_000_000});
+    }
+    
+    /**
+     * 過濾器是否已可用來判斷「一定不存在」
+     * @return 是否可用
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * 判斷使用者 ID 是否可能存在
+     * @param userId 使用者 ID
+     * @return false 表示一定不存在；過濾器尚未就緒時一律回傳 true
+     */
+    public boolean mightExist(String userId) {
+        BloomFilter current = filter;
+        if (!ready || current == null || userId == null) {
+            return true;
+        }
+        
+        if (current.mightContain(normalize(userId))) {
+            probablePositiveCount.incrementAndGet();
+            return true;
+        }
+        definiteNegativeCount.incrementAndGet();
+        return false;
+    }
+    
+    /**
+     * 記錄新增的使用者 ID
+     * @param userId 使用者 ID
+     */
+    public void add(String userId) {
+        BloomFilter current = filter;
+        if (current != null && userId != null) {
+            current.put(normalize(userId));
+        }
+    }
+    
+    public long getDefiniteNegativeCount() { return definiteNegativeCount.get(); }
+    public long getProbablePositiveCount() { return probablePositiveCount.get(); }
+    
+    /**
+     * 依目前元素數量估算的誤判率
+     * @return 誤判率，尚未載入時回傳 1
+     */
+    public double getExpectedFalsePositiveRate() {
+        BloomFilter current = filter;
+        return ready && current != null ? current.getExpectedFalsePositiveRate() : 1.0;
+    }
+    
+    private static String normalize(String userId) {
+        return userId.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private static double parseRate(String value) {
+        try {
+            double rate = Double.parseDouble(value);
+            if (rate > 0 && rate < 1) {
+                return rate;
+            }
+        } catch (NumberFormatException e) {
+            // 使用預設值
+        }
+        LOGGER.log(Level.WARNING, "誤判率設定無效: {0}，使用 0.01", value);
+        return 0.01;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package exception;
+
+/**
+ * 商品圖片上傳異常類別
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class ImageUploadException extends PCShopException {
+    private static final long serialVersionUID = 1L;
+    
+    // 錯誤代碼常數
+    public static final String FILE_TOO_LARGE = "IMAGE_001";
+    public static final String UNSUPPORTED_FORMAT = "IMAGE_002";
+    public static final String INVALID_IMAGE = "IMAGE_003";
+    
+    public ImageUploadException(String errorCode, String message, String userMessage) {
+        super(errorCode, message, userMessage);
+    }
+    
+    public ImageUploadException(String errorCode, String message, String userMessage, Throwable cause) {
+        super(errorCode, message, userMessage, cause);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,218 @@
+package filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import util.DaemonThreadFactory;
+
+/**
+ * 存取日誌環狀緩衝區
+ * 請求執行緒只把欄位寫入預先配置的槽位，格式化與輸出由單一背景執行緒負責，請求執行緒不會等待 I/O
+ * 
+ * - 槽位在建立時一次配置完成，記錄時不配置物件
+ * - 多個請求執行緒以 compareAndSet 取得序號；緩衝區已滿時捨棄該筆記錄並計數，不阻塞請求
+ * - 每個槽位寫完後才發佈序號，背景執行緒依序讀取已發佈的槽位
+ * - 緩衝區沒有資料時背景執行緒停放，直到下一筆記錄發佈後由請求執行緒喚醒；閒置時不會定期醒來
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class AccessLogBuffer {
+    private static final Logger LOGGER = Logger.getLogger(AccessLogBuffer.class.getName());
+    
+    private final Slot[] slots;
+    private final int mask;
+    private final Consumer<String> sink;
+    
+    // 下一個可取得的序號（請求執行緒）與下一個要輸出的序號（背景執行緒）
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail;
+    
+    private final LongAdder droppedCount = new LongAdder();
+    private final AtomicLong writtenCount = new AtomicLong();
+    
+    private volatile boolean running;
+    private volatile Thread writer;
+    // 背景執行緒準備停放（或已停放）時為 true，請求執行緒發佈記錄後依此決定是否喚醒
+    private volatile boolean writerIdle;
+    
+    /**
+     * 建構函式
+     * @param capacity 槽位數量（調整為 2 的次方）
+     * @param sink 接收格式化後的日誌行（在背景執行緒上呼叫）
+     */
+    public AccessLogBuffer(int capacity, Consumer<String> sink) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        this.sink = sink;
+        
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+    }
+    
+    /**
+     * 啟動背景輸出執行緒
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        
+        running = true;
+        writer = DaemonThreadFactory.named("access-log-writer").newThread(this::drainLoop);
+        writer.start();
+    }
+    
+    /**
+     * 停止背景輸出執行緒，並輸出緩衝區中剩餘的記錄
+     * @param timeoutMillis 等待時間上限（毫秒）
+     */
+    public synchronized void stop(long timeoutMillis) {
+        if (!running) {
+            return;
+        }
+        
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 記錄一筆請求（在請求執行緒上呼叫，不阻塞）
+     * @param method HTTP 方法
+     * @param path 請求路徑
+     * @param status 回應狀態碼
+     * @param latencyNanos 處理時間（奈秒）
+     * @param bytes 回應位元組數
+     * @return 是否已放入緩衝區（緩衝區已滿時回傳 false）
+     */
+    public boolean record(String method, String path, int status, long latencyNanos, long bytes) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= slots.length) {
+                droppedCount.increment();
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+        
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.method = method;
+        slot.path = path;
+        slot.status = status;
+        slot.latencyNanos = latencyNanos;
+        slot.bytes = bytes;
+        slot.published = sequence;
+        
+        // 先發佈再檢查，背景執行緒先標記再檢查：兩邊至少有一邊會看到對方，不會遺漏喚醒
+        if (writerIdle) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+    
+    private void drainLoop() {
+        StringBuilder line = new StringBuilder(128);
+        while (running) {
+            if (drain(line) > 0) {
+                continue;
+            }
+            
+            writerIdle = true;
+            if (running && slots[(int) (tail & mask)].published != tail) {
+                LockSupport.park(this);
+            }
+            writerIdle = false;
+        }
+        // 關閉前輸出剩餘記錄
+        drain(line);
+    }
+    
+    /**
+     * 依序輸出已發佈的記錄
+     * @return 輸出的筆數
+     */
+    private int drain(StringBuilder line) {
+        int count = 0;
+        long next = tail;
+        
+        while (true) {
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.published != next) {
+                // 尚未寫入或尚未發佈
+                break;
+            }
+            
+            // 1. 讀出欄位並釋放槽位
+            line.setLength(0);
+            line.append(slot.method).append(' ')
+                .append(slot.path).append(' ')
+                .append(slot.status).append(' ');
+            appendMillis(line, slot.latencyNanos);
+            line.append("ms ").append(slot.bytes);
+            slot.method = null;
+            slot.path = null;
+            tail = ++next;
+            
+            // 2. 輸出；失敗只記錄，不影響後續記錄
+            try {
+                sink.accept(line.toString());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "輸出存取日誌失敗", e);
+            }
+            count++;
+        }
+        
+        writtenCount.addAndGet(count);
+        return count;
+    }
+    
+    /**
+     * 以毫秒附加處理時間（小數三位）
+     */
+    private static void appendMillis(StringBuilder line, long nanos) {
+        long micros = nanos / 1000;
+        line.append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) {
+            line.append('0');
+        }
+        if (fraction < 10) {
+            line.append('0');
+        }
+        line.append(fraction);
+    }
+    
+    // 統計資料
+    public long getDroppedCount() { return droppedCount.sum(); }
+    public long getWrittenCount() { return writtenCount.get(); }
+    public int getCapacity() { return slots.length; }
+    
+    @Override
+    public String toString() {
+        return String.format("AccessLogBuffer[capacity=%d, written=%d, dropped=%d]",
+                             getCapacity(), getWrittenCount(), getDroppedCount());
+    }
+    
+    /**
+     * 單筆記錄的槽位（published 在其他欄位寫入後才設定）
+     */
+    private static final class Slot {
+        volatile long published = -1;
+        String method;
+        String path;
+        int status;
+        long latencyNanos;
+        long bytes;
+    }
+}
\ No newline at end of file
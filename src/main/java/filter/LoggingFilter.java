@@ -0,0 +1,209 @@
+package filter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.slf4j.LoggerFactory;
+
+import util.AppConfig;
+
+/**
+ * 存取日誌過濾器
+ * 記錄每個請求的方法、路徑、狀態碼、處理時間與回應大小
+ * 
+ * 請求執行緒只把欄位放入 {@link AccessLogBuffer}，格式化與寫檔由背景執行緒經由 logback 的
+ * "access" logger 完成，不增加請求的延遲；非同步請求在完成時才記錄
+ * 回應大小為經過本過濾器輸出的位元組數（經由 getWriter 輸出時以字元數計）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class LoggingFilter implements Filter {
+    private static final Logger LOGGER = Logger.getLogger(LoggingFilter.class.getName());
+    
+    private static final org.slf4j.Logger ACCESS_LOG = LoggerFactory.getLogger("access");
+    
+    // 關閉時等待剩餘記錄輸出的時間（毫秒）
+    private static final long STOP_TIMEOUT_MS = 5000;
+    
+    private boolean enabled;
+    private AccessLogBuffer buffer;
+    
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        enabled = AppConfig.getBoolean("logging.access.enabled", true);
+        if (!enabled) {
+            LOGGER.log(Level.INFO, "存取日誌已停用");
+            return;
+        }
+        
+        buffer = new AccessLogBuffer(AppConfig.getInt("logging.access.buffer.size", 8192), ACCESS_LOG::info);
+        buffer.start();
+        LOGGER.log(Level.INFO, "存取日誌已啟用: 緩衝區 {0} 筆", buffer.getCapacity());
+    }
+    
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        
+        if (!enabled) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        long start = System.nanoTime();
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        CountingResponse countingResponse = new CountingResponse((HttpServletResponse) response);
+        boolean failed = true;
+        
+        try {
+            chain.doFilter(request, countingResponse);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                // 非同步請求：完成（含逾時與錯誤）時才記錄
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(httpRequest, countingResponse.getStatus(), start, countingResponse);
+                    }
+                    
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+                    
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+                    
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                // 例外會由容器轉為 500
+                record(httpRequest, failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : countingResponse.getStatus(),
+                       start, countingResponse);
+            }
+        }
+    }
+    
+    private void record(HttpServletRequest request, int status, long start, CountingResponse response) {
+        buffer.record(request.getMethod(), request.getRequestURI(), status,
+                      System.nanoTime() - start, response.getByteCount());
+    }
+    
+    @Override
+    public void destroy() {
+        if (buffer != null) {
+            buffer.stop(STOP_TIMEOUT_MS);
+            LOGGER.log(Level.INFO, "存取日誌統計: {0}", buffer);
+        }
+    }
+    
+    /**
+     * 計算回應大小的包裝
+     */
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        private long byteCount;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+        
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+        
+        long getByteCount() {
+            return byteCount;
+        }
+        
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        byteCount++;
+                    }
+                    
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        byteCount += len;
+                    }
+                    
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+                    
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+                    
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+                    
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        delegate.setWriteListener(writeListener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+        
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                Writer delegate = super.getWriter();
+                writer = new PrintWriter(new Writer() {
+                    @Override
+                    public void write(char[] cbuf, int off, int len) throws IOException {
+                        delegate.write(cbuf, off, len);
+                        byteCount += len;
+                    }
+                    
+                    @Override
+                    public void write(String str, int off, int len) throws IOException {
+                        delegate.write(str, off, len);
+                        byteCount += len;
+                    }
+                    
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+                    
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+                });
+            }
+            return writer;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,126 @@
+package filter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import util.AppConfig;
+import util.DaemonThreadFactory;
+import util.RateLimiter;
+import util.RequestUtil;
+
+/**
+ * API 限流過濾器
+ * 依 api.rate.limit.requests / api.rate.limit.window 限制每個用戶端 IP 的請求數，
+ * 超過時直接回應 429 與 Retry-After，請求不會進入 Servlet，不佔用資料庫連線與密碼雜湊
+ * 只計算 init-param methods 指定的方法（預設 POST）：瀏覽登入、註冊頁面（GET）不消耗權杖
+ * 
+ * 限流狀態以無鎖的權杖桶保存（見 {@link RateLimiter}），閒置的權杖桶由背景執行緒定期移除
+ * 設定檔重新載入時套用新的限額；api.rate.limit.enabled 只在啟動時讀取
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class RateLimitFilter implements Filter {
+    private static final Logger LOGGER = Logger.getLogger(RateLimitFilter.class.getName());
+    
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    
+    // 清除閒置權杖桶的最長間隔（秒）
+    private static final long MAX_EVICTION_INTERVAL_SECONDS = 60;
+    
+    private boolean enabled;
+    private Set<String> limitedMethods;
+    private RateLimiter limiter;
+    private ScheduledExecutorService evictor;
+    private final Runnable reconfigureOnReload = this::reconfigure;
+    
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        enabled = AppConfig.getBoolean("api.rate.limit.enabled", true);
+        if (!enabled) {
+            LOGGER.log(Level.INFO, "API 限流已停用");
+            return;
+        }
+        
+        String methods = filterConfig.getInitParameter("methods");
+        limitedMethods = Arrays.stream((methods != null ? methods : "POST").split(","))
+                               .map(method -> method.trim().toUpperCase(Locale.ROOT))
+                               .filter(method -> !method.isEmpty())
+                               .collect(Collectors.toSet());
+        
+        int requests = AppConfig.getInt("api.rate.limit.requests", 100);
+        long windowSeconds = AppConfig.getLong("api.rate.limit.window", 3600);
+        int maxClients = AppConfig.getInt("api.rate.limit.max.clients", 100000);
+        limiter = new RateLimiter(requests, TimeUnit.SECONDS.toMillis(windowSeconds), maxClients);
+        
+        // 背景清除閒置的權杖桶，不在請求執行緒上掃描
+        long interval = Math.max(1, Math.min(windowSeconds, MAX_EVICTION_INTERVAL_SECONDS));
+        evictor = Executors.newSingleThreadScheduledExecutor(DaemonThreadFactory.named("rate-limit-evictor"));
+        evictor.scheduleWithFixedDelay(limiter::evictIdle, interval, interval, TimeUnit.SECONDS);
+        
+        AppConfig.addReloadListener(reconfigureOnReload);
+        LOGGER.log(Level.INFO, "API 限流已啟用: 每個用戶端 {0} 次 / {1} 秒",
+                   new Object[]{requests, windowSeconds});
+    }
+    
+    /**
+     * 依目前設定調整限額（設定檔重新載入時呼叫）
+     */
+    private void reconfigure() {
+        int requests = AppConfig.getInt("api.rate.limit.requests", 100);
+        long windowSeconds = AppConfig.getLong("api.rate.limit.window", 3600);
+        limiter.reconfigure(requests, TimeUnit.SECONDS.toMillis(windowSeconds),
+                            AppConfig.getInt("api.rate.limit.max.clients", 100000));
+        LOGGER.log(Level.INFO, "API 限流已調整: 每個用戶端 {0} 次 / {1} 秒",
+                   new Object[]{requests, windowSeconds});
+    }
+    
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        
+        if (!enabled || !limitedMethods.contains(((HttpServletRequest) request).getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        long waitMillis = limiter.tryAcquire(RequestUtil.getClientIp((HttpServletRequest) request));
+        if (waitMillis == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        // 超過限制：不進入後續處理
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.setStatus(SC_TOO_MANY_REQUESTS);
+        httpResponse.setHeader("Retry-After", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(waitMillis + 999)));
+        httpResponse.setContentType("text/plain; charset=UTF-8");
+        httpResponse.getWriter().write("請求過於頻繁，請稍後再試");
+    }
+    
+    @Override
+    public void destroy() {
+        if (evictor != null) {
+            AppConfig.removeReloadListener(reconfigureOnReload);
+            evictor.shutdownNow();
+            LOGGER.log(Level.INFO, "API 限流統計: {0}", limiter);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,123 @@
+package filter;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import service.StaticAssetCache;
+import service.StaticAssetCache.Asset;
+import util.RequestUtil;
+
+/**
+ * 靜態資源過濾器：由 {@link StaticAssetCache} 的記憶體內容直接回應，不交給容器的 default servlet
+ * - 帶雜湊的網址（/css/style.{hash}.css）內容永不改變：Cache-Control: public, max-age=31536000, immutable
+ * - 原網址（/css/style.css）仍可使用，但要求每次重新驗證（public, no-cache），內容未變時回應 304
+ * - 用戶端接受 gzip 時回應預先壓縮的版本（Vary: Accept-Encoding，各版本的 ETag 不同）
+ * - 不在快取中的路徑與 GET、HEAD 以外的方法照常往下傳遞
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class StaticAssetFilter implements Filter {
+    
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "public, no-cache";
+    
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+    
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        String method = httpRequest.getMethod();
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        String path = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
+        Asset asset = StaticAssetCache.getInstance().find(path);
+        if (asset == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        boolean gzip = asset.hasGzip() && acceptsGzip(httpRequest.getHeader("Accept-Encoding"));
+        String etag = "\"" + asset.getHash() + (gzip ? "-gzip" : "") + "\"";
+        httpResponse.setHeader("Cache-Control", path.equals(asset.getFingerprintedPath()) ? IMMUTABLE : REVALIDATE);
+        httpResponse.setHeader("ETag", etag);
+        if (asset.hasGzip()) {
+            httpResponse.setHeader("Vary", "Accept-Encoding");
+        }
+        if (RequestUtil.matchesIfNoneMatch(httpRequest, etag)) {
+            httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        httpResponse.setContentType(asset.getContentType());
+        if (gzip) {
+            httpResponse.setHeader("Content-Encoding", "gzip");
+        }
+        httpResponse.setContentLength(asset.length(gzip));
+        if (head) {
+            return;
+        }
+        
+        asset.writeTo(httpResponse.getOutputStream(), gzip);
+    }
+    
+    /**
+     * Accept-Encoding 是否接受 gzip（q 不為 0）
+     * 明確列出的 gzip 優先於 *（例如 "*;q=0, gzip" 接受 gzip，"gzip;q=0, *" 不接受）
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzipQuality = -1;
+        double wildcardQuality = -1;
+        for (String candidate : acceptEncoding.split(",")) {
+            String[] parts = candidate.split(";");
+            String coding = parts[0].trim();
+            if (coding.equalsIgnoreCase("gzip")) {
+                gzipQuality = Math.max(gzipQuality, quality(parts));
+            } else if (coding.equals("*")) {
+                wildcardQuality = Math.max(wildcardQuality, quality(parts));
+            }
+        }
+        return gzipQuality >= 0 ? gzipQuality > 0 : wildcardQuality > 0;
+    }
+    
+    /**
+     * 取得 q 參數（未指定時為 1，格式錯誤時視為 0）
+     */
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+    
+    @Override
+    public void destroy() {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,161 @@
+package filter;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import bean.UserCredentials;
+import dao.ConnectionProviders;
+import dao.UserDAO;
+import util.AuthTokens;
+import util.AuthTokens.Claims;
+
+/**
+ * 無狀態登入權杖過濾器（security.session.mode=token 時生效）
+ * 從 Authorization: Bearer 標頭或 PCSHOP_AUTH Cookie 取得權杖並驗證簽章，
+ * 有效時以 getRemoteUser / getUserPrincipal / isUserInRole 提供登入身分，並設定 request 屬性 authUser
+ * 
+ * 驗證使用本機的金鑰與快取，不存取 Session；權杖無效時視為未登入
+ * 權杖的憑證戳記須與使用者目前的密碼相符（修改密碼即撤銷舊權杖）：
+ * 同一使用者每 security.token.revalidate.interval 秒最多查詢一次資料庫，
+ * 資料庫無法連線時沿用最後一次的結果，從未查詢過則暫時接受簽章有效的權杖
+ * 
+ * security.token.secret 格式錯誤時 init 失敗，應用程式不會以錯誤的金鑰啟動
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class TokenAuthFilter implements Filter {
+    private static final Logger LOGGER = Logger.getLogger(TokenAuthFilter.class.getName());
+    
+    private static final String BEARER_PREFIX = "Bearer ";
+    
+    private boolean enabled;
+    
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        enabled = AuthTokens.isEnabled();
+        if (enabled && AuthTokens.getConfigError() != null) {
+            throw new ServletException("無狀態登入權杖設定錯誤: " + AuthTokens.getConfigError());
+        }
+        LOGGER.log(Level.INFO, enabled ? "使用無狀態登入權杖" : "使用容器 Session 保存登入狀態");
+    }
+    
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        
+        if (!enabled) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        Claims claims = AuthTokens.verify(extractToken(httpRequest));
+        if (claims == null || !hasCurrentStamp(claims)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        request.setAttribute("authUser", claims);
+        chain.doFilter(new AuthenticatedRequest(httpRequest, claims), response);
+    }
+    
+    /**
+     * 權杖的憑證戳記是否與使用者目前的密碼相符
+     */
+    private static boolean hasCurrentStamp(Claims claims) {
+        String userId = claims.getUserId();
+        String stamp = AuthTokens.getKnownStamp(userId, false);
+        if (stamp == null) {
+            try (Connection conn = ConnectionProviders.getDefault().getConnection()) {
+                UserCredentials credentials = new UserDAO(conn).findCredentials(userId);
+                if (credentials == null) {
+                    // 使用者已刪除（或查詢失敗，UserDAO 已記錄）
+                    return false;
+                }
+                stamp = AuthTokens.credentialStamp(credentials.getPasswordHash());
+                AuthTokens.recordStamp(userId, stamp);
+            } catch (SQLException e) {
+                stamp = AuthTokens.getKnownStamp(userId, true);
+                LOGGER.log(Level.WARNING, "無法查詢權杖的憑證戳記，{0}: {1}",
+                           new Object[]{stamp != null ? "沿用上次的結果" : "暫時接受簽章有效的權杖", e.getMessage()});
+                if (stamp == null) {
+                    return true;
+                }
+            }
+        }
+        return stamp.equals(claims.getCredentialStamp());
+    }
+    
+    /**
+     * 取得權杖：優先使用 Authorization 標頭，其次使用 Cookie
+     */
+    private static String extractToken(HttpServletRequest request) {
+        String authorization = request.getHeader("Authorization");
+        if (authorization != null && authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return authorization.substring(BEARER_PREFIX.length()).trim();
+        }
+        
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (AuthTokens.COOKIE_NAME.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public void destroy() {
+    }
+    
+    /**
+     * 提供權杖身分的請求包裝
+     */
+    private static final class AuthenticatedRequest extends HttpServletRequestWrapper {
+        private final Claims claims;
+        private final Principal principal;
+        
+        AuthenticatedRequest(HttpServletRequest request, Claims claims) {
+            super(request);
+            this.claims = claims;
+            this.principal = claims::getUserId;
+        }
+        
+        @Override
+        public String getRemoteUser() {
+            return claims.getUserId();
+        }
+        
+        @Override
+        public Principal getUserPrincipal() {
+            return principal;
+        }
+        
+        @Override
+        public boolean isUserInRole(String role) {
+            return claims.hasRole(role);
+        }
+        
+        @Override
+        public String getAuthType() {
+            return "TOKEN";
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+package listener;
+
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+import org.slf4j.bridge.SLF4JBridgeHandler;
+
+import dao.ConnectionPool;
+import dao.ConnectionProviders;
+import dao.UserCache;
+import dao.UserIdFilter;
+import service.HealthMonitor;
+import service.LoginAttemptTracker;
+import service.MailDispatcher;
+import service.ProductCatalog;
+import service.ProductImageService;
+import service.ProductSearchIndex;
+import service.StaticAssetCache;
+import util.AppConfig;
+import util.Metrics;
+import util.PasswordHashExecutor;
+import util.PasswordUtil;
+
+/**
+ * 應用程式生命週期監聽器
+ * 負責在應用程式啟動時初始化共用元件，並在關閉時釋放背景執行緒等資源
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@WebListener
+public class ApplicationLifecycleListener implements ServletContextListener {
+    private static final Logger LOGGER = Logger.getLogger(ApplicationLifecycleListener.class.getName());
+    
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        // 從 web.xml 指定的設定檔載入設定並監看修改，之後各元件讀到的都是檔案中的最新設定
+        watchConfigFile(event.getServletContext());
+        
+        // 將 java.util.logging 導向 logback（非同步 appender），不在請求執行緒上寫檔
+        if (AppConfig.getBoolean("logging.jul.bridge.enabled", true)) {
+            SLF4JBridgeHandler.removeHandlersForRootLogger();
+            SLF4JBridgeHandler.install();
+        }
+        
+        LOGGER.log(Level.INFO, "應用程式啟動: {0}", event.getServletContext().getContextPath());
+        
+        // 預先建立密碼雜湊執行緒池，避免第一個請求承擔初始化成本
+        PasswordHashExecutor.getInstance();
+        
+        // 依目前硬體校準密碼雜湊迭代次數
+        PasswordUtil.calibrateFromConfig();
+        
+        // 背景載入既有使用者 ID，供註冊時快速判斷 ID 是否可用
+        UserIdFilter.getInstance().loadInBackground();
+        
+        if (Metrics.isEnabled()) {
+            registerGauges();
+        }
+        
+        // 註冊歡迎信等郵件由背景執行緒寄送
+        if (AppConfig.getBoolean("mail.enabled", false)) {
+            MailDispatcher.getInstance().start();
+        }
+        
+        // 商品列表由記憶體快照回應，背景依修改時間更新；搜尋索引隨目錄的變更更新，須在目錄啟動前註冊
+        if (AppConfig.getBoolean("product.catalog.enabled", true)) {
+            if (AppConfig.getBoolean("product.search.enabled", true)) {
+                ProductSearchIndex.getInstance().start();
+            }
+            ProductCatalog.getInstance().start();
+        }
+        
+        // 商品圖片上傳與縮圖（縮圖由有上限的背景執行緒池產生）
+        if (AppConfig.getBoolean("product.image.enabled", true)) {
+            ProductImageService.getInstance().start();
+        }
+        
+        // 預先壓縮 CSS、JavaScript 並產生帶內容雜湊的網址（頁面透過 application 屬性 assets 引用）
+        if (AppConfig.getBoolean("static.assets.enabled", true)) {
+            StaticAssetCache.getInstance().load(event.getServletContext());
+        }
+        
+        // 背景檢查資料庫連線，健康檢查端點只讀取結果
+        if (AppConfig.getBoolean("monitoring.enabled", true)) {
+            HealthMonitor.getInstance().start();
+        }
+    }
+    
+    /**
+     * 監看 web.xml 的 configFile 參數指定的設定檔
+     * 未解壓縮部署（getRealPath 為 null）時只使用 classpath 中的設定，修改後需重新部署
+     */
+    private void watchConfigFile(ServletContext context) {
+        String configFile = context.getInitParameter("configFile");
+        if (configFile == null) {
+            return;
+        }
+        
+        String realPath = context.getRealPath(configFile);
+        if (realPath == null) {
+            LOGGER.log(Level.INFO, "無法取得設定檔實體路徑，不監看修改: {0}", configFile);
+            return;
+        }
+        AppConfig.watch(Paths.get(realPath));
+    }
+    
+    /**
+     * 註冊共用元件的量測值（/metrics 輸出時才取值）
+     */
+    private void registerGauges() {
+        LoginAttemptTracker tracker = LoginAttemptTracker.getInstance();
+        Metrics.gauge("login_hashes_avoided_total", "因登入鎖定而省下的密碼雜湊次數", "counter",
+                      tracker::getHashesAvoided);
+        Metrics.gauge("login_lockouts_total", "登入鎖定次數", "counter", tracker::getLockoutCount);
+        Metrics.gauge("user_cache_hit_ratio", "使用者快取命中率", "gauge",
+                      () -> UserCache.getInstance().getHitRate());
+        Metrics.gauge("password_hash_queue_depth", "等待中的密碼雜湊工作數", "gauge",
+                      () -> PasswordHashExecutor.getInstance().getQueueDepth());
+        Metrics.gauge("mail_queue_depth", "等待寄送（含等待重試）的郵件數", "gauge",
+                      () -> MailDispatcher.getInstance().getQueueDepth());
+        Metrics.gauge("product_catalog_size", "商品目錄中上架的商品數", "gauge",
+                      () -> ProductCatalog.getInstance().getSize());
+        Metrics.gauge("product_catalog_age_seconds", "距離商品目錄最近一次成功更新的秒數", "gauge",
+                      () -> ProductCatalog.getInstance().getAgeSeconds());
+        Metrics.gauge("product_search_documents", "搜尋索引中的商品數", "gauge",
+                      () -> ProductSearchIndex.getInstance().getDocumentCount());
+        Metrics.gauge("product_image_resize_queue_depth", "等待中的縮圖工作數", "gauge",
+                      () -> ProductImageService.getInstance().getQueueDepth());
+        Metrics.gauge("product_image_mapped_bytes", "商品圖片記憶體映射的總大小（含已淘汰、尚未被 GC 解除的映射）", "gauge",
+                      () -> ProductImageService.getInstance().getMappedBytes());
+        Metrics.gauge("static_assets_bytes", "靜態資源快取（含 gzip 版本）的總大小", "gauge",
+                      () -> StaticAssetCache.getInstance().getBytes());
+        Metrics.gauge("db_pool_active_connections", "使用中的主資料庫連線數（未使用內建連線池時為 NaN）", "gauge", () -> {
+            ConnectionPool pool = ConnectionProviders.peekDefaultPool();
+            return pool != null ? pool.getActiveCount() : Double.NaN;
+        });
+    }
+    
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        LOGGER.log(Level.INFO, "應用程式關閉，釋放資源");
+        LOGGER.log(Level.INFO, "使用者快取統計: {0}", UserCache.getInstance());
+        LOGGER.log(Level.INFO, "登入失敗追蹤統計: {0}", LoginAttemptTracker.getInstance());
+        
+        HealthMonitor.getInstance().stop();
+        MailDispatcher.getInstance().stop();
+        ProductCatalog.getInstance().stop();
+        ProductSearchIndex.getInstance().stop();
+        ProductImageService.getInstance().stop();
+        PasswordHashExecutor.getInstance().shutdown();
+        ConnectionProviders.shutdown();
+        AppConfig.stopWatching();
+        
+        if (SLF4JBridgeHandler.isInstalled()) {
+            SLF4JBridgeHandler.uninstall();
+        }
+    }
+}
\ No newline at end of file
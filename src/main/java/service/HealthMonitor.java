@@ -0,0 +1,294 @@
+package service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import dao.ConnectionPool;
+import dao.ConnectionProvider;
+import dao.ConnectionProviders;
+import dao.RoutingConnectionProvider;
+import dao.UserCache;
+import util.AppConfig;
+import util.DaemonThreadFactory;
+import util.PasswordHashExecutor;
+
+/**
+ * 健康狀態監控
+ * - 資料庫連線檢查（database.validation.query）由背景執行緒每 monitoring.health.check.interval 秒執行一次，
+ *   探測請求只讀取最近一次的結果，不會同步存取資料庫
+ * - 連線池使用率、密碼雜湊佇列長度、快取命中率只是讀取計數器，在每次探測時即時計算
+ * - 讀寫分離的副本狀態只列在報告中；副本全部移出時讀取改用主資料庫，不影響就緒狀態
+ * - 任一項飽和、資料庫無法連線或檢查結果過舊時回報未就緒，讓負載平衡器把流量移到其他節點
+ * - 連線池飽和須持續 monitoring.health.pool.saturation.seconds 秒才回報，短暫的等待不會讓節點反覆進出負載平衡
+ * - 背景檢查等不到連線池的連線時回報連線池耗盡，而不是資料庫無法連線
+ * - 報告只列出錯誤類別，資料庫的原始錯誤訊息只寫入日誌
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class HealthMonitor {
+    private static final Logger LOGGER = Logger.getLogger(HealthMonitor.class.getName());
+    
+    private static final HealthMonitor INSTANCE = new HealthMonitor();
+    
+    // 檢查結果超過幾個檢查間隔未更新即視為過舊（背景執行緒卡住）
+    private static final int STALE_INTERVALS = 3;
+    
+    private final long intervalSeconds = Math.max(1, AppConfig.getLong("monitoring.health.check.interval", 60));
+    private final int queryTimeoutSeconds = AppConfig.getInt("monitoring.health.db.timeout", 5);
+    private final String validationQuery = AppConfig.getString("database.validation.query", "SELECT 1");
+    private final double poolSaturation = AppConfig.getDouble("monitoring.health.pool.saturation", 0.9);
+    private final long poolSaturationMillis =
+        TimeUnit.SECONDS.toMillis(AppConfig.getLong("monitoring.health.pool.saturation.seconds", 30));
+    private final double hashQueueSaturation = AppConfig.getDouble("monitoring.health.hash.queue.saturation", 0.8);
+    private final double minCacheHitRate = AppConfig.getDouble("monitoring.health.cache.min.hit.rate", 0.0);
+    
+    private volatile DatabaseStatus database = new DatabaseStatus(false, false, 0, "not checked", 0);
+    // 連線池開始飽和的時間（0 表示目前未飽和）
+    private volatile long poolSaturatedSince;
+    private ScheduledExecutorService scheduler;
+    
+    private HealthMonitor() {
+    }
+    
+    /**
+     * 取得共用實例
+     * @return 健康狀態監控
+     */
+    public static HealthMonitor getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 啟動背景資料庫檢查（立即執行第一次）
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(DaemonThreadFactory.named("health-monitor"));
+        scheduler.scheduleWithFixedDelay(this::checkDatabase, 0, intervalSeconds, TimeUnit.SECONDS);
+        LOGGER.log(Level.INFO, "健康狀態監控已啟動: 每 {0} 秒檢查資料庫", intervalSeconds);
+    }
+    
+    /**
+     * 停止背景檢查
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+    
+    /**
+     * 是否已啟動
+     * @return 是否已啟動
+     */
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+    
+    /**
+     * 執行一次資料庫檢查並更新結果
+     */
+    private void checkDatabase() {
+        long start = System.nanoTime();
+        try {
+            ConnectionProvider provider = ConnectionProviders.getDefault();
+            try (Connection conn = provider.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.setQueryTimeout(queryTimeoutSeconds);
+                stmt.execute(validationQuery);
+            }
+            database = new DatabaseStatus(true, false, elapsedMillis(start), null, System.currentTimeMillis());
+        } catch (ConnectionPool.PoolExhaustedException e) {
+            // 連線池耗盡時無法得知資料庫狀態，沿用上一次的結果
+            DatabaseStatus previous = database;
+            database = new DatabaseStatus(previous.reachable, true, elapsedMillis(start), "pool exhausted",
+                                          System.currentTimeMillis());
+            LOGGER.log(Level.WARNING, "資料庫健康檢查取不到連線: {0}", e.getMessage());
+        } catch (SQLException | RuntimeException e) {
+            database = new DatabaseStatus(false, false, elapsedMillis(start), errorCategory(e),
+                                          System.currentTimeMillis());
+            LOGGER.log(Level.WARNING, "資料庫健康檢查失敗: {0}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 對外報告的錯誤類別（不含資料庫的原始訊息，避免洩漏主機名稱、帳號或 SQL）
+     */
+    private static String errorCategory(Exception e) {
+        if (e instanceof SQLTimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof SQLException && ((SQLException) e).getSQLState() != null) {
+            return "SQLState " + ((SQLException) e).getSQLState();
+        }
+        return "error";
+    }
+    
+    /**
+     * 產生目前的健康報告（不存取資料庫）
+     * @return 健康報告
+     */
+    public HealthReport getReport() {
+        List<String> problems = new ArrayList<>();
+        Map<String, Object> details = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        
+        // 1. 資料庫（背景檢查結果）
+        DatabaseStatus db = database;
+        boolean stale = now - db.checkedAt > TimeUnit.SECONDS.toMillis(intervalSeconds * STALE_INTERVALS);
+        Map<String, Object> dbDetails = new LinkedHashMap<>();
+        dbDetails.put("reachable", db.reachable);
+        dbDetails.put("poolExhausted", db.poolExhausted);
+        dbDetails.put("latencyMillis", db.latencyMillis);
+        dbDetails.put("checkedAt", db.checkedAt);
+        if (db.error != null) {
+            dbDetails.put("error", db.error);
+        }
+        details.put("database", dbDetails);
+        if (db.poolExhausted) {
+            problems.add("connection pool exhausted");
+        } else if (!db.reachable) {
+            problems.add("database unreachable");
+        } else if (stale) {
+            problems.add("database check stale");
+        }
+        
+        // 2. 主資料庫連線池使用率（未使用內建連線池時略過）
+        ConnectionPool pool = ConnectionProviders.peekDefaultPool();
+        if (pool != null) {
+            double utilization = (double) pool.getActiveCount() / pool.getMaxSize();
+            Map<String, Object> poolDetails = new LinkedHashMap<>();
+            poolDetails.put("active", pool.getActiveCount());
+            poolDetails.put("idle", pool.getIdleCount());
+            poolDetails.put("max", pool.getMaxSize());
+            poolDetails.put("waiting", pool.getWaitingCount());
+            poolDetails.put("utilization", utilization);
+            details.put("connectionPool", poolDetails);
+            long saturatedMillis = trackPoolSaturation(
+                utilization >= poolSaturation || pool.getWaitingCount() > 0, now);
+            poolDetails.put("saturatedMillis", Math.max(0, saturatedMillis));
+            if (saturatedMillis >= 0 && saturatedMillis >= poolSaturationMillis) {
+                problems.add("connection pool saturated");
+            }
+        }
+        
+        // 3. 讀寫分離的副本（由 RoutingConnectionProvider 的背景檢查更新）
+        ConnectionProvider provider = ConnectionProviders.peekDefault();
+        if (provider instanceof RoutingConnectionProvider) {
+            List<Map<String, Object>> replicaDetails = new ArrayList<>();
+            for (RoutingConnectionProvider.Replica replica : ((RoutingConnectionProvider) provider).getReplicas()) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("name", replica.getName());
+                entry.put("healthy", replica.isHealthy());
+                entry.put("lagMillis", replica.getLagMillis());
+                entry.put("active", replica.getActiveCount());
+                replicaDetails.add(entry);
+            }
+            details.put("replicas", replicaDetails);
+        }
+        
+        // 4. 密碼雜湊佇列
+        PasswordHashExecutor hashExecutor = PasswordHashExecutor.getInstance();
+        double queueUsage = (double) hashExecutor.getQueueDepth() / hashExecutor.getQueueCapacity();
+        Map<String, Object> hashDetails = new LinkedHashMap<>();
+        hashDetails.put("queueDepth", hashExecutor.getQueueDepth());
+        hashDetails.put("queueCapacity", hashExecutor.getQueueCapacity());
+        hashDetails.put("active", hashExecutor.getActiveCount());
+        hashDetails.put("rejected", hashExecutor.getRejectedCount());
+        details.put("passwordHashing", hashDetails);
+        if (queueUsage >= hashQueueSaturation) {
+            problems.add("password hashing queue saturated");
+        }
+        
+        // 5. 使用者快取命中率（monitoring.health.cache.min.hit.rate > 0 時才影響就緒狀態）
+        UserCache cache = UserCache.getInstance();
+        Map<String, Object> cacheDetails = new LinkedHashMap<>();
+        cacheDetails.put("size", cache.getSize());
+        cacheDetails.put("hitRate", cache.getHitRate());
+        details.put("userCache", cacheDetails);
+        if (minCacheHitRate > 0 && cache.getHitCount() + cache.getMissCount() > 0
+            && cache.getHitRate() < minCacheHitRate) {
+            problems.add("user cache hit rate below " + minCacheHitRate);
+        }
+        
+        return new HealthReport(problems.isEmpty(), problems, details);
+    }
+    
+    /**
+     * 記錄連線池飽和開始的時間
+     * @param saturated 目前是否飽和
+     * @param now 目前時間
+     * @return 已持續飽和的毫秒數（未飽和時為 -1）
+     */
+    private long trackPoolSaturation(boolean saturated, long now) {
+        if (!saturated) {
+            poolSaturatedSince = 0;
+            return -1;
+        }
+        long since = poolSaturatedSince;
+        if (since == 0) {
+            poolSaturatedSince = now;
+            return 0;
+        }
+        return now - since;
+    }
+    
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * 最近一次資料庫檢查結果（不可變）
+     */
+    private static final class DatabaseStatus {
+        final boolean reachable;
+        final boolean poolExhausted;
+        final long latencyMillis;
+        final String error;
+        final long checkedAt;
+        
+        DatabaseStatus(boolean reachable, boolean poolExhausted, long latencyMillis, String error, long checkedAt) {
+            this.reachable = reachable;
+            this.poolExhausted = poolExhausted;
+            this.latencyMillis = latencyMillis;
+            this.error = error;
+            this.checkedAt = checkedAt;
+        }
+    }
+    
+    /**
+     * 健康報告
+     */
+    public static class HealthReport {
+        private final boolean ready;
+        private final List<String> problems;
+        private final Map<String, Object> details;
+        
+        HealthReport(boolean ready, List<String> problems, Map<String, Object> details) {
+            this.ready = ready;
+            this.problems = Collections.unmodifiableList(problems);
+            this.details = Collections.unmodifiableMap(details);
+        }
+        
+        public boolean isReady() { return ready; }
+        public List<String> getProblems() { return problems; }
+        public Map<String, Object> getDetails() { return details; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,302 @@
+package service;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import util.AppConfig;
+import util.BatchEviction;
+
+/**
+ * 登入失敗次數追蹤（防止暴力破解與撞庫攻擊）
+ * 鎖定只針對來源，不會鎖住整個帳號（否則任何人都能讓已知帳號無法登入）；
+ * 超過上限時在 security.lockout.duration 秒內拒絕該來源的登入：
+ * - 使用者 ID + 來源 IP：security.max.login.attempts
+ * - 來源 IP（不論帳號）：security.max.login.attempts.per.ip，避免同一來源嘗試大量帳號
+ * 
+ * 使用者 ID（不論來源）的失敗次數超過 security.max.login.attempts.per.user 時不鎖定帳號，
+ * 而是將該帳號的「使用者 ID + 來源 IP」上限降為 1：分散來源猜同一個帳號時每個來源只剩一次機會，
+ * 帳號本人從沒有失敗紀錄的來源仍可登入
+ * 
+ * 失敗次數以兩個時間桶（本期與上期）加權估算，超過一個鎖定期間後自然衰減；
+ * 每筆資料的更新由分段鎖保護；追蹤的鍵數量超過 security.login.tracker.max.entries 時，
+ * 先移除已過期的資料，仍不足時移除未鎖定的資料，記憶體用量有上限
+ * 
+ * 被鎖定的登入在查詢資料庫與驗證密碼之前就被拒絕，每次拒絕都省下一次完整的密碼雜湊
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class LoginAttemptTracker {
+    private static final Logger LOGGER = Logger.getLogger(LoginAttemptTracker.class.getName());
+    
+    private static final int STRIPES = 64;
+    
+    private static final LoginAttemptTracker INSTANCE = new LoginAttemptTracker(
+        AppConfig.getInt("security.max.login.attempts", 5),
+        AppConfig.getInt("security.max.login.attempts.per.user", 20),
+        AppConfig.getInt("security.max.login.attempts.per.ip", 50),
+        TimeUnit.SECONDS.toMillis(AppConfig.getLong("security.lockout.duration", 300)),
+        AppConfig.getInt("security.login.tracker.max.entries", 100000)
+    );
+    
+    private final int maxAttempts;
+    private final int maxAttemptsPerUser;
+    private final int maxAttemptsPerIp;
+    private final long lockoutMillis;
+    private final int maxEntries;
+    
+    private final Map<String, Attempts> entries = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+    private final BatchEviction eviction = new BatchEviction();
+    
+    // 統計資料
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong lockoutCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    
+    /**
+     * 建構函式
+     * @param maxAttempts 同一使用者 ID 與來源 IP 的失敗上限
+     * @param maxAttemptsPerUser 同一使用者 ID 的失敗次數超過此值時，該帳號每個來源只允許一次失敗
+     * @param maxAttemptsPerIp 同一來源 IP 的失敗上限
+     * @param lockoutMillis 鎖定時間（毫秒），同時也是失敗次數的計算期間
+     * @param maxEntries 追蹤的鍵數量上限
+     */
+    public LoginAttemptTracker(int maxAttempts, int maxAttemptsPerUser, int maxAttemptsPerIp,
+                               long lockoutMillis, int maxEntries) {
+        this.maxAttempts = maxAttempts;
+        this.maxAttemptsPerUser = maxAttemptsPerUser;
+        this.maxAttemptsPerIp = maxAttemptsPerIp;
+        this.lockoutMillis = lockoutMillis;
+        this.maxEntries = maxEntries;
+        
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+    
+    /**
+     * 取得依 app.properties 設定的共用實例
+     * @return 登入失敗追蹤
+     */
+    public static LoginAttemptTracker getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 檢查是否處於鎖定狀態（在查詢資料庫與驗證密碼之前呼叫）
+     * @param userId 使用者 ID
+     * @param clientIp 來源 IP，未知時為 null
+     * @return 剩餘鎖定毫秒數，0 表示允許登入
+     */
+    public long getRemainingLockMillis(String userId, String clientIp) {
+        if (maxAttempts <= 0) {
+            return 0;
+        }
+        
+        long now = System.currentTimeMillis();
+        long remaining = remainingLock(pairKey(userId, clientIp), now);
+        if (clientIp != null) {
+            remaining = Math.max(remaining, remainingLock(ipKey(clientIp), now));
+        }
+        
+        if (remaining > 0) {
+            rejectedCount.incrementAndGet();
+        }
+        return remaining;
+    }
+    
+    /**
+     * 記錄一次登入失敗（使用者不存在或密碼錯誤）
+     * @param userId 使用者 ID
+     * @param clientIp 來源 IP，未知時為 null
+     */
+    public void recordFailure(String userId, String clientIp) {
+        if (maxAttempts <= 0) {
+            return;
+        }
+        
+        failureCount.incrementAndGet();
+        long now = System.currentTimeMillis();
+        // 帳號層級的計數只用來收緊各來源的上限，本身不鎖定
+        double userFailures = increment(userKey(userId), Integer.MAX_VALUE, now);
+        boolean targeted = maxAttemptsPerUser > 0 && userFailures > maxAttemptsPerUser;
+        increment(pairKey(userId, clientIp), targeted ? 1 : maxAttempts, now);
+        if (clientIp != null) {
+            increment(ipKey(clientIp), maxAttemptsPerIp, now);
+        }
+    }
+    
+    /**
+     * 登入成功：清除該使用者 ID 與來源的失敗次數
+     * 來源 IP 的計數不清除，避免攻擊者以自己的帳號登入來重設計數
+     * @param userId 使用者 ID
+     * @param clientIp 來源 IP，未知時為 null
+     */
+    public void recordSuccess(String userId, String clientIp) {
+        entries.remove(pairKey(userId, clientIp));
+        entries.remove(userKey(userId));
+    }
+    
+    private long remainingLock(String key, long now) {
+        Attempts attempts = entries.get(key);
+        if (attempts == null) {
+            return 0;
+        }
+        synchronized (stripeFor(key)) {
+            return Math.max(0, attempts.lockedUntil - now);
+        }
+    }
+    
+    /**
+     * 增加失敗次數，達到上限時鎖定
+     * @return 增加後估算的失敗次數
+     */
+    private double increment(String key, int limit, long now) {
+        Attempts attempts = entries.get(key);
+        if (attempts == null) {
+            if (entries.size() >= maxEntries) {
+                eviction.run(() -> purge(now));
+            }
+            attempts = entries.computeIfAbsent(key, k -> new Attempts(now));
+        }
+        
+        synchronized (stripeFor(key)) {
+            attempts.roll(now, lockoutMillis);
+            attempts.current++;
+            double estimate = attempts.estimate(now, lockoutMillis);
+            
+            if (attempts.lockedUntil <= now && estimate >= limit) {
+                // 鎖定期間的嘗試不會被計數，解除後重新計算
+                attempts.lockedUntil = now + lockoutMillis;
+                attempts.current = 0;
+                attempts.previous = 0;
+                attempts.windowStart = now;
+                lockoutCount.incrementAndGet();
+                LOGGER.log(Level.WARNING, "登入失敗次數過多，暫時鎖定: {0}", key);
+            }
+            return estimate;
+        }
+    }
+    
+    /**
+     * 釋放空間：先移除已無計數且未鎖定的資料，仍超過上限時移除未鎖定的資料
+     */
+    private void purge(long now) {
+        int removed = 0;
+        Iterator<Map.Entry<String, Attempts>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Attempts> entry = iterator.next();
+            synchronized (stripeFor(entry.getKey())) {
+                Attempts attempts = entry.getValue();
+                attempts.roll(now, lockoutMillis);
+                if (attempts.lockedUntil <= now && attempts.current == 0 && attempts.previous == 0) {
+                    iterator.remove();
+                    removed++;
+                }
+            }
+        }
+        
+        // 仍然超過上限（大量不同的鍵）：保留鎖定中的資料，移除其餘資料
+        long target = BatchEviction.target(maxEntries);
+        iterator = entries.entrySet().iterator();
+        while (entries.size() > target && iterator.hasNext()) {
+            Map.Entry<String, Attempts> entry = iterator.next();
+            synchronized (stripeFor(entry.getKey())) {
+                if (entry.getValue().lockedUntil <= now) {
+                    iterator.remove();
+                    removed++;
+                }
+            }
+        }
+        
+        evictionCount.addAndGet(removed);
+    }
+    
+    private Object stripeFor(String key) {
+        return stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+    }
+    
+    private static String pairKey(String userId, String clientIp) {
+        return "p:" + normalize(userId) + "@" + (clientIp != null ? clientIp : "");
+    }
+    
+    private static String userKey(String userId) {
+        return "u:" + normalize(userId);
+    }
+    
+    private static String ipKey(String clientIp) {
+        return "i:" + clientIp;
+    }
+    
+    private static String normalize(String userId) {
+        return userId == null ? "" : userId.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    // 統計資料
+    public long getRejectedCount() { return rejectedCount.get(); }
+    public long getFailureCount() { return failureCount.get(); }
+    public long getLockoutCount() { return lockoutCount.get(); }
+    public long getEvictionCount() { return evictionCount.get(); }
+    public int getTrackedKeyCount() { return entries.size(); }
+    
+    /**
+     * 因鎖定而省下的密碼雜湊次數（每次被拒絕的登入都不會查詢資料庫或驗證密碼）
+     * @return 省下的雜湊次數
+     */
+    public long getHashesAvoided() {
+        return rejectedCount.get();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("LoginAttemptTracker[tracked=%d/%d, failures=%d, lockouts=%d, rejected=%d, evictions=%d]",
+                             getTrackedKeyCount(), maxEntries, getFailureCount(), getLockoutCount(),
+                             getRejectedCount(), getEvictionCount());
+    }
+    
+    /**
+     * 單一鍵的失敗次數（由分段鎖保護）
+     */
+    private static final class Attempts {
+        long windowStart;
+        int current;
+        int previous;
+        long lockedUntil;
+        
+        Attempts(long now) {
+            this.windowStart = now;
+        }
+        
+        /**
+         * 依經過時間切換時間桶
+         */
+        void roll(long now, long window) {
+            long elapsed = now - windowStart;
+            if (elapsed >= 2 * window) {
+                previous = 0;
+                current = 0;
+                windowStart = now;
+            } else if (elapsed >= window) {
+                previous = current;
+                current = 0;
+                windowStart += window;
+            }
+        }
+        
+        /**
+         * 估算最近一個期間內的失敗次數：本期 + 上期 x 上期仍在期間內的比例
+         */
+        double estimate(long now, long window) {
+            double previousWeight = 1.0 - (double) (now - windowStart) / window;
+            return current + previous * Math.max(0.0, previousWeight);
+        }
+    }
+}
\ No newline at end of file
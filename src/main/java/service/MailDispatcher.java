@@ -0,0 +1,364 @@
+package service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bean.MailMessage;
+import dao.MailJournal;
+import util.AppConfig;
+import util.DaemonThreadFactory;
+import util.Metrics;
+import util.SmtpClient;
+
+/**
+ * 背景郵件寄送
+ * - {@link #enqueue(String, String, String)} 只把郵件附加到郵件日誌（mail.journal.file）並放入佇列，
+ *   不連線 SMTP，呼叫端（註冊請求）的延遲不受郵件伺服器影響
+ * - 單一背景執行緒每次取出最多 mail.batch.size 封已到期的郵件，在同一條 SMTP 連線上連續寄送；
+ *   連線閒置超過 mail.smtp.idle.timeout 才關閉
+ * - 暫時性失敗以指數退避重試（mail.retry.initial.delay 起、最多 mail.retry.max.delay），
+ *   超過 mail.retry.max.attempts 次或伺服器回應永久性錯誤時放棄
+ * - 日誌的 fsync 由背景執行緒合併執行；重新啟動時未完成的郵件會重新寄送
+ * - 郵件日誌由寄送執行緒在結束時關閉，停止時不會在寄送中途關閉日誌
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class MailDispatcher {
+    private static final Logger LOGGER = Logger.getLogger(MailDispatcher.class.getName());
+    
+    private static final MailDispatcher INSTANCE = new MailDispatcher();
+    
+    // 佇列沒有到期郵件時的等待時間（也是日誌同步與閒置檢查的間隔）
+    private static final long POLL_MILLIS = 200;
+    // 連線最近使用過時直接沿用，不先送 NOOP 檢查
+    private static final long REUSE_WITHOUT_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // 關閉時等待寄送執行緒結束的時間（毫秒）
+    private static final long STOP_TIMEOUT_MS = 5000;
+    
+    private static final Metrics.Counter MAIL_SENT = outcome("sent");
+    private static final Metrics.Counter MAIL_RETRY = outcome("retry");
+    private static final Metrics.Counter MAIL_FAILED = outcome("failed");
+    private static final Metrics.Timer MAIL_SESSION = Metrics.timer(
+        "mail_batch_seconds", "每批郵件的 SMTP 寄送耗時", null, null);
+    
+    private final DelayQueue<Pending> queue = new DelayQueue<>();
+    private volatile MailJournal journal;
+    private volatile boolean running;
+    private Thread worker;
+    
+    // 以下只由寄送執行緒使用
+    private SmtpClient client;
+    private long lastUsedNanos;
+    private int batchSize;
+    private int maxAttempts;
+    private long initialDelayMillis;
+    private long maxDelayMillis;
+    private long idleTimeoutNanos;
+    
+    private MailDispatcher() {
+    }
+    
+    /**
+     * 取得共用實例
+     * @return 郵件寄送
+     */
+    public static MailDispatcher getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 開啟郵件日誌、載入未完成的郵件並啟動寄送執行緒
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (worker != null && worker.isAlive()) {
+            LOGGER.log(Level.WARNING, "上一個寄送執行緒尚未結束，暫不啟動郵件寄送");
+            return;
+        }
+        
+        try {
+            journal = new MailJournal(Paths.get(AppConfig.getString("mail.journal.file", "/tmp/pcshop/mail/outbox.journal")));
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "無法開啟郵件日誌，停用郵件寄送", e);
+            return;
+        }
+        
+        batchSize = Math.max(1, AppConfig.getInt("mail.batch.size", 20));
+        maxAttempts = Math.max(1, AppConfig.getInt("mail.retry.max.attempts", 8));
+        initialDelayMillis = Math.max(1, AppConfig.getLong("mail.retry.initial.delay", 5000));
+        maxDelayMillis = Math.max(initialDelayMillis, AppConfig.getLong("mail.retry.max.delay", 600000));
+        idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(AppConfig.getLong("mail.smtp.idle.timeout", 30000));
+        
+        boolean auth = AppConfig.getBoolean("mail.smtp.auth", false);
+        client = new SmtpClient(
+            AppConfig.getString("mail.smtp.host", "localhost"),
+            AppConfig.getInt("mail.smtp.port", 25),
+            AppConfig.getInt("mail.smtp.timeout", 10000),
+            AppConfig.getBoolean("mail.smtp.starttls.enable", false),
+            auth ? AppConfig.getString("mail.smtp.username", null) : null,
+            auth ? AppConfig.getString("mail.smtp.password", null) : null,
+            AppConfig.getString("mail.from.address", "noreply@localhost"),
+            AppConfig.getString("mail.from.name", null)
+        );
+        
+        // 上次未寄出的郵件立即重試
+        for (MailMessage message : journal.getPending()) {
+            queue.add(new Pending(message, 0));
+        }
+        
+        running = true;
+        worker = DaemonThreadFactory.named("mail-dispatcher").newThread(this::dispatchLoop);
+        worker.start();
+        LOGGER.log(Level.INFO, "郵件寄送已啟動: 待寄 {0} 封", queue.size());
+    }
+    
+    /**
+     * 停止寄送執行緒（未寄出的郵件留在日誌中，下次啟動時寄送）
+     * 先等待目前這批寄送完成；逾時則中斷 SMTP 連線再等待一次。郵件日誌由寄送執行緒結束時關閉
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        
+        // 不中斷寄送執行緒：中斷會讓郵件日誌的 FileChannel 被關閉（ClosedByInterruptException），
+        // 已寄出的郵件來不及標記完成。執行緒最多 POLL_MILLIS 內會看到 running 並結束
+        running = false;
+        try {
+            worker.join(STOP_TIMEOUT_MS);
+            if (worker.isAlive()) {
+                client.abort();
+                worker.join(STOP_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            LOGGER.log(Level.SEVERE, "寄送執行緒未在時間內結束，郵件日誌將在它結束時關閉");
+        }
+        queue.clear();
+        LOGGER.log(Level.INFO, "郵件寄送已停止: {0}", this);
+    }
+    
+    /**
+     * 是否已啟動
+     * @return 是否已啟動
+     */
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * 加入一封待寄郵件（寫入郵件日誌後立即回傳，不等待寄送）
+     * @param to 收件者地址
+     * @param subject 主旨
+     * @param body 純文字內容
+     * @return 是否已加入；未啟動、地址無效或寫入日誌失敗時回傳 false
+     */
+    public boolean enqueue(String to, String subject, String body) {
+        MailJournal current = journal;
+        if (!running || current == null) {
+            return false;
+        }
+        if (!SmtpClient.isValidAddress(to)) {
+            LOGGER.log(Level.WARNING, "郵件地址無效，不寄送: {0}", to);
+            return false;
+        }
+        
+        try {
+            queue.add(new Pending(current.append(to, subject, body), 0));
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "寫入郵件日誌失敗: " + to, e);
+            return false;
+        }
+    }
+    
+    private void dispatchLoop() {
+        List<Pending> drained = new ArrayList<>(batchSize);
+        List<MailMessage> batch = new ArrayList<>(batchSize);
+        
+        while (running) {
+            try {
+                Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                
+                // 1. 合併同步這段期間加入的郵件
+                journal.sync();
+                
+                if (first == null) {
+                    // 2. 沒有到期的郵件：關閉閒置連線、清理日誌
+                    closeIfIdle();
+                    journal.compact();
+                    continue;
+                }
+                
+                // 3. 取出其餘已到期的郵件，同一條連線連續寄送
+                drained.clear();
+                batch.clear();
+                batch.add(first.message);
+                queue.drainTo(drained, batchSize - 1);
+                for (Pending pending : drained) {
+                    batch.add(pending.message);
+                }
+                deliver(batch);
+                
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "郵件寄送發生錯誤", e);
+            }
+        }
+        
+        // 寄送已結束，才可以關閉日誌
+        client.close();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "關閉郵件日誌失敗", e);
+        }
+    }
+    
+    /**
+     * 寄送一批郵件並依結果更新日誌與佇列
+     */
+    private void deliver(List<MailMessage> batch) throws IOException {
+        long start = System.nanoTime();
+        List<SmtpClient.Result> results;
+        if (ensureConnected()) {
+            results = client.send(batch);
+            lastUsedNanos = System.nanoTime();
+        } else {
+            results = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                results.add(SmtpClient.Result.TRANSIENT_FAILURE);
+            }
+        }
+        MAIL_SESSION.stop(start);
+        
+        for (int i = 0; i < batch.size(); i++) {
+            MailMessage message = batch.get(i);
+            switch (results.get(i)) {
+                case SENT:
+                    journal.markDone(message.getId());
+                    MAIL_SENT.increment();
+                    break;
+                case PERMANENT_FAILURE:
+                    journal.markDone(message.getId());
+                    MAIL_FAILED.increment();
+                    LOGGER.log(Level.WARNING, "郵件被拒絕，不再重試: {0}（{1}）",
+                              new Object[]{message.getTo(), client.getLastError()});
+                    break;
+                default:
+                    retry(message);
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * 暫時性失敗：記錄嘗試次數並以指數退避重新排入佇列
+     */
+    private void retry(MailMessage message) throws IOException {
+        int attempts = message.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            journal.markDone(message.getId());
+            MAIL_FAILED.increment();
+            LOGGER.log(Level.WARNING, "郵件重試 {0} 次仍失敗，放棄寄送: {1}（{2}）",
+                      new Object[]{attempts, message.getTo(), client.getLastError()});
+            return;
+        }
+        
+        journal.markRetry(message.getId(), attempts);
+        MAIL_RETRY.increment();
+        queue.add(new Pending(message.withAttempts(attempts), backoffMillis(attempts)));
+    }
+    
+    /**
+     * 第 attempts 次失敗後的等待時間（指數退避，加上 ±20% 隨機值避免同時重試）
+     */
+    private long backoffMillis(int attempts) {
+        long delay = initialDelayMillis << Math.min(attempts - 1, 30);
+        if (delay <= 0 || delay > maxDelayMillis) {
+            delay = maxDelayMillis;
+        }
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return (long) (delay * jitter);
+    }
+    
+    /**
+     * 確保有可用的 SMTP 連線：最近使用過的連線直接沿用，較久未使用的先以 NOOP 確認
+     */
+    private boolean ensureConnected() {
+        if (client.isConnected()
+            && (System.nanoTime() - lastUsedNanos < REUSE_WITHOUT_CHECK_NANOS || client.isUsable())) {
+            return true;
+        }
+        
+        try {
+            client.connect();
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "無法連線到 SMTP 伺服器: {0}", e.getMessage());
+            client.close();
+            return false;
+        }
+    }
+    
+    private void closeIfIdle() {
+        if (client.isConnected() && System.nanoTime() - lastUsedNanos > idleTimeoutNanos) {
+            client.close();
+        }
+    }
+    
+    // 統計資料
+    public int getQueueDepth() { return queue.size(); }
+    public long getSentCount() { return MAIL_SENT.get(); }
+    public long getRetryCount() { return MAIL_RETRY.get(); }
+    public long getFailedCount() { return MAIL_FAILED.get(); }
+    
+    @Override
+    public String toString() {
+        return String.format("MailDispatcher[queued=%d, sent=%d, retries=%d, failed=%d]",
+                             getQueueDepth(), getSentCount(), getRetryCount(), getFailedCount());
+    }
+    
+    private static Metrics.Counter outcome(String result) {
+        return Metrics.counter("mail_messages_total", "郵件寄送結果", "result", result);
+    }
+    
+    /**
+     * 佇列中的郵件與下次寄送時間
+     */
+    private static final class Pending implements Delayed {
+        final MailMessage message;
+        final long dueNanos;
+        
+        Pending(MailMessage message, long delayMillis) {
+            this.message = message;
+            this.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+        
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        
+        @Override
+        public int compareTo(Delayed other) {
+            Pending that = (Pending) other;
+            int order = Long.compare(dueNanos - that.dueNanos, 0);
+            return order != 0 ? order : Long.compare(message.getId(), that.message.getId());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,554 @@
+package service;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bean.Product;
+import dao.ConnectionProviders;
+import dao.ProductDAO;
+import util.AppConfig;
+import util.DaemonThreadFactory;
+import util.Metrics;
+
+/**
+ * 商品目錄（記憶體中的唯讀快照）
+ * - 列表、分類瀏覽與商品詳情只讀取目前的快照，不存取資料庫
+ * - 快照不可變：每個分類各排序方式預先排好的陣列與依 ID 的對照表；更新時複製並替換（copy-on-write），
+ *   讀取端只讀一次 volatile 欄位，不需要任何鎖
+ * - 背景執行緒每 product.catalog.refresh.interval 秒依 updated_at 水位讀取變更的商品，
+ *   只重建有變更的分類（與已排序陣列合併，不重新排序）；沒有變更時快照版本不變
+ * - 分頁使用鍵集（seek）：游標為上一頁最後一筆的排序鍵，以二分搜尋找到下一頁的起點，
+ *   翻到第幾頁的成本都相同，商品在翻頁期間新增或移除也不會重複或跳過其他商品
+ * - 由商品衍生的索引（例如搜尋）以 {@link #addChangeListener(ChangeListener)} 取得每次套用的變更
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class ProductCatalog {
+    private static final Logger LOGGER = Logger.getLogger(ProductCatalog.class.getName());
+    
+    private static final ProductCatalog INSTANCE = new ProductCatalog();
+    
+    private static final Metrics.Timer INCREMENTAL_REFRESH_TIMER = refreshTimer("incremental");
+    private static final Metrics.Timer FULL_RELOAD_TIMER = refreshTimer("full");
+    private static final Metrics.Counter CHANGES_COUNTER =
+        Metrics.counter("product_catalog_changes_total", "套用到商品目錄的商品變更數", "source", "database");
+    
+    private final long refreshIntervalSeconds = Math.max(1, AppConfig.getLong("product.catalog.refresh.interval", 10));
+    private final long overlapMillis = Math.max(0, AppConfig.getLong("product.catalog.refresh.overlap", 5000));
+    private final long fullReloadMillis =
+        TimeUnit.SECONDS.toMillis(Math.max(0, AppConfig.getLong("product.catalog.full.reload.interval", 3600)));
+    private final int fetchSize = Math.max(1, AppConfig.getInt("product.catalog.fetch.size", 1000));
+    
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object refreshLock = new Object();
+    private volatile Snapshot snapshot;
+    private long lastFullReload;
+    private ScheduledExecutorService scheduler;
+    
+    private ProductCatalog() {
+    }
+    
+    /**
+     * 取得共用實例
+     * @return 商品目錄
+     */
+    public static ProductCatalog getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 啟動背景更新（立即載入全部商品）
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(DaemonThreadFactory.named("product-catalog-refresh"));
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshIntervalSeconds, TimeUnit.SECONDS);
+        LOGGER.log(Level.INFO, "商品目錄已啟動: 每 {0} 秒更新", refreshIntervalSeconds);
+    }
+    
+    /**
+     * 停止背景更新（保留目前的快照）
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+    
+    /**
+     * 立即從資料庫更新一次：第一次或到了完整重新載入的時間時讀取全部商品，否則只讀取變更
+     * 失敗時保留目前的快照
+     */
+    public void refresh() {
+        synchronized (refreshLock) {
+            Snapshot current = snapshot;
+            long now = System.currentTimeMillis();
+            boolean full = current == null || (fullReloadMillis > 0 && now - lastFullReload >= fullReloadMillis);
+            long start = System.nanoTime();
+            
+            try (Connection connection = ConnectionProviders.getDefault().getConnection()) {
+                ProductDAO productDAO = new ProductDAO(connection);
+                List<Product> products = new ArrayList<>();
+                
+                if (full) {
+                    productDAO.forEachChangedSince(0, fetchSize, products::add);
+                    snapshot = Snapshot.build(products, current == null ? 1 : current.version + 1, now);
+                    lastFullReload = now;
+                    FULL_RELOAD_TIMER.stop(start);
+                    LOGGER.log(Level.INFO, "商品目錄已載入: {0} 項商品，{1} 個分類",
+                               new Object[]{snapshot.byId.size(), snapshot.categories.size()});
+                    notifyListeners(Collections.emptyList(), true);
+                } else {
+                    // 從水位往前重疊讀取，涵蓋修改時間較早但較晚提交（或較晚同步到副本）的交易
+                    productDAO.forEachChangedSince(Math.max(0, current.watermark - overlapMillis), fetchSize, products::add);
+                    List<Product> changes = new ArrayList<>();
+                    snapshot = current.apply(products, now, changes);
+                    INCREMENTAL_REFRESH_TIMER.stop(start);
+                    if (!changes.isEmpty()) {
+                        notifyListeners(Collections.unmodifiableList(changes), false);
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "商品目錄更新失敗，繼續使用現有快照: {0}", e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 註冊快照替換後要通知的監聽者（在更新執行緒上呼叫，呼叫時 {@link #getVersion()} 已是新版本）
+     * @param listener 監聽者
+     */
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * 移除快照變更監聽者
+     * @param listener 先前註冊的監聽者
+     */
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    private void notifyListeners(List<Product> changes, boolean reloaded) {
+        for (ChangeListener listener : listeners) {
+            try {
+                listener.catalogChanged(changes, reloaded);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "商品目錄變更通知失敗", e);
+            }
+        }
+    }
+    
+    /**
+     * 是否已載入商品（第一次載入完成前列表無法回應）
+     * @return 是否已載入
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+    
+    /**
+     * 取得一頁商品
+     * @param category 分類，null 表示全部商品
+     * @param sort 排序方式
+     * @param cursor 上一頁的 nextCursor，null 表示第一頁
+     * @param size 每頁筆數（應先以 {@link #clampPageSize(int)} 限制）
+     * @return 商品頁；尚未載入時為空頁
+     * @throws IllegalArgumentException 游標格式錯誤
+     */
+    public Page getPage(String category, Sort sort, String cursor, int size) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return new Page(Collections.emptyList(), null, 0, 0);
+        }
+        
+        Index index = category == null ? current.all : current.categories.get(category);
+        if (index == null) {
+            return new Page(Collections.emptyList(), null, current.version, 0);
+        }
+        
+        Product[] products = index.bySort[sort.ordinal()];
+        int from = 0;
+        if (cursor != null) {
+            int position = Arrays.binarySearch(products, sort.probe(cursor), sort.order);
+            from = position >= 0 ? position + 1 : -position - 1;
+        }
+        int to = Math.min(products.length, from + Math.max(1, size));
+        
+        List<Product> items = from < to
+                ? Collections.unmodifiableList(Arrays.asList(Arrays.copyOfRange(products, from, to)))
+                : Collections.emptyList();
+        String nextCursor = to < products.length ? sort.cursorOf(products[to - 1]) : null;
+        return new Page(items, nextCursor, current.version, products.length);
+    }
+    
+    /**
+     * 取得全部上架中的商品（依 ID 由大到小，不複製快照中的陣列）
+     * @return 商品清單，尚未載入時為空清單
+     */
+    public List<Product> getProducts() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(current.all.bySort[Sort.NEWEST.ordinal()]));
+    }
+    
+    /**
+     * 依 ID 取得上架中的商品
+     * @param id 商品 ID
+     * @return 商品，找不到或尚未載入時回傳 null
+     */
+    public Product getProduct(long id) {
+        Snapshot current = snapshot;
+        return current != null ? current.byId.get(id) : null;
+    }
+    
+    /**
+     * 取得各分類的商品數（依分類名稱排序）
+     * @return 分類名稱對商品數
+     */
+    public Map<String, Integer> getCategories() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        current.categories.forEach((name, index) -> counts.put(name, index.size()));
+        return counts;
+    }
+    
+    /**
+     * 將要求的每頁筆數限制在 pagination.max.size 以內，未指定（小於 1）時使用 pagination.default.size
+     * @param requested 要求的筆數
+     * @return 實際筆數
+     */
+    public int clampPageSize(int requested) {
+        int max = Math.max(1, AppConfig.getInt("pagination.max.size", 100));
+        if (requested < 1) {
+            return Math.min(max, Math.max(1, AppConfig.getInt("pagination.default.size", 20)));
+        }
+        return Math.min(max, requested);
+    }
+    
+    // 統計資料
+    public long getVersion() { Snapshot current = snapshot; return current != null ? current.version : 0; }
+    public long getFingerprint() { Snapshot current = snapshot; return current != null ? current.fingerprint : 0; }
+    public int getSize() { Snapshot current = snapshot; return current != null ? current.byId.size() : 0; }
+    
+    /**
+     * @return 距離最近一次成功更新的秒數，尚未載入時為 NaN
+     */
+    public double getAgeSeconds() {
+        Snapshot current = snapshot;
+        return current != null ? (System.currentTimeMillis() - current.refreshedAt) / 1000.0 : Double.NaN;
+    }
+    
+    private static Metrics.Timer refreshTimer(String type) {
+        return Metrics.timer("product_catalog_refresh_seconds", "商品目錄更新耗時", "type", type);
+    }
+    
+    /**
+     * 快照變更監聽者
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+        /**
+         * 快照已替換
+         * @param changes 有變更的商品（已下架或移除的商品 isActive 為 false）；reloaded 為 true 時為空清單
+         * @param reloaded 是否重新載入了全部商品（應以 {@link ProductCatalog#getProducts()} 重建）
+         */
+        void catalogChanged(List<Product> changes, boolean reloaded);
+    }
+    
+    /**
+     * 排序方式
+     */
+    public enum Sort {
+        /** 最新上架（ID 由大到小） */
+        NEWEST(Comparator.comparingLong(Product::getId).reversed()),
+        /** 價格由低到高 */
+        PRICE_ASC(Comparator.comparing(Product::getPrice).thenComparingLong(Product::getId)),
+        /** 價格由高到低 */
+        PRICE_DESC(Comparator.comparing(Product::getPrice).thenComparingLong(Product::getId).reversed());
+        
+        private final Comparator<Product> order;
+        
+        Sort(Comparator<Product> order) {
+            this.order = order;
+        }
+        
+        /**
+         * 解析排序參數（不分大小寫），null 或空字串為 NEWEST
+         * @param value 參數值
+         * @return 排序方式
+         * @throws IllegalArgumentException 不支援的排序方式
+         */
+        public static Sort parse(String value) {
+            if (value == null || value.isEmpty()) {
+                return NEWEST;
+            }
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+        
+        /**
+         * 產生游標：NEWEST 為 ID，依價格排序時為「價格_ID」
+         */
+        String cursorOf(Product product) {
+            if (this == NEWEST) {
+                return Long.toString(product.getId());
+            }
+            return product.getPrice().toPlainString() + "_" + product.getId();
+        }
+        
+        /**
+         * 將游標還原為只有排序鍵的商品，供二分搜尋比較
+         */
+        Product probe(String cursor) {
+            try {
+                if (this == NEWEST) {
+                    return new Product(Long.parseLong(cursor), null, null, null, 0, null, null, true, 0);
+                }
+                int separator = cursor.lastIndexOf('_');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("游標格式錯誤: " + cursor);
+                }
+                return new Product(Long.parseLong(cursor.substring(separator + 1)), null, null,
+                                   new BigDecimal(cursor.substring(0, separator)), 0, null, null, true, 0);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("游標格式錯誤: " + cursor, e);
+            }
+        }
+    }
+    
+    /**
+     * 一頁商品
+     */
+    public static final class Page {
+        private final List<Product> items;
+        private final String nextCursor;
+        private final long version;
+        private final int total;
+        
+        Page(List<Product> items, String nextCursor, long version, int total) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+            this.version = version;
+            this.total = total;
+        }
+        
+        public List<Product> getItems() { return items; }
+        /** @return 下一頁的游標，沒有下一頁時為 null */
+        public String getNextCursor() { return nextCursor; }
+        /** @return 產生此頁的快照版本 */
+        public long getVersion() { return version; }
+        /** @return 分類（或全部）的商品總數 */
+        public int getTotal() { return total; }
+    }
+    
+    /**
+     * 一個分類（或全部商品）依各排序方式排好的陣列，索引為 {@link Sort#ordinal()}
+     */
+    private static final class Index {
+        private static final Index EMPTY = new Index(new Product[Sort.values().length][0]);
+        
+        final Product[][] bySort;
+        
+        Index(Product[][] bySort) {
+            this.bySort = bySort;
+        }
+        
+        int size() {
+            return bySort[0].length;
+        }
+        
+        static Index of(List<Product> products) {
+            Product[][] bySort = new Product[Sort.values().length][];
+            for (Sort sort : Sort.values()) {
+                Product[] sorted = products.toArray(new Product[0]);
+                Arrays.sort(sorted, sort.order);
+                bySort[sort.ordinal()] = sorted;
+            }
+            return new Index(bySort);
+        }
+        
+        /**
+         * 移除 changedIds 中的商品並加入 added（已排序陣列與少量新商品合併，不重新排序全部）
+         */
+        Index merge(Set<Long> changedIds, List<Product> added) {
+            Product[][] bySort = new Product[this.bySort.length][];
+            for (Sort sort : Sort.values()) {
+                Product[] base = this.bySort[sort.ordinal()];
+                Product[] additions = added.toArray(new Product[0]);
+                Arrays.sort(additions, sort.order);
+                
+                Product[] merged = new Product[base.length + additions.length];
+                int count = 0;
+                int next = 0;
+                for (Product product : base) {
+                    if (changedIds.contains(product.getId())) {
+                        continue;
+                    }
+                    while (next < additions.length && sort.order.compare(additions[next], product) < 0) {
+                        merged[count++] = additions[next++];
+                    }
+                    merged[count++] = product;
+                }
+                while (next < additions.length) {
+                    merged[count++] = additions[next++];
+                }
+                bySort[sort.ordinal()] = count == merged.length ? merged : Arrays.copyOf(merged, count);
+            }
+            return new Index(bySort);
+        }
+    }
+    
+    /**
+     * 不可變的目錄快照
+     */
+    private static final class Snapshot {
+        final long version;
+        // 讀到的最大 updated_at（毫秒），下次從這裡往前重疊讀取
+        final long watermark;
+        // 上架商品 (ID, updated_at) 雜湊值的總和：只由資料決定，與節點、重新啟動或載入順序無關（ETag 使用）
+        final long fingerprint;
+        final long refreshedAt;
+        final Map<Long, Product> byId;
+        final Map<String, Index> categories;
+        final Index all;
+        
+        Snapshot(long version, long watermark, long fingerprint, long refreshedAt, Map<Long, Product> byId,
+                 Map<String, Index> categories, Index all) {
+            this.version = version;
+            this.watermark = watermark;
+            this.fingerprint = fingerprint;
+            this.refreshedAt = refreshedAt;
+            this.byId = byId;
+            this.categories = categories;
+            this.all = all;
+        }
+        
+        /**
+         * 由全部商品建立快照（略過已下架的商品）
+         */
+        static Snapshot build(List<Product> products, long version, long now) {
+            long watermark = 0;
+            long fingerprint = 0;
+            Map<Long, Product> byId = new HashMap<>(products.size() * 4 / 3 + 1);
+            Map<String, List<Product>> grouped = new TreeMap<>();
+            for (Product product : products) {
+                watermark = Math.max(watermark, product.getUpdatedAt());
+                if (product.isActive()) {
+                    byId.put(product.getId(), product);
+                    fingerprint += hash(product);
+                    grouped.computeIfAbsent(product.getCategory(), key -> new ArrayList<>()).add(product);
+                }
+            }
+            
+            Map<String, Index> categories = new TreeMap<>();
+            grouped.forEach((category, list) -> categories.put(category, Index.of(list)));
+            return new Snapshot(version, watermark, fingerprint, now, Collections.unmodifiableMap(byId),
+                                Collections.unmodifiableMap(categories), Index.of(new ArrayList<>(byId.values())));
+        }
+        
+        /**
+         * 套用讀到的變更，產生新快照；重疊讀取到的未變更商品會略過，全部未變更時沿用相同資料與版本
+         * @param changes 加入真正有變更的商品
+         */
+        Snapshot apply(List<Product> products, long now, List<Product> changes) {
+            // 1. 找出真正有變更的商品
+            long newWatermark = watermark;
+            for (Product product : products) {
+                newWatermark = Math.max(newWatermark, product.getUpdatedAt());
+                Product existing = byId.get(product.getId());
+                boolean unchanged = existing == null
+                        ? !product.isActive()
+                        : product.isActive() && existing.getUpdatedAt() == product.getUpdatedAt();
+                if (!unchanged) {
+                    changes.add(product);
+                }
+            }
+            if (changes.isEmpty()) {
+                return new Snapshot(version, newWatermark, fingerprint, now, byId, categories, all);
+            }
+            
+            // 2. 複製 ID 對照表並套用變更，記錄受影響的分類（商品改分類時新舊分類都受影響）
+            Map<Long, Product> newById = new HashMap<>(byId);
+            Set<Long> changedIds = new HashSet<>();
+            Set<String> touched = new HashSet<>();
+            List<Product> added = new ArrayList<>();
+            long newFingerprint = fingerprint;
+            for (Product product : changes) {
+                changedIds.add(product.getId());
+                Product previous = newById.remove(product.getId());
+                if (previous != null) {
+                    touched.add(previous.getCategory());
+                    newFingerprint -= hash(previous);
+                }
+                if (product.isActive()) {
+                    newById.put(product.getId(), product);
+                    newFingerprint += hash(product);
+                    touched.add(product.getCategory());
+                    added.add(product);
+                }
+            }
+            
+            // 3. 只重建受影響的分類，其餘分類沿用原本的陣列
+            Map<String, Index> newCategories = new TreeMap<>(categories);
+            for (String category : touched) {
+                List<Product> addedToCategory = new ArrayList<>();
+                for (Product product : added) {
+                    if (product.getCategory().equals(category)) {
+                        addedToCategory.add(product);
+                    }
+                }
+                Index merged = newCategories.getOrDefault(category, Index.EMPTY).merge(changedIds, addedToCategory);
+                if (merged.size() == 0) {
+                    newCategories.remove(category);
+                } else {
+                    newCategories.put(category, merged);
+                }
+            }
+            
+            CHANGES_COUNTER.add(changes.size());
+            LOGGER.log(Level.FINE, "商品目錄已更新: {0} 項變更，版本 {1}", new Object[]{changes.size(), version + 1});
+            return new Snapshot(version + 1, newWatermark, newFingerprint, now, Collections.unmodifiableMap(newById),
+                                Collections.unmodifiableMap(newCategories), all.merge(changedIds, added));
+        }
+        
+        /**
+         * 單一商品版本的雜湊值（SplitMix64 混合），加總後成為與順序無關的快照指紋
+         */
+        static long hash(Product product) {
+            long z = product.getId() * 0x9E3779B97F4A7C15L + product.getUpdatedAt();
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,329 @@
+package service;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import dao.ImageFileStore;
+import exception.ImageUploadException;
+import util.AppConfig;
+import util.DaemonThreadFactory;
+import util.ImageResizer;
+import util.MappedFileCache;
+import util.Metrics;
+
+/**
+ * 商品圖片與縮圖
+ * - {@link #upload(InputStream)} 將上傳內容串流寫入 upload.temp.directory，以內容的 SHA-256 命名後放入
+ *   product.image.directory（見 {@link ImageFileStore}），並把各尺寸縮圖的產生工作交給背景執行緒池
+ * - 縮圖尺寸：thumbnail（product.thumbnail.width/height）與 medium（product.image.medium.width/height），
+ *   維持長寬比放入範圍內；原圖已小於該尺寸時直接使用原圖內容
+ * - 執行緒池的執行緒數與佇列都有上限，佇列已滿時上傳仍然成功，縮圖改在第一次被請求時產生；
+ *   同一張縮圖同時只會有一個產生工作，其他請求等待同一個結果
+ * - 讀取的檔案透過 {@link MappedFileCache} 以記憶體映射快取（product.image.cache.*）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class ProductImageService {
+    private static final Logger LOGGER = Logger.getLogger(ProductImageService.class.getName());
+    
+    private static final ProductImageService INSTANCE = new ProductImageService();
+    
+    /** 縮圖尺寸名稱 */
+    public static final String THUMBNAIL = "thumbnail";
+    public static final String MEDIUM = "medium";
+    
+    // 關閉時等待進行中縮圖工作的時間（毫秒）
+    private static final long STOP_TIMEOUT_MS = 5000;
+    
+    private static final Metrics.Timer RESIZE_TIMER =
+        Metrics.timer("product_image_resize_seconds", "產生一張縮圖的耗時", null, null);
+    private static final Metrics.Counter UPLOADS = uploads("accepted");
+    private static final Metrics.Counter UPLOADS_REJECTED = uploads("rejected");
+    private static final Metrics.Counter RESIZE_REJECTED =
+        Metrics.counter("product_image_resize_rejected_total", "因佇列已滿而未排入的縮圖工作數", null, null);
+    
+    private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    private volatile boolean running;
+    private ImageFileStore store;
+    private MappedFileCache cache;
+    private ThreadPoolExecutor executor;
+    private Map<String, Dimension> variants = Collections.emptyMap();
+    private Set<String> allowedExtensions;
+    private long maxFileSize;
+    private long maxPixels;
+    private float jpegQuality;
+    
+    private ProductImageService() {
+    }
+    
+    /**
+     * 取得共用實例
+     * @return 商品圖片服務
+     */
+    public static ProductImageService getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 建立圖片目錄、映射快取與縮圖執行緒池
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        
+        try {
+            store = new ImageFileStore(Paths.get(AppConfig.getString("product.image.directory", "/tmp/pcshop/images")),
+                                       Paths.get(AppConfig.getString("upload.temp.directory", "/tmp/pcshop/uploads")));
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "無法建立圖片目錄，停用商品圖片", e);
+            return;
+        }
+        
+        Map<String, Dimension> sizes = new LinkedHashMap<>();
+        sizes.put(THUMBNAIL, new Dimension(Math.max(1, AppConfig.getInt("product.thumbnail.width", 200)),
+                                           Math.max(1, AppConfig.getInt("product.thumbnail.height", 200))));
+        sizes.put(MEDIUM, new Dimension(Math.max(1, AppConfig.getInt("product.image.medium.width", 600)),
+                                        Math.max(1, AppConfig.getInt("product.image.medium.height", 600))));
+        variants = Collections.unmodifiableMap(sizes);
+        allowedExtensions = Arrays.stream(AppConfig.getString("upload.allowed.extensions", "jpg,jpeg,png,gif").split(","))
+                                  .map(extension -> extension.trim().toLowerCase(Locale.ROOT))
+                                  .collect(Collectors.toSet());
+        maxFileSize = AppConfig.getLong("upload.max.file.size", 10L * 1024 * 1024);
+        maxPixels = AppConfig.getLong("product.image.max.pixels", 40_000_000L);
+        jpegQuality = (float) Math.max(0.1, Math.min(1.0, AppConfig.getDouble("product.image.jpeg.quality", 0.85)));
+        cache = new MappedFileCache(AppConfig.getLong("product.image.cache.max.size", 256L * 1024 * 1024),
+                                    AppConfig.getLong("product.image.cache.max.file.size", 4L * 1024 * 1024));
+        
+        int threads = Math.max(1, AppConfig.getInt("product.image.worker.threads",
+                                                   Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+        int queueCapacity = Math.max(1, AppConfig.getInt("product.image.worker.queue", 100));
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                          new ArrayBlockingQueue<>(queueCapacity),
+                                          DaemonThreadFactory.numbered("image-resize"),
+                                          new ThreadPoolExecutor.AbortPolicy());
+        
+        running = true;
+        LOGGER.log(Level.INFO, "商品圖片已啟動: 縮圖尺寸={0}, 執行緒數={1}, 佇列容量={2}",
+                  new Object[]{variants.keySet(), threads, queueCapacity});
+    }
+    
+    /**
+     * 停止縮圖執行緒池（未完成的縮圖之後會在被請求時產生）
+     * 尚未完成的工作以 RejectedExecutionException 結束，等待中的請求立即回應 503，不會等到逾時
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        
+        running = false;
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        RejectedExecutionException stopped = new RejectedExecutionException("商品圖片已停止");
+        for (CompletableFuture<Path> future : inFlight.values()) {
+            future.completeExceptionally(stopped);
+        }
+        inFlight.clear();
+        LOGGER.log(Level.INFO, "商品圖片已停止: {0}", cache);
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * 尺寸名稱是否存在
+     * @param variant 尺寸名稱
+     * @return 是否存在
+     */
+    public boolean isVariant(String variant) {
+        return variants.containsKey(variant);
+    }
+    
+    /**
+     * 儲存上傳的原圖並排入各尺寸縮圖的產生工作
+     * @param in 上傳內容（不會整個讀入記憶體）
+     * @return 內容定址檔名（存入商品的 image_file）
+     * @throws ImageUploadException 檔案過大、格式不支援或無法解析
+     * @throws IOException 讀寫失敗
+     */
+    public String upload(InputStream in) throws ImageUploadException, IOException {
+        String name;
+        try {
+            name = store.save(in, maxFileSize, allowedExtensions);
+            checkDimensions(name);
+        } catch (ImageUploadException e) {
+            UPLOADS_REJECTED.increment();
+            throw e;
+        }
+        UPLOADS.increment();
+        
+        for (String variant : variants.keySet()) {
+            generate(variant, name);
+        }
+        return name;
+    }
+    
+    /**
+     * 以檔頭確認原圖可以解析且像素數在 product.image.max.pixels 以內，否則刪除原圖
+     * （避免極大尺寸的圖片在產生縮圖時耗盡記憶體）
+     */
+    private void checkDimensions(String name) throws ImageUploadException, IOException {
+        Path original = store.resolve(ImageFileStore.ORIGINAL, name);
+        Dimension size;
+        try {
+            size = ImageResizer.readSize(original);
+        } catch (IOException e) {
+            Files.deleteIfExists(original);
+            throw new ImageUploadException(ImageUploadException.INVALID_IMAGE, "無法解析上傳的圖片: " + e.getMessage(),
+                                           "圖片檔案已損毀或無法辨識", e);
+        }
+        if ((long) size.width * size.height > maxPixels) {
+            Files.deleteIfExists(original);
+            throw new ImageUploadException(ImageUploadException.INVALID_IMAGE,
+                                           "圖片尺寸過大: " + size.width + "x" + size.height,
+                                           "圖片尺寸過大，請縮小後再上傳");
+        }
+    }
+    
+    /**
+     * 取得圖片檔；縮圖尚未產生時排入產生工作（或加入進行中的工作）並等待
+     * @param variant 尺寸名稱，null 表示原圖
+     * @param name 內容定址檔名
+     * @param timeoutMillis 等待縮圖產生的時間上限
+     * @return 檔案路徑；原圖不存在時回傳 null
+     * @throws RejectedExecutionException 縮圖佇列已滿
+     * @throws TimeoutException 等待逾時
+     * @throws IOException 產生縮圖失敗
+     * @throws InterruptedException 等待時被中斷
+     */
+    public Path getFile(String variant, String name, long timeoutMillis)
+            throws TimeoutException, IOException, InterruptedException {
+        if (variant == null) {
+            Path original = store.resolve(ImageFileStore.ORIGINAL, name);
+            return Files.exists(original) ? original : null;
+        }
+        
+        try {
+            return generate(variant, name).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NoSuchFileException) {
+                return null;
+            }
+            if (cause instanceof RejectedExecutionException) {
+                throw (RejectedExecutionException) cause;
+            }
+            throw new IOException("產生縮圖失敗: " + variant + "/" + name, cause);
+        }
+    }
+    
+    /**
+     * 取得檔案的記憶體映射
+     * @param file 檔案
+     * @return 映射；超過 product.image.cache.max.file.size 時回傳 null
+     * @throws IOException 無法讀取
+     */
+    public MappedFileCache.Entry map(Path file) throws IOException {
+        return cache.get(file);
+    }
+    
+    /**
+     * 排入縮圖產生工作；縮圖已存在時回傳已完成的結果，已有相同工作進行中時回傳該工作
+     */
+    private CompletableFuture<Path> generate(String variant, String name) {
+        Path target = store.resolve(variant, name);
+        if (Files.exists(target)) {
+            return CompletableFuture.completedFuture(target);
+        }
+        
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(target, future);
+        if (existing != null) {
+            return existing;
+        }
+        
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(createVariant(variant, name, target));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(target, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            RESIZE_REJECTED.increment();
+            inFlight.remove(target, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
+    /**
+     * 產生縮圖：寫到同目錄的暫存檔後再 rename，讀取端不會看到寫到一半的檔案
+     */
+    private Path createVariant(String variant, String name, Path target) throws IOException {
+        if (Files.exists(target)) {
+            return target;
+        }
+        
+        Path source = store.resolve(ImageFileStore.ORIGINAL, name);
+        if (!Files.exists(source)) {
+            throw new NoSuchFileException(source.toString());
+        }
+        
+        long start = System.nanoTime();
+        Dimension size = variants.get(variant);
+        Path temp = store.createTemporary(target);
+        try {
+            if (!ImageResizer.resize(source, temp, ImageFileStore.Format.of(name).getImageIoName(),
+                                     size.width, size.height, jpegQuality)) {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            store.publish(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+            RESIZE_TIMER.stop(start);
+        }
+        return target;
+    }
+    
+    private static Metrics.Counter uploads(String result) {
+        return Metrics.counter("product_image_uploads_total", "商品圖片上傳結果", "result", result);
+    }
+    
+    // 統計資料
+    public int getQueueDepth() { return running ? executor.getQueue().size() : 0; }
+    public long getMappedBytes() { return running ? cache.getMappedBytes() + cache.getRetiredBytes() : 0; }
+}
\ No newline at end of file
@@ -0,0 +1,696 @@
+package service;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bean.Product;
+import util.AppConfig;
+import util.Metrics;
+import util.SearchTokenizer;
+
+/**
+ * 商品全文搜尋（記憶體內反向索引）
+ * - 由 {@link ProductCatalog} 的商品建立，以 {@link SearchTokenizer} 斷詞（中文二字詞、英數單字）
+ * - 每個詞的文件清單（postings）依文件編號遞增，以「與前一筆的差值 + 詞頻」的 varint 編碼壓縮在一個 byte[] 中
+ * - 以 BM25 排序：名稱中的詞權重為 {@value #NAME_WEIGHT}，分類與說明為 1；查詢詞之間為 OR，同時符合越多詞分數越高
+ * - 查詢時逐詞把分數累加到與文件數等長的分數陣列（term-at-a-time），再掃描一次取前 N 名並歸零；
+ *   分數陣列用完歸還重複使用，最多保留 CPU 數個
+ * - 商品目錄有變更時不重建整個索引：舊索引中變更的商品標記為刪除，變更後的商品另建一個小索引；
+ *   小索引或刪除標記累積超過 product.search.rebuild.ratio 時才重建。索引不可變，替換後查詢端立即看到
+ * - 文件頻率（IDF）只計算未刪除的文件：舊索引的文件頻率扣除已刪除文件中出現的次數
+ * - 自動完成以商品名稱中的英數單字與中文詞段（依包含的商品數排序）做前綴比對；
+ *   已移除商品的建議詞保留到下次重建
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class ProductSearchIndex implements ProductCatalog.ChangeListener {
+    private static final Logger LOGGER = Logger.getLogger(ProductSearchIndex.class.getName());
+    
+    private static final ProductSearchIndex INSTANCE = new ProductSearchIndex();
+    
+    // BM25 參數
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    // 名稱中的詞計入的詞頻
+    private static final int NAME_WEIGHT = 3;
+    // 查詢最多使用的詞數
+    private static final int MAX_QUERY_TERMS = 16;
+    // 小索引至少累積這麼多商品才重建
+    private static final int MIN_REBUILD_DOCUMENTS = 1000;
+    // 自動完成時每個索引最多檢查的建議詞數（避免一個字母的前綴掃描全部建議詞）
+    private static final int MAX_SUGGEST_SCAN = 5000;
+    
+    // 建議詞由差到好：商品數少者在前，同數量時字典順序較後者在前
+    private static final Comparator<Map.Entry<String, Integer>> SUGGESTION_ORDER =
+        Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.<String, Integer>comparingByKey().reversed());
+    
+    // 歸還的評分暫存（只保留 CPU 數個，同時查詢較多時其餘的用完即丟）
+    private static final BlockingQueue<ScoreBuffer> SCORE_BUFFERS =
+        new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+    
+    private static final Metrics.Timer SEARCH_TIMER = queryTimer("search");
+    private static final Metrics.Timer SUGGEST_TIMER = queryTimer("suggest");
+    
+    private final double rebuildRatio = AppConfig.getDouble("product.search.rebuild.ratio", 0.1);
+    
+    private volatile Searcher searcher;
+    private boolean running;
+    
+    private ProductSearchIndex() {
+    }
+    
+    /**
+     * 取得共用實例
+     * @return 商品搜尋索引
+     */
+    public static ProductSearchIndex getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 以指定的商品建立獨立的索引（不接收商品目錄的變更，供基準測試與工具程式使用）
+     * @param products 商品
+     * @return 搜尋索引
+     */
+    public static ProductSearchIndex of(List<Product> products) {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.rebuild(products, 0, 0);
+        return index;
+    }
+    
+    /**
+     * 開始接收商品目錄的變更；目錄已載入時立即建立索引，否則在目錄第一次載入後建立
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        
+        ProductCatalog catalog = ProductCatalog.getInstance();
+        catalog.addChangeListener(this);
+        if (catalog.isReady()) {
+            rebuild(catalog.getProducts(), catalog.getVersion(), catalog.getFingerprint());
+        }
+    }
+    
+    /**
+     * 停止接收變更並釋放索引
+     */
+    public synchronized void stop() {
+        ProductCatalog.getInstance().removeChangeListener(this);
+        running = false;
+        searcher = null;
+    }
+    
+    /**
+     * 是否已啟動
+     * @return 是否已啟動
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * 是否已建立索引
+     * @return 是否已建立
+     */
+    public boolean isReady() {
+        return searcher != null;
+    }
+    
+    @Override
+    public synchronized void catalogChanged(List<Product> changes, boolean reloaded) {
+        if (!running) {
+            return;
+        }
+        
+        ProductCatalog catalog = ProductCatalog.getInstance();
+        Searcher current = searcher;
+        if (reloaded || current == null) {
+            rebuild(catalog.getProducts(), catalog.getVersion(), catalog.getFingerprint());
+            return;
+        }
+        
+        // 變更的商品同時出現在刪除標記與小索引；只下架的商品只有刪除標記，同樣累積到上限後重建
+        Searcher next = current.apply(changes, catalog.getVersion(), catalog.getFingerprint());
+        int stale = Math.max(next.delta.docs.length, next.deleted.cardinality());
+        if (stale > Math.max(MIN_REBUILD_DOCUMENTS, current.base.docs.length * rebuildRatio)) {
+            rebuild(catalog.getProducts(), catalog.getVersion(), catalog.getFingerprint());
+        } else {
+            searcher = next;
+        }
+    }
+    
+    /**
+     * 以全部商品重建索引
+     */
+    private void rebuild(List<Product> products, long version, long fingerprint) {
+        long start = System.nanoTime();
+        Segment base = Segment.build(products);
+        searcher = new Searcher(version, fingerprint, base, new BitSet(), 0, Collections.emptyMap(),
+                                Segment.build(Collections.emptyList()));
+        LOGGER.log(Level.INFO, "商品搜尋索引已建立: {0} 項商品，{1} 個詞，耗時 {2} ms",
+                   new Object[]{base.docs.length, base.postings.size(), (System.nanoTime() - start) / 1_000_000});
+    }
+    
+    /**
+     * 搜尋商品
+     * @param query 查詢字串
+     * @param category 分類，null 表示不限
+     * @param limit 最多筆數
+     * @return 依分數排序的結果；尚未建立索引或查詢沒有任何詞時為空結果
+     */
+    public Result search(String query, String category, int limit) {
+        long start = System.nanoTime();
+        try {
+            Searcher current = searcher;
+            if (current == null || query == null || limit < 1) {
+                return new Result(Collections.emptyList(), 0, current != null ? current.version : 0);
+            }
+            
+            Set<String> terms = new LinkedHashSet<>(SearchTokenizer.tokenize(query, true));
+            if (terms.isEmpty()) {
+                return new Result(Collections.emptyList(), 0, current.version);
+            }
+            return current.search(new ArrayList<>(terms).subList(0, Math.min(terms.size(), MAX_QUERY_TERMS)),
+                                  category, limit);
+        } finally {
+            SEARCH_TIMER.stop(start);
+        }
+    }
+    
+    /**
+     * 自動完成：補齊查詢字串的最後一個詞
+     * @param prefix 使用者目前輸入的字串
+     * @param limit 最多筆數
+     * @return 建議的查詢字串（已正規化為小寫），依包含的商品數由多到少
+     */
+    public List<String> suggest(String prefix, int limit) {
+        long start = System.nanoTime();
+        try {
+            Searcher current = searcher;
+            String normalized = SearchTokenizer.normalize(prefix);
+            int split = normalized.lastIndexOf(' ') + 1;
+            String head = normalized.substring(0, split);
+            String last = normalized.substring(split);
+            if (current == null || last.isEmpty() || limit < 1) {
+                return Collections.emptyList();
+            }
+            
+            // 小索引的建議詞通常很少，先放進對照表，掃描完整索引時合併相同詞的商品數
+            Map<String, Integer> deltaCounts = new HashMap<>();
+            current.delta.forEachPhrase(last, deltaCounts::put);
+            
+            PriorityQueue<Map.Entry<String, Integer>> top = new PriorityQueue<>(limit + 1, SUGGESTION_ORDER);
+            current.base.forEachPhrase(last, (phrase, count) -> {
+                Integer extra = deltaCounts.remove(phrase);
+                offerSuggestion(top, phrase, extra != null ? count + extra : count, limit);
+            });
+            deltaCounts.forEach((phrase, count) -> offerSuggestion(top, phrase, count, limit));
+            
+            String[] suggestions = new String[top.size()];
+            for (int i = suggestions.length - 1; i >= 0; i--) {
+                suggestions[i] = head + top.poll().getKey();
+            }
+            return Arrays.asList(suggestions);
+        } finally {
+            SUGGEST_TIMER.stop(start);
+        }
+    }
+    
+    /**
+     * 保留商品數最多的 limit 個建議詞（堆積頂端為目前最差者）
+     */
+    private static void offerSuggestion(PriorityQueue<Map.Entry<String, Integer>> top, String phrase, int count,
+                                        int limit) {
+        if (top.size() < limit) {
+            top.add(new AbstractMap.SimpleImmutableEntry<>(phrase, count));
+        } else if (SUGGESTION_ORDER.compare(top.peek(), new AbstractMap.SimpleImmutableEntry<>(phrase, count)) < 0) {
+            top.poll();
+            top.add(new AbstractMap.SimpleImmutableEntry<>(phrase, count));
+        }
+    }
+    
+    // 統計資料
+    public long getVersion() { Searcher current = searcher; return current != null ? current.version : 0; }
+    public long getFingerprint() { Searcher current = searcher; return current != null ? current.fingerprint : 0; }
+    public int getDocumentCount() { Searcher current = searcher; return current != null ? current.liveDocuments() : 0; }
+    
+    private static Metrics.Timer queryTimer(String operation) {
+        return Metrics.timer("product_search_seconds", "商品搜尋耗時", "operation", operation);
+    }
+    
+    /**
+     * 搜尋結果
+     */
+    public static final class Result {
+        private final List<Product> items;
+        private final int total;
+        private final long version;
+        
+        Result(List<Product> items, int total, long version) {
+            this.items = items;
+            this.total = total;
+            this.version = version;
+        }
+        
+        public List<Product> getItems() { return items; }
+        /** @return 符合的商品總數 */
+        public int getTotal() { return total; }
+        /** @return 索引對應的商品目錄版本 */
+        public long getVersion() { return version; }
+    }
+    
+    /**
+     * 不可變的索引：完整索引（含刪除標記）加上增量更新的小索引
+     */
+    private static final class Searcher {
+        final long version;
+        // 建立時商品目錄的指紋（ProductCatalog.getFingerprint）
+        final long fingerprint;
+        final Segment base;
+        // base 中已變更或移除的文件編號
+        final BitSet deleted;
+        final long deletedLength;
+        // 各詞在已刪除文件中出現的文件數，查詢時從 base 的文件頻率扣除
+        final Map<String, Integer> deletedDocFreq;
+        final Segment delta;
+        // 各文件 BM25 的長度正規化項 K1 * (1 - B + B * 長度 / 平均長度)，隨平均長度在建立時計算
+        final float[] baseNorms;
+        final float[] deltaNorms;
+        
+        Searcher(long version, long fingerprint, Segment base, BitSet deleted, long deletedLength,
+                 Map<String, Integer> deletedDocFreq, Segment delta) {
+            this.version = version;
+            this.fingerprint = fingerprint;
+            this.base = base;
+            this.deleted = deleted;
+            this.deletedLength = deletedLength;
+            this.deletedDocFreq = deletedDocFreq;
+            this.delta = delta;
+            int live = liveDocuments();
+            double averageLength = live > 0
+                    ? Math.max(1.0, (double) (base.totalLength - deletedLength + delta.totalLength) / live)
+                    : 1.0;
+            this.baseNorms = base.norms(averageLength);
+            this.deltaNorms = delta.norms(averageLength);
+        }
+        
+        int liveDocuments() {
+            return base.docs.length - deleted.cardinality() + delta.docs.length;
+        }
+        
+        /**
+         * 套用商品目錄的變更：base 中的舊版本標記刪除，未下架的新版本與原本的小索引合併成新的小索引
+         */
+        Searcher apply(List<Product> changes, long newVersion, long newFingerprint) {
+            Set<Long> changedIds = new HashSet<>();
+            BitSet newDeleted = (BitSet) deleted.clone();
+            long newDeletedLength = deletedLength;
+            Map<String, Integer> newDeletedDocFreq = new HashMap<>(deletedDocFreq);
+            for (Product product : changes) {
+                changedIds.add(product.getId());
+                Integer doc = base.docById.get(product.getId());
+                if (doc != null && !newDeleted.get(doc)) {
+                    newDeleted.set(doc);
+                    newDeletedLength += base.lengths[doc];
+                    for (String term : Segment.terms(base.docs[doc])) {
+                        newDeletedDocFreq.merge(term, 1, Integer::sum);
+                    }
+                }
+            }
+            
+            List<Product> deltaProducts = new ArrayList<>(delta.docs.length + changes.size());
+            for (Product product : delta.docs) {
+                if (!changedIds.contains(product.getId())) {
+                    deltaProducts.add(product);
+                }
+            }
+            for (Product product : changes) {
+                if (product.isActive()) {
+                    deltaProducts.add(product);
+                }
+            }
+            return new Searcher(newVersion, newFingerprint, base, newDeleted, newDeletedLength, newDeletedDocFreq,
+                                Segment.build(deltaProducts));
+        }
+        
+        Result search(List<String> terms, String category, int limit) {
+            // 1. 以兩個索引合計的文件頻率計算 IDF（不含已刪除的文件）
+            int documents = Math.max(1, liveDocuments());
+            float[] idf = new float[terms.size()];
+            for (int i = 0; i < idf.length; i++) {
+                String term = terms.get(i);
+                int df = base.docFreq(term) - deletedDocFreq.getOrDefault(term, 0) + delta.docFreq(term);
+                int n = Math.max(documents, df);
+                idf[i] = (float) Math.log(1 + (n - df + 0.5) / (df + 0.5));
+            }
+            
+            // 2. 分別在兩個索引中評分，共用前 N 名與評分暫存
+            TopHits hits = new TopHits(limit);
+            ScoreBuffer buffer = borrowBuffer();
+            base.score(terms, idf, baseNorms, deleted, category, buffer, hits);
+            delta.score(terms, idf, deltaNorms, null, category, buffer, hits);
+            SCORE_BUFFERS.offer(buffer);
+            return new Result(hits.toList(), hits.total, version);
+        }
+        
+        /**
+         * 取得足夠兩個索引使用的評分暫存：歸還的暫存太小（索引重建後變大）時丟棄，依完整索引的大小重新配置
+         */
+        private ScoreBuffer borrowBuffer() {
+            int length = Math.max(base.docs.length, delta.docs.length);
+            ScoreBuffer buffer = SCORE_BUFFERS.poll();
+            return buffer != null && buffer.scores.length >= length ? buffer : new ScoreBuffer(length);
+        }
+    }
+    
+    /**
+     * 一組商品的反向索引（建立後不可變）
+     */
+    private static final class Segment {
+        final Product[] docs;
+        // 各文件的加權長度（詞數）
+        final int[] lengths;
+        final long totalLength;
+        final Map<Long, Integer> docById;
+        final Map<String, Postings> postings;
+        // 自動完成的建議詞（已排序）與包含該詞的商品數
+        final String[] phrases;
+        final int[] phraseCounts;
+        
+        private Segment(Product[] docs, int[] lengths, long totalLength, Map<Long, Integer> docById,
+                        Map<String, Postings> postings, String[] phrases, int[] phraseCounts) {
+            this.docs = docs;
+            this.lengths = lengths;
+            this.totalLength = totalLength;
+            this.docById = docById;
+            this.postings = postings;
+            this.phrases = phrases;
+            this.phraseCounts = phraseCounts;
+        }
+        
+        static Segment build(List<Product> products) {
+            Product[] docs = products.toArray(new Product[0]);
+            int[] lengths = new int[docs.length];
+            long totalLength = 0;
+            Map<Long, Integer> docById = new HashMap<>(docs.length * 4 / 3 + 1);
+            Map<String, PostingsBuilder> builders = new HashMap<>();
+            Map<String, Integer> phraseCounts = new HashMap<>();
+            
+            Map<String, int[]> frequencies = new HashMap<>();
+            Set<String> docPhrases = new HashSet<>();
+            for (int doc = 0; doc < docs.length; doc++) {
+                Product product = docs[doc];
+                docById.put(product.getId(), doc);
+                
+                // 1. 計算各詞的加權詞頻
+                frequencies.clear();
+                int[] length = new int[1];
+                SearchTokenizer.tokenize(product.getName(), false, term -> count(frequencies, term, NAME_WEIGHT, length));
+                SearchTokenizer.tokenize(product.getCategory(), false, term -> count(frequencies, term, 1, length));
+                SearchTokenizer.tokenize(product.getDescription(), false, term -> count(frequencies, term, 1, length));
+                lengths[doc] = length[0];
+                totalLength += length[0];
+                
+                // 2. 依文件編號遞增附加到各詞的 postings
+                for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+                    builders.computeIfAbsent(entry.getKey(), key -> new PostingsBuilder()).add(doc, entry.getValue()[0]);
+                }
+                
+                // 3. 名稱中的建議詞（每個商品只計一次）
+                docPhrases.clear();
+                SearchTokenizer.phrases(product.getName(), docPhrases::add);
+                for (String phrase : docPhrases) {
+                    phraseCounts.merge(phrase, 1, Integer::sum);
+                }
+            }
+            
+            Map<String, Postings> postings = new HashMap<>(builders.size() * 4 / 3 + 1);
+            builders.forEach((term, builder) -> postings.put(term, builder.build()));
+            
+            String[] phrases = phraseCounts.keySet().toArray(new String[0]);
+            Arrays.sort(phrases);
+            int[] counts = new int[phrases.length];
+            for (int i = 0; i < phrases.length; i++) {
+                counts[i] = phraseCounts.get(phrases[i]);
+            }
+            return new Segment(docs, lengths, totalLength, docById, postings, phrases, counts);
+        }
+        
+        /**
+         * 商品包含的詞（不重複），斷詞方式與建立索引時相同
+         */
+        static Set<String> terms(Product product) {
+            Set<String> terms = new HashSet<>();
+            SearchTokenizer.tokenize(product.getName(), false, terms::add);
+            SearchTokenizer.tokenize(product.getCategory(), false, terms::add);
+            SearchTokenizer.tokenize(product.getDescription(), false, terms::add);
+            return terms;
+        }
+        
+        private static void count(Map<String, int[]> frequencies, String term, int weight, int[] length) {
+            frequencies.computeIfAbsent(term, key -> new int[1])[0] += weight;
+            length[0] += weight;
+        }
+        
+        int docFreq(String term) {
+            Postings list = postings.get(term);
+            return list != null ? list.docFreq : 0;
+        }
+        
+        float[] norms(double averageLength) {
+            float[] norms = new float[docs.length];
+            for (int doc = 0; doc < norms.length; doc++) {
+                norms[doc] = (float) (K1 * (1 - B + B * lengths[doc] / averageLength));
+            }
+            return norms;
+        }
+        
+        /**
+         * 以 BM25 為符合任一詞的文件評分並交給 hits
+         * 逐詞把分數累加到 buffer，只走訪有分數的文件（依文件編號遞增），不掃描整個索引
+         */
+        void score(List<String> terms, float[] idf, float[] norms, BitSet deleted, String category,
+                   ScoreBuffer buffer, TopHits hits) {
+            float[] scores = buffer.scores;
+            long[] touched = buffer.touched;
+            boolean any = false;
+            for (int i = 0; i < terms.size(); i++) {
+                Postings list = postings.get(terms.get(i));
+                if (list != null) {
+                    accumulate(list.data, idf[i] * (K1 + 1), norms, scores, touched);
+                    any = true;
+                }
+            }
+            if (!any) {
+                return;
+            }
+            
+            // 取出分數並歸零（歸還時暫存必須全部為 0），只有超過目前第 N 名的分數才放進 hits
+            float threshold = hits.threshold();
+            int matched = 0;
+            int words = (docs.length + 63) >>> 6;
+            for (int word = 0; word < words; word++) {
+                long bits = touched[word];
+                if (bits == 0) {
+                    continue;
+                }
+                touched[word] = 0;
+                do {
+                    int doc = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    float score = scores[doc];
+                    scores[doc] = 0;
+                    if (deleted != null && deleted.get(doc)) {
+                        continue;
+                    }
+                    Product product = docs[doc];
+                    if (category != null && !category.equals(product.getCategory())) {
+                        continue;
+                    }
+                    matched++;
+                    if (score > threshold) {
+                        threshold = hits.add(product, score);
+                    }
+                } while (bits != 0);
+            }
+            hits.total += matched;
+        }
+        
+        /**
+         * 解碼一個詞的 postings，把每個文件的 BM25 分數 weight * tf / (tf + norm) 累加到 scores，並在 touched 標記該文件
+         */
+        private static void accumulate(byte[] data, float weight, float[] norms, float[] scores, long[] touched) {
+            int position = 0;
+            int doc = 0;
+            while (position < data.length) {
+                int b = data[position++];
+                int delta = b & 0x7F;
+                for (int shift = 7; b < 0; shift += 7) {
+                    b = data[position++];
+                    delta |= (b & 0x7F) << shift;
+                }
+                doc += delta;
+                
+                b = data[position++];
+                int tf = b & 0x7F;
+                for (int shift = 7; b < 0; shift += 7) {
+                    b = data[position++];
+                    tf |= (b & 0x7F) << shift;
+                }
+                scores[doc] += weight * tf / (tf + norms[doc]);
+                touched[doc >>> 6] |= 1L << doc;
+            }
+        }
+        
+        /**
+         * 依字典順序處理以 prefix 開頭的建議詞與商品數（最多 MAX_SUGGEST_SCAN 個）
+         */
+        void forEachPhrase(String prefix, ObjIntConsumer<String> consumer) {
+            int position = Arrays.binarySearch(phrases, prefix);
+            int start = position >= 0 ? position : -position - 1;
+            int end = Math.min(phrases.length, start + MAX_SUGGEST_SCAN);
+            for (int i = start; i < end && phrases[i].startsWith(prefix); i++) {
+                consumer.accept(phrases[i], phraseCounts[i]);
+            }
+        }
+    }
+    
+    /**
+     * 評分暫存：各文件的累計分數，以及有分數的文件（每個位元一個文件編號）
+     */
+    private static final class ScoreBuffer {
+        final float[] scores;
+        final long[] touched;
+        
+        ScoreBuffer(int length) {
+            this.scores = new float[length];
+            this.touched = new long[(length + 63) >>> 6];
+        }
+    }
+    
+    /**
+     * 一個詞的壓縮文件清單
+     */
+    private static final class Postings {
+        final int docFreq;
+        final byte[] data;
+        
+        Postings(int docFreq, byte[] data) {
+            this.docFreq = docFreq;
+            this.data = data;
+        }
+    }
+    
+    /**
+     * 建立 postings：每筆為 varint(文件編號差值) varint(詞頻)
+     */
+    private static final class PostingsBuilder {
+        private byte[] buffer = new byte[8];
+        private int size;
+        private int lastDoc;
+        private int docFreq;
+        
+        void add(int doc, int tf) {
+            writeVarInt(doc - lastDoc);
+            writeVarInt(tf);
+            lastDoc = doc;
+            docFreq++;
+        }
+        
+        Postings build() {
+            return new Postings(docFreq, Arrays.copyOf(buffer, size));
+        }
+        
+        private void writeVarInt(int value) {
+            if (size + 5 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+    }
+    
+    /**
+     * 保留分數最高的前 N 筆
+     * 同分時先評分者在前（完整索引依商品目錄的順序，即新商品在前），同分的後來者不會替換，堆積不需要調整
+     */
+    private static final class TopHits {
+        private static final Comparator<Hit> WORST_FIRST =
+            Comparator.<Hit>comparingDouble(hit -> hit.score).thenComparingInt(hit -> -hit.sequence);
+        
+        private final int limit;
+        private final PriorityQueue<Hit> queue;
+        private int sequence;
+        int total;
+        
+        TopHits(int limit) {
+            this.limit = limit;
+            this.queue = new PriorityQueue<>(limit + 1, WORST_FIRST);
+        }
+        
+        /**
+         * @return 要進入前 N 名必須超過的分數（未滿 N 筆時為負無限大）
+         */
+        float threshold() {
+            return queue.size() < limit ? Float.NEGATIVE_INFINITY : queue.peek().score;
+        }
+        
+        /**
+         * 加入分數超過 {@link #threshold()} 的商品
+         * @return 新的門檻
+         */
+        float add(Product product, float score) {
+            if (queue.size() >= limit) {
+                queue.poll();
+            }
+            queue.add(new Hit(product, score, sequence++));
+            return threshold();
+        }
+        
+        List<Product> toList() {
+            Hit[] sorted = queue.toArray(new Hit[0]);
+            Arrays.sort(sorted, WORST_FIRST.reversed());
+            List<Product> products = new ArrayList<>(sorted.length);
+            for (Hit hit : sorted) {
+                products.add(hit.product);
+            }
+            return Collections.unmodifiableList(products);
+        }
+    }
+    
+    private static final class Hit {
+        final Product product;
+        final float score;
+        // 評分順序
+        final int sequence;
+        
+        Hit(Product product, float score, int sequence) {
+            this.product = product;
+            this.score = score;
+            this.sequence = sequence;
+        }
+    }
+}
\ No newline at end of file
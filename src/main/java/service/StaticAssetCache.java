@@ -0,0 +1,260 @@
+package service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletContext;
+
+import util.AppConfig;
+
+/**
+ * 靜態資源（CSS、JavaScript 等）的預先壓縮快取
+ * - 啟動時載入 static.assets.paths 下的檔案，內容與預先壓縮的 gzip 版本都放在記憶體中的 byte[]，
+ *   請求不讀檔也不在請求執行緒上壓縮
+ *   （ServletOutputStream 只接受 byte[]，direct ByteBuffer 寫出時仍會先複製到 heap，因此不使用）
+ * - 每個檔案另有帶內容雜湊的網址（/css/style.css → /css/style.{hash}.css），內容改變時網址跟著改變，
+ *   因此可以讓瀏覽器永久快取；頁面透過 application 屬性 {@link #ATTRIBUTE}（原路徑 → 帶雜湊的路徑）引用
+ * - 只在部署時載入：修改檔案需重新部署（或重新啟動）才會生效
+ * 
+ * JDK 沒有 Brotli 編碼器（只有 JNI 實作的函式庫），因此只預先產生 gzip
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class StaticAssetCache {
+    private static final Logger LOGGER = Logger.getLogger(StaticAssetCache.class.getName());
+    
+    private static final StaticAssetCache INSTANCE = new StaticAssetCache();
+    
+    /** 原路徑 → 帶雜湊的路徑，供 JSP 以 ${assets['/css/style.css']} 引用 */
+    public static final String ATTRIBUTE = "assets";
+    
+    // 網址中雜湊的長度（16 進位字元數）
+    private static final int FINGERPRINT_LENGTH = 12;
+    // 壓縮後至少要小於原大小的此比例才保留 gzip 版本
+    private static final double MIN_COMPRESSION_RATIO = 0.9;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private volatile Map<String, Asset> assets = Collections.emptyMap();
+    private volatile Map<String, String> fingerprints = Collections.emptyMap();
+    private volatile long bytes;
+    
+    private StaticAssetCache() {
+    }
+    
+    /**
+     * 取得共用實例
+     * @return 靜態資源快取
+     */
+    public static StaticAssetCache getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 載入靜態資源並設定 application 屬性 {@link #ATTRIBUTE}
+     * @param context Servlet context
+     */
+    public synchronized void load(ServletContext context) {
+        Set<String> compressible = Arrays.stream(AppConfig.getString("static.assets.compress.extensions",
+                                                                     "css,js,html,svg,json,txt,xml").split(","))
+                                         .map(extension -> extension.trim().toLowerCase(Locale.ROOT))
+                                         .collect(Collectors.toSet());
+        long maxFileSize = AppConfig.getLong("static.assets.max.file.size", 1024 * 1024);
+        
+        Map<String, Asset> loaded = new HashMap<>();
+        Map<String, String> paths = new TreeMap<>();
+        long totalBytes = 0;
+        for (String directory : AppConfig.getString("static.assets.paths", "/css/,/js/").split(",")) {
+            String root = directory.trim();
+            if (root.isEmpty()) {
+                continue;
+            }
+            for (String path : listFiles(context, root.endsWith("/") ? root : root + "/")) {
+                try {
+                    Asset asset = load(context, path, compressible, maxFileSize);
+                    if (asset == null) {
+                        continue;
+                    }
+                    loaded.put(path, asset);
+                    loaded.put(asset.fingerprintedPath, asset);
+                    paths.put(path, asset.fingerprintedPath);
+                    totalBytes += asset.identity.length + (asset.gzip != null ? asset.gzip.length : 0);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "無法載入靜態資源: " + path, e);
+                }
+            }
+        }
+        
+        assets = Collections.unmodifiableMap(loaded);
+        fingerprints = Collections.unmodifiableMap(paths);
+        bytes = totalBytes;
+        context.setAttribute(ATTRIBUTE, fingerprints);
+        LOGGER.log(Level.INFO, "靜態資源已載入: {0} 個檔案, {1} bytes", new Object[]{paths.size(), totalBytes});
+    }
+    
+    /**
+     * 遞迴列出目錄下的檔案
+     */
+    private static Set<String> listFiles(ServletContext context, String directory) {
+        Set<String> entries = context.getResourcePaths(directory);
+        if (entries == null) {
+            return Collections.emptySet();
+        }
+        
+        Set<String> files = new TreeSet<>();
+        for (String entry : entries) {
+            if (entry.endsWith("/")) {
+                files.addAll(listFiles(context, entry));
+            } else {
+                files.add(entry);
+            }
+        }
+        return files;
+    }
+    
+    private Asset load(ServletContext context, String path, Set<String> compressible, long maxFileSize)
+            throws IOException {
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        int dot = fileName.lastIndexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        String extension = fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        String mimeType = context.getMimeType(path);
+        if (mimeType == null) {
+            return null;
+        }
+        
+        byte[] content;
+        try (InputStream in = context.getResourceAsStream(path)) {
+            if (in == null) {
+                return null;
+            }
+            content = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxFileSize + 1));
+        }
+        if (content.length > maxFileSize) {
+            return null;
+        }
+        
+        String hash = sha256(content);
+        String fingerprinted = path.substring(0, path.length() - fileName.length())
+                               + fileName.substring(0, dot) + "." + hash.substring(0, FINGERPRINT_LENGTH)
+                               + fileName.substring(dot);
+        boolean text = mimeType.startsWith("text/") || mimeType.endsWith("javascript") || mimeType.endsWith("json")
+                       || mimeType.endsWith("xml");
+        
+        byte[] gzip = compressible.contains(extension) ? gzip(content) : null;
+        if (gzip != null && gzip.length >= content.length * MIN_COMPRESSION_RATIO) {
+            gzip = null;
+        }
+        return new Asset(fingerprinted, text ? mimeType + "; charset=UTF-8" : mimeType,
+                         hash.substring(0, FINGERPRINT_LENGTH), content, gzip);
+    }
+    
+    /**
+     * 查詢靜態資源
+     * @param path 相對於 context 的路徑（原路徑或帶雜湊的路徑）
+     * @return 資源；不在快取中時回傳 null
+     */
+    public Asset find(String path) {
+        return assets.get(path);
+    }
+    
+    /**
+     * 取得帶雜湊的路徑
+     * @param path 原路徑
+     * @return 帶雜湊的路徑；不在快取中時回傳原路徑
+     */
+    public String fingerprint(String path) {
+        return fingerprints.getOrDefault(path, path);
+    }
+    
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+    
+    private static String sha256(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            char[] chars = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM 不支援 SHA-256", e);
+        }
+    }
+    
+    // 統計資料
+    public int getSize() { return fingerprints.size(); }
+    public long getBytes() { return bytes; }
+    
+    /**
+     * 載入的靜態資源（不可變）
+     */
+    public static final class Asset {
+        private final String fingerprintedPath;
+        private final String contentType;
+        private final String hash;
+        private final byte[] identity;
+        private final byte[] gzip;
+        
+        Asset(String fingerprintedPath, String contentType, String hash, byte[] identity, byte[] gzip) {
+            this.fingerprintedPath = fingerprintedPath;
+            this.contentType = contentType;
+            this.hash = hash;
+            this.identity = identity;
+            this.gzip = gzip;
+        }
+        
+        public String getFingerprintedPath() { return fingerprintedPath; }
+        public String getContentType() { return contentType; }
+        public String getHash() { return hash; }
+        public boolean hasGzip() { return gzip != null; }
+        
+        /**
+         * @param gzip 是否取得 gzip 版本（須 {@link #hasGzip()}）
+         * @return 內容長度（bytes）
+         */
+        public int length(boolean gzip) {
+            return (gzip ? this.gzip : identity).length;
+        }
+        
+        /**
+         * 將內容寫到輸出串流（直接寫出快取的陣列，不複製）
+         * @param out 輸出串流
+         * @param gzip 是否寫出 gzip 版本（須 {@link #hasGzip()}）
+         * @throws IOException 寫出失敗
+         */
+        public void writeTo(OutputStream out, boolean gzip) throws IOException {
+            out.write(gzip ? this.gzip : identity);
+        }
+    }
+}
\ No newline at end of file
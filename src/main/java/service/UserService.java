@@ -1,11 +1,31 @@
 package service;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 import bean.User;
+import bean.UserCredentials;
+import bean.UserSummary;
+import dao.CachingUserDAO;
 import dao.UserDAO;
+import dao.UserIdFilter;
+import util.AppConfig;
+import util.AuthTokens;
+import util.Metrics;
 import util.PasswordUtil;
 import util.ValidationUtil;
 import util.ValidationUtil.ValidationResult;
@@ -20,14 +40,59 @@ import util.ValidationUtil.ValidationResult;
 public class UserService {
     private static final Logger LOGGER = Logger.getLogger(UserService.class.getName());
     
+    // 批次註冊每個交易的筆數
+    private static final int BATCH_SIZE = AppConfig.getInt("database.batch.size", 500);
+    
+    // 登入權杖的角色（目前只有一般會員）
+    private static final List<String> DEFAULT_ROLES = Collections.singletonList("user");
+    
+    // 批次註冊的驗證與密碼雜湊在專用的 fork-join 執行緒池進行，不佔用共用池
+    private static final ForkJoinPool BATCH_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    
+    // 註冊與登入各階段耗時、結果計數（/metrics）
+    private static final Metrics.Timer REGISTER_VALIDATION = registrationStage("validation");
+    private static final Metrics.Timer REGISTER_PASSWORD_STRENGTH = registrationStage("password_strength");
+    private static final Metrics.Timer REGISTER_EXISTENCE_CHECK = registrationStage("existence_check");
+    private static final Metrics.Timer REGISTER_HASHING = registrationStage("hashing");
+    private static final Metrics.Timer REGISTER_SANITIZE = registrationStage("sanitize");
+    private static final Metrics.Timer REGISTER_INSERT = registrationStage("insert");
+    private static final Metrics.Timer REGISTER_WELCOME_MAIL = registrationStage("welcome_mail");
+    
+    private static final Metrics.Counter REGISTER_SUCCESS = registrationOutcome("success");
+    private static final Metrics.Counter REGISTER_INVALID = registrationOutcome("invalid");
+    private static final Metrics.Counter REGISTER_WEAK_PASSWORD = registrationOutcome("weak_password");
+    private static final Metrics.Counter REGISTER_DUPLICATE = registrationOutcome("duplicate");
+    private static final Metrics.Counter REGISTER_HASH_ERROR = registrationOutcome("hash_error");
+    private static final Metrics.Counter REGISTER_INSERT_FAILED = registrationOutcome("insert_failed");
+    
+    private static final Metrics.Timer LOGIN_VALIDATION = loginStage("validation");
+    private static final Metrics.Timer LOGIN_LOCKOUT_CHECK = loginStage("lockout_check");
+    private static final Metrics.Timer LOGIN_LOOKUP = loginStage("lookup");
+    private static final Metrics.Timer LOGIN_VERIFY = loginStage("verify");
+    private static final Metrics.Timer LOGIN_REHASH = loginStage("rehash");
+    
+    private static final Metrics.Counter LOGIN_SUCCESS = loginOutcome("success");
+    private static final Metrics.Counter LOGIN_INVALID = loginOutcome("invalid");
+    private static final Metrics.Counter LOGIN_LOCKED = loginOutcome("locked");
+    private static final Metrics.Counter LOGIN_UNKNOWN_USER = loginOutcome("unknown_user");
+    private static final Metrics.Counter LOGIN_BAD_PASSWORD = loginOutcome("bad_password");
+    
     private UserDAO userDAO;
     
     /**
-     * 建構函式
+     * 建構函式（cache.enabled=true 時查詢使用者會經過共用快取）
      * @param connection 資料庫連線
      */
     public UserService(Connection connection) {
-        this.userDAO = new UserDAO(connection);
+        this.userDAO = CachingUserDAO.wrap(new UserDAO(connection));
+    }
+    
+    /**
+     * 建構函式 - 直接注入資料存取物件（供基準測試或替換實作使用）
+     * @param userDAO 使用者資料存取物件
+     */
+    public UserService(UserDAO userDAO) {
+        this.userDAO = userDAO;
     }
     
     /**
@@ -36,8 +101,64 @@ public class UserService {
      * @return 註冊結果
      */
     public RegistrationResult registerUser(User user) {
+        RegistrationResult result = checkRegistration(user);
+        if (!result.isSuccess()) {
+            return result;
+        }
+        
+        // 5. 密碼加密
+        String hashedPassword;
+        long start = System.nanoTime();
+        try {
+            hashedPassword = PasswordUtil.hashPassword(user.getPassword());
+            REGISTER_HASHING.stop(start);
+        } catch (Exception e) {
+            REGISTER_HASH_ERROR.increment();
+            result.setSuccess(false);
+            result.setMessage("密碼處理失敗");
+            LOGGER.log(Level.SEVERE, "密碼加密失敗: " + user.getId(), e);
+            return result;
+        }
+        
+        return completeRegistration(user, hashedPassword);
+    }
+    
+    /**
+     * 註冊前置檢查（資料驗證、密碼強度、使用者是否已存在）
+     * 與 {@link #completeRegistration(User, String)} 搭配使用，讓呼叫端可以在兩者之間
+     * 把密碼雜湊交給 {@link PasswordUtil#hashPasswordAsync(String)} 非同步執行
+     * @param user 使用者物件
+     * @return 檢查結果，isSuccess() 為 true 表示可以繼續註冊
+     */
+    public RegistrationResult checkRegistration(User user) {
         LOGGER.log(Level.INFO, "開始使用者註冊流程: {0}", user != null ? user.getId() : "null");
         
+        RegistrationResult result = validateRegistration(user);
+        if (!result.isSuccess()) {
+            return result;
+        }
+        
+        // 4. 檢查使用者是否已存在
+        long start = System.nanoTime();
+        boolean exists = isUserExists(user.getId());
+        REGISTER_EXISTENCE_CHECK.stop(start);
+        if (exists) {
+            REGISTER_DUPLICATE.increment();
+            result.setSuccess(false);
+            result.setMessage("使用者 ID 已存在");
+            LOGGER.log(Level.WARNING, "嘗試註冊已存在的使用者: {0}", user.getId());
+            return result;
+        }
+        
+        return result;
+    }
+    
+    /**
+     * 註冊資料驗證（不需存取資料庫的部分：必填、格式、密碼強度）
+     * @param user 使用者物件
+     * @return 驗證結果，isSuccess() 為 true 表示通過
+     */
+    private RegistrationResult validateRegistration(User user) {
         RegistrationResult result = new RegistrationResult();
         
         // 1. 輸入驗證
@@ -48,12 +169,15 @@ public class UserService {
         }
         
         // 2. 資料驗證
+        long start = System.nanoTime();
         ValidationResult validation = ValidationUtil.validateUserData(
             user.getId(), user.getName(), user.getEmail(),
             user.getPhone(), user.getAddress(), user.getCreditCard()
         );
+        REGISTER_VALIDATION.stop(start);
         
         if (!validation.isValid()) {
+            REGISTER_INVALID.increment();
             result.setSuccess(false);
             result.setMessage("資料驗證失敗: " + validation.getErrorMessage());
             LOGGER.log(Level.WARNING, "使用者資料驗證失敗: {0}, 錯誤: {1}", 
@@ -62,44 +186,61 @@ public class UserService {
         }
         
         // 3. 密碼強度檢查
-        if (!PasswordUtil.isPasswordValid(user.getPassword())) {
+        start = System.nanoTime();
+        boolean strong = PasswordUtil.isPasswordValid(user.getPassword());
+        REGISTER_PASSWORD_STRENGTH.stop(start);
+        if (!strong) {
+            REGISTER_WEAK_PASSWORD.increment();
             result.setSuccess(false);
             result.setMessage("密碼必須至少6位，且包含字母和數字");
             LOGGER.log(Level.WARNING, "密碼強度不足: {0}", user.getId());
             return result;
         }
         
-        // 4. 檢查使用者是否已存在
-        if (isUserExists(user.getId())) {
-            result.setSuccess(false);
-            result.setMessage("使用者 ID 已存在");
-            LOGGER.log(Level.WARNING, "嘗試註冊已存在的使用者: {0}", user.getId());
-            return result;
-        }
-        
-        // 5. 密碼加密
-        try {
-            String hashedPassword = PasswordUtil.hashPassword(user.getPassword());
-            user.setPassword(hashedPassword);
-        } catch (Exception e) {
-            result.setSuccess(false);
-            result.setMessage("密碼處理失敗");
-            LOGGER.log(Level.SEVERE, "密碼加密失敗: " + user.getId(), e);
-            return result;
-        }
+        result.setSuccess(true);
+        return result;
+    }
+    
+    /**
+     * 完成註冊（清理資料並寫入資料庫）
+     * @param user 已通過 {@link #checkRegistration(User)} 的使用者物件
+     * @param hashedPassword 已雜湊的密碼
+     * @return 註冊結果
+     */
+    public RegistrationResult completeRegistration(User user, String hashedPassword) {
+        RegistrationResult result = new RegistrationResult();
+        user.setPassword(hashedPassword);
         
         // 6. 清理輸入資料
+        long start = System.nanoTime();
         sanitizeUserData(user);
+        REGISTER_SANITIZE.stop(start);
         
-        // 7. 儲存到資料庫
-        boolean saved = userDAO.insertUser(user);
+        // 7. 儲存到資料庫（過濾器判斷不存在時未查詢資料庫，ID 是否重複以主鍵限制為準）
+        start = System.nanoTime();
+        UserDAO.InsertResult saved = userDAO.insert(user);
+        REGISTER_INSERT.stop(start);
         
-        if (saved) {
+        if (saved == UserDAO.InsertResult.INSERTED) {
+            REGISTER_SUCCESS.increment();
+            UserIdFilter.getInstance().add(user.getId());
             result.setSuccess(true);
             result.setMessage("註冊成功");
             result.setUserId(user.getId());
             LOGGER.log(Level.INFO, "使用者註冊成功: {0}", user.getId());
+            
+            // 8. 歡迎信只寫入郵件日誌，由背景執行緒寄送
+            start = System.nanoTime();
+            queueWelcomeMail(user);
+            REGISTER_WELCOME_MAIL.stop(start);
+        } else if (saved == UserDAO.InsertResult.DUPLICATE_ID) {
+            REGISTER_DUPLICATE.increment();
+            UserIdFilter.getInstance().add(user.getId());
+            result.setSuccess(false);
+            result.setMessage("使用者 ID 已存在");
+            LOGGER.log(Level.WARNING, "嘗試註冊已存在的使用者: {0}", user.getId());
         } else {
+            REGISTER_INSERT_FAILED.increment();
             result.setSuccess(false);
             result.setMessage("註冊失敗，請稍後再試");
             LOGGER.log(Level.SEVERE, "使用者註冊失敗: {0}", user.getId());
@@ -109,18 +250,199 @@ public class UserService {
     }
     
     /**
-     * 使用者登入
+     * 批次註冊（匯入合作夥伴的客戶名單等）
+     * - 資料驗證與密碼雜湊在 fork-join 執行緒池平行處理
+     * - 每 100 個 ID 以一次 IN 查詢檢查是否已存在，同一批內重複的 ID 只保留第一筆
+     * - 以 JDBC 批次新增，每 database.batch.size 筆一個交易
+     * @param users 使用者清單
+     * @return 與輸入順序相同的註冊結果
+     */
+    public List<RegistrationResult> registerUsers(Collection<User> users) {
+        List<User> list = new ArrayList<>(users);
+        RegistrationResult[] results = new RegistrationResult[list.size()];
+        long startTime = System.nanoTime();
+        LOGGER.log(Level.INFO, "開始批次註冊: {0} 筆", list.size());
+        
+        // 1. 平行驗證資料與密碼強度
+        BATCH_POOL.submit(() -> IntStream.range(0, list.size()).parallel().forEach(i -> {
+            RegistrationResult validation = validateRegistration(list.get(i));
+            if (!validation.isSuccess()) {
+                results[i] = validation;
+            }
+        })).join();
+        
+        // 2. 同一批內重複的 ID 只保留第一筆
+        Map<String, Integer> firstIndex = new HashMap<>();
+        for (int i = 0; i < list.size(); i++) {
+            if (results[i] == null && firstIndex.putIfAbsent(normalizeId(list.get(i).getId()), i) != null) {
+                REGISTER_DUPLICATE.increment();
+                results[i] = failure("使用者 ID 重複");
+            }
+        }
+        
+        // 3. 檢查使用者是否已存在（每 100 個 ID 一次查詢；不以本節點的過濾器略過，
+        //    其他節點或匯入工具新增的 ID 可能不在過濾器中，而批次新增無法區分主鍵重複與其他失敗）
+        UserIdFilter filter = UserIdFilter.getInstance();
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            if (results[i] == null) {
+                candidates.add(list.get(i).getId());
+            }
+        }
+        
+        Set<String> existing = new HashSet<>();
+        try {
+            for (String id : userDAO.findExistingUserIds(candidates)) {
+                existing.add(normalizeId(id));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "批次檢查使用者是否存在時發生 SQL 異常", e);
+            return fillRemaining(results, "註冊失敗，請稍後再試");
+        }
+        
+        for (int i = 0; i < list.size(); i++) {
+            if (results[i] == null && existing.contains(normalizeId(list.get(i).getId()))) {
+                REGISTER_DUPLICATE.increment();
+                results[i] = failure("使用者 ID 已存在");
+            }
+        }
+        
+        // 4. 平行密碼加密
+        String[] hashedPasswords = new String[list.size()];
+        BATCH_POOL.submit(() -> IntStream.range(0, list.size()).parallel().forEach(i -> {
+            if (results[i] != null) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                hashedPasswords[i] = PasswordUtil.hashPassword(list.get(i).getPassword());
+                REGISTER_HASHING.stop(start);
+            } catch (Exception e) {
+                REGISTER_HASH_ERROR.increment();
+                results[i] = failure("密碼處理失敗");
+                LOGGER.log(Level.SEVERE, "密碼加密失敗: " + list.get(i).getId(), e);
+            }
+        })).join();
+        
+        // 5. 清理輸入資料並批次儲存
+        List<User> pending = new ArrayList<>();
+        List<Integer> pendingIndex = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            if (results[i] == null) {
+                User user = list.get(i);
+                user.setPassword(hashedPasswords[i]);
+                sanitizeUserData(user);
+                pending.add(user);
+                pendingIndex.add(i);
+            }
+        }
+        
+        boolean[] saved;
+        try {
+            saved = userDAO.insertUsers(pending, BATCH_SIZE);
+        } catch (SQLException e) {
+            REGISTER_INSERT_FAILED.add(pending.size());
+            LOGGER.log(Level.SEVERE, "批次新增使用者時發生 SQL 異常", e);
+            return fillRemaining(results, "註冊失敗，請稍後再試");
+        }
+        
+        int succeeded = 0;
+        for (int j = 0; j < pending.size(); j++) {
+            User user = pending.get(j);
+            if (saved[j]) {
+                filter.add(user.getId());
+                RegistrationResult result = new RegistrationResult();
+                result.setSuccess(true);
+                result.setMessage("註冊成功");
+                result.setUserId(user.getId());
+                results[pendingIndex.get(j)] = result;
+                succeeded++;
+                REGISTER_SUCCESS.increment();
+            } else {
+                REGISTER_INSERT_FAILED.increment();
+                results[pendingIndex.get(j)] = failure("註冊失敗，請稍後再試");
+            }
+        }
+        
+        LOGGER.log(Level.INFO, "批次註冊完成: 成功 {0} / {1} 筆, 耗時 {2} ms",
+                  new Object[]{succeeded, list.size(), (System.nanoTime() - startTime) / 1_000_000});
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * 建立失敗的註冊結果
+     */
+    private static RegistrationResult failure(String message) {
+        RegistrationResult result = new RegistrationResult();
+        result.setSuccess(false);
+        result.setMessage(message);
+        return result;
+    }
+    
+    /**
+     * 將尚未有結果的項目標記為失敗
+     */
+    private static List<RegistrationResult> fillRemaining(RegistrationResult[] results, String message) {
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = failure(message);
+            }
+        }
+        return Arrays.asList(results);
+    }
+    
+    private static Metrics.Timer registrationStage(String stage) {
+        return Metrics.timer("user_registration_stage_seconds", "使用者註冊各階段耗時", "stage", stage);
+    }
+    
+    private static Metrics.Counter registrationOutcome(String outcome) {
+        return Metrics.counter("user_registration_total", "使用者註冊結果", "outcome", outcome);
+    }
+    
+    private static Metrics.Timer loginStage(String stage) {
+        return Metrics.timer("user_login_stage_seconds", "使用者登入各階段耗時", "stage", stage);
+    }
+    
+    private static Metrics.Counter loginOutcome(String outcome) {
+        return Metrics.counter("user_login_total", "使用者登入結果", "outcome", outcome);
+    }
+    
+    /**
+     * 使用者 ID 比對用的正規化（與 MySQL 預設不分大小寫的主鍵比對一致）
+     */
+    private static String normalizeId(String userId) {
+        return userId.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * 使用者登入（來源 IP 未知，只依使用者 ID 限制失敗次數）
      * @param userId 使用者 ID
      * @param password 密碼
      * @return 登入結果
      */
     public LoginResult loginUser(String userId, String password) {
+        return loginUser(userId, password, null);
+    }
+    
+    /**
+     * 使用者登入
+     * 失敗次數過多而鎖定時，不查詢資料庫也不驗證密碼，直接拒絕
+     * @param userId 使用者 ID
+     * @param password 密碼
+     * @param clientIp 來源 IP，未知時為 null
+     * @return 登入結果
+     */
+    public LoginResult loginUser(String userId, String password, String clientIp) {
         LOGGER.log(Level.INFO, "使用者登入嘗試: {0}", userId);
         
         LoginResult result = new LoginResult();
         
         // 1. 輸入驗證
-        if (!ValidationUtil.isValidUserId(userId) || password == null || password.trim().isEmpty()) {
+        long start = System.nanoTime();
+        boolean valid = ValidationUtil.isValidUserId(userId) && password != null && !password.trim().isEmpty();
+        LOGIN_VALIDATION.stop(start);
+        if (!valid) {
+            LOGIN_INVALID.increment();
             result.setSuccess(false);
             result.setMessage("使用者 ID 或密碼格式不正確");
             LOGGER.log(Level.WARNING, "登入輸入驗證失敗: {0}", userId);
@@ -130,27 +452,61 @@ public class UserService {
         // 2. 清理輸入
         userId = ValidationUtil.sanitizeInput(userId);
         
-        // 3. 查詢使用者
-        User user = userDAO.getUserById(userId);
-        if (user == null) {
+        // 3. 失敗次數過多時直接拒絕
+        LoginAttemptTracker tracker = LoginAttemptTracker.getInstance();
+        start = System.nanoTime();
+        long lockedMillis = tracker.getRemainingLockMillis(userId, clientIp);
+        LOGIN_LOCKOUT_CHECK.stop(start);
+        if (lockedMillis > 0) {
+            LOGIN_LOCKED.increment();
+            result.setSuccess(false);
+            result.setMessage("登入失敗次數過多，請稍後再試");
+            result.setRetryAfterSeconds((lockedMillis + 999) / 1000);
+            LOGGER.log(Level.WARNING, "登入已暫時鎖定: {0}", userId);
+            return result;
+        }
+        
+        // 4. 查詢登入憑證與基本資料（同一次查詢，不讀取信用卡號碼）
+        start = System.nanoTime();
+        UserCredentials credentials = userDAO.findLoginCredentials(userId);
+        LOGIN_LOOKUP.stop(start);
+        if (credentials == null) {
+            LOGIN_UNKNOWN_USER.increment();
+            tracker.recordFailure(userId, clientIp);
             result.setSuccess(false);
             result.setMessage("使用者不存在");
             LOGGER.log(Level.WARNING, "嘗試登入不存在的使用者: {0}", userId);
             return result;
         }
         
-        // 4. 驗證密碼
-        if (!PasswordUtil.verifyPassword(password, user.getPassword())) {
+        // 5. 驗證密碼
+        start = System.nanoTime();
+        boolean verified = PasswordUtil.verifyPassword(password, credentials.getPasswordHash());
+        LOGIN_VERIFY.stop(start);
+        if (!verified) {
+            LOGIN_BAD_PASSWORD.increment();
+            tracker.recordFailure(userId, clientIp);
             result.setSuccess(false);
             result.setMessage("密碼錯誤");
             LOGGER.log(Level.WARNING, "密碼驗證失敗: {0}", userId);
             return result;
         }
         
-        // 5. 登入成功
+        // 6. 密碼參數過舊時，以目前參數重新雜湊（失敗不影響本次登入）
+        tracker.recordSuccess(userId, clientIp);
+        start = System.nanoTime();
+        String passwordHash = rehashIfNeeded(credentials, password);
+        LOGIN_REHASH.stop(start);
+        
+        // 7. 登入成功：回傳查詢憑證時一併取得的基本資料（不含密碼雜湊與信用卡號碼）
+        LOGIN_SUCCESS.increment();
         result.setSuccess(true);
         result.setMessage("登入成功");
-        result.setUser(user);
+        result.setUser(credentials.getSummary().toUser());
+        if (AuthTokens.isEnabled()) {
+            result.setToken(AuthTokens.issue(credentials.getId(), DEFAULT_ROLES,
+                                             AuthTokens.credentialStamp(passwordHash)));
+        }
         LOGGER.log(Level.INFO, "使用者登入成功: {0}", userId);
         
         return result;
@@ -158,6 +514,7 @@ public class UserService {
     
     /**
      * 取得使用者資訊
+     * 回傳完整的使用者資料（含密碼雜湊與信用卡號碼）；只需要顯示基本資料時請使用 {@link #getUserSummary}
      * @param userId 使用者 ID
      * @return 使用者物件
      */
@@ -172,12 +529,72 @@ public class UserService {
     }
     
     /**
-     * 檢查使用者是否存在
+     * 取得使用者基本資料（不含密碼雜湊與信用卡號碼，可由快取回應）
+     * @param userId 使用者 ID
+     * @return 使用者基本資料
+     */
+    public UserSummary getUserSummary(String userId) {
+        if (!ValidationUtil.isValidUserId(userId)) {
+            LOGGER.log(Level.WARNING, "無效的使用者 ID: {0}", userId);
+            return null;
+        }
+        
+        userId = ValidationUtil.sanitizeInput(userId);
+        return userDAO.findUserSummary(userId);
+    }
+    
+    /**
+     * 檢查使用者是否存在（註冊前的預先檢查，結果不作為最終判斷）
+     * 過濾器判斷不存在時不查詢資料庫；否則只查主鍵（SELECT 1）
+     * 過濾器只反映本節點看得到的新增，判斷可能過時，最終以新增時的主鍵限制為準（見 completeRegistration）
      * @param userId 使用者 ID
      * @return 是否存在
      */
     private boolean isUserExists(String userId) {
-        return userDAO.getUserById(userId) != null;
+        if (!UserIdFilter.getInstance().mightExist(userId)) {
+            return false;
+        }
+        return userDAO.userExists(userId);
+    }
+    
+    /**
+     * 使用者密碼雜湊參數（演算法、迭代次數、鹽值長度）不是目前設定時，重新雜湊並更新
+     * @param credentials 已通過密碼驗證的登入憑證
+     * @param password 明文密碼
+     * @return 使用者目前的密碼雜湊（重新雜湊成功時為新的雜湊）
+     */
+    private String rehashIfNeeded(UserCredentials credentials, String password) {
+        if (!PasswordUtil.needsRehash(credentials.getPasswordHash())) {
+            return credentials.getPasswordHash();
+        }
+        
+        try {
+            String rehashed = PasswordUtil.hashPassword(password);
+            if (userDAO.updatePassword(credentials.getId(), rehashed)) {
+                LOGGER.log(Level.INFO, "已將使用者密碼更新為目前的雜湊參數: {0}", credentials.getId());
+                return rehashed;
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "重新雜湊密碼失敗: " + credentials.getId(), e);
+        }
+        return credentials.getPasswordHash();
+    }
+    
+    /**
+     * 將歡迎信交給背景郵件寄送（未啟用郵件或沒有 email 時略過）
+     * @param user 已註冊的使用者
+     */
+    private void queueWelcomeMail(User user) {
+        MailDispatcher dispatcher = MailDispatcher.getInstance();
+        if (!dispatcher.isRunning() || user.getEmail() == null || user.getEmail().isEmpty()) {
+            return;
+        }
+        
+        String shopName = AppConfig.getString("mail.from.name", "PC Shop");
+        String body = user.getName() + " 您好：\n\n"
+            + "感謝您註冊 " + shopName + "，您的帳號為 " + user.getId() + "。\n\n"
+            + "此郵件由系統自動發送，請勿直接回覆。\n";
+        dispatcher.enqueue(user.getEmail(), "歡迎加入 " + shopName, body);
     }
     
     /**
@@ -195,12 +612,16 @@ public class UserService {
     
     /**
      * 修改密碼
+     * 舊密碼直接與資料庫中的雜湊比對，不經過登入流程（不簽發權杖）；
+     * 與登入共用失敗次數限制：鎖定期間不查詢資料庫也不驗證密碼，舊密碼錯誤計入失敗次數。
+     * 呼叫端應只在已登入的使用者修改自己的密碼時呼叫
      * @param userId 使用者 ID
      * @param oldPassword 舊密碼
      * @param newPassword 新密碼
+     * @param clientIp 來源 IP，未知時為 null
      * @return 是否成功
      */
-    public boolean changePassword(String userId, String oldPassword, String newPassword) {
+    public boolean changePassword(String userId, String oldPassword, String newPassword, String clientIp) {
         LOGGER.log(Level.INFO, "使用者修改密碼: {0}", userId);
         
         // 1. 驗證輸入
@@ -216,15 +637,42 @@ public class UserService {
             return false;
         }
         
-        // 3. 驗證舊密碼
-        LoginResult loginResult = loginUser(userId, oldPassword);
-        if (!loginResult.isSuccess()) {
+        // 3. 失敗次數過多時直接拒絕
+        userId = ValidationUtil.sanitizeInput(userId);
+        LoginAttemptTracker tracker = LoginAttemptTracker.getInstance();
+        if (tracker.getRemainingLockMillis(userId, clientIp) > 0) {
+            LOGGER.log(Level.WARNING, "修改密碼已暫時鎖定: {0}", userId);
+            return false;
+        }
+        
+        // 4. 驗證舊密碼
+        UserCredentials credentials = userDAO.findCredentials(userId);
+        if (credentials == null || !PasswordUtil.verifyPassword(oldPassword, credentials.getPasswordHash())) {
+            tracker.recordFailure(userId, clientIp);
             LOGGER.log(Level.WARNING, "舊密碼驗證失敗: {0}", userId);
             return false;
         }
+        tracker.recordSuccess(userId, clientIp);
+        
+        // 5. 更新密碼
+        String hashedPassword;
+        try {
+            hashedPassword = PasswordUtil.hashPassword(newPassword);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "新密碼加密失敗: " + userId, e);
+            return false;
+        }
+        
+        if (!userDAO.updatePassword(credentials.getId(), hashedPassword)) {
+            LOGGER.log(Level.WARNING, "密碼更新失敗: {0}", userId);
+            return false;
+        }
+        
+        // 6. 撤銷舊的登入權杖（本節點立即生效，其他節點在 security.token.revalidate.interval 內生效）
+        if (AuthTokens.isEnabled()) {
+            AuthTokens.recordStamp(credentials.getId(), AuthTokens.credentialStamp(hashedPassword));
+        }
         
-        // 4. 更新密碼 (這裡需要在 UserDAO 中實作 updatePassword 方法)
-        // TODO: 實作密碼更新功能
         LOGGER.log(Level.INFO, "密碼修改成功: {0}", userId);
         return true;
     }
@@ -254,6 +702,8 @@ public class UserService {
         private boolean success;
         private String message;
         private User user;
+        private long retryAfterSeconds;
+        private String token;
         
         public boolean isSuccess() { return success; }
         public void setSuccess(boolean success) { this.success = success; }
@@ -263,5 +713,15 @@ public class UserService {
         
         public User getUser() { return user; }
         public void setUser(User user) { this.user = user; }
+        
+        /** 因失敗次數過多而鎖定時，距離可再次嘗試的秒數；未鎖定時為 0 */
+        public long getRetryAfterSeconds() { return retryAfterSeconds; }
+        public void setRetryAfterSeconds(long retryAfterSeconds) { this.retryAfterSeconds = retryAfterSeconds; }
+        
+        public boolean isLockedOut() { return retryAfterSeconds > 0; }
+        
+        /** security.session.mode=token 時登入成功簽發的權杖；使用容器 Session 時為 null */
+        public String getToken() { return token; }
+        public void setToken(String token) { this.token = token; }
     }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package servlet;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import service.HealthMonitor;
+import service.HealthMonitor.HealthReport;
+import util.AppConfig;
+
+/**
+ * 健康檢查端點（JSON）
+ * - /health/live: 存活檢查，程序能回應即為 200
+ * - /health、/health/ready: 就緒檢查，就緒時 200，否則 503（負載平衡器應暫停分配流量）
+ * 
+ * 回應只讀取 {@link HealthMonitor} 的背景檢查結果與計數器，不會同步存取資料庫；
+ * monitoring.enabled=false（監控未啟動）時回應 404
+ * 
+ * 未登入的呼叫端（負載平衡器）只取得 status 與 problems；資料庫、連線池、副本與雜湊佇列的細節
+ * 只回應給 admin 角色，或在 monitoring.health.details.public=true 時公開（錯誤細節一律只寫入日誌）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@WebServlet(urlPatterns = {"/health", "/health/ready", "/health/live"})
+public class HealthServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        HealthMonitor monitor = HealthMonitor.getInstance();
+        if (!monitor.isRunning()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        response.setContentType("application/json; charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
+        
+        Map<String, Object> body = new LinkedHashMap<>();
+        if ("/health/live".equals(request.getServletPath())) {
+            body.put("status", "UP");
+        } else {
+            HealthReport report = monitor.getReport();
+            if (!report.isReady()) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            }
+            body.put("status", report.isReady() ? "UP" : "DOWN");
+            body.put("problems", report.getProblems());
+            if (request.isUserInRole("admin") || AppConfig.getBoolean("monitoring.health.details.public", false)) {
+                body.putAll(report.getDetails());
+            }
+        }
+        
+        MAPPER.writeValue(response.getWriter(), body);
+    }
+}
\ No newline at end of file
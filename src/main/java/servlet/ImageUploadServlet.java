@@ -0,0 +1,83 @@
+package servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import exception.ImageUploadException;
+import service.ProductImageService;
+import util.AppConfig;
+
+/**
+ * 商品圖片上傳端點（位於 /admin/*，受 web.xml 的 admin 角色限制）
+ * - POST /admin/images: 請求內容即為圖片檔（Content-Type: image/jpeg、image/png 或 image/gif），
+ *   不使用 multipart，內容直接串流寫入暫存檔，不會整個讀入記憶體
+ * - 成功時回應 201 與內容定址檔名（存入商品的 image_file）及原圖、各尺寸縮圖的網址；縮圖在背景產生
+ * - 超過 upload.max.file.size 回應 413，不支援的格式回應 415，無法解析或尺寸過大回應 400
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@WebServlet(urlPatterns = "/admin/images")
+public class ImageUploadServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        ProductImageService images = ProductImageService.getInstance();
+        if (!images.isRunning()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        // 宣告的長度已超過上限時不讀取內容
+        if (request.getContentLengthLong() > AppConfig.getLong("upload.max.file.size", 10L * 1024 * 1024)) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        
+        String name;
+        try (InputStream in = request.getInputStream()) {
+            name = images.upload(in);
+        } catch (ImageUploadException e) {
+            response.sendError(statusOf(e), e.getUserMessage());
+            return;
+        }
+        
+        String base = request.getContextPath() + AppConfig.getString("product.image.path", "/images/products/");
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("imageFile", name);
+        body.put("url", base + name);
+        body.put("thumbnailUrl", base + ProductImageService.THUMBNAIL + "/" + name);
+        body.put("mediumUrl", base + ProductImageService.MEDIUM + "/" + name);
+        
+        response.setStatus(HttpServletResponse.SC_CREATED);
+        response.setHeader("Location", base + name);
+        response.setHeader("Cache-Control", "no-store");
+        response.setContentType("application/json; charset=UTF-8");
+        MAPPER.writeValue(response.getWriter(), body);
+    }
+    
+    private int statusOf(ImageUploadException e) {
+        if (ImageUploadException.FILE_TOO_LARGE.equals(e.getErrorCode())) {
+            return HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE;
+        }
+        if (ImageUploadException.UNSUPPORTED_FORMAT.equals(e.getErrorCode())) {
+            return HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE;
+        }
+        return HttpServletResponse.SC_BAD_REQUEST;
+    }
+}
\ No newline at end of file
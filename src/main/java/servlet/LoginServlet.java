@@ -0,0 +1,132 @@
+package servlet;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import dao.ConnectionProviders;
+import service.UserService;
+import service.UserService.LoginResult;
+import util.AuthTokens;
+import util.RequestUtil;
+
+/**
+ * 使用者登入控制器
+ * - 使用 Service 層處理登入與失敗次數限制
+ * - 失敗次數過多時回應 429 與 Retry-After，不查詢資料庫也不驗證密碼
+ * - 登入成功後更換 Session ID，避免 Session 固定攻擊
+ * - security.session.mode=token 時改以 HttpOnly Cookie 回傳簽章權杖，不建立 Session
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@WebServlet(name = "LoginServlet", urlPatterns = "/login")
+public class LoginServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(LoginServlet.class.getName());
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        // 預設顯示登入表單
+        response.sendRedirect("loginPage.jsp");
+    }
+    
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        // 設定字符編碼
+        request.setCharacterEncoding("UTF-8");
+        response.setContentType("text/html; charset=UTF-8");
+        
+        // 防止快取
+        response.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
+        response.setHeader("Pragma", "no-cache");
+        response.setDateHeader("Expires", 0);
+        
+        String userId = request.getParameter("id");
+        String password = request.getParameter("password");
+        
+        try (Connection conn = getConnection()) {
+            UserService userService = new UserService(conn);
+            LoginResult result = userService.loginUser(userId, password, RequestUtil.getClientIp(request));
+            
+            if (result.isLockedOut()) {
+                // 失敗次數過多
+                response.setHeader("Retry-After", String.valueOf(result.getRetryAfterSeconds()));
+                response.setStatus(429);
+                handleError(request, response, result.getMessage());
+                return;
+            }
+            
+            if (!result.isSuccess()) {
+                handleError(request, response, result.getMessage());
+                return;
+            }
+            
+            // 無狀態模式：權杖放在 Cookie 中，由 TokenAuthFilter 驗證
+            if (result.getToken() != null) {
+                response.addCookie(newTokenCookie(request, result.getToken()));
+                response.sendRedirect("index.jsp?message=login_success");
+                return;
+            }
+            
+            // 登入成功：更換 Session ID 後存入使用者基本資料（不含密碼雜湊與信用卡號碼）
+            HttpSession oldSession = request.getSession(false);
+            if (oldSession != null) {
+                oldSession.invalidate();
+            }
+            HttpSession session = request.getSession(true);
+            session.setAttribute("user", result.getUser());
+            
+            response.sendRedirect("index.jsp?message=login_success");
+            
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "資料庫連線錯誤", e);
+            handleError(request, response, "系統暫時無法處理您的請求，請稍後再試");
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "處理登入請求時發生異常", e);
+            handleError(request, response, "系統暫時無法處理您的請求，請稍後再試");
+        }
+    }
+    
+    /**
+     * 建立保存登入權杖的 Cookie
+     */
+    private Cookie newTokenCookie(HttpServletRequest request, String token) {
+        Cookie cookie = new Cookie(AuthTokens.COOKIE_NAME, token);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+        cookie.setMaxAge(AuthTokens.getTtlSeconds());
+        return cookie;
+    }
+    
+    /**
+     * 取得資料庫連線
+     */
+    private Connection getConnection() throws SQLException {
+        return ConnectionProviders.getDefault().getConnection();
+    }
+    
+    /**
+     * 處理錯誤
+     */
+    private void handleError(HttpServletRequest request, HttpServletResponse response, String errorMessage)
+            throws ServletException, IOException {
+        
+        request.setAttribute("errorMessage", errorMessage);
+        request.getRequestDispatcher("error.jsp").forward(request, response);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,48 @@
+package servlet;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import util.AppConfig;
+import util.Metrics;
+
+/**
+ * 指標輸出（Prometheus 文字格式）
+ * monitoring.metrics.enabled=false 時回應 404
+ * 只回應給 admin 角色，其他呼叫端回應 403；monitoring.metrics.public=true 時公開
+ * （供無法登入的收集器使用，須另以網路層限制來源）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        if (!Metrics.isEnabled()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!request.isUserInRole("admin") && !AppConfig.getBoolean("monitoring.metrics.public", false)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        
+        response.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
+        
+        Writer writer = response.getWriter();
+        Metrics.writePrometheus(writer);
+        writer.flush();
+    }
+}
\ No newline at end of file
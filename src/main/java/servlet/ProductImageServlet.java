@@ -0,0 +1,142 @@
+package servlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import dao.ImageFileStore;
+import service.ProductImageService;
+import util.AppConfig;
+import util.MappedFileCache;
+import util.RequestUtil;
+
+/**
+ * 商品圖片端點
+ * - GET /images/products/{檔名}: 原圖
+ * - GET /images/products/{thumbnail|medium}/{檔名}: 縮圖，尚未產生時當場產生（等待 product.image.generate.timeout 毫秒）
+ * 
+ * 檔名以內容雜湊命名，內容永不改變：ETag 直接由檔名組成，If-None-Match 相符時不必讀取檔案即回應 304，
+ * 並以 Cache-Control: immutable 讓瀏覽器與 CDN 長期快取。內容的傳送方式：
+ * - 小檔案（縮圖）從 {@link MappedFileCache} 的記憶體映射直接寫出，不經過 Java heap 上的檔案副本
+ * - 較大的檔案在容器支援 sendfile 時（Tomcat NIO/NIO2/APR）交由容器以 sendfile 零複製傳送
+ * - 其餘情況以 FileChannel.transferTo 寫到回應
+ * 
+ * product.image.path 須與此 Servlet 的路徑相同
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@WebServlet(urlPatterns = "/images/products/*")
+public class ProductImageServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(ProductImageServlet.class.getName());
+    
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    // 小於此大小的檔案直接從記憶體映射寫出，sendfile 的額外處理不划算（與 Tomcat DefaultServlet 的預設相同）
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        ProductImageService images = ProductImageService.getInstance();
+        if (!images.isRunning()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        // /{檔名} 或 /{尺寸}/{檔名}
+        String path = request.getPathInfo();
+        String[] parts = path == null ? new String[0] : path.substring(1).split("/", -1);
+        String variant = parts.length == 2 ? parts[0] : null;
+        String name = parts.length == 1 || parts.length == 2 ? parts[parts.length - 1] : null;
+        if (!ImageFileStore.isValidName(name) || (variant != null && !images.isVariant(variant))) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        String etag = "\"" + (variant != null ? variant + "-" : "") + name.substring(0, name.indexOf('.')) + "\"";
+        response.setHeader("Cache-Control", CACHE_CONTROL);
+        response.setHeader("ETag", etag);
+        if (RequestUtil.matchesIfNoneMatch(request, etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        Path file;
+        try {
+            file = images.getFile(variant, name, AppConfig.getLong("product.image.generate.timeout", 5000));
+        } catch (RejectedExecutionException | TimeoutException e) {
+            response.setHeader("Cache-Control", "no-store");
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException(e);
+        }
+        if (file == null) {
+            response.setHeader("Cache-Control", "no-store");
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        response.setContentType(ImageFileStore.Format.of(name).getContentType());
+        long size = Files.size(file);
+        response.setContentLengthLong(size);
+        if (size >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+        
+        MappedFileCache.Entry mapped = images.map(file);
+        if (mapped != null) {
+            writeMapped(mapped.buffer(), response);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, size, response);
+        }
+    }
+    
+    private void writeMapped(ByteBuffer buffer, HttpServletResponse response) throws IOException {
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+    
+    private void transfer(FileChannel channel, long size, HttpServletResponse response) throws IOException {
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        long position = 0;
+        while (position < size) {
+            long sent = channel.transferTo(position, size - position, out);
+            if (sent <= 0) {
+                LOGGER.log(Level.WARNING, "圖片傳送中斷: 已傳送 {0}/{1} bytes", new Object[]{position, size});
+                return;
+            }
+            position += sent;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,167 @@
+package servlet;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import bean.Product;
+import service.ProductCatalog;
+import service.ProductCatalog.Page;
+import service.ProductCatalog.Sort;
+import service.ProductSearchIndex;
+import util.RequestUtil;
+
+/**
+ * 商品查詢端點（JSON）
+ * - GET /products?category=&sort=&size=&cursor=: 商品列表，sort 為 newest（預設）、price_asc 或 price_desc；
+ *   下一頁以回應中的 nextCursor 作為 cursor 參數
+ * - GET /products/{id}: 商品詳情
+ * - GET /products/categories: 各分類的商品數
+ * - GET /products/search?q=&category=&size=: 全文搜尋，依相關性排序
+ * - GET /products/suggest?q=&size=: 自動完成，補齊最後一個詞
+ * 
+ * 回應只讀取 {@link ProductCatalog} 的記憶體快照與 {@link ProductSearchIndex}，不存取資料庫；
+ * 以快照（或索引對應的快照）的資料指紋作為 ETag，資料未變時回應 304。目錄第一次載入完成前回應 503，
+ * 搜尋未啟用（product.search.enabled=false）時搜尋端點回應 404
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+@WebServlet(urlPatterns = {"/products", "/products/*"})
+public class ProductServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    // 自動完成的預設與最多筆數
+    private static final int DEFAULT_SUGGESTIONS = 10;
+    private static final int MAX_SUGGESTIONS = 20;
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        String path = request.getPathInfo();
+        boolean search = "/search".equals(path) || "/suggest".equals(path);
+        ProductCatalog catalog = ProductCatalog.getInstance();
+        ProductSearchIndex index = ProductSearchIndex.getInstance();
+        if (search && !index.isRunning()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!(search ? index.isReady() : catalog.isReady())) {
+            response.setHeader("Retry-After", "5");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        
+        // 先取指紋再讀資料：讀到較新的快照時 ETag 只會較舊，下次請求仍會取得完整回應
+        // 指紋由商品資料計算，各節點與重新啟動後相同資料得到相同的 ETag（版本編號是各節點自己的計數器，不能使用）
+        String etag = "W/\"" + Long.toHexString(search ? index.getFingerprint() : catalog.getFingerprint()) + "\"";
+        if (RequestUtil.matchesIfNoneMatch(request, etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        Object body;
+        if (path == null || "/".equals(path)) {
+            body = listProducts(request, response, catalog);
+        } else if ("/search".equals(path)) {
+            body = searchProducts(request, response, catalog, index);
+        } else if ("/suggest".equals(path)) {
+            body = index.suggest(request.getParameter("q"), suggestionCount(request.getParameter("size")));
+        } else if ("/categories".equals(path)) {
+            body = catalog.getCategories();
+        } else {
+            body = findProduct(path.substring(1), catalog);
+            if (body == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+        }
+        if (body == null) {
+            return;
+        }
+        
+        response.setContentType("application/json; charset=UTF-8");
+        response.setHeader("Cache-Control", "public, no-cache");
+        response.setHeader("ETag", etag);
+        MAPPER.writeValue(response.getWriter(), body);
+    }
+    
+    /**
+     * 查詢一頁商品
+     * @return 回應內容，參數錯誤時已回應 400 並回傳 null
+     */
+    private Map<String, Object> listProducts(HttpServletRequest request, HttpServletResponse response,
+                                             ProductCatalog catalog) throws IOException {
+        Page page;
+        try {
+            String category = request.getParameter("category");
+            String cursor = request.getParameter("cursor");
+            String size = request.getParameter("size");
+            page = catalog.getPage(category == null || category.isEmpty() ? null : category,
+                                   Sort.parse(request.getParameter("sort")),
+                                   cursor == null || cursor.isEmpty() ? null : cursor,
+                                   catalog.clampPageSize(size == null || size.isEmpty() ? 0 : Integer.parseInt(size)));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return null;
+        }
+        
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", page.getItems());
+        body.put("total", page.getTotal());
+        body.put("nextCursor", page.getNextCursor());
+        return body;
+    }
+    
+    /**
+     * 全文搜尋
+     * @return 回應內容，參數錯誤時已回應 400 並回傳 null
+     */
+    private Map<String, Object> searchProducts(HttpServletRequest request, HttpServletResponse response,
+                                               ProductCatalog catalog, ProductSearchIndex index) throws IOException {
+        int size;
+        try {
+            String value = request.getParameter("size");
+            size = catalog.clampPageSize(value == null || value.isEmpty() ? 0 : Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return null;
+        }
+        
+        String category = request.getParameter("category");
+        ProductSearchIndex.Result result = index.search(request.getParameter("q"),
+                                                        category == null || category.isEmpty() ? null : category, size);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", result.getItems());
+        body.put("total", result.getTotal());
+        return body;
+    }
+    
+    private int suggestionCount(String value) {
+        try {
+            int size = value == null || value.isEmpty() ? DEFAULT_SUGGESTIONS : Integer.parseInt(value);
+            return Math.max(1, Math.min(MAX_SUGGESTIONS, size));
+        } catch (NumberFormatException e) {
+            return DEFAULT_SUGGESTIONS;
+        }
+    }
+    
+    private Product findProduct(String id, ProductCatalog catalog) {
+        try {
+            return catalog.getProduct(Long.parseLong(id));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -1,46 +1,94 @@
 package servlet;
 
 import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
-import javax.sql.DataSource;
 
 import bean.User;
+import dao.ConnectionProviders;
+import dao.OffHeapPendingRegistrationStore;
+import dao.PendingRegistrationStore;
 import service.UserService;
 import service.UserService.RegistrationResult;
-import util.ValidationUtil;
+import util.AppConfig;
+import util.AuthTokens;
+import util.PasswordUtil;
 
 /**
  * 使用者註冊控制器 - 改良版本
  * - 使用 Service 層處理業務邏輯
  * - 改善安全性和錯誤處理
  * - 加入日誌記錄
+ * - GET 只重導向到註冊表單；送出與確認只接受 POST，因此一定經過限流
+ * - 確認註冊時以 Servlet 非同步模式執行密碼雜湊，雜湊期間釋放請求執行緒
+ * - 待確認的註冊資料存放在 {@link PendingRegistrationStore}，Session 只保存代碼；
+ *   security.session.mode=token 時改以 PCSHOP_REG Cookie（路徑限 /register）保存代碼，不建立 Session
+ * - 暫存區只存在於送出表單的節點，不隨容器 Session 複製：確認步驟須回到同一節點，負載平衡器須對 /register
+ *   使用黏著路由（token 模式可依 PCSHOP_REG Cookie 黏著），容錯移轉時待確認的註冊會遺失；
+ *   token 模式啟動時記錄此限制，送錯節點時記錄警告（見 README「多節點部署」）
  * 
  * @author PC商城專案維護小組
  * @version 2.0
  */
-@WebServlet("/register")
+@WebServlet(urlPatterns = "/register", asyncSupported = true)
 public class RegisterServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
     private static final Logger LOGGER = Logger.getLogger(RegisterServlet.class.getName());
     
-    // JNDI 資源名稱
-    private static final String DATASOURCE_JNDI = "java:comp/env/jdbc/EmployeeDB";
+    // 非同步註冊逾時（毫秒）
+    private static final long ASYNC_TIMEOUT_MS = 30000;
+    
+    // Session 中保存待確認註冊資料代碼的屬性名稱
+    private static final String PENDING_TOKEN = "pendingRegistration";
+    // 無狀態模式下保存待確認註冊資料代碼的 Cookie 名稱
+    private static final String PENDING_COOKIE = "PCSHOP_REG";
+    
+    private transient PendingRegistrationStore pendingStore;
+    
+    @Override
+    public void init() throws ServletException {
+        pendingStore = OffHeapPendingRegistrationStore.fromConfig();
+        if (AuthTokens.isEnabled()) {
+            LOGGER.log(Level.WARNING, "security.session.mode=token：待確認的註冊資料只存在於本節點，"
+                       + "負載平衡器須依 PCSHOP_REG Cookie 將 /register 黏著到同一節點，節點重新啟動時尚未確認的註冊會遺失");
+        }
+    }
+    
+    @Override
+    public void destroy() {
+        if (pendingStore != null) {
+            pendingStore.shutdown();
+        }
+    }
     
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) 
             throws ServletException, IOException {
+        // 只顯示註冊表單：送出與確認只接受 POST（經過 RateLimitFilter 限流）
+        response.sendRedirect("RegisterForm.jsp");
+    }
+    
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
         
         // 設定字符編碼
         request.setCharacterEncoding("UTF-8");
@@ -68,12 +116,6 @@ public class RegisterServlet extends HttpServlet {
         }
     }
     
-    @Override
-    protected void doPost(HttpServletRequest request, HttpServletResponse response) 
-            throws ServletException, IOException {
-        doGet(request, response);
-    }
-    
     /**
      * 處理提交註冊資料
      */
@@ -89,59 +131,216 @@ public class RegisterServlet extends HttpServlet {
             return;
         }
         
-        // 2. 將使用者資料存入 Session 供確認頁面使用
-        HttpSession session = request.getSession();
-        session.setAttribute("pendingUser", user);
+        // 2. 暫存使用者資料，Session（或 Cookie）只保存代碼
+        String token = pendingStore.put(user);
+        if (token == null) {
+            handleError(request, response, "系統忙碌中，請稍後再試");
+            return;
+        }
+        pendingStore.remove(getPendingToken(request));
+        setPendingToken(request, response, token);
         
-        // 3. 轉到確認頁面
+        // 3. 轉到確認頁面（只在本次請求中提供使用者資料）
+        request.setAttribute("pendingUser", user);
         request.getRequestDispatcher("DisplayUser.jsp").forward(request, response);
     }
     
     /**
      * 處理確認註冊
+     * 資料檢查在請求執行緒上完成並立即歸還連線，密碼雜湊交給雜湊執行緒池，
+     * 雜湊完成後再由容器執行緒寫入資料庫並回應
      */
     private void handleConfirmRegistration(HttpServletRequest request, HttpServletResponse response) 
             throws ServletException, IOException {
         
         LOGGER.log(Level.INFO, "處理註冊確認");
         
-        HttpSession session = request.getSession();
-        User user = (User) session.getAttribute("pendingUser");
+        String token = getPendingToken(request);
+        User user = pendingStore.get(token);
         
         if (user == null) {
+            if (!pendingStore.isLocal(token)) {
+                LOGGER.log(Level.WARNING, "註冊確認送到了其他節點或節點已重新啟動，待確認資料只存在於送出表單的節點："
+                           + "負載平衡器須對 /register 使用黏著 Session");
+            }
             handleError(request, response, "註冊資料已過期，請重新填寫");
             return;
         }
         
-        // 取得資料庫連線並執行註冊
+        // 1. 註冊前置檢查
         try (Connection conn = getConnection()) {
             UserService userService = new UserService(conn);
-            RegistrationResult result = userService.registerUser(user);
+            RegistrationResult check = userService.checkRegistration(user);
+            
+            if (!check.isSuccess()) {
+                removePending(request, response, token);
+                LOGGER.log(Level.WARNING, "使用者註冊失敗: {0}", check.getMessage());
+                handleError(request, response, check.getMessage());
+                return;
+            }
+            
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "資料庫連線錯誤", e);
+            handleError(request, response, "系統暫時無法處理您的請求，請稍後再試");
+            return;
+        }
+        
+        // 2. 進入非同步模式，密碼雜湊期間不佔用請求執行緒
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(ASYNC_TIMEOUT_MS);
+        AtomicBoolean finished = new AtomicBoolean(false);
+        
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if (finished.compareAndSet(false, true)) {
+                    LOGGER.log(Level.WARNING, "非同步註冊逾時: {0}", user.getId());
+                    dispatchError(asyncContext, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 
+                                  "系統忙碌中，請稍後再試");
+                }
+            }
             
-            // 清除 Session 中的暫存資料
-            session.removeAttribute("pendingUser");
+            @Override
+            public void onError(AsyncEvent event) {
+                finished.set(true);
+                LOGGER.log(Level.SEVERE, "非同步註冊發生錯誤", event.getThrowable());
+            }
+            
+            @Override
+            public void onComplete(AsyncEvent event) {
+                finished.set(true);
+            }
+            
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        
+        // 3. 雜湊完成後由容器執行緒完成註冊
+        PasswordUtil.hashPasswordAsync(user.getPassword()).whenComplete((hashedPassword, error) -> {
+            if (error == null) {
+                asyncContext.start(() -> finishRegistration(asyncContext, finished, token, user, hashedPassword));
+                return;
+            }
+            
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            
+            Throwable cause = error instanceof CompletionException && error.getCause() != null 
+                ? error.getCause() : error;
+            
+            if (cause instanceof RejectedExecutionException) {
+                LOGGER.log(Level.WARNING, "密碼雜湊佇列已滿，拒絕註冊請求: {0}", user.getId());
+                dispatchError(asyncContext, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 
+                              "系統忙碌中，請稍後再試");
+            } else {
+                LOGGER.log(Level.SEVERE, "密碼加密失敗: " + user.getId(), cause);
+                dispatchError(asyncContext, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "密碼處理失敗");
+            }
+        });
+    }
+    
+    /**
+     * 雜湊完成後寫入資料庫並回應（在容器執行緒上執行）
+     */
+    private void finishRegistration(AsyncContext asyncContext, AtomicBoolean finished,
+                                    String token, User user, String hashedPassword) {
+        
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        
+        HttpServletRequest request = (HttpServletRequest) asyncContext.getRequest();
+        HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        
+        try (Connection conn = getConnection()) {
+            UserService userService = new UserService(conn);
+            RegistrationResult result = userService.completeRegistration(user, hashedPassword);
+            
+            // 清除暫存資料
+            removePending(request, response, token);
             
             if (result.isSuccess()) {
-                // 註冊成功
-                session.setAttribute("registrationSuccess", true);
-                session.setAttribute("newUserId", result.getUserId());
-                
                 LOGGER.log(Level.INFO, "使用者註冊成功: {0}", result.getUserId());
                 
-                // 重導向到成功頁面
-                response.sendRedirect("index.jsp?message=registration_success");
+                // 重導向到成功頁面；無狀態模式下以參數傳遞新使用者 ID，不寫入 Session
+                if (AuthTokens.isEnabled()) {
+                    response.sendRedirect("index.jsp?message=registration_success&newUserId="
+                                          + URLEncoder.encode(result.getUserId(), StandardCharsets.UTF_8));
+                } else {
+                    HttpSession session = request.getSession();
+                    session.setAttribute("registrationSuccess", true);
+                    session.setAttribute("newUserId", result.getUserId());
+                    response.sendRedirect("index.jsp?message=registration_success");
+                }
+                asyncContext.complete();
             } else {
                 // 註冊失敗
                 LOGGER.log(Level.WARNING, "使用者註冊失敗: {0}", result.getMessage());
-                handleError(request, response, result.getMessage());
+                dispatchError(asyncContext, HttpServletResponse.SC_OK, result.getMessage());
             }
             
-        } catch (SQLException | NamingException e) {
-            LOGGER.log(Level.SEVERE, "資料庫連線錯誤", e);
-            handleError(request, response, "系統暫時無法處理您的請求，請稍後再試");
+        } catch (SQLException | IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "完成註冊時發生錯誤", e);
+            dispatchError(asyncContext, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, 
+                          "系統暫時無法處理您的請求，請稍後再試");
         }
     }
     
+    /**
+     * 移除暫存的註冊資料與 Session（或 Cookie）中的代碼
+     */
+    private void removePending(HttpServletRequest request, HttpServletResponse response, String token) {
+        pendingStore.remove(token);
+        setPendingToken(request, response, null);
+    }
+    
+    /**
+     * 取得待確認註冊資料的代碼（不建立 Session）
+     */
+    private static String getPendingToken(HttpServletRequest request) {
+        if (!AuthTokens.isEnabled()) {
+            HttpSession session = request.getSession(false);
+            return session == null ? null : (String) session.getAttribute(PENDING_TOKEN);
+        }
+        
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (PENDING_COOKIE.equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 保存待確認註冊資料的代碼
+     * @param token 代碼，null 表示清除
+     */
+    private static void setPendingToken(HttpServletRequest request, HttpServletResponse response, String token) {
+        if (!AuthTokens.isEnabled()) {
+            if (token != null) {
+                request.getSession().setAttribute(PENDING_TOKEN, token);
+            } else {
+                HttpSession session = request.getSession(false);
+                if (session != null) {
+                    session.removeAttribute(PENDING_TOKEN);
+                }
+            }
+            return;
+        }
+        
+        Cookie cookie = new Cookie(PENDING_COOKIE, token != null ? token : "");
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        cookie.setPath(request.getContextPath() + "/register");
+        cookie.setMaxAge(token != null ? AppConfig.getInt("registration.pending.ttl", 1800) : 0);
+        response.addCookie(cookie);
+    }
+    
     /**
      * 從請求中收集使用者資料
      */
@@ -187,12 +386,10 @@ public class RegisterServlet extends HttpServlet {
     }
     
     /**
-     * 取得資料庫連線
+     * 取得資料庫連線（由共用的連線提供者取得，不再每次查找 JNDI）
      */
-    private Connection getConnection() throws SQLException, NamingException {
-        InitialContext context = new InitialContext();
-        DataSource dataSource = (DataSource) context.lookup(DATASOURCE_JNDI);
-        return dataSource.getConnection();
+    private Connection getConnection() throws SQLException {
+        return ConnectionProviders.getDefault().getConnection();
     }
     
     /**
@@ -204,4 +401,17 @@ public class RegisterServlet extends HttpServlet {
         request.setAttribute("errorMessage", errorMessage);
         request.getRequestDispatcher("error.jsp").forward(request, response);
     }
+    
+    /**
+     * 非同步模式下處理錯誤
+     */
+    private void dispatchError(AsyncContext asyncContext, int status, String errorMessage) {
+        HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        if (status == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+            response.setHeader("Retry-After", "5");
+        }
+        response.setStatus(status);
+        asyncContext.getRequest().setAttribute("errorMessage", errorMessage);
+        asyncContext.dispatch("/error.jsp");
+    }
 }
\ No newline at end of file
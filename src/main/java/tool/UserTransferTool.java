@@ -0,0 +1,350 @@
+package tool;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import bean.User;
+import dao.DriverManagerDataSource;
+import dao.UserDAO;
+import util.AppConfig;
+
+/**
+ * 使用者資料匯出／匯入命令列工具（JSON Lines，每行一位使用者）
+ * 
+ * 用法：
+ *   java -cp "target/pc-shop-web/WEB-INF/classes:target/pc-shop-web/WEB-INF/lib/*" \
+ *        -Ddatabase.url=jdbc:mysql://localhost:3306/pcshop tool.UserTransferTool export users.jsonl
+ *   ... tool.UserTransferTool import users.jsonl
+ * 加上 --resume 時從上次中斷的檢查點（&lt;檔名&gt;.checkpoint）繼續
+ * 
+ * - 匯出：依 ID 以 keyset 分頁（WHERE id &gt; ? ORDER BY id LIMIT ?），每頁使用唯讀、只能往前的 ResultSet，
+ *   記憶體用量與每頁耗時不隨資料表大小增加；每頁寫入並同步到磁碟後記錄檢查點
+ * - 匯入：逐行解析，每 database.batch.size 行以 JDBC 批次新增為一個交易；已存在的 ID 會略過，可以安全地重跑
+ * - 密碼欄位為資料庫中的雜湊值，匯入時不會重新雜湊
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class UserTransferTool {
+    private static final Logger LOGGER = Logger.getLogger(UserTransferTool.class.getName());
+    
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    
+    private final UserDAO userDAO;
+    private final int pageSize;
+    private final int fetchSize;
+    private final int batchSize;
+    
+    /**
+     * 建構函式
+     * @param connection 資料庫連線
+     */
+    public UserTransferTool(Connection connection) {
+        this.userDAO = new UserDAO(connection);
+        this.pageSize = AppConfig.getInt("transfer.page.size", 10000);
+        this.fetchSize = AppConfig.getInt("transfer.fetch.size", 1000);
+        this.batchSize = AppConfig.getInt("database.batch.size", 500);
+    }
+    
+    public static void main(String[] args) {
+        if (args.length < 2 || !("export".equals(args[0]) || "import".equals(args[0]))) {
+            System.err.println("用法: UserTransferTool export|import <檔案> [--resume]");
+            System.exit(2);
+        }
+        
+        Path file = Paths.get(args[1]);
+        boolean resume = args.length > 2 && "--resume".equals(args[2]);
+        
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            AppConfig.getString("database.driver", null),
+            AppConfig.getString("database.url", null),
+            AppConfig.getString("database.username", null),
+            AppConfig.getString("database.password", null)
+        );
+        
+        try (Connection connection = dataSource.getConnection()) {
+            UserTransferTool tool = new UserTransferTool(connection);
+            if ("export".equals(args[0])) {
+                tool.exportUsers(file, resume);
+            } else {
+                tool.importUsers(file, resume);
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "使用者資料轉移失敗，可加上 --resume 從檢查點繼續", e);
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * 匯出全部使用者
+     * @param file 輸出檔案
+     * @param resume 是否從檢查點繼續
+     * @return 本次匯出筆數
+     * @throws SQLException SQL 異常
+     * @throws IOException 寫檔失敗
+     */
+    public long exportUsers(Path file, boolean resume) throws SQLException, IOException {
+        long startTime = System.nanoTime();
+        Properties checkpoint = resume ? readCheckpoint(file) : new Properties();
+        String lastId = checkpoint.getProperty("lastId");
+        long committedBytes = Long.parseLong(checkpoint.getProperty("bytes", "0"));
+        long total = Long.parseLong(checkpoint.getProperty("rows", "0"));
+        
+        // 截掉上次檢查點之後寫入一半的資料
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(committedBytes);
+        }
+        
+        long exported = 0;
+        try (FileOutputStream fileOut = new FileOutputStream(file.toFile(), true);
+             OutputStream out = new BufferedOutputStream(fileOut, 64 * 1024);
+             JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            
+            // 每行一個物件，由 writeUser 自行換行，不使用預設的空白分隔
+            generator.setRootValueSeparator(null);
+            String[] pageLastId = {lastId};
+            int count;
+            do {
+                count = userDAO.forEachUser(pageLastId[0], pageSize, fetchSize, user -> {
+                    writeUser(generator, user);
+                    pageLastId[0] = user.getId();
+                });
+                
+                // 資料同步到磁碟後才記錄檢查點
+                generator.flush();
+                fileOut.getChannel().force(false);
+                exported += count;
+                
+                checkpoint.setProperty("lastId", pageLastId[0] != null ? pageLastId[0] : "");
+                checkpoint.setProperty("bytes", String.valueOf(fileOut.getChannel().size()));
+                checkpoint.setProperty("rows", String.valueOf(total + exported));
+                writeCheckpoint(file, checkpoint);
+                
+                LOGGER.log(Level.INFO, "已匯出 {0} 筆", total + exported);
+            } while (count == pageSize);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        
+        Files.deleteIfExists(checkpointPath(file));
+        report("匯出", exported, startTime);
+        return exported;
+    }
+    
+    /**
+     * 匯入使用者（已存在的 ID 會略過）
+     * @param file 輸入檔案
+     * @param resume 是否從檢查點繼續
+     * @return 本次新增筆數
+     * @throws SQLException SQL 異常
+     * @throws IOException 讀檔失敗
+     */
+    public long importUsers(Path file, boolean resume) throws SQLException, IOException {
+        long startTime = System.nanoTime();
+        Properties checkpoint = resume ? readCheckpoint(file) : new Properties();
+        long skipLines = Long.parseLong(checkpoint.getProperty("lines", "0"));
+        
+        long lineNumber = 0;
+        long imported = 0;
+        long skipped = 0;
+        long failed = 0;
+        List<User> batch = new ArrayList<>(batchSize);
+        
+        try (InputStream in = Files.newInputStream(file);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024)) {
+            
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= skipLines || line.trim().isEmpty()) {
+                    continue;
+                }
+                
+                try {
+                    batch.add(readUser(line));
+                } catch (IOException e) {
+                    failed++;
+                    LOGGER.log(Level.WARNING, "第 {0} 行格式錯誤，略過: {1}", new Object[]{lineNumber, e.getMessage()});
+                }
+                
+                if (batch.size() == batchSize) {
+                    long[] counts = insertBatch(batch);
+                    imported += counts[0];
+                    skipped += counts[1];
+                    failed += counts[2];
+                    batch.clear();
+                    
+                    checkpoint.setProperty("lines", String.valueOf(lineNumber));
+                    writeCheckpoint(file, checkpoint);
+                    LOGGER.log(Level.INFO, "已處理 {0} 行", lineNumber);
+                }
+            }
+        }
+        
+        long[] counts = insertBatch(batch);
+        imported += counts[0];
+        skipped += counts[1];
+        failed += counts[2];
+        
+        Files.deleteIfExists(checkpointPath(file));
+        LOGGER.log(Level.INFO, "匯入結果: 新增 {0} 筆, 已存在略過 {1} 筆, 失敗 {2} 筆",
+                  new Object[]{imported, skipped, failed});
+        report("匯入", imported, startTime);
+        return imported;
+    }
+    
+    /**
+     * 新增一批使用者，已存在的 ID 略過
+     * @return {新增筆數, 略過筆數, 失敗筆數}
+     */
+    private long[] insertBatch(List<User> batch) throws SQLException {
+        if (batch.isEmpty()) {
+            return new long[3];
+        }
+        
+        List<String> ids = new ArrayList<>(batch.size());
+        for (User user : batch) {
+            ids.add(user.getId());
+        }
+        
+        Set<String> existing = new HashSet<>();
+        for (String id : userDAO.findExistingUserIds(ids)) {
+            existing.add(id.trim().toLowerCase(Locale.ROOT));
+        }
+        
+        List<User> pending = new ArrayList<>(batch.size());
+        Set<String> seen = new HashSet<>();
+        for (User user : batch) {
+            String key = user.getId().trim().toLowerCase(Locale.ROOT);
+            if (!existing.contains(key) && seen.add(key)) {
+                pending.add(user);
+            }
+        }
+        
+        long inserted = 0;
+        for (boolean saved : userDAO.insertUsers(pending, batchSize)) {
+            if (saved) {
+                inserted++;
+            }
+        }
+        return new long[]{inserted, batch.size() - pending.size(), pending.size() - inserted};
+    }
+    
+    /**
+     * 寫出一位使用者（一行 JSON）
+     */
+    private static void writeUser(JsonGenerator generator, User user) {
+        try {
+            generator.writeStartObject();
+            generator.writeStringField("id", user.getId());
+            generator.writeStringField("name", user.getName());
+            generator.writeStringField("password", user.getPassword());
+            generator.writeStringField("address", user.getAddress());
+            generator.writeStringField("phone", user.getPhone());
+            generator.writeStringField("creditCard", user.getCreditCard());
+            generator.writeStringField("email", user.getEmail());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * 解析一行 JSON 為使用者物件
+     */
+    private static User readUser(String line) throws IOException {
+        User user = new User();
+        
+        try (JsonParser parser = JSON_FACTORY.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("不是 JSON 物件");
+            }
+            
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                String value = parser.getValueAsString();
+                
+                switch (field) {
+                    case "id": user.setId(value); break;
+                    case "name": user.setName(value); break;
+                    case "password": user.setPassword(value); break;
+                    case "address": user.setAddress(value); break;
+                    case "phone": user.setPhone(value); break;
+                    case "creditCard": user.setCreditCard(value); break;
+                    case "email": user.setEmail(value); break;
+                    default: parser.skipChildren(); break;
+                }
+            }
+        }
+        
+        if (user.getId() == null || user.getId().trim().isEmpty()) {
+            throw new IOException("缺少 id 欄位");
+        }
+        return user;
+    }
+    
+    private static Path checkpointPath(Path file) {
+        return file.resolveSibling(file.getFileName() + CHECKPOINT_SUFFIX);
+    }
+    
+    private static Properties readCheckpoint(Path file) throws IOException {
+        Properties checkpoint = new Properties();
+        Path path = checkpointPath(file);
+        if (Files.exists(path)) {
+            try (InputStream in = Files.newInputStream(path)) {
+                checkpoint.load(in);
+            }
+            LOGGER.log(Level.INFO, "從檢查點繼續: {0}", checkpoint);
+        }
+        return checkpoint;
+    }
+    
+    /**
+     * 寫入檢查點（先寫暫存檔再以原子方式取代，避免中斷時留下不完整的檢查點）
+     */
+    private static void writeCheckpoint(Path file, Properties checkpoint) throws IOException {
+        Path path = checkpointPath(file);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            checkpoint.store(out, "UserTransferTool checkpoint");
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static void report(String action, long rows, long startTime) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startTime) / 1e9);
+        System.out.printf("%s完成: %d 筆, %.1f 秒, %.0f 筆/秒%n", action, rows, seconds, rows / seconds);
+    }
+}
\ No newline at end of file
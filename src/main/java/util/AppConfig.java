@@ -0,0 +1,316 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 應用程式設定讀取工具
+ * 啟動時從 classpath 載入 config/app.properties，提供具型別的讀取方法
+ * 同名的 JVM 系統屬性（-Dkey=value）優先於設定檔，方便命令列工具指定資料庫等設定
+ * 
+ * 尚未經過 Maven 資源過濾的 ${...} 佔位值視為未設定，改用呼叫端提供的預設值
+ * 
+ * 設定內容保存為不可變的快照，讀取時不需要任何同步；呼叫 {@link #watch(Path)} 後，
+ * 設定檔修改時會在背景執行緒重新載入並整個替換快照，再通知 {@link #addReloadListener(Runnable)} 註冊的元件
+ * 在啟動時讀取後保存在 static final 欄位的設定（例如各項 *.enabled）仍需重新部署才會生效
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class AppConfig {
+    private static final Logger LOGGER = Logger.getLogger(AppConfig.class.getName());
+    
+    // 設定檔位置（classpath）
+    private static final String CONFIG_RESOURCE = "config/app.properties";
+    
+    // 收到修改事件後等待編輯器寫完檔案的時間（毫秒）
+    private static final long RELOAD_SETTLE_MILLIS = 200;
+    
+    private static volatile Map<String, String> snapshot = loadResource();
+    
+    private static final List<Runnable> RELOAD_LISTENERS = new CopyOnWriteArrayList<>();
+    
+    private static WatchService watchService;
+    private static Thread watcher;
+    
+    private AppConfig() {
+    }
+    
+    /**
+     * 從 classpath 載入設定檔
+     * @return 設定快照，載入失敗時回傳空的快照
+     */
+    private static Map<String, String> loadResource() {
+        try (InputStream in = AppConfig.class.getClassLoader().getResourceAsStream(CONFIG_RESOURCE)) {
+            if (in == null) {
+                LOGGER.log(Level.WARNING, "找不到設定檔 {0}，使用預設值", CONFIG_RESOURCE);
+                return Collections.emptyMap();
+            }
+            Map<String, String> values = parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+            LOGGER.log(Level.INFO, "已載入設定檔 {0}", CONFIG_RESOURCE);
+            return values;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "載入設定檔失敗: " + CONFIG_RESOURCE, e);
+            return Collections.emptyMap();
+        }
+    }
+    
+    /**
+     * 解析設定內容為不可變的快照（空值與 ${...} 佔位值不放入快照）
+     */
+    private static Map<String, String> parse(Reader reader) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+        
+        Map<String, String> values = new HashMap<>(properties.size() * 2);
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            if (!value.isEmpty() && !value.startsWith("${")) {
+                values.put(key, value);
+            }
+        }
+        return Collections.unmodifiableMap(values);
+    }
+    
+    /**
+     * 從檔案載入設定並監看檔案，修改時自動重新載入
+     * 通常由 ApplicationLifecycleListener 以 web.xml 的 configFile 參數呼叫；重複呼叫時只有第一次有效
+     * @param file 設定檔路徑
+     */
+    public static synchronized void watch(Path file) {
+        if (watcher != null) {
+            return;
+        }
+        
+        Path path = file.toAbsolutePath();
+        if (!reload(path)) {
+            LOGGER.log(Level.WARNING, "無法讀取設定檔 {0}，不監看修改", path);
+            return;
+        }
+        
+        try {
+            watchService = path.getFileSystem().newWatchService();
+            path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                      StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "無法監看設定檔 " + path + "，修改後需重新部署", e);
+            return;
+        }
+        
+        WatchService service = watchService;
+        watcher = DaemonThreadFactory.named("config-watcher").newThread(() -> watchLoop(service, path));
+        watcher.start();
+        LOGGER.log(Level.INFO, "監看設定檔: {0}", path);
+    }
+    
+    /**
+     * 停止監看設定檔（目前的設定保留）
+     */
+    public static synchronized void stopWatching() {
+        if (watcher == null) {
+            return;
+        }
+        
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "關閉 WatchService 失敗", e);
+        }
+        watcher.interrupt();
+        watcher = null;
+        watchService = null;
+    }
+    
+    private static void watchLoop(WatchService service, Path file) {
+        Path fileName = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                
+                // 編輯器常以多次寫入或「寫暫存檔再改名」儲存，稍等後一併處理
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= fileName.equals(event.context());
+                    }
+                    if (!key.reset()) {
+                        LOGGER.log(Level.WARNING, "設定檔目錄已無法監看: {0}", file.getParent());
+                        return;
+                    }
+                } while ((key = service.poll(RELOAD_SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+                
+                if (changed) {
+                    reload(file);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 停止監看
+        }
+    }
+    
+    /**
+     * 重新載入設定檔並替換快照，內容有變更時通知監聽者
+     * @return 是否載入成功
+     */
+    private static boolean reload(Path file) {
+        Map<String, String> values;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            values = parse(reader);
+        } catch (IOException | IllegalArgumentException e) {
+            // 讀取失敗或格式錯誤時保留原本的設定
+            LOGGER.log(Level.WARNING, "重新載入設定檔失敗，保留原設定: " + file, e);
+            return false;
+        }
+        
+        Map<String, String> previous = snapshot;
+        if (values.equals(previous)) {
+            return true;
+        }
+        snapshot = values;
+        
+        // 只記錄變更的鍵，不記錄值（可能含密碼）
+        TreeSet<String> changedKeys = new TreeSet<>(values.keySet());
+        changedKeys.addAll(previous.keySet());
+        changedKeys.removeIf(key -> values.get(key) != null && values.get(key).equals(previous.get(key)));
+        LOGGER.log(Level.INFO, "設定已重新載入，變更的設定: {0}", changedKeys);
+        
+        for (Runnable listener : RELOAD_LISTENERS) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "套用重新載入的設定失敗", e);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 註冊設定重新載入後要執行的動作（在監看執行緒上呼叫，應只讀取設定並替換元件的參數）
+     * @param listener 重新載入後要執行的動作
+     */
+    public static void addReloadListener(Runnable listener) {
+        RELOAD_LISTENERS.add(listener);
+    }
+    
+    /**
+     * 移除設定重新載入監聽者
+     * @param listener 先前註冊的動作
+     */
+    public static void removeReloadListener(Runnable listener) {
+        RELOAD_LISTENERS.remove(listener);
+    }
+    
+    /**
+     * 取得字串設定
+     * @param key 設定鍵
+     * @param defaultValue 預設值
+     * @return 設定值
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = snapshot.get(key);
+            return value != null ? value : defaultValue;
+        }
+        
+        value = value.trim();
+        if (value.isEmpty() || value.startsWith("${")) {
+            return defaultValue;
+        }
+        return value;
+    }
+    
+    /**
+     * 取得整數設定
+     * @param key 設定鍵
+     * @param defaultValue 預設值
+     * @return 設定值，格式錯誤時回傳預設值
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "設定值格式錯誤: {0}={1}", new Object[]{key, value});
+            return defaultValue;
+        }
+    }
+    
+    /**
+     * 取得長整數設定
+     * @param key 設定鍵
+     * @param defaultValue 預設值
+     * @return 設定值，格式錯誤時回傳預設值
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "設定值格式錯誤: {0}={1}", new Object[]{key, value});
+            return defaultValue;
+        }
+    }
+    
+    /**
+     * 取得浮點數設定
+     * @param key 設定鍵
+     * @param defaultValue 預設值
+     * @return 設定值，格式錯誤時回傳預設值
+     */
+    public static double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "設定值格式錯誤: {0}={1}", new Object[]{key, value});
+            return defaultValue;
+        }
+    }
+    
+    /**
+     * 取得布林設定
+     * @param key 設定鍵
+     * @param defaultValue 預設值
+     * @return 設定值
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,308 @@
+package util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 無狀態登入權杖（security.session.mode=token 時使用）
+ * 權杖內容為「使用者 ID、角色、到期時間、憑證戳記」，以 HMAC-SHA256 簽章：
+ * 任何節點只要有相同的 security.token.secret 就能驗證，不需要共用 Session，
+ * 負載平衡器不必黏著 Session
+ * 
+ * 格式：Base64URL(userId '\n' roles '\n' expiresAtSeconds '\n' stamp) '.' Base64URL(HMAC)
+ * 
+ * 憑證戳記由密碼雜湊導出（{@link #credentialStamp}），修改密碼後舊權杖的戳記不再相符：
+ * 各節點記住每位使用者目前的戳記，超過 security.token.revalidate.interval 秒才重新查詢資料庫，
+ * 因此其他節點最晚在這段時間後拒絕舊權杖（執行修改的節點立即拒絕）
+ * 
+ * 最近驗證過的權杖保存在小型快取中，重複的請求只需要一次查表；到期時間在每次取用時仍會檢查
+ * security.token.secret 格式錯誤時不會讓類別初始化失敗，而是由 {@link #getConfigError} 回報，
+ * 並由 TokenAuthFilter 在啟動時拒絕部署
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public final class AuthTokens {
+    private static final Logger LOGGER = Logger.getLogger(AuthTokens.class.getName());
+    
+    /** 保存權杖的 Cookie 名稱 */
+    public static final String COOKIE_NAME = "PCSHOP_AUTH";
+    
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final int STAMP_BYTES = 9;
+    
+    private static final boolean ENABLED = "token".equalsIgnoreCase(
+        AppConfig.getString("security.session.mode", "container"));
+    
+    // 設定錯誤（loadSecret 設定，必須宣告在 KEY 之前）
+    private static String configError;
+    private static final SecretKeySpec KEY = new SecretKeySpec(loadSecret(), MAC_ALGORITHM);
+    
+    private static final ThreadLocal<Mac> MACS = ThreadLocal.withInitial(AuthTokens::newMac);
+    
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    
+    private static final int CACHE_SIZE = AppConfig.getInt("security.token.cache.size", 10000);
+    private static final Map<String, Claims> VERIFIED = new ConcurrentHashMap<>();
+    
+    // 每位使用者目前的憑證戳記與查詢時間
+    private static final Map<String, KnownStamp> STAMPS = new ConcurrentHashMap<>();
+    
+    private AuthTokens() {
+    }
+    
+    /**
+     * 是否使用無狀態權杖取代容器 Session
+     * @return security.session.mode=token
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+    
+    /**
+     * 設定錯誤訊息
+     * @return security.token.secret 無法使用時的說明，設定正確時回傳 null
+     */
+    public static String getConfigError() {
+        return configError;
+    }
+    
+    /**
+     * 權杖有效時間（與 security.session.timeout 相同）
+     * @return 秒數
+     */
+    public static int getTtlSeconds() {
+        return AppConfig.getInt("security.session.timeout", 1800);
+    }
+    
+    /**
+     * 簽發權杖
+     * @param userId 使用者 ID（不可含換行）
+     * @param roles 角色（不可含逗號與換行）
+     * @param stamp 目前密碼雜湊的憑證戳記（{@link #credentialStamp}）
+     * @return 權杖
+     */
+    public static String issue(String userId, Collection<String> roles, String stamp) {
+        long expiresAt = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + getTtlSeconds();
+        String payload = ENCODER.encodeToString(
+            (userId + '\n' + String.join(",", roles) + '\n' + expiresAt + '\n' + stamp)
+                .getBytes(StandardCharsets.UTF_8));
+        recordStamp(userId, stamp);
+        return payload + '.' + ENCODER.encodeToString(sign(payload));
+    }
+    
+    /**
+     * 由密碼雜湊導出憑證戳記（以簽章金鑰做 HMAC，權杖中不會洩漏雜湊本身）
+     * @param passwordHash 密碼雜湊
+     * @return 憑證戳記
+     */
+    public static String credentialStamp(String passwordHash) {
+        byte[] mac = MACS.get().doFinal(("stamp\n" + passwordHash).getBytes(StandardCharsets.UTF_8));
+        return ENCODER.encodeToString(Arrays.copyOf(mac, STAMP_BYTES));
+    }
+    
+    /**
+     * 取得最近查詢過的憑證戳記
+     * @param userId 使用者 ID
+     * @param allowStale 是否接受超過 security.token.revalidate.interval 的結果（資料庫無法查詢時使用）
+     * @return 憑證戳記；沒有可用的結果時回傳 null
+     */
+    public static String getKnownStamp(String userId, boolean allowStale) {
+        KnownStamp known = STAMPS.get(userId);
+        if (known == null) {
+            return null;
+        }
+        long maxAge = TimeUnit.SECONDS.toMillis(AppConfig.getLong("security.token.revalidate.interval", 60));
+        if (!allowStale && System.currentTimeMillis() - known.checkedAt >= maxAge) {
+            return null;
+        }
+        return known.stamp;
+    }
+    
+    /**
+     * 記錄使用者目前的憑證戳記（登入、修改密碼與重新查詢資料庫後呼叫）
+     * @param userId 使用者 ID
+     * @param stamp 憑證戳記
+     */
+    public static void recordStamp(String userId, String stamp) {
+        if (STAMPS.size() >= CACHE_SIZE && !STAMPS.containsKey(userId)) {
+            STAMPS.clear();
+        }
+        STAMPS.put(userId, new KnownStamp(stamp, System.currentTimeMillis()));
+    }
+    
+    /**
+     * 驗證權杖
+     * @param token 權杖
+     * @return 權杖內容；格式錯誤、簽章不符或已過期時回傳 null
+     */
+    public static Claims verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        
+        long now = System.currentTimeMillis();
+        Claims claims = VERIFIED.get(token);
+        if (claims == null) {
+            claims = parse(token);
+            if (claims == null) {
+                return null;
+            }
+            cache(token, claims, now);
+        }
+        
+        if (now >= claims.expiresAtMillis) {
+            VERIFIED.remove(token);
+            return null;
+        }
+        return claims;
+    }
+    
+    /**
+     * 驗證簽章並解析內容（不檢查到期時間）
+     */
+    private static Claims parse(String token) {
+        int dot = token.lastIndexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        
+        try {
+            String payload = token.substring(0, dot);
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) {
+                return null;
+            }
+            
+            String[] parts = new String(DECODER.decode(payload), StandardCharsets.UTF_8).split("\n", -1);
+            if (parts.length != 4) {
+                return null;
+            }
+            Set<String> roles = parts[1].isEmpty() ? Collections.emptySet()
+                : new LinkedHashSet<>(Arrays.asList(parts[1].split(",")));
+            return new Claims(parts[0], Collections.unmodifiableSet(roles),
+                              TimeUnit.SECONDS.toMillis(Long.parseLong(parts[2])), parts[3]);
+        } catch (IllegalArgumentException e) {
+            // Base64 或數字格式錯誤
+            return null;
+        }
+    }
+    
+    /**
+     * 放入驗證快取；已滿時先移除過期的權杖，仍然滿時整個清除
+     */
+    private static void cache(String token, Claims claims, long now) {
+        if (VERIFIED.size() >= CACHE_SIZE) {
+            Iterator<Claims> iterator = VERIFIED.values().iterator();
+            while (iterator.hasNext()) {
+                if (now >= iterator.next().expiresAtMillis) {
+                    iterator.remove();
+                }
+            }
+            if (VERIFIED.size() >= CACHE_SIZE) {
+                VERIFIED.clear();
+            }
+        }
+        VERIFIED.put(token, claims);
+    }
+    
+    private static byte[] sign(String payload) {
+        return MACS.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    private static Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(KEY);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("無法建立 " + MAC_ALGORITHM, e);
+        }
+    }
+    
+    /**
+     * 讀取簽章金鑰；未設定時隨機產生（只適用單一節點，重新啟動後既有權杖失效）
+     * 格式錯誤時記錄在 configError 並改用隨機金鑰，讓類別仍可載入
+     */
+    private static byte[] loadSecret() {
+        String secret = AppConfig.getString("security.token.secret", null);
+        if (secret != null) {
+            try {
+                byte[] key = Base64.getDecoder().decode(secret);
+                if (key.length < MIN_SECRET_BYTES) {
+                    LOGGER.log(Level.WARNING, "security.token.secret 長度不足 {0} bytes", MIN_SECRET_BYTES);
+                }
+                if (key.length > 0) {
+                    return key;
+                }
+                configError = "security.token.secret 解碼後為空";
+            } catch (IllegalArgumentException e) {
+                configError = "security.token.secret 不是有效的 Base64 字串: " + e.getMessage();
+            }
+        }
+        
+        byte[] key = new byte[MIN_SECRET_BYTES];
+        new SecureRandom().nextBytes(key);
+        if (configError != null) {
+            LOGGER.log(Level.SEVERE, configError);
+        } else if (ENABLED) {
+            LOGGER.log(Level.WARNING, "未設定 security.token.secret，使用隨機金鑰；多節點部署時各節點必須設定相同的金鑰");
+        }
+        return key;
+    }
+    
+    /**
+     * 權杖內容（不可變）
+     */
+    public static final class Claims {
+        private final String userId;
+        private final Set<String> roles;
+        private final long expiresAtMillis;
+        private final String stamp;
+        
+        Claims(String userId, Set<String> roles, long expiresAtMillis, String stamp) {
+            this.userId = userId;
+            this.roles = roles;
+            this.expiresAtMillis = expiresAtMillis;
+            this.stamp = stamp;
+        }
+        
+        public String getUserId() { return userId; }
+        public Set<String> getRoles() { return roles; }
+        public long getExpiresAtMillis() { return expiresAtMillis; }
+        public String getCredentialStamp() { return stamp; }
+        public boolean hasRole(String role) { return roles.contains(role); }
+    }
+    
+    /**
+     * 使用者的憑證戳記與查詢時間（不可變）
+     */
+    private static final class KnownStamp {
+        final String stamp;
+        final long checkedAt;
+        
+        KnownStamp(String stamp, long checkedAt) {
+            this.stamp = stamp;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有上限的快取與計數表共用的批次淘汰
+ * - 達到上限時一次淘汰到上限的 90%，避免之後每次新增都觸發淘汰
+ * - 只有一個執行緒負責淘汰，其餘執行緒不等待，直接繼續（表格可能短暫超過上限）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class BatchEviction {
+    
+    // 淘汰後保留的比例
+    private static final double LOW_WATER = 0.9;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    
+    /**
+     * 淘汰後應保留的數量
+     * @param limit 上限
+     * @return 上限的 90%
+     */
+    public static long target(long limit) {
+        return (long) (limit * LOW_WATER);
+    }
+    
+    /**
+     * 沒有其他執行緒正在淘汰時執行淘汰，否則直接返回
+     * @param eviction 淘汰作業
+     */
+    public void run(Runnable eviction) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        
+        try {
+            eviction.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 字串布隆過濾器（執行緒安全）
+ * - mightContain 回傳 false 時保證不存在；回傳 true 時可能存在（誤判率由建立時的參數決定）
+ * - 只能新增不能刪除，位元陣列以 AtomicLongArray 保存，新增與查詢都不需要加鎖
+ * - 使用雙重雜湊 (h1 + i * h2) 產生 k 個位置
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class BloomFilter {
+    
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashCount;
+    private final long expectedInsertions;
+    private final AtomicLong insertions = new AtomicLong();
+    
+    /**
+     * 建構函式
+     * @param expectedInsertions 預期元素數量
+     * @param falsePositiveRate 可接受的誤判率（0 到 1 之間）
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("預期元素數量必須大於 0: " + expectedInsertions);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("誤判率必須介於 0 與 1 之間: " + falsePositiveRate);
+        }
+        
+        // m = -n * ln(p) / (ln 2)^2，k = m / n * ln 2
+        long bitsNeeded = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (bitsNeeded + 63) / 64);
+        
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+        this.expectedInsertions = expectedInsertions;
+    }
+    
+    /**
+     * 新增元素
+     * @param value 元素
+     */
+    public void put(String value) {
+        long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+        
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(hash1 + i * hash2, bitSize);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+        insertions.incrementAndGet();
+    }
+    
+    /**
+     * 查詢元素是否可能存在
+     * @param value 元素
+     * @return false 表示一定不存在
+     */
+    public boolean mightContain(String value) {
+        long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+        
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(hash1 + i * hash2, bitSize);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 以種子計算字串的 64 位元雜湊（逐字元混合後做 MurmurHash3 的 fmix64）
+     */
+    private static long hash(String value, long seed) {
+        long h = seed ^ value.length();
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    /**
+     * 依目前元素數量估算的誤判率
+     * @return 誤判率
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions.get() / bitSize), hashCount);
+    }
+    
+    public long getBitSize() { return bitSize; }
+    public int getHashCount() { return hashCount; }
+    public long getExpectedInsertions() { return expectedInsertions; }
+    public long getInsertionCount() { return insertions.get(); }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+package util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 背景執行緒工廠 - 使用可辨識的名稱並設為 daemon，避免阻止容器關閉
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+    
+    private final String name;
+    // 為 null 時所有執行緒使用相同名稱
+    private final AtomicInteger sequence;
+    
+    private DaemonThreadFactory(String name, AtomicInteger sequence) {
+        this.name = name;
+        this.sequence = sequence;
+    }
+    
+    /**
+     * 單一背景執行緒使用的工廠
+     * @param name 執行緒名稱
+     * @return 執行緒工廠
+     */
+    public static DaemonThreadFactory named(String name) {
+        return new DaemonThreadFactory(name, null);
+    }
+    
+    /**
+     * 執行緒池使用的工廠，名稱依序加上編號（prefix-1、prefix-2…）
+     * @param prefix 名稱前綴
+     * @return 執行緒工廠
+     */
+    public static DaemonThreadFactory numbered(String prefix) {
+        return new DaemonThreadFactory(prefix, new AtomicInteger());
+    }
+    
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, sequence != null ? name + "-" + sequence.incrementAndGet() : name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
\ No newline at end of file
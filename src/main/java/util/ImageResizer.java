@@ -0,0 +1,145 @@
+package util;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * 圖片縮放工具（只使用 JDK 的 ImageIO 與 Java2D）
+ * - 解碼時以 ImageReadParam 的跳行取樣直接讀成約目標尺寸兩倍的圖，大圖不必在記憶體中展開全部像素
+ * - 之後每次最多縮小一半的雙線性內插逐步縮到目標尺寸，品質接近高階內插但快得多
+ * - 維持長寬比放入指定範圍，不放大
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public final class ImageResizer {
+    
+    private ImageResizer() {
+    }
+    
+    /**
+     * 讀取圖片尺寸（只解析檔頭，不解碼像素）
+     * @param file 圖片檔
+     * @return 寬與高
+     * @throws IOException 無法辨識或讀取
+     */
+    public static Dimension readSize(Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = reader(input, file);
+            try {
+                reader.setInput(input, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+    
+    /**
+     * 縮小圖片
+     * @param source 原圖
+     * @param target 輸出檔（已存在時覆寫）
+     * @param formatName 輸出格式（ImageIO 格式名稱，與原圖相同）
+     * @param maxWidth 最大寬度
+     * @param maxHeight 最大高度
+     * @param jpegQuality JPEG 壓縮品質（0 到 1）
+     * @return 是否寫入了縮小的圖；原圖已在範圍內時不寫入並回傳 false
+     * @throws IOException 無法讀取原圖或寫入輸出檔
+     */
+    public static boolean resize(Path source, Path target, String formatName, int maxWidth, int maxHeight,
+                                 float jpegQuality) throws IOException {
+        BufferedImage scaled;
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            ImageReader reader = reader(input, source);
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                double scale = Math.min((double) maxWidth / width, (double) maxHeight / height);
+                if (scale >= 1.0) {
+                    return false;
+                }
+                
+                int targetWidth = Math.max(1, (int) Math.round(width * scale));
+                int targetHeight = Math.max(1, (int) Math.round(height * scale));
+                int subsampling = Math.max(1, Math.min(width / (targetWidth * 2), height / (targetHeight * 2)));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                scaled = scale(reader.read(0, param), targetWidth, targetHeight, "jpeg".equals(formatName));
+            } finally {
+                reader.dispose();
+            }
+        }
+        
+        write(scaled, target, formatName, jpegQuality);
+        return true;
+    }
+    
+    private static ImageReader reader(ImageInputStream input, Path file) throws IOException {
+        Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+        if (readers == null || !readers.hasNext()) {
+            throw new IOException("無法辨識的圖片: " + file);
+        }
+        return readers.next();
+    }
+    
+    /**
+     * 逐步縮小：每次最多縮小一半，直到目標尺寸
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height, boolean opaque) {
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+    
+    private static void write(BufferedImage image, Path target, String formatName, float jpegQuality)
+            throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+        if (!writers.hasNext()) {
+            throw new IOException("不支援輸出的圖片格式: " + formatName);
+        }
+        
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpeg".equals(formatName)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
\ No newline at end of file
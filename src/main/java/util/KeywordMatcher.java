@@ -0,0 +1,213 @@
+package util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+
+/**
+ * 不分大小寫的多關鍵字比對器（Aho–Corasick 自動機）
+ * 建立時把全部關鍵字編譯成一張 ASCII 狀態轉移表，比對時每個字元只查表一次，
+ * 不需要先產生整個字串的大寫／小寫複本，也不需要對每個關鍵字各掃描一次
+ * 
+ * 結果必須與舊做法「input.toUpperCase().contains(KEYWORD)」完全相同，因此：
+ * - 預設語系的 ASCII 大小寫轉換不是一對一（土耳其語等）時，回傳 {@link #UNDECIDED}
+ * - 非 ASCII 字元若大小寫轉換後會產生 ASCII 字元（例如 'ı' 轉大寫為 'I'、Kelvin 符號轉小寫為 'k'），
+ *   同樣回傳 {@link #UNDECIDED}，由呼叫端改用舊做法
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+final class KeywordMatcher {
+    
+    /** 無法以自動機判斷，呼叫端必須改用 toUpperCase/toLowerCase 的舊做法 */
+    static final int UNDECIDED = -2;
+    
+    /** 不包含任何關鍵字 */
+    static final int NOT_FOUND = -1;
+    
+    private static final int ALPHABET = 128;
+    
+    // 建立時的預設語系，以及該語系下 ASCII 大小寫轉換是否一對一
+    private static final Locale FOLD_LOCALE = Locale.getDefault();
+    private static final boolean ASCII_FOLD_SAFE = isAsciiFoldSafe(FOLD_LOCALE);
+    
+    // 非 ASCII 字元的大小寫轉換是否會產生 ASCII 字元：0 尚未計算、1 不會、2 會（延遲計算，重複計算無害）
+    private static final byte UNKNOWN = 0;
+    private static final byte INERT = 1;
+    private static final byte UNSAFE = 2;
+    private static final byte[] NON_ASCII_FOLDING = new byte[Character.MAX_VALUE + 1];
+    
+    // transitions[state * ALPHABET + c]：下一個狀態
+    private final int[] transitions;
+    // matches[state]：在此狀態結束的關鍵字中，陣列索引最小者；沒有則為 NOT_FOUND
+    private final int[] matches;
+    
+    /**
+     * 建構函式
+     * @param keywords 關鍵字（ASCII），比對時不分大小寫
+     */
+    KeywordMatcher(String[] keywords) {
+        // 1. 建立 trie
+        List<int[]> children = new ArrayList<>();
+        List<Integer> output = new ArrayList<>();
+        children.add(newNode());
+        output.add(NOT_FOUND);
+        
+        for (int k = 0; k < keywords.length; k++) {
+            int state = 0;
+            for (int i = 0; i < keywords[k].length(); i++) {
+                int c = foldAscii(keywords[k].charAt(i));
+                if (children.get(state)[c] < 0) {
+                    children.get(state)[c] = children.size();
+                    children.add(newNode());
+                    output.add(NOT_FOUND);
+                }
+                state = children.get(state)[c];
+            }
+            if (output.get(state) == NOT_FOUND) {
+                output.set(state, k);
+            }
+        }
+        
+        // 2. 以廣度優先計算失敗連結，並展開成完整的狀態轉移表
+        int states = children.size();
+        transitions = new int[states * ALPHABET];
+        matches = new int[states];
+        int[] fail = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = children.get(0)[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        matches[0] = output.get(0);
+        
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matches[state] = minIndex(output.get(state), matches[fail[state]]);
+            
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = children.get(state)[c];
+                if (next < 0) {
+                    transitions[state * ALPHABET + c] = transitions[fail[state] * ALPHABET + c];
+                } else {
+                    transitions[state * ALPHABET + c] = next;
+                    fail[next] = transitions[fail[state] * ALPHABET + c];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 尋找字串中出現的關鍵字
+     * @param input 輸入字串
+     * @return 出現的關鍵字中陣列索引最小者；不包含時回傳 {@link #NOT_FOUND}；
+     *         無法判斷時回傳 {@link #UNDECIDED}
+     */
+    int find(String input) {
+        if (!ASCII_FOLD_SAFE || Locale.getDefault() != FOLD_LOCALE) {
+            return UNDECIDED;
+        }
+        
+        int state = 0;
+        int found = NOT_FOUND;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c < ALPHABET) {
+                state = transitions[state * ALPHABET + foldAscii(c)];
+                found = minIndex(found, matches[state]);
+            } else if (isInert(c)) {
+                // 轉換後不含 ASCII 字元，等同於關鍵字之間的分隔
+                state = 0;
+            } else {
+                return UNDECIDED;
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * 字串在目前語系下做大小寫轉換時，是否保證只有 ASCII 字母會改變且不會產生新的 ASCII 字元
+     * 成立時可以直接使用原字串比對不分大小寫的 ASCII 正規表達式，不必先轉換
+     * @param input 輸入字串
+     * @return 是否可以省略大小寫轉換
+     */
+    static boolean isAsciiOnlyFoldSafe(String input) {
+        if (!ASCII_FOLD_SAFE || Locale.getDefault() != FOLD_LOCALE) {
+            return false;
+        }
+        for (int i = 0; i < input.length(); i++) {
+            if (input.charAt(i) >= ALPHABET) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int foldAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+    
+    private static int minIndex(int a, int b) {
+        if (a == NOT_FOUND) {
+            return b;
+        }
+        return b == NOT_FOUND ? a : Math.min(a, b);
+    }
+    
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+    
+    /**
+     * 非 ASCII 字元轉大寫與轉小寫後是否都不含 ASCII 字元
+     */
+    private static boolean isInert(char c) {
+        byte folding = NON_ASCII_FOLDING[c];
+        if (folding == UNKNOWN) {
+            boolean inert = !Character.isSurrogate(c)
+                && !containsAscii(String.valueOf(c).toUpperCase(FOLD_LOCALE))
+                && !containsAscii(String.valueOf(c).toLowerCase(FOLD_LOCALE));
+            folding = inert ? INERT : UNSAFE;
+            NON_ASCII_FOLDING[c] = folding;
+        }
+        return folding == INERT;
+    }
+    
+    private static boolean containsAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < ALPHABET) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 語系的 ASCII 大小寫轉換是否與 A-Z/a-z 一對一對應
+     */
+    private static boolean isAsciiFoldSafe(Locale locale) {
+        for (char c = 0; c < ALPHABET; c++) {
+            String value = String.valueOf(c);
+            char upper = c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+            char lower = (char) foldAscii(c);
+            if (!value.toUpperCase(locale).equals(String.valueOf(upper))
+                || !value.toLowerCase(locale).equals(String.valueOf(lower))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,198 @@
+package util;
+
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 唯讀檔案的記憶體映射快取
+ * - 檔案以 FileChannel.map 映射，內容留在作業系統的頁面快取中，不佔用 Java heap；
+ *   每次回應以 {@link Entry#buffer()} 取得獨立的 duplicate，多個請求可同時讀取
+ * - 只適用於寫入後不再修改的檔案（例如以內容定址的圖片），不檢查檔案是否變更
+ * - 映射的總大小超過上限時批次淘汰最久未使用的檔案，降到上限的 90%；
+ *   超過單檔上限的檔案不映射，由呼叫端直接從檔案傳送
+ * - 淘汰的映射在沒有請求使用後由 GC 解除，不強制 unmap（避免仍在傳送的請求讀到已解除的記憶體）；
+ *   解除前仍佔用位址空間，因此繼續計入總大小，直到 GC 回收才扣除。
+ *   快取中的映射加上尚未回收的映射已達上限時，新的檔案不映射（回傳 null），總大小不會超過上限
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class MappedFileCache {
+    
+    private final long maxBytes;
+    private final long maxFileSize;
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong mappedBytes = new AtomicLong();
+    private final BatchEviction eviction = new BatchEviction();
+    // 已淘汰、尚未被 GC 回收的映射
+    private final Set<Retired> retired = ConcurrentHashMap.newKeySet();
+    private final ReferenceQueue<MappedByteBuffer> collected = new ReferenceQueue<>();
+    private final AtomicLong retiredBytes = new AtomicLong();
+    
+    // 統計資料
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong bypassCount = new AtomicLong();
+    
+    /**
+     * 建構函式
+     * @param maxBytes 映射的總大小上限
+     * @param maxFileSize 單一檔案上限，超過時不映射
+     */
+    public MappedFileCache(long maxBytes, long maxFileSize) {
+        this.maxBytes = maxBytes;
+        this.maxFileSize = Math.min(maxFileSize, maxBytes);
+    }
+    
+    /**
+     * 取得檔案的映射，尚未映射時立即映射
+     * @param file 檔案
+     * @return 映射；檔案超過單檔上限，或映射總大小（含已淘汰、尚未回收的映射）已達上限時回傳 null
+     * @throws NoSuchFileException 檔案不存在
+     * @throws IOException 無法讀取
+     */
+    public Entry get(Path file) throws IOException {
+        Entry entry = entries.get(file);
+        if (entry != null) {
+            entry.lastAccess = System.nanoTime();
+            hitCount.incrementAndGet();
+            return entry;
+        }
+        missCount.incrementAndGet();
+        releaseCollected();
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > maxFileSize) {
+                return null;
+            }
+            if (mappedBytes.get() + retiredBytes.get() + size > maxBytes) {
+                // 淘汰的映射要等 GC 回收才會解除，這段期間不再映射新的檔案
+                eviction.run(this::evict);
+                bypassCount.incrementAndGet();
+                return null;
+            }
+            entry = new Entry(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), System.nanoTime());
+        }
+        
+        // 同時映射同一檔案時只保留第一個
+        Entry existing = entries.putIfAbsent(file, entry);
+        if (existing != null) {
+            return existing;
+        }
+        if (mappedBytes.addAndGet(entry.size()) > maxBytes) {
+            eviction.run(this::evict);
+        }
+        return entry;
+    }
+    
+    /**
+     * 扣除已被 GC 回收的淘汰映射
+     */
+    private void releaseCollected() {
+        Reference<? extends MappedByteBuffer> reference;
+        while ((reference = collected.poll()) != null) {
+            Retired released = (Retired) reference;
+            if (retired.remove(released)) {
+                retiredBytes.addAndGet(-released.size);
+            }
+        }
+    }
+    
+    /**
+     * 批次淘汰：依最後存取時間由舊到新移除映射
+     * 淘汰的映射改為計入 retiredBytes，直到 GC 回收
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        long target = BatchEviction.target(maxBytes);
+        // 先取出存取時間再排序（排序期間其他執行緒仍會更新 lastAccess）
+        List<Map.Entry<Long, Path>> candidates = new ArrayList<>(entries.size());
+        for (Map.Entry<Path, Entry> entry : entries.entrySet()) {
+            candidates.add(new AbstractMap.SimpleImmutableEntry<>(entry.getValue().lastAccess - now, entry.getKey()));
+        }
+        candidates.sort(Map.Entry.comparingByKey());
+        for (Map.Entry<Long, Path> candidate : candidates) {
+            if (mappedBytes.get() <= target) {
+                break;
+            }
+            Entry removed = entries.remove(candidate.getValue());
+            if (removed != null) {
+                retired.add(new Retired(removed.mapped, collected));
+                retiredBytes.addAndGet(removed.size());
+                mappedBytes.addAndGet(-removed.size());
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+    
+    // 統計資料
+    public int getSize() { return entries.size(); }
+    public long getMappedBytes() { return mappedBytes.get(); }
+    public long getRetiredBytes() { return retiredBytes.get(); }
+    public long getHitCount() { return hitCount.get(); }
+    public long getMissCount() { return missCount.get(); }
+    public long getEvictionCount() { return evictionCount.get(); }
+    public long getBypassCount() { return bypassCount.get(); }
+    
+    @Override
+    public String toString() {
+        return String.format("MappedFileCache[files=%d, mapped=%d/%d bytes, retired=%d bytes, hits=%d, misses=%d, "
+                             + "evictions=%d, bypassed=%d]",
+                             getSize(), getMappedBytes(), maxBytes, getRetiredBytes(), getHitCount(), getMissCount(),
+                             getEvictionCount(), getBypassCount());
+    }
+    
+    /**
+     * 已淘汰的映射：映射（含請求取得的 duplicate）都無法再被存取時由 GC 放入佇列，此時映射也會被解除
+     */
+    private static final class Retired extends PhantomReference<MappedByteBuffer> {
+        final long size;
+        
+        Retired(MappedByteBuffer mapped, ReferenceQueue<MappedByteBuffer> queue) {
+            super(mapped, queue);
+            this.size = mapped.capacity();
+        }
+    }
+    
+    /**
+     * 映射的檔案
+     */
+    public static final class Entry {
+        private final MappedByteBuffer mapped;
+        // 近似值即可，不需要 volatile
+        long lastAccess;
+        
+        Entry(MappedByteBuffer mapped, long lastAccess) {
+            this.mapped = mapped;
+            this.lastAccess = lastAccess;
+        }
+        
+        /**
+         * @return 檔案內容（獨立的 position/limit，呼叫端可任意讀取）
+         */
+        public ByteBuffer buffer() {
+            return mapped.duplicate();
+        }
+        
+        public long size() {
+            return mapped.capacity();
+        }
+    }
+}
\ No newline at end of file
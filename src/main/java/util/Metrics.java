@@ -0,0 +1,303 @@
+package util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * 應用程式指標（計時器、計數器、量測值），以 Prometheus 文字格式輸出
+ * 
+ * - 計時器以 HdrHistogram 的 Recorder 記錄（微秒，3 位有效數字），記錄時不需要鎖；
+ *   輸出時取出上次輸出後的資料，放入依時間分段的直方圖，p50/p90/p99/p999 只以最近
+ *   monitoring.metrics.window.seconds 秒（分為 6 段輪替）的資料計算，反映目前的延遲而不是整個行程期間；
+ *   _count 與 _sum 為累計值，由同一份資料計算（_sum 以直方圖的數值計算，誤差在 3 位有效數字內）
+ * - 計數器使用 LongAdder，高併發時不互相競爭
+ * - monitoring.metrics.enabled=false 時記錄為空操作
+ * 
+ * 取得計時器與計數器需要查表，呼叫端應保存在 static final 欄位中重複使用
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public final class Metrics {
+    
+    private static final boolean ENABLED = AppConfig.getBoolean("monitoring.metrics.enabled", true);
+    
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    
+    // 計算分位數的期間與分段數
+    private static final long WINDOW_MILLIS =
+        TimeUnit.SECONDS.toMillis(Math.max(1, AppConfig.getLong("monitoring.metrics.window.seconds", 60)));
+    private static final int WINDOW_SLICES = 6;
+    private static final long SLICE_MILLIS = Math.max(1, WINDOW_MILLIS / WINDOW_SLICES);
+    
+    // 依名稱排序輸出
+    private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+    
+    private Metrics() {
+    }
+    
+    /**
+     * 是否啟用指標
+     * @return monitoring.metrics.enabled
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+    
+    /**
+     * 取得計時器（輸出為 summary，單位為秒）
+     * @param name 指標名稱
+     * @param help 說明
+     * @param labelName 標籤名稱
+     * @param labelValue 標籤值
+     * @return 計時器
+     */
+    public static Timer timer(String name, String help, String labelName, String labelValue) {
+        return (Timer) family(name, help, "summary").metrics
+            .computeIfAbsent(label(labelName, labelValue), k -> new Timer());
+    }
+    
+    /**
+     * 取得計數器
+     * @param name 指標名稱（慣例以 _total 結尾）
+     * @param help 說明
+     * @param labelName 標籤名稱
+     * @param labelValue 標籤值
+     * @return 計數器
+     */
+    public static Counter counter(String name, String help, String labelName, String labelValue) {
+        return (Counter) family(name, help, "counter").metrics
+            .computeIfAbsent(label(labelName, labelValue), k -> new Counter());
+    }
+    
+    /**
+     * 註冊量測值（輸出時才呼叫 supplier 取值，例如快取命中率、連線池使用量）
+     * @param name 指標名稱
+     * @param help 說明
+     * @param type Prometheus 類型（gauge 或 counter）
+     * @param supplier 取值函式
+     */
+    public static void gauge(String name, String help, String type, DoubleSupplier supplier) {
+        family(name, help, type).metrics.put("", new Gauge(supplier));
+    }
+    
+    /**
+     * 以 Prometheus 文字格式（0.0.4）輸出全部指標
+     * @param out 輸出
+     * @throws IOException 寫入失敗
+     */
+    public static void writePrometheus(Writer out) throws IOException {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Family family : FAMILIES.values()) {
+            sb.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            sb.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Metric> entry : family.metrics.entrySet()) {
+                entry.getValue().write(sb, family.name, entry.getKey());
+            }
+        }
+        out.write(sb.toString());
+    }
+    
+    private static Family family(String name, String help, String type) {
+        Family family = FAMILIES.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("指標類型不一致: " + name);
+        }
+        return family;
+    }
+    
+    private static String label(String name, String value) {
+        if (name == null) {
+            return "";
+        }
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+    
+    private static void appendName(StringBuilder sb, String name, String suffix, String labels, String extra) {
+        sb.append(name).append(suffix);
+        if (!labels.isEmpty() || extra != null) {
+            sb.append('{').append(labels);
+            if (extra != null) {
+                sb.append(labels.isEmpty() ? "" : ",").append(extra);
+            }
+            sb.append('}');
+        }
+        sb.append(' ');
+    }
+    
+    private static String format(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return Double.toString(value);
+    }
+    
+    /**
+     * 指標名稱、說明、類型，以及依標籤區分的指標
+     */
+    private static final class Family {
+        final String name;
+        final String help;
+        final String type;
+        final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+        
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+    
+    private interface Metric {
+        void write(StringBuilder sb, String name, String labels);
+    }
+    
+    /**
+     * 計時器
+     */
+    public static final class Timer implements Metric {
+        private final Recorder recorder = new Recorder(3);
+        
+        // 輸出時使用（由 synchronized 保護）
+        private final ArrayDeque<Slice> slices = new ArrayDeque<>();
+        private final Histogram window = new Histogram(3);
+        private Histogram interval;
+        private long count;
+        private double sumMicros;
+        
+        private Timer() {
+        }
+        
+        /**
+         * 記錄一次耗時
+         * @param nanos 耗時（奈秒）
+         */
+        public void record(long nanos) {
+            if (!ENABLED) {
+                return;
+            }
+            recorder.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        }
+        
+        /**
+         * 記錄從 startNanos（System.nanoTime）到現在的耗時
+         * @param startNanos 開始時間
+         */
+        public void stop(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+        
+        @Override
+        public synchronized void write(StringBuilder sb, String name, String labels) {
+            long now = System.currentTimeMillis();
+            interval = recorder.getIntervalHistogram(interval);
+            count += interval.getTotalCount();
+            sumMicros += interval.getMean() * interval.getTotalCount();
+            rotate(now).histogram.add(interval);
+            
+            window.reset();
+            for (Slice slice : slices) {
+                window.add(slice.histogram);
+            }
+            
+            // 期間內沒有資料時分位數輸出 NaN（Prometheus summary 的慣例）
+            for (double quantile : QUANTILES) {
+                appendName(sb, name, "", labels, "quantile=\"" + quantile + "\"");
+                sb.append(window.getTotalCount() == 0 ? "NaN" : format(window.getValueAtPercentile(quantile * 100) / 1e6))
+                  .append('\n');
+            }
+            appendName(sb, name, "_sum", labels, null);
+            sb.append(format(sumMicros / 1e6)).append('\n');
+            appendName(sb, name, "_count", labels, null);
+            sb.append(count).append('\n');
+        }
+        
+        /**
+         * 移除超出期間的分段，回傳目前的分段（超出期間的直方圖重設後重複使用）
+         */
+        private Slice rotate(long now) {
+            Slice reusable = null;
+            while (!slices.isEmpty() && now - slices.peekFirst().start >= WINDOW_MILLIS) {
+                reusable = slices.pollFirst();
+            }
+            
+            Slice last = slices.peekLast();
+            if (last != null && now - last.start < SLICE_MILLIS) {
+                return last;
+            }
+            
+            Slice slice = reusable != null ? reusable : new Slice();
+            slice.histogram.reset();
+            slice.start = now;
+            slices.addLast(slice);
+            return slice;
+        }
+    }
+    
+    /**
+     * 計時器在一段時間內的資料
+     */
+    private static final class Slice {
+        final Histogram histogram = new Histogram(3);
+        long start;
+    }
+    
+    /**
+     * 計數器
+     */
+    public static final class Counter implements Metric {
+        private final LongAdder count = new LongAdder();
+        
+        private Counter() {
+        }
+        
+        public void increment() {
+            if (ENABLED) {
+                count.increment();
+            }
+        }
+        
+        public void add(long value) {
+            if (ENABLED) {
+                count.add(value);
+            }
+        }
+        
+        public long get() { return count.sum(); }
+        
+        @Override
+        public void write(StringBuilder sb, String name, String labels) {
+            appendName(sb, name, "", labels, null);
+            sb.append(count.sum()).append('\n');
+        }
+    }
+    
+    /**
+     * 輸出時才取值的量測值
+     */
+    private static final class Gauge implements Metric {
+        private final DoubleSupplier supplier;
+        
+        Gauge(DoubleSupplier supplier) {
+            this.supplier = supplier;
+        }
+        
+        @Override
+        public void write(StringBuilder sb, String name, String labels) {
+            appendName(sb, name, "", labels, null);
+            sb.append(format(supplier.getAsDouble())).append('\n');
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,121 @@
+package util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 密碼雜湊專用執行緒池
+ * - 執行緒數等於 CPU 核心數，雜湊屬於 CPU 密集工作，更多執行緒只會增加切換成本
+ * - 使用有界佇列，佇列滿時立即失敗（fast-fail），讓呼叫端回應「系統忙碌」而不是無限排隊
+ * - 讓 Servlet 容器的請求執行緒不必親自執行上萬次 SHA-256 迭代
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class PasswordHashExecutor {
+    private static final Logger LOGGER = Logger.getLogger(PasswordHashExecutor.class.getName());
+    
+    // 每個執行緒可排隊的工作數
+    private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+    
+    private static final PasswordHashExecutor INSTANCE = new PasswordHashExecutor(
+        Runtime.getRuntime().availableProcessors(),
+        Runtime.getRuntime().availableProcessors() * QUEUE_CAPACITY_PER_THREAD
+    );
+    
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final AtomicLong rejectedCount = new AtomicLong();
+    
+    /**
+     * 建構函式
+     * @param threads 執行緒數
+     * @param queueCapacity 佇列容量
+     */
+    PasswordHashExecutor(int threads, int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        this.executor = new ThreadPoolExecutor(
+            threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            DaemonThreadFactory.numbered("password-hash"),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        LOGGER.log(Level.INFO, "密碼雜湊執行緒池已建立: 執行緒數={0}, 佇列容量={1}",
+                  new Object[]{threads, queueCapacity});
+    }
+    
+    /**
+     * 取得共用實例
+     * @return 密碼雜湊執行緒池
+     */
+    public static PasswordHashExecutor getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 提交雜湊工作
+     * 佇列已滿時回傳的 future 會以 RejectedExecutionException 失敗，不會阻塞呼叫端
+     * @param task 雜湊工作
+     * @return 工作結果
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            long rejected = rejectedCount.incrementAndGet();
+            LOGGER.log(Level.WARNING, "密碼雜湊佇列已滿，拒絕工作 (累計拒絕 {0} 次)", rejected);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * @return 目前排隊中的工作數
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+    
+    /**
+     * @return 佇列容量
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    
+    /**
+     * @return 正在執行雜湊的執行緒數
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+    
+    /**
+     * @return 因佇列已滿而被拒絕的工作數
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+    
+    /**
+     * 關閉執行緒池，等待已排隊的工作完成
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        LOGGER.log(Level.INFO, "密碼雜湊執行緒池已關閉");
+    }
+}
\ No newline at end of file
@@ -1,9 +1,16 @@
 package util;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -11,23 +18,45 @@ import java.util.logging.Logger;
  * 密碼加密工具類
  * 提供密碼雜湊和驗證功能
  * 
+ * 雜湊字串格式（自我描述，可在不影響舊密碼的情況下調整成本）:
+ *   $pcs1$演算法$迭代次數$Base64(鹽值)$Base64(雜湊值)
+ * 不含前綴的舊格式 Base64(鹽值 + 雜湊值) 固定為 SHA-256、32 位元組鹽值、10000 次迭代，仍可驗證
+ * 
  * @author PC商城專案維護小組
  * @version 2.0
  */
 public class PasswordUtil {
     private static final Logger LOGGER = Logger.getLogger(PasswordUtil.class.getName());
     
-    // 鹽值長度
-    private static final int SALT_LENGTH = 32;
-    // 迭代次數
-    private static final int ITERATIONS = 10000;
-    // 雜湊演算法
-    private static final String HASH_ALGORITHM = "SHA-256";
+    // 版本化雜湊格式前綴
+    private static final String FORMAT_PREFIX = "$pcs1$";
+    
+    // 舊格式（無前綴）的固定參數
+    private static final int LEGACY_SALT_LENGTH = 32;
+    private static final int LEGACY_ITERATIONS = 10000;
+    private static final String LEGACY_ALGORITHM = "SHA-256";
+    
+    // 迭代次數上限，避免設定或校準錯誤造成單次驗證耗時過久
+    private static final int MAX_ITERATIONS = 5000000;
+    
+    // 目前用於產生新雜湊的參數（讀取自 app.properties，啟動時可由 calibrateIterations 調整）
+    private static final String HASH_ALGORITHM = AppConfig.getString("password.hash.algorithm", LEGACY_ALGORITHM);
+    private static final int SALT_LENGTH = AppConfig.getInt("password.salt.length", LEGACY_SALT_LENGTH);
+    private static volatile int iterations = AppConfig.getInt("password.hash.iterations", LEGACY_ITERATIONS);
+    
+    // 平台預設編碼與 ASCII 相容時，ASCII 密碼可直接寫入緩衝區而不必呼叫 getBytes()
+    private static final boolean ASCII_COMPATIBLE_CHARSET = isAsciiCompatible(Charset.defaultCharset());
+    
+    // 每個執行緒共用一個 SecureRandom，避免重複建立與播種
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+    
+    // 每個執行緒的 MessageDigest 與工作緩衝區，迭代過程就地覆寫，穩定狀態下不產生任何配置
+    private static final ThreadLocal<HashBuffers> BUFFERS = ThreadLocal.withInitial(HashBuffers::new);
     
     /**
      * 對密碼進行雜湊處理
      * @param password 明文密碼
-     * @return 雜湊後的密碼字串（包含鹽值）
+     * @return 雜湊後的密碼字串（包含演算法、迭代次數與鹽值）
      */
     public static String hashPassword(String password) {
         if (password == null || password.isEmpty()) {
@@ -35,21 +64,26 @@ public class PasswordUtil {
         }
         
         try {
+            HashBuffers buffers = BUFFERS.get();
+            int currentIterations = iterations;
+            
             // 生成隨機鹽值
-            SecureRandom random = new SecureRandom();
             byte[] salt = new byte[SALT_LENGTH];
-            random.nextBytes(salt);
-            
-            // 執行雜湊
-            byte[] hash = hashPasswordWithSalt(password, salt, ITERATIONS);
-            
-            // 將鹽值和雜湊值組合並編碼
-            byte[] hashWithSalt = new byte[SALT_LENGTH + hash.length];
-            System.arraycopy(salt, 0, hashWithSalt, 0, SALT_LENGTH);
-            System.arraycopy(hash, 0, hashWithSalt, SALT_LENGTH, hash.length);
+            RANDOM.get().nextBytes(salt);
             
-            return Base64.getEncoder().encodeToString(hashWithSalt);
+            // 執行雜湊，結果寫入工作緩衝區
+            int hashLength = hashPasswordWithSalt(password, HASH_ALGORITHM, salt, 0, salt.length,
+                                                  currentIterations, buffers);
             
+            // 組合為版本化格式
+            Base64.Encoder encoder = Base64.getEncoder();
+            return new StringBuilder(128)
+                .append(FORMAT_PREFIX).append(HASH_ALGORITHM)
+                .append('$').append(currentIterations)
+                .append('$').append(encoder.encodeToString(salt))
+                .append('$').append(encoder.encodeToString(Arrays.copyOf(buffers.hash, hashLength)))
+                .toString();
+                
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "密碼雜湊處理失敗", e);
             throw new RuntimeException("密碼處理失敗", e);
@@ -59,7 +93,7 @@ public class PasswordUtil {
     /**
      * 驗證密碼
      * @param password 明文密碼
-     * @param hashedPassword 已雜湊的密碼
+     * @param hashedPassword 已雜湊的密碼（新格式或舊格式皆可）
      * @return 是否匹配
      */
     public static boolean verifyPassword(String password, String hashedPassword) {
@@ -68,57 +102,217 @@ public class PasswordUtil {
         }
         
         try {
-            // 解碼雜湊密碼
-            byte[] hashWithSalt = Base64.getDecoder().decode(hashedPassword);
+            StoredHash stored = StoredHash.parse(hashedPassword);
             
-            if (hashWithSalt.length < SALT_LENGTH) {
+            if (stored == null) {
                 LOGGER.log(Level.WARNING, "無效的雜湊密碼格式");
                 return false;
             }
             
-            // 提取鹽值
-            byte[] salt = new byte[SALT_LENGTH];
-            System.arraycopy(hashWithSalt, 0, salt, 0, SALT_LENGTH);
-            
-            // 提取雜湊值
-            byte[] storedHash = new byte[hashWithSalt.length - SALT_LENGTH];
-            System.arraycopy(hashWithSalt, SALT_LENGTH, storedHash, 0, storedHash.length);
-            
-            // 使用相同的鹽值對輸入密碼進行雜湊
-            byte[] testHash = hashPasswordWithSalt(password, salt, ITERATIONS);
-            
-            // 比較雜湊值
-            return MessageDigest.isEqual(storedHash, testHash);
+            // 直接以解碼後陣列中的鹽值雜湊輸入密碼，不另外複製鹽值與雜湊值
+            HashBuffers buffers = BUFFERS.get();
+            int hashLength = hashPasswordWithSalt(password, stored.algorithm, stored.salt, stored.saltOffset,
+                                                  stored.saltLength, stored.iterations, buffers);
             
+            // 比較雜湊值（固定時間比較）
+            return stored.hashLength == hashLength &&
+                   constantTimeEquals(stored.hash, stored.hashOffset, buffers.hash, 0, hashLength);
+                   
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "密碼驗證失敗", e);
             return false;
         }
     }
     
+    /**
+     * 檢查已儲存的雜湊是否應以目前參數重新雜湊
+     * 舊格式、演算法或鹽值長度不同、迭代次數低於目前設定時回傳 true。
+     * 迭代次數高於目前設定時不降級，避免各節點校準結果不同時反覆重新雜湊
+     * @param hashedPassword 已雜湊的密碼
+     * @return 是否需要重新雜湊
+     */
+    public static boolean needsRehash(String hashedPassword) {
+        if (hashedPassword == null || !hashedPassword.startsWith(FORMAT_PREFIX)) {
+            return true;
+        }
+        
+        StoredHash stored = StoredHash.parse(hashedPassword);
+        return stored == null ||
+               !stored.algorithm.equals(HASH_ALGORITHM) ||
+               stored.saltLength != SALT_LENGTH ||
+               stored.iterations < iterations;
+    }
+    
+    /**
+     * 依目標驗證延遲校準迭代次數
+     * 在目前硬體上實測單次迭代成本，換算成達到目標延遲所需的迭代次數並套用於之後產生的雜湊
+     * @param targetMillis 目標驗證延遲（毫秒）
+     * @param minIterations 迭代次數下限（安全底線）
+     * @return 校準後的迭代次數
+     */
+    public static int calibrateIterations(long targetMillis, int minIterations) {
+        final int sampleIterations = 20000;
+        final int rounds = 5;
+        HashBuffers buffers = BUFFERS.get();
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.get().nextBytes(salt);
+        
+        try {
+            // 暖機，讓 JIT 編譯雜湊迴圈
+            for (int i = 0; i < rounds; i++) {
+                hashPasswordWithSalt("calibration", HASH_ALGORITHM, salt, 0, salt.length, sampleIterations, buffers);
+            }
+            
+            // 取最快一輪，降低其他執行緒干擾造成的高估
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                hashPasswordWithSalt("calibration", HASH_ALGORITHM, salt, 0, salt.length, sampleIterations, buffers);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            
+            double nanosPerIteration = (double) best / sampleIterations;
+            long target = (long) (targetMillis * 1000000L / nanosPerIteration);
+            int calibrated = (int) Math.max(minIterations, Math.min(MAX_ITERATIONS, target));
+            
+            iterations = calibrated;
+            LOGGER.log(Level.INFO, "密碼雜湊校準完成: 目標 {0} ms, 每次迭代 {1} ns, 迭代次數 {2}",
+                      new Object[]{targetMillis, String.format("%.1f", nanosPerIteration), calibrated});
+            return calibrated;
+            
+        } catch (DigestException e) {
+            LOGGER.log(Level.SEVERE, "密碼雜湊校準失敗，沿用目前迭代次數", e);
+            return iterations;
+        }
+    }
+    
+    /**
+     * 依 app.properties 設定執行啟動校準
+     * password.hash.calibration.enabled=true 時以 password.hash.target.millis 為目標，
+     * 並以 password.hash.iterations 作為迭代次數下限
+     */
+    public static void calibrateFromConfig() {
+        if (!AppConfig.getBoolean("password.hash.calibration.enabled", false)) {
+            LOGGER.log(Level.INFO, "未啟用密碼雜湊校準，迭代次數: {0}", iterations);
+            return;
+        }
+        
+        long targetMillis = AppConfig.getLong("password.hash.target.millis", 0);
+        if (targetMillis <= 0) {
+            LOGGER.log(Level.WARNING, "password.hash.target.millis 未設定，略過校準");
+            return;
+        }
+        
+        calibrateIterations(targetMillis, AppConfig.getInt("password.hash.iterations", LEGACY_ITERATIONS));
+    }
+    
+    /**
+     * @return 產生新雜湊時使用的迭代次數
+     */
+    public static int getIterations() {
+        return iterations;
+    }
+    
+    /**
+     * 非同步雜湊密碼，在密碼雜湊專用執行緒池上執行
+     * 執行緒池佇列已滿時回傳的 future 會以 RejectedExecutionException 失敗
+     * @param password 明文密碼
+     * @return 雜湊後的密碼字串（包含演算法、迭代次數與鹽值）
+     */
+    public static CompletableFuture<String> hashPasswordAsync(String password) {
+        return PasswordHashExecutor.getInstance().submit(() -> hashPassword(password));
+    }
+    
+    /**
+     * 非同步驗證密碼，在密碼雜湊專用執行緒池上執行
+     * 執行緒池佇列已滿時回傳的 future 會以 RejectedExecutionException 失敗
+     * @param password 明文密碼
+     * @param hashedPassword 已雜湊的密碼
+     * @return 是否匹配
+     */
+    public static CompletableFuture<Boolean> verifyPasswordAsync(String password, String hashedPassword) {
+        return PasswordHashExecutor.getInstance().submit(() -> verifyPassword(password, hashedPassword));
+    }
+    
     /**
      * 使用鹽值對密碼進行雜湊
+     * 結果寫入 buffers.hash，迭代過程以 digest(buf, off, len) 就地覆寫同一個緩衝區
      * @param password 密碼
-     * @param salt 鹽值
+     * @param algorithm 雜湊演算法
+     * @param salt 含鹽值的陣列
+     * @param saltOffset 鹽值起始位置
+     * @param saltLength 鹽值長度
      * @param iterations 迭代次數
-     * @return 雜湊值
+     * @param buffers 目前執行緒的工作緩衝區
+     * @return 雜湊值長度
      */
-    private static byte[] hashPasswordWithSalt(String password, byte[] salt, int iterations) 
-            throws NoSuchAlgorithmException {
+    private static int hashPasswordWithSalt(String password, String algorithm, byte[] salt, int saltOffset,
+                                            int saltLength, int iterations, HashBuffers buffers) 
+            throws DigestException {
         
-        MessageDigest md = MessageDigest.getInstance(HASH_ALGORITHM);
+        MessageDigest md = buffers.digest(algorithm);
+        md.reset();
         
         // 將密碼和鹽值結合
-        md.update(salt);
-        byte[] hash = md.digest(password.getBytes());
+        md.update(salt, saltOffset, saltLength);
+        updatePassword(md, password, buffers);
+        
+        byte[] hash = buffers.hash;
+        int length = md.digest(hash, 0, hash.length);
         
         // 執行多次迭代增加安全性
         for (int i = 0; i < iterations; i++) {
-            md.reset();
-            hash = md.digest(hash);
+            md.update(hash, 0, length);
+            md.digest(hash, 0, length);
         }
         
-        return hash;
+        return length;
+    }
+    
+    /**
+     * 將密碼位元組送入 MessageDigest
+     * 與 password.getBytes() 的結果相同；ASCII 密碼直接寫入可重用的緩衝區
+     */
+    private static void updatePassword(MessageDigest md, String password, HashBuffers buffers) {
+        int length = password.length();
+        
+        if (ASCII_COMPATIBLE_CHARSET && length <= buffers.password.length) {
+            byte[] bytes = buffers.password;
+            for (int i = 0; i < length; i++) {
+                char c = password.charAt(i);
+                if (c >= 0x80) {
+                    md.update(password.getBytes());
+                    return;
+                }
+                bytes[i] = (byte) c;
+            }
+            md.update(bytes, 0, length);
+            // 清除緩衝區中的明文密碼
+            Arrays.fill(bytes, 0, length, (byte) 0);
+            return;
+        }
+        
+        md.update(password.getBytes());
+    }
+    
+    /**
+     * 固定時間比較兩段位元組，避免時序攻擊
+     */
+    private static boolean constantTimeEquals(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int diff = 0;
+        for (int i = 0; i < length; i++) {
+            diff |= a[aOffset + i] ^ b[bOffset + i];
+        }
+        return diff == 0;
+    }
+    
+    /**
+     * 檢查編碼對 ASCII 字元是否與 US-ASCII 相同（單一位元組、相同數值）
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) ||
+               charset.equals(StandardCharsets.ISO_8859_1) ||
+               charset.equals(StandardCharsets.US_ASCII);
     }
     
     /**
@@ -182,7 +376,7 @@ public class PasswordUtil {
         }
         
         String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789!@#$%^&*";
-        SecureRandom random = new SecureRandom();
+        SecureRandom random = RANDOM.get();
         StringBuilder password = new StringBuilder();
         
         for (int i = 0; i < length; i++) {
@@ -191,4 +385,97 @@ public class PasswordUtil {
         
         return password.toString();
     }
+    
+    /**
+     * 解析後的已儲存雜湊，鹽值與雜湊值以 (陣列, 位移, 長度) 表示以避免複製
+     */
+    private static class StoredHash {
+        String algorithm;
+        int iterations;
+        byte[] salt;
+        int saltOffset;
+        int saltLength;
+        byte[] hash;
+        int hashOffset;
+        int hashLength;
+        
+        /**
+         * 解析新格式或舊格式的雜湊字串
+         * @param hashedPassword 雜湊字串
+         * @return 解析結果，格式錯誤時回傳 null
+         */
+        static StoredHash parse(String hashedPassword) {
+            StoredHash stored = new StoredHash();
+            Base64.Decoder decoder = Base64.getDecoder();
+            
+            if (!hashedPassword.startsWith(FORMAT_PREFIX)) {
+                // 舊格式: Base64(鹽值 + 雜湊值)
+                byte[] hashWithSalt = decoder.decode(hashedPassword);
+                if (hashWithSalt.length < LEGACY_SALT_LENGTH) {
+                    return null;
+                }
+                stored.algorithm = LEGACY_ALGORITHM;
+                stored.iterations = LEGACY_ITERATIONS;
+                stored.salt = hashWithSalt;
+                stored.saltOffset = 0;
+                stored.saltLength = LEGACY_SALT_LENGTH;
+                stored.hash = hashWithSalt;
+                stored.hashOffset = LEGACY_SALT_LENGTH;
+                stored.hashLength = hashWithSalt.length - LEGACY_SALT_LENGTH;
+                return stored;
+            }
+            
+            // 以 indexOf 切割欄位，避免 split 產生額外的字串陣列
+            int algorithmEnd = hashedPassword.indexOf('$', FORMAT_PREFIX.length());
+            int iterationsEnd = algorithmEnd < 0 ? -1 : hashedPassword.indexOf('$', algorithmEnd + 1);
+            int saltEnd = iterationsEnd < 0 ? -1 : hashedPassword.indexOf('$', iterationsEnd + 1);
+            if (saltEnd < 0 || hashedPassword.indexOf('$', saltEnd + 1) >= 0) {
+                return null;
+            }
+            
+            try {
+                stored.algorithm = hashedPassword.substring(FORMAT_PREFIX.length(), algorithmEnd);
+                stored.iterations = Integer.parseInt(hashedPassword, algorithmEnd + 1, iterationsEnd, 10);
+                stored.salt = decoder.decode(hashedPassword.substring(iterationsEnd + 1, saltEnd));
+                stored.saltLength = stored.salt.length;
+                stored.hash = decoder.decode(hashedPassword.substring(saltEnd + 1));
+                stored.hashLength = stored.hash.length;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            
+            if (stored.iterations < 0 || stored.iterations > MAX_ITERATIONS) {
+                return null;
+            }
+            return stored;
+        }
+    }
+    
+    /**
+     * 每個執行緒的雜湊工作緩衝區
+     */
+    private static class HashBuffers {
+        // 依演算法快取的 MessageDigest，避免每次雜湊都做 provider 查找
+        private final Map<String, MessageDigest> digests = new HashMap<>(4);
+        // 雜湊值（足以容納 SHA-512 的輸出）
+        final byte[] hash = new byte[64];
+        // ASCII 密碼編碼緩衝區
+        final byte[] password = new byte[128];
+        
+        MessageDigest digest(String algorithm) {
+            MessageDigest md = digests.get(algorithm);
+            if (md == null) {
+                try {
+                    md = MessageDigest.getInstance(algorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException("不支援的雜湊演算法: " + algorithm, e);
+                }
+                if (md.getDigestLength() > hash.length) {
+                    throw new IllegalStateException("雜湊輸出長度超過緩衝區: " + algorithm);
+                }
+                digests.put(algorithm, md);
+            }
+            return md;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 以鍵（例如用戶端 IP）區分的權杖桶限流器
+ * 每個鍵最多累積 capacity 個權杖，每 windowMillis 毫秒補滿一次（平均補充），每次請求消耗一個
+ * 
+ * - 每個權杖桶的狀態壓縮在一個 long 中（高 24 位元為千分之一權杖的數量，低 40 位元為上次補充的時間），
+ *   以 compareAndSet 更新，不需要鎖
+ * - 閒置超過一個期間的權杖桶已經補滿，與不存在相同，由 {@link #evictIdle()} 移除
+ * - 追蹤的鍵數量達到上限時，以 {@link BatchEviction} 批次淘汰到上限的 90%：先移除閒置的權杖桶，
+ *   仍不足時移除剩餘權杖最多（最少使用）的權杖桶；正在消耗權杖的鍵（例如攻擊來源）保留限制，
+ *   新的用戶端仍各自有權杖桶，不會因為表格被塞滿而一起被拒絕
+ * - 限額可由 {@link #reconfigure} 在執行中調整；限額與期間保存在同一個不可變物件中，每次請求只讀取一次
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class RateLimiter {
+    private static final Logger LOGGER = Logger.getLogger(RateLimiter.class.getName());
+    
+    // 權杖以千分之一為單位計算，補充速度很慢時（例如每小時 100 個）也不會因整數除法而遺失
+    private static final long UNIT = 1000;
+    private static final int TIME_BITS = 40;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final long MAX_UNITS = (1L << (Long.SIZE - TIME_BITS)) - 1;
+    private volatile Limit limit;
+    private volatile int maxKeys;
+    private final long startNanos = System.nanoTime();
+    
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final BatchEviction eviction = new BatchEviction();
+    
+    // 統計資料（每個請求都會更新，使用 LongAdder 避免競爭）
+    private final LongAdder allowedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    
+    /**
+     * 建構函式
+     * @param capacity 每個鍵在一個期間內允許的請求數
+     * @param windowMillis 期間（毫秒）
+     * @param maxKeys 追蹤的鍵數量上限
+     */
+    public RateLimiter(int capacity, long windowMillis, int maxKeys) {
+        this.limit = new Limit(capacity, windowMillis);
+        this.maxKeys = maxKeys;
+    }
+    
+    /**
+     * 調整限額；既有權杖桶的權杖數在下次請求時依新的容量截斷
+     * @param capacity 每個鍵在一個期間內允許的請求數
+     * @param windowMillis 期間（毫秒）
+     * @param maxKeys 追蹤的鍵數量上限
+     */
+    public void reconfigure(int capacity, long windowMillis, int maxKeys) {
+        this.limit = new Limit(capacity, windowMillis);
+        this.maxKeys = maxKeys;
+    }
+    
+    /**
+     * 嘗試取得一個權杖
+     * @param key 鍵（例如用戶端 IP）
+     * @return 0 表示允許；否則為需要等待的毫秒數
+     */
+    public long tryAcquire(String key) {
+        long now = now();
+        Limit current = limit;
+        long capacityUnits = current.capacityUnits;
+        long windowMillis = current.windowMillis;
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = newBucket(key, now, capacityUnits);
+        }
+        
+        while (true) {
+            long state = bucket.get();
+            long tokens = state >>> TIME_BITS;
+            long last = state & TIME_MASK;
+            
+            // 1. 依經過時間補充權杖；只前進實際換成權杖的時間，餘數留到下次
+            long elapsed = now - last;
+            if (elapsed >= windowMillis || tokens > capacityUnits) {
+                tokens = capacityUnits;
+                last = now;
+            } else if (elapsed > 0) {
+                long credited = elapsed * capacityUnits / windowMillis;
+                if (credited > 0) {
+                    tokens += credited;
+                    last += credited * windowMillis / capacityUnits;
+                    if (tokens >= capacityUnits) {
+                        tokens = capacityUnits;
+                        last = now;
+                    }
+                }
+            }
+            
+            // 2. 權杖不足：計算補足一個權杖的時間，不更新狀態
+            if (tokens < UNIT) {
+                rejectedCount.increment();
+                long refillMillis = ((UNIT - tokens) * windowMillis + capacityUnits - 1) / capacityUnits;
+                return Math.max(1, last + refillMillis - now);
+            }
+            
+            // 3. 消耗一個權杖
+            if (bucket.compareAndSet(state, pack(tokens - UNIT, last))) {
+                allowedCount.increment();
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * 移除閒置超過一個期間（已經補滿）的權杖桶
+     * @return 移除的數量
+     */
+    public int evictIdle() {
+        long now = now();
+        long windowMillis = limit.windowMillis;
+        int removed = 0;
+        
+        Iterator<Map.Entry<String, AtomicLong>> iterator = buckets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, AtomicLong> entry = iterator.next();
+            if (now - (entry.getValue().get() & TIME_MASK) >= windowMillis) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        
+        evictionCount.add(removed);
+        return removed;
+    }
+    
+    private AtomicLong newBucket(String key, long now, long capacityUnits) {
+        if (buckets.size() >= maxKeys) {
+            eviction.run(() -> evict(now));
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(pack(capacityUnits, now)));
+    }
+    
+    /**
+     * 批次淘汰：先移除閒置的權杖桶，仍超過時移除剩餘權杖最多的權杖桶
+     * （剩餘權杖越多表示越少使用，移除後重新建立的權杖桶是滿的，對限流結果的影響最小）
+     */
+    private void evict(long now) {
+        long target = BatchEviction.target(maxKeys);
+        evictIdle();
+        if (buckets.size() <= target) {
+            return;
+        }
+        
+        Limit current = limit;
+        List<Candidate> candidates = new ArrayList<>(buckets.size());
+        for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+            long state = entry.getValue().get();
+            long elapsed = Math.min(current.windowMillis, Math.max(0, now - (state & TIME_MASK)));
+            long refilled = Math.min(current.capacityUnits,
+                                     (state >>> TIME_BITS) + elapsed * current.capacityUnits / current.windowMillis);
+            candidates.add(new Candidate(entry.getKey(), entry.getValue(), refilled));
+        }
+        candidates.sort((a, b) -> Long.compare(b.tokens, a.tokens));
+        
+        int removed = 0;
+        for (Candidate candidate : candidates) {
+            if (buckets.size() <= target) {
+                break;
+            }
+            if (buckets.remove(candidate.key, candidate.bucket)) {
+                removed++;
+            }
+        }
+        evictionCount.add(removed);
+    }
+    
+    private long now() {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+    
+    private static long pack(long tokens, long time) {
+        return (tokens << TIME_BITS) | (time & TIME_MASK);
+    }
+    
+    // 統計資料
+    public long getAllowedCount() { return allowedCount.sum(); }
+    public long getRejectedCount() { return rejectedCount.sum(); }
+    public long getEvictionCount() { return evictionCount.sum(); }
+    public int getTrackedKeyCount() { return buckets.size(); }
+    
+    @Override
+    public String toString() {
+        return String.format("RateLimiter[capacity=%d/%dms, tracked=%d/%d, allowed=%d, rejected=%d, evictions=%d]",
+                             limit.capacityUnits / UNIT, limit.windowMillis, getTrackedKeyCount(), maxKeys,
+                             getAllowedCount(), getRejectedCount(), getEvictionCount());
+    }
+    
+    /**
+     * 淘汰候選（取快照時的剩餘權杖數）
+     */
+    private static final class Candidate {
+        final String key;
+        final AtomicLong bucket;
+        final long tokens;
+        
+        Candidate(String key, AtomicLong bucket, long tokens) {
+            this.key = key;
+            this.bucket = bucket;
+            this.tokens = tokens;
+        }
+    }
+    
+    /**
+     * 限額（不可變）
+     */
+    private static final class Limit {
+        final long capacityUnits;
+        final long windowMillis;
+        
+        Limit(int capacity, long windowMillis) {
+            if (capacity <= 0 || windowMillis <= 0) {
+                throw new IllegalArgumentException("capacity 與 windowMillis 必須大於 0");
+            }
+            
+            long units = capacity * UNIT;
+            if (units > MAX_UNITS) {
+                LOGGER.log(Level.WARNING, "限流容量過大，改為 {0}", MAX_UNITS / UNIT);
+                units = MAX_UNITS / UNIT * UNIT;
+            }
+            this.capacityUnits = units;
+            this.windowMillis = windowMillis;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+package util;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * HTTP 請求相關工具類
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class RequestUtil {
+    
+    // 在反向代理之後時才採用 X-Forwarded-For，否則用戶端可以任意偽造來源
+    private static final boolean TRUST_FORWARDED_FOR = AppConfig.getBoolean("security.trust.forwarded.for", false);
+    
+    /**
+     * 取得用戶端 IP（security.trust.forwarded.for=true 時取 X-Forwarded-For 的第一個位址）
+     * @param request HTTP 請求
+     * @return 用戶端 IP
+     */
+    public static String getClientIp(HttpServletRequest request) {
+        if (TRUST_FORWARDED_FOR) {
+            String forwardedFor = request.getHeader("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.trim().isEmpty()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma >= 0 ? forwardedFor.substring(0, comma) : forwardedFor).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+    
+    /**
+     * If-None-Match 是否符合 etag（或為 *）
+     * 依 HTTP 的弱比較：忽略兩邊的 W/ 前綴，只比較引號內的值
+     * @param request HTTP 請求
+     * @param etag 目前回應的 ETag（可為 W/ 開頭的弱 ETag）
+     * @return 符合時應回應 304
+     */
+    public static boolean matchesIfNoneMatch(HttpServletRequest request, String etag) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || stripWeak(value).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,191 @@
+package util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * 商品搜尋的斷詞工具
+ * - 先以 NFKC 正規化（全形英數轉半形）並轉小寫
+ * - 中日韓文字沒有空白分隔，連續的一段切成重疊的二字詞（「顯示卡」→「顯示」「示卡」）；
+ *   建立索引時另外加入單字，讓只輸入一個字的查詢也能找到
+ * - 其他文字以非英數字元分隔成單字；英文與數字相連時（rtx4090）同時加入整個單字與各部分（rtx、4090）
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public final class SearchTokenizer {
+    
+    // 超過此長度的單字不加入索引（多半是序號或雜訊）
+    private static final int MAX_TOKEN_LENGTH = 64;
+    // 建議詞中中文詞段的長度上限
+    private static final int MAX_PHRASE_LENGTH = 16;
+    
+    private SearchTokenizer() {
+    }
+    
+    /**
+     * 正規化文字（NFKC、小寫）
+     * @param text 文字
+     * @return 正規化後的文字，text 為 null 時回傳空字串
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * 斷詞
+     * @param text 文字
+     * @param query 是否為查詢（查詢的中文詞段只切二字詞，一個字的詞段才使用單字）
+     * @return 詞（依出現順序，可能重複）
+     */
+    public static List<String> tokenize(String text, boolean query) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, query, tokens::add);
+        return tokens;
+    }
+    
+    /**
+     * 斷詞
+     * @param text 文字
+     * @param query 是否為查詢
+     * @param sink 接收每個詞的函式
+     */
+    public static void tokenize(String text, boolean query, Consumer<String> sink) {
+        String normalized = normalize(text);
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = normalized.codePointAt(i);
+            if (isCjk(codePoint)) {
+                int end = cjkRunEnd(normalized, i);
+                emitCjk(normalized, i, end, query, sink);
+                i = end;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int end = wordEnd(normalized, i);
+                emitWord(normalized, i, end, sink);
+                i = end;
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+    }
+    
+    /**
+     * 取出自動完成的建議詞：英數單字與完整的中文詞段
+     * @param text 文字（通常是商品名稱）
+     * @param sink 接收每個建議詞的函式
+     */
+    public static void phrases(String text, Consumer<String> sink) {
+        String normalized = normalize(text);
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = normalized.codePointAt(i);
+            int end;
+            if (isCjk(codePoint)) {
+                end = cjkRunEnd(normalized, i);
+                if (normalized.codePointCount(i, end) <= MAX_PHRASE_LENGTH) {
+                    sink.accept(normalized.substring(i, end));
+                }
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                end = wordEnd(normalized, i);
+                if (end - i <= MAX_TOKEN_LENGTH) {
+                    sink.accept(normalized.substring(i, end));
+                }
+            } else {
+                end = i + Character.charCount(codePoint);
+            }
+            i = end;
+        }
+    }
+    
+    private static void emitCjk(String text, int start, int end, boolean query, Consumer<String> sink) {
+        int first = text.codePointAt(start);
+        int next = start + Character.charCount(first);
+        if (next >= end) {
+            sink.accept(text.substring(start, end));
+            return;
+        }
+        
+        int previous = start;
+        int current = next;
+        while (current < end) {
+            if (!query) {
+                sink.accept(text.substring(previous, current));
+            }
+            int after = current + Character.charCount(text.codePointAt(current));
+            sink.accept(text.substring(previous, after));
+            previous = current;
+            current = after;
+        }
+        if (!query) {
+            sink.accept(text.substring(previous, end));
+        }
+    }
+    
+    private static void emitWord(String text, int start, int end, Consumer<String> sink) {
+        if (end - start > MAX_TOKEN_LENGTH) {
+            return;
+        }
+        sink.accept(text.substring(start, end));
+        
+        // 英文與數字交界處再切開
+        int partStart = start;
+        boolean digit = Character.isDigit(text.codePointAt(start));
+        int i = start;
+        while (i < end) {
+            int codePoint = text.codePointAt(i);
+            boolean isDigit = Character.isDigit(codePoint);
+            if (isDigit != digit) {
+                sink.accept(text.substring(partStart, i));
+                partStart = i;
+                digit = isDigit;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (partStart > start) {
+            sink.accept(text.substring(partStart, end));
+        }
+    }
+    
+    private static int cjkRunEnd(String text, int start) {
+        int i = start;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            if (!isCjk(codePoint)) {
+                break;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return i;
+    }
+    
+    private static int wordEnd(String text, int start) {
+        int i = start;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(codePoint) || isCjk(codePoint)) {
+                break;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return i;
+    }
+    
+    private static boolean isCjk(int codePoint) {
+        if (codePoint < 0x2E80) {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
\ No newline at end of file
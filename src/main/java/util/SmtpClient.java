@@ -0,0 +1,488 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import bean.MailMessage;
+
+/**
+ * 簡易 SMTP 用戶端（一條連線可連續寄送多封郵件）
+ * - 伺服器支援 PIPELINING（RFC 2920）時，MAIL FROM、RCPT TO、DATA 一次送出，
+ *   上一封的結尾（.）也與下一封的指令一起送出，每封郵件只需要一次往返
+ * - 支援 STARTTLS 與 AUTH PLAIN / LOGIN
+ * - 郵件以 UTF-8、base64 編碼的純文字送出，不需要處理行首的「.」
+ * 
+ * 不是執行緒安全的，同一時間只能由一個執行緒使用
+ * 
+ * @author PC商城專案維護小組
+ * @version 2.0
+ */
+public class SmtpClient implements AutoCloseable {
+    
+    // EHLO 與 Message-ID 使用的本機名稱（只查詢一次）
+    private static volatile String localName;
+    
+    /**
+     * 單封郵件的寄送結果
+     */
+    public enum Result {
+        /** 伺服器已接受 */
+        SENT,
+        /** 暫時性錯誤（4xx 或連線中斷），稍後重試 */
+        TRANSIENT_FAILURE,
+        /** 永久性錯誤（5xx），不再重試 */
+        PERMANENT_FAILURE
+    }
+    
+    private final String host;
+    private final int port;
+    private final int timeoutMillis;
+    private final boolean startTls;
+    private final String username;
+    private final String password;
+    private final String fromAddress;
+    private final String fromHeader;
+    
+    // volatile：abort 可能由其他執行緒呼叫
+    private volatile Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private final Set<String> extensions = new HashSet<>();
+    private boolean pipelining;
+    // 非 PIPELINING 模式下已讀取、尚未取用的回應
+    private final Deque<Reply> replies = new ArrayDeque<>();
+    private String lastError;
+    
+    /**
+     * 建構函式
+     * @param host SMTP 主機
+     * @param port 連接埠
+     * @param timeoutMillis 連線與讀取逾時（毫秒）
+     * @param startTls 是否以 STARTTLS 加密
+     * @param username 帳號，null 表示不認證
+     * @param password 密碼
+     * @param fromAddress 寄件者地址
+     * @param fromName 寄件者名稱，可為 null
+     */
+    public SmtpClient(String host, int port, int timeoutMillis, boolean startTls,
+                      String username, String password, String fromAddress, String fromName) {
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+        this.startTls = startTls;
+        this.username = username;
+        this.password = password;
+        this.fromAddress = fromAddress;
+        this.fromHeader = fromName == null || fromName.isEmpty()
+            ? "<" + fromAddress + ">"
+            : encodeWord(fromName) + " <" + fromAddress + ">";
+    }
+    
+    /**
+     * 連線、EHLO、STARTTLS 與認證
+     * @throws IOException 連線失敗或伺服器拒絕
+     */
+    public void connect() throws IOException {
+        close();
+        pipelining = false;
+        socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+        socket.setSoTimeout(timeoutMillis);
+        socket.setTcpNoDelay(true);
+        bindStreams();
+        
+        expect(readReply(), 220);
+        ehlo();
+        
+        if (startTls) {
+            if (!extensions.contains("STARTTLS")) {
+                throw new IOException("SMTP 伺服器不支援 STARTTLS: " + host);
+            }
+            command("STARTTLS");
+            expect(reply(), 220);
+            SSLSocket tls = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                .createSocket(socket, host, port, true);
+            tls.startHandshake();
+            socket = tls;
+            bindStreams();
+            ehlo();
+        }
+        
+        if (username != null && !username.isEmpty()) {
+            authenticate();
+        }
+    }
+    
+    /**
+     * 連線是否仍可使用（送出 NOOP）
+     * @return 是否可使用
+     */
+    public boolean isUsable() {
+        if (socket == null || socket.isClosed()) {
+            return false;
+        }
+        try {
+            command("NOOP");
+            return reply().code == 250;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * 在目前連線上依序寄送多封郵件
+     * 連線中斷時，尚未得到結果的郵件都回傳 TRANSIENT_FAILURE，並關閉連線
+     * @param messages 郵件
+     * @return 與 messages 順序相同的結果
+     */
+    public List<Result> send(List<MailMessage> messages) {
+        List<Result> results = new ArrayList<>(messages.size());
+        try {
+            if (!messages.isEmpty()) {
+                envelope(messages.get(0));
+            }
+            
+            for (int i = 0; i < messages.size(); i++) {
+                MailMessage next = i + 1 < messages.size() ? messages.get(i + 1) : null;
+                
+                // 1. MAIL FROM、RCPT TO、DATA 的回應
+                Reply mail = reply();
+                Reply rcpt = reply();
+                Reply data = reply();
+                
+                if (mail.code == 250 && isOk(rcpt.code) && data.code == 354) {
+                    // 2. 內容與結尾，並接著送出下一封的指令
+                    writeContent(messages.get(i));
+                    if (next != null) {
+                        envelope(next);
+                    }
+                    Reply done = reply();
+                    results.add(classify(done));
+                    continue;
+                }
+                
+                // 3. 被拒絕：伺服器仍接受 DATA 時送出空內容結束，再以 RSET 清除狀態
+                if (data.code == 354) {
+                    command(".");
+                    reply();
+                }
+                Reply failure = mail.code != 250 ? mail : !isOk(rcpt.code) ? rcpt : data;
+                lastError = failure.toString();
+                results.add(classify(failure));
+                
+                command("RSET");
+                if (next != null) {
+                    envelope(next);
+                }
+                reply();
+            }
+        } catch (IOException e) {
+            lastError = e.getMessage();
+            while (results.size() < messages.size()) {
+                results.add(Result.TRANSIENT_FAILURE);
+            }
+            close();
+        }
+        return results;
+    }
+    
+    /**
+     * 送出 QUIT 並關閉連線
+     */
+    @Override
+    public void close() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            // 連線失敗時 socket 尚未連上、也沒有串流，不送 QUIT
+            if (out != null && !socket.isClosed()) {
+                command("QUIT");
+                out.flush();
+            }
+        } catch (IOException e) {
+            // 連線已中斷
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+        socket = null;
+        in = null;
+        out = null;
+        replies.clear();
+    }
+    
+    /**
+     * 強制中斷連線（不送 QUIT），可由其他執行緒呼叫：
+     * 阻塞在讀寫的寄送執行緒會立即收到 IOException，由該執行緒自行 close
+     */
+    public void abort() {
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+        }
+    }
+    
+    /**
+     * @return 是否已連線（連線中斷時 send 會關閉連線）
+     */
+    public boolean isConnected() {
+        return socket != null;
+    }
+    
+    /**
+     * @return 伺服器是否支援 PIPELINING
+     */
+    public boolean isPipelining() {
+        return pipelining;
+    }
+    
+    /**
+     * @return 最近一次失敗的回應或例外訊息
+     */
+    public String getLastError() {
+        return lastError;
+    }
+    
+    private void bindStreams() throws IOException {
+        in = new BufferedInputStream(socket.getInputStream());
+        out = new BufferedOutputStream(socket.getOutputStream(), 16384);
+    }
+    
+    private void ehlo() throws IOException {
+        command("EHLO " + localName());
+        Reply reply = reply();
+        expect(reply, 250);
+        
+        extensions.clear();
+        for (int i = 1; i < reply.lines.size(); i++) {
+            extensions.add(reply.lines.get(i).toUpperCase(Locale.ROOT));
+        }
+        // 也收下 "AUTH PLAIN LOGIN" 這類帶參數的擴充名稱
+        for (String line : new ArrayList<>(extensions)) {
+            int space = line.indexOf(' ');
+            if (space > 0) {
+                extensions.add(line.substring(0, space));
+            }
+        }
+        pipelining = extensions.contains("PIPELINING");
+    }
+    
+    private void authenticate() throws IOException {
+        Base64.Encoder base64 = Base64.getEncoder();
+        boolean plain = false;
+        for (String extension : extensions) {
+            if (extension.startsWith("AUTH ") && extension.contains(" PLAIN")) {
+                plain = true;
+            }
+        }
+        
+        if (plain) {
+            String token = "\0" + username + "\0" + password;
+            command("AUTH PLAIN " + base64.encodeToString(token.getBytes(StandardCharsets.UTF_8)));
+            expect(reply(), 235);
+        } else {
+            command("AUTH LOGIN");
+            expect(reply(), 334);
+            command(base64.encodeToString(username.getBytes(StandardCharsets.UTF_8)));
+            expect(reply(), 334);
+            command(base64.encodeToString(password.getBytes(StandardCharsets.UTF_8)));
+            expect(reply(), 235);
+        }
+    }
+    
+    /**
+     * 檢查地址是否可以放進 SMTP 指令（不含空白、控制字元與角括號）
+     * @param address 郵件地址
+     * @return 是否可用
+     */
+    public static boolean isValidAddress(String address) {
+        if (address == null || address.isEmpty() || address.length() > 254 || address.indexOf('@') <= 0) {
+            return false;
+        }
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c <= 0x20 || c == 0x7f || c == '<' || c == '>') {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void envelope(MailMessage message) throws IOException {
+        command("MAIL FROM:<" + fromAddress + ">");
+        command("RCPT TO:<" + message.getTo() + ">");
+        command("DATA");
+    }
+    
+    /**
+     * 寫入郵件標頭與 base64 內容，以「.」結束
+     */
+    private void writeContent(MailMessage message) throws IOException {
+        StringBuilder sb = new StringBuilder(512 + message.getBody().length() * 2);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z", Locale.US);
+        sb.append("Date: ").append(dateFormat.format(new Date())).append("\r\n");
+        sb.append("From: ").append(fromHeader).append("\r\n");
+        sb.append("To: <").append(message.getTo()).append(">\r\n");
+        sb.append("Subject: ").append(encodeWord(message.getSubject())).append("\r\n");
+        sb.append("Message-ID: <").append(message.getId()).append('.').append(System.currentTimeMillis())
+          .append('@').append(localName()).append(">\r\n");
+        sb.append("MIME-Version: 1.0\r\n");
+        sb.append("Content-Type: text/plain; charset=UTF-8\r\n");
+        sb.append("Content-Transfer-Encoding: base64\r\n\r\n");
+        sb.append(Base64.getMimeEncoder().encodeToString(message.getBody().getBytes(StandardCharsets.UTF_8)));
+        sb.append("\r\n");
+        out.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+        command(".");
+    }
+    
+    /**
+     * 送出指令；伺服器不支援 PIPELINING 時立即讀取回應
+     */
+    private void command(String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\r');
+        out.write('\n');
+        if (!pipelining) {
+            out.flush();
+            replies.addLast(readReply());
+        }
+    }
+    
+    /**
+     * 取得下一個回應（PIPELINING 模式下先送出緩衝區中的指令）
+     */
+    private Reply reply() throws IOException {
+        if (!replies.isEmpty()) {
+            return replies.removeFirst();
+        }
+        out.flush();
+        return readReply();
+    }
+    
+    /**
+     * 讀取一個（可能多行的）回應
+     */
+    private Reply readReply() throws IOException {
+        List<String> lines = new ArrayList<>(4);
+        int code;
+        while (true) {
+            String line = readLine();
+            if (line.length() < 3) {
+                throw new IOException("SMTP 回應格式錯誤: " + line);
+            }
+            try {
+                code = Integer.parseInt(line.substring(0, 3));
+            } catch (NumberFormatException e) {
+                throw new IOException("SMTP 回應格式錯誤: " + line);
+            }
+            lines.add(line.length() > 4 ? line.substring(4) : "");
+            if (line.length() == 3 || line.charAt(3) != '-') {
+                return new Reply(code, lines);
+            }
+        }
+    }
+    
+    private String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder(64);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int length = sb.length();
+                if (length > 0 && sb.charAt(length - 1) == '\r') {
+                    sb.setLength(length - 1);
+                }
+                return sb.toString();
+            }
+            sb.append((char) b);
+        }
+        throw new IOException("SMTP 連線已中斷");
+    }
+    
+    private static void expect(Reply reply, int code) throws IOException {
+        if (reply.code != code) {
+            throw new IOException("SMTP 伺服器回應 " + reply);
+        }
+    }
+    
+    private static boolean isOk(int code) {
+        return code == 250 || code == 251;
+    }
+    
+    private static Result classify(Reply reply) {
+        if (reply.code >= 200 && reply.code < 300) {
+            return Result.SENT;
+        }
+        return reply.code >= 500 ? Result.PERMANENT_FAILURE : Result.TRANSIENT_FAILURE;
+    }
+    
+    /**
+     * 以 RFC 2047 編碼非 ASCII 的標頭文字
+     */
+    private static String encodeWord(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x20 || c > 0x7e) {
+                return "=?UTF-8?B?" + Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8)) + "?=";
+            }
+        }
+        return text;
+    }
+    
+    private static String localName() {
+        String name = localName;
+        if (name == null) {
+            try {
+                name = InetAddress.getLocalHost().getCanonicalHostName();
+            } catch (IOException e) {
+                name = "localhost";
+            }
+            localName = name;
+        }
+        return name;
+    }
+    
+    /**
+     * SMTP 回應
+     */
+    private static final class Reply {
+        final int code;
+        final List<String> lines;
+        
+        Reply(int code, List<String> lines) {
+            this.code = code;
+            this.lines = lines;
+        }
+        
+        @Override
+        public String toString() {
+            return code + " " + String.join(" ", lines);
+        }
+    }
+}
\ No newline at end of file
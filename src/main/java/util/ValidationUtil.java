@@ -8,6 +8,9 @@ import java.util.logging.Logger;
  * 輸入驗證和清理工具類
  * 防止 XSS、SQL 注入和其他安全威脅
  * 
+ * - 關鍵字檢查使用預先編譯的 {@link KeywordMatcher}，不必產生大小寫複本或逐一比對每個關鍵字
+ * - sanitizeInput 只掃描一次字串，結果與依序執行 trim、移除控制字元、HTML 編碼、移除 SQL 註釋完全相同
+ * 
  * @author PC商城專案維護小組
  * @version 2.0
  */
@@ -19,21 +22,12 @@ public class ValidationUtil {
         "^[a-zA-Z0-9_+&*-]+(?:\\.[a-zA-Z0-9_+&*-]+)*@(?:[a-zA-Z0-9-]+\\.)+[a-zA-Z]{2,7}$"
     );
     
-    private static final Pattern PHONE_PATTERN = Pattern.compile(
-        "^[0-9\\-\\+\\(\\)\\s]{8,15}$"
-    );
-    
-    private static final Pattern CREDIT_CARD_PATTERN = Pattern.compile(
-        "^[0-9]{13,19}$"
-    );
-    
-    private static final Pattern USER_ID_PATTERN = Pattern.compile(
-        "^[a-zA-Z0-9_]{3,20}$"
-    );
+    // 長度限制來自 validation.* 設定，設定檔重新載入時整組替換
+    private static volatile Limits limits = Limits.fromConfig();
     
-    private static final Pattern NAME_PATTERN = Pattern.compile(
-        "^[\\u4e00-\\u9fa5a-zA-Z\\s]{2,50}$"
-    );
+    static {
+        AppConfig.addReloadListener(() -> limits = Limits.fromConfig());
+    }
     
     // 危險字符和SQL關鍵字
     private static final String[] SQL_KEYWORDS = {
@@ -46,6 +40,9 @@ public class ValidationUtil {
         "onload", "onerror", "onmouseover", "onfocus", "onblur"
     };
     
+    private static final KeywordMatcher SQL_KEYWORD_MATCHER = new KeywordMatcher(SQL_KEYWORDS);
+    private static final KeywordMatcher XSS_PATTERN_MATCHER = new KeywordMatcher(XSS_PATTERNS);
+    
     /**
      * 清理輸入字串，移除潛在的惡意內容
      * @param input 輸入字串
@@ -56,19 +53,66 @@ public class ValidationUtil {
             return null;
         }
         
-        String cleaned = input.trim();
+        // 與 String.trim 相同：去除前後 <= ' ' 的字元
+        int start = 0;
+        int end = input.length();
+        while (start < end && input.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
         
-        // 移除控制字符
-        cleaned = cleaned.replaceAll("[\\x00-\\x1f\\x7f]", "");
+        // 大多數輸入不需要任何處理，直接回傳
+        if (!needsSanitizing(input, start, end)) {
+            LOGGER.log(Level.FINE, "輸入清理完成");
+            return start == 0 && end == input.length() ? input : input.substring(start, end);
+        }
         
-        // HTML 實體編碼
-        cleaned = htmlEncode(cleaned);
+        StringBuilder cleaned = new StringBuilder(end - start + 16);
+        int dashes = 0;
         
-        // 移除SQL注入相關字符
-        cleaned = removeSqlInjectionChars(cleaned);
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+            
+            // 移除控制字符（在其他處理之前移除，因此不會打斷連續的 '-'）
+            if (c < 0x20 || c == 0x7f) {
+                continue;
+            }
+            
+            // 移除 SQL 註釋 "--"：連續 n 個 '-' 剩下 n % 2 個
+            if (c == '-') {
+                dashes++;
+                continue;
+            }
+            if ((dashes & 1) != 0) {
+                cleaned.append('-');
+            }
+            dashes = 0;
+            
+            // HTML 實體編碼；'/' 已編碼，因此 "/*"、"*/" 不會再出現，單引號也不需要再做 SQL 跳脫
+            appendHtmlEncoded(cleaned, c);
+        }
+        if ((dashes & 1) != 0) {
+            cleaned.append('-');
+        }
         
         LOGGER.log(Level.FINE, "輸入清理完成");
-        return cleaned;
+        return cleaned.toString();
+    }
+    
+    /**
+     * 檢查 [start, end) 範圍內是否有需要清理的字元
+     */
+    private static boolean needsSanitizing(String input, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+            if (c < 0x20 || c == 0x7f || c == '-' || c == '&' || c == '<' || c == '>' 
+                || c == '"' || c == '\'' || c == '/') {
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
@@ -77,12 +121,12 @@ public class ValidationUtil {
      * @return 是否有效
      */
     public static boolean isValidUserId(String userId) {
-        if (userId == null || userId.trim().isEmpty()) {
+        if (userId == null) {
             return false;
         }
         
         String trimmed = userId.trim();
-        return USER_ID_PATTERN.matcher(trimmed).matches() && 
+        return !trimmed.isEmpty() && limits.userIdPattern.matcher(trimmed).matches() && 
                !containsSqlKeywords(trimmed) && 
                !containsXssPatterns(trimmed);
     }
@@ -93,12 +137,12 @@ public class ValidationUtil {
      * @return 是否有效
      */
     public static boolean isValidName(String name) {
-        if (name == null || name.trim().isEmpty()) {
+        if (name == null) {
             return false;
         }
         
         String trimmed = name.trim();
-        return NAME_PATTERN.matcher(trimmed).matches() && 
+        return !trimmed.isEmpty() && limits.namePattern.matcher(trimmed).matches() && 
                !containsXssPatterns(trimmed);
     }
     
@@ -108,11 +152,19 @@ public class ValidationUtil {
      * @return 是否有效
      */
     public static boolean isValidEmail(String email) {
-        if (email == null || email.trim().isEmpty()) {
+        if (email == null) {
             return false;
         }
         
-        String trimmed = email.trim().toLowerCase();
+        String trimmed = email.trim();
+        if (trimmed.isEmpty()) {
+            return false;
+        }
+        
+        // 格式只允許 ASCII，且比對不分大小寫；只有含非 ASCII 字元或特殊語系時才需要先轉小寫
+        if (!KeywordMatcher.isAsciiOnlyFoldSafe(trimmed)) {
+            trimmed = trimmed.toLowerCase();
+        }
         return EMAIL_PATTERN.matcher(trimmed).matches() && 
                !containsXssPatterns(trimmed);
     }
@@ -123,12 +175,12 @@ public class ValidationUtil {
      * @return 是否有效
      */
     public static boolean isValidPhone(String phone) {
-        if (phone == null || phone.trim().isEmpty()) {
+        if (phone == null) {
             return false;
         }
         
         String trimmed = phone.trim();
-        return PHONE_PATTERN.matcher(trimmed).matches();
+        return !trimmed.isEmpty() && limits.phonePattern.matcher(trimmed).matches();
     }
     
     /**
@@ -141,10 +193,20 @@ public class ValidationUtil {
             return false;
         }
         
-        // 移除空格和破折號
-        String cleaned = creditCard.replaceAll("[\\s\\-]", "");
+        // 移除空格和破折號（與 [\\s\\-] 相同的字元），同時確認其餘都是數字
+        StringBuilder cleaned = new StringBuilder(creditCard.length());
+        for (int i = 0; i < creditCard.length(); i++) {
+            char c = creditCard.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == 0x0b || c == '\f' || c == '\r' || c == '-') {
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            cleaned.append(c);
+        }
         
-        if (!CREDIT_CARD_PATTERN.matcher(cleaned).matches()) {
+        if (cleaned.length() < 13 || cleaned.length() > 19) {
             return false;
         }
         
@@ -158,48 +220,33 @@ public class ValidationUtil {
      * @return 是否有效
      */
     public static boolean isValidAddress(String address) {
-        if (address == null || address.trim().isEmpty()) {
+        if (address == null) {
             return false;
         }
         
         String trimmed = address.trim();
-        return trimmed.length() >= 5 && 
-               trimmed.length() <= 200 && 
+        Limits current = limits;
+        return trimmed.length() >= current.addressMinLength && 
+               trimmed.length() <= current.addressMaxLength && 
                !containsXssPatterns(trimmed) &&
                !containsSqlKeywords(trimmed);
     }
     
     /**
-     * HTML 實體編碼
-     * @param input 輸入字串
-     * @return 編碼後的字串
-     */
-    private static String htmlEncode(String input) {
-        if (input == null) return null;
-        
-        return input.replace("&", "&amp;")
-                   .replace("<", "&lt;")
-                   .replace(">", "&gt;")
-                   .replace("\"", "&quot;")
-                   .replace("'", "&#x27;")
-                   .replace("/", "&#x2F;");
-    }
-    
-    /**
-     * 移除 SQL 注入相關字符
-     * @param input 輸入字串
-     * @return 清理後的字串
+     * 附加單一字元的 HTML 實體編碼
+     * @param out 輸出
+     * @param c 字元
      */
-    private static String removeSqlInjectionChars(String input) {
-        if (input == null) return null;
-        
-        // 移除或替換危險字符
-        String cleaned = input.replace("'", "''")  // SQL 單引號轉義
-                              .replace("--", "")    // SQL 註釋
-                              .replace("/*", "")    // SQL 多行註釋開始
-                              .replace("*/", "");   // SQL 多行註釋結束
-        
-        return cleaned;
+    private static void appendHtmlEncoded(StringBuilder out, char c) {
+        switch (c) {
+            case '&': out.append("&amp;"); break;
+            case '<': out.append("&lt;"); break;
+            case '>': out.append("&gt;"); break;
+            case '"': out.append("&quot;"); break;
+            case '\'': out.append("&#x27;"); break;
+            case '/': out.append("&#x2F;"); break;
+            default: out.append(c); break;
+        }
     }
     
     /**
@@ -210,13 +257,21 @@ public class ValidationUtil {
     private static boolean containsSqlKeywords(String input) {
         if (input == null) return false;
         
-        String upperInput = input.toUpperCase();
-        for (String keyword : SQL_KEYWORDS) {
-            if (upperInput.contains(keyword)) {
-                LOGGER.log(Level.WARNING, "檢測到SQL關鍵字: {0}", keyword);
-                return true;
+        int found = SQL_KEYWORD_MATCHER.find(input);
+        if (found == KeywordMatcher.UNDECIDED) {
+            // 特殊語系或大小寫轉換會產生 ASCII 的字元：使用轉大寫後比對的原始做法
+            String upperInput = input.toUpperCase();
+            for (int i = 0; i < SQL_KEYWORDS.length && found < 0; i++) {
+                if (upperInput.contains(SQL_KEYWORDS[i])) {
+                    found = i;
+                }
             }
         }
+        
+        if (found >= 0) {
+            LOGGER.log(Level.WARNING, "檢測到SQL關鍵字: {0}", SQL_KEYWORDS[found]);
+            return true;
+        }
         return false;
     }
     
@@ -228,13 +283,21 @@ public class ValidationUtil {
     private static boolean containsXssPatterns(String input) {
         if (input == null) return false;
         
-        String lowerInput = input.toLowerCase();
-        for (String pattern : XSS_PATTERNS) {
-            if (lowerInput.contains(pattern.toLowerCase())) {
-                LOGGER.log(Level.WARNING, "檢測到XSS模式: {0}", pattern);
-                return true;
+        int found = XSS_PATTERN_MATCHER.find(input);
+        if (found == KeywordMatcher.UNDECIDED) {
+            // 特殊語系或大小寫轉換會產生 ASCII 的字元：使用轉小寫後比對的原始做法
+            String lowerInput = input.toLowerCase();
+            for (int i = 0; i < XSS_PATTERNS.length && found < 0; i++) {
+                if (lowerInput.contains(XSS_PATTERNS[i].toLowerCase())) {
+                    found = i;
+                }
             }
         }
+        
+        if (found >= 0) {
+            LOGGER.log(Level.WARNING, "檢測到XSS模式: {0}", XSS_PATTERNS[found]);
+            return true;
+        }
         return false;
     }
     
@@ -243,12 +306,12 @@ public class ValidationUtil {
      * @param cardNumber 信用卡號碼
      * @return 是否有效
      */
-    private static boolean isValidLuhn(String cardNumber) {
+    private static boolean isValidLuhn(CharSequence cardNumber) {
         int sum = 0;
         boolean alternate = false;
         
         for (int i = cardNumber.length() - 1; i >= 0; i--) {
-            int n = Integer.parseInt(cardNumber.substring(i, i + 1));
+            int n = cardNumber.charAt(i) - '0';
             
             if (alternate) {
                 n *= 2;
@@ -327,4 +390,49 @@ public class ValidationUtil {
             return String.join(", ", errors);
         }
     }
+    
+    /**
+     * 依設定編譯的長度限制（不可變）
+     */
+    private static final class Limits {
+        final Pattern userIdPattern;
+        final Pattern namePattern;
+        final Pattern phonePattern;
+        final int addressMinLength;
+        final int addressMaxLength;
+        
+        private Limits(Pattern userIdPattern, Pattern namePattern, Pattern phonePattern,
+                       int addressMinLength, int addressMaxLength) {
+            this.userIdPattern = userIdPattern;
+            this.namePattern = namePattern;
+            this.phonePattern = phonePattern;
+            this.addressMinLength = addressMinLength;
+            this.addressMaxLength = addressMaxLength;
+        }
+        
+        static Limits fromConfig() {
+            return new Limits(
+                Pattern.compile("^[a-zA-Z0-9_]" + range("validation.user.id", 3, 20) + "$"),
+                Pattern.compile("^[\\u4e00-\\u9fa5a-zA-Z\\s]" + range("validation.name", 2, 50) + "$"),
+                Pattern.compile("^[0-9\\-\\+\\(\\)\\s]" + range("validation.phone", 8, 15) + "$"),
+                AppConfig.getInt("validation.address.min.length", 5),
+                AppConfig.getInt("validation.address.max.length", 200)
+            );
+        }
+        
+        /**
+         * 以 prefix.min.length / prefix.max.length 產生 {min,max} 量詞，設定不合理時使用預設值
+         */
+        private static String range(String prefix, int defaultMin, int defaultMax) {
+            int min = AppConfig.getInt(prefix + ".min.length", defaultMin);
+            int max = AppConfig.getInt(prefix + ".max.length", defaultMax);
+            if (min < 1 || max < min) {
+                LOGGER.log(Level.WARNING, "長度限制設定錯誤: {0}={1}-{2}，使用預設值",
+                          new Object[]{prefix, min, max});
+                min = defaultMin;
+                max = defaultMax;
+            }
+            return "{" + min + "," + max + "}";
+        }
+    }
 }
\ No newline at end of file
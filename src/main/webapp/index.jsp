@@ -13,7 +13,7 @@
     <title>PC商城 - 專業電腦硬體購物網站</title>
     
     <!-- CSS -->
-    <link rel="stylesheet" href="${pageContext.request.contextPath}/css/style.css">
+    <link rel="stylesheet" href="${pageContext.request.contextPath}${empty assets['/css/style.css'] ? '/css/style.css' : assets['/css/style.css']}">
     
     <!-- Favicon -->
     <link rel="icon" type="image/x-icon" href="${pageContext.request.contextPath}/images/favicon.ico">